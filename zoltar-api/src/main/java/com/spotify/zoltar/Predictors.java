@@ -125,6 +125,107 @@ public final class Predictors {
     return DefaultPredictorBuilder.create(modelLoader, featureExtractor, predictFn);
   }
 
+  /**
+   * Returns a PredictorBuilder given a {@link Model}, {@link FeatureExtractor}, a {@link
+   * PredictFn} and an {@link ExecutionPolicy}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param extractFn a feature extract function to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link PredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      PredictorBuilder<ModelT, InputT, VectorT, ValueT> newBuilder(
+          final ModelLoader<ModelT> modelLoader,
+          final ExtractFn<InputT, VectorT> extractFn,
+          final PredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy) {
+    return DefaultPredictorBuilder.create(modelLoader, extractFn, predictFn, executionPolicy);
+  }
+
+  /**
+   * Returns a PredictorBuilder given a {@link Model}, {@link FeatureExtractor}, a {@link
+   * AsyncPredictFn} and an {@link ExecutionPolicy}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link AsyncPredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      PredictorBuilder<ModelT, InputT, VectorT, ValueT> newBuilder(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy) {
+    return DefaultPredictorBuilder.create(
+        modelLoader, featureExtractor, predictFn, executionPolicy);
+  }
+
+  /**
+   * Returns a PredictorBuilder given a {@link Model}, {@link FeatureExtractor}, a {@link
+   * PredictFn}, an {@link ExecutionPolicy} and a {@link BufferPool} extractors borrow buffers from.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param extractFn a feature extract function to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link PredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param bufferPool pool of the {@link BufferArena} of every prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      PredictorBuilder<ModelT, InputT, VectorT, ValueT> newBuilder(
+          final ModelLoader<ModelT> modelLoader,
+          final ExtractFn<InputT, VectorT> extractFn,
+          final PredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy,
+          final BufferPool bufferPool) {
+    return DefaultPredictorBuilder.create(modelLoader, extractFn, predictFn, executionPolicy)
+        .with(bufferPool);
+  }
+
+  /**
+   * Returns a PredictorBuilder given a {@link Model}, {@link FeatureExtractor}, a {@link
+   * AsyncPredictFn}, an {@link ExecutionPolicy} and a {@link BufferPool} extractors borrow buffers
+   * from.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link AsyncPredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param bufferPool pool of the {@link BufferArena} of every prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      PredictorBuilder<ModelT, InputT, VectorT, ValueT> newBuilder(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy,
+          final BufferPool bufferPool) {
+    return DefaultPredictorBuilder.create(
+            modelLoader, featureExtractor, predictFn, executionPolicy)
+        .with(bufferPool);
+  }
+
   /**
    * Returns a PredictorBuilder given a {@link Model}, {@link FeatureExtractor}and a {@link
    * PredictFn}.
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.lang.reflect.Array;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Predictor that coalesces concurrent {@link Predictor#predict} calls into a single batch. A batch
+ * is dispatched to the underlying predictor as soon as it holds {@code maxBatchSize} inputs or the
+ * oldest pending call has waited {@code maxDelay}, whichever comes first. Predictions are then
+ * scattered back to each caller in input order.
+ *
+ * <p>Batches flushed by the max delay timer are dispatched on the flush executor rather than on the
+ * timeout scheduler's thread, so feature extraction never runs on, and stalls, the shared
+ * scheduler.
+ *
+ * <p>The underlying predictor must return one prediction per input, in input order, which is the
+ * case for {@link DefaultPredictor} with the prebaked prediction functions.
+ *
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+final class BatchingPredictor<InputT, ValueT> implements Predictor<InputT, ValueT> {
+
+  private final Predictor<InputT, ValueT> predictor;
+  private final int maxBatchSize;
+  private final Duration maxDelay;
+  private final Executor flushExecutor;
+
+  private final Object lock = new Object();
+  private List<Request<InputT, ValueT>> pending = new ArrayList<>();
+  private int pendingSize;
+  private ScheduledFuture<?> scheduledFlush;
+
+  private BatchingPredictor(
+      final Predictor<InputT, ValueT> predictor,
+      final int maxBatchSize,
+      final Duration maxDelay,
+      final Executor flushExecutor) {
+    this.predictor = predictor;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelay = maxDelay;
+    this.flushExecutor = flushExecutor;
+  }
+
+  /**
+   * Creates a batching predictor on top of an existing predictor.
+   *
+   * @param predictor predictor that performs the batched prediction.
+   * @param maxBatchSize maximum number of inputs dispatched in a single batch.
+   * @param maxDelay maximum amount of time a call waits for other calls to join its batch.
+   * @param flushExecutor executor that dispatches the batches flushed after maxDelay.
+   */
+  static <InputT, ValueT> BatchingPredictor<InputT, ValueT> create(
+      final Predictor<InputT, ValueT> predictor,
+      final int maxBatchSize,
+      final Duration maxDelay,
+      final Executor flushExecutor) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("maxBatchSize must be positive");
+    }
+    if (maxDelay.isNegative()) {
+      throw new IllegalArgumentException("maxDelay must not be negative");
+    }
+    return new BatchingPredictor<>(predictor, maxBatchSize, maxDelay, flushExecutor);
+  }
+
+  @Override
+  public PredictorTimeoutScheduler timeoutScheduler() {
+    return predictor.timeoutScheduler();
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... input) {
+    if (input.length == 0) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    // large requests are already a batch on their own, no point in holding them back.
+    if (input.length >= maxBatchSize) {
+      return predictor.predict(scheduler, timeout, input);
+    }
+
+    final Request<InputT, ValueT> request = new Request<>(input, timeout);
+    List<Request<InputT, ValueT>> overflow = null;
+    List<Request<InputT, ValueT>> full = null;
+    synchronized (lock) {
+      if (pendingSize + input.length > maxBatchSize) {
+        overflow = drain();
+      }
+
+      pending.add(request);
+      pendingSize += input.length;
+
+      if (pendingSize == maxBatchSize) {
+        full = drain();
+      } else if (pending.size() == 1) {
+        scheduledFlush =
+            scheduler.schedule(() -> flush(scheduler), maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+      }
+    }
+
+    if (overflow != null) {
+      dispatch(scheduler, overflow);
+    }
+    if (full != null) {
+      dispatch(scheduler, full);
+    }
+
+    final ScheduledFuture<?> schedule =
+        scheduler.schedule(
+            () -> {
+              request.future.completeExceptionally(new TimeoutException());
+            },
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS);
+
+    request.future.whenComplete((r, t) -> schedule.cancel(true));
+
+    return request.future;
+  }
+
+  private void flush(final ScheduledExecutorService scheduler) {
+    final List<Request<InputT, ValueT>> batch;
+    synchronized (lock) {
+      batch = drain();
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    // runs on the scheduler's thread, hand the batch off before extracting features.
+    try {
+      flushExecutor.execute(() -> dispatch(scheduler, batch));
+    } catch (final RejectedExecutionException e) {
+      batch.forEach(request -> request.future.completeExceptionally(e));
+    }
+  }
+
+  /** Must be called while holding the lock. */
+  private List<Request<InputT, ValueT>> drain() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+
+    final List<Request<InputT, ValueT>> batch = pending;
+    pending = new ArrayList<>();
+    pendingSize = 0;
+    return batch;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void dispatch(
+      final ScheduledExecutorService scheduler, final List<Request<InputT, ValueT>> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    int size = 0;
+    Duration timeout = Duration.ZERO;
+    for (final Request<InputT, ValueT> request : batch) {
+      size += request.inputs.length;
+      if (request.timeout.compareTo(timeout) > 0) {
+        timeout = request.timeout;
+      }
+    }
+
+    final InputT[] inputs;
+    if (batch.size() == 1) {
+      inputs = batch.get(0).inputs;
+    } else {
+      // extractors implementing the varargs method cast the array, keep the callers' type.
+      inputs = (InputT[]) Array.newInstance(componentType(batch), size);
+      int offset = 0;
+      for (final Request<InputT, ValueT> request : batch) {
+        System.arraycopy(request.inputs, 0, inputs, offset, request.inputs.length);
+        offset += request.inputs.length;
+      }
+    }
+
+    final CompletionStage<List<Prediction<InputT, ValueT>>> result;
+    try {
+      result = predictor.predict(scheduler, timeout, inputs);
+    } catch (final Exception e) {
+      batch.forEach(request -> request.future.completeExceptionally(e));
+      return;
+    }
+
+    result.whenComplete(
+        (predictions, t) -> {
+          if (t != null) {
+            batch.forEach(request -> request.future.completeExceptionally(t));
+            return;
+          }
+
+          if (predictions.size() != inputs.length) {
+            final IllegalStateException e =
+                new IllegalStateException(
+                    String.format(
+                        "expected %d predictions but got %d", inputs.length, predictions.size()));
+            batch.forEach(request -> request.future.completeExceptionally(e));
+            return;
+          }
+
+          int start = 0;
+          for (final Request<InputT, ValueT> request : batch) {
+            final int end = start + request.inputs.length;
+            request.future.complete(new ArrayList<>(predictions.subList(start, end)));
+            start = end;
+          }
+        });
+  }
+
+  /** Returns the most specific component type shared by the arrays of the batched calls. */
+  private static <InputT, ValueT> Class<?> componentType(
+      final List<Request<InputT, ValueT>> batch) {
+    Class<?> type = batch.get(0).inputs.getClass().getComponentType();
+    for (final Request<InputT, ValueT> request : batch) {
+      final Class<?> other = request.inputs.getClass().getComponentType();
+      while (!type.isAssignableFrom(other)) {
+        type = type.isInterface() ? Object.class : type.getSuperclass();
+      }
+    }
+    return type;
+  }
+
+  private static final class Request<InputT, ValueT> {
+    private final InputT[] inputs;
+    private final Duration timeout;
+    private final CompletableFuture<List<Prediction<InputT, ValueT>>> future;
+
+    private Request(final InputT[] inputs, final Duration timeout) {
+      this.inputs = inputs;
+      this.timeout = timeout;
+      this.future = new CompletableFuture<>();
+    }
+  }
+}
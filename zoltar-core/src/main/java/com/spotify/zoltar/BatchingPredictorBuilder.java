@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+
+/**
+ * {@link PredictorBuilder} that creates a micro-batching {@link Predictor}. Concurrent predict
+ * calls are coalesced into a single feature extraction and a single {@link AsyncPredictFn} call,
+ * bounded by a maximum batch size and a maximum wait time.
+ *
+ * <pre>{@code
+ * final Predictor<Iris, Long> predictor =
+ *     Predictors.newBuilder(loader, extractFn, predictFn)
+ *         .with(BatchingPredictorBuilder.create(64, Duration.ofMillis(2)))
+ *         .predictor();
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+@AutoValue
+public abstract class BatchingPredictorBuilder<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements PredictorBuilder<ModelT, InputT, VectorT, ValueT> {
+
+  public abstract PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder();
+
+  /** Maximum number of inputs dispatched in a single batch. */
+  public abstract int maxBatchSize();
+
+  /** Maximum amount of time a predict call waits for other calls to join its batch. */
+  public abstract Duration maxDelay();
+
+  /** Executor that dispatches the batches flushed after {@link #maxDelay()}. */
+  public abstract Executor flushExecutor();
+
+  @Override
+  public abstract Predictor<InputT, ValueT> predictor();
+
+  /**
+   * Adds micro-batching to an existent predictor builder.
+   *
+   * @param maxBatchSize maximum number of inputs dispatched in a single batch.
+   * @param maxDelay maximum amount of time a predict call waits for other calls to join its batch.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              BatchingPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final int maxBatchSize, final Duration maxDelay) {
+    return create(maxBatchSize, maxDelay, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Adds micro-batching to an existent predictor builder.
+   *
+   * @param maxBatchSize maximum number of inputs dispatched in a single batch.
+   * @param maxDelay maximum amount of time a predict call waits for other calls to join its batch.
+   * @param flushExecutor executor that dispatches the batches flushed after maxDelay, e.g. {@link
+   *     ExecutionPolicy#extractExecutor()} of a bounded policy.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              BatchingPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final int maxBatchSize, final Duration maxDelay, final Executor flushExecutor) {
+    return predictorBuilder -> {
+      final Predictor<InputT, ValueT> predictor =
+          BatchingPredictor.create(
+              predictorBuilder.predictor(), maxBatchSize, maxDelay, flushExecutor);
+
+      return new AutoValue_BatchingPredictorBuilder<>(
+          predictorBuilder, maxBatchSize, maxDelay, flushExecutor, predictor);
+    };
+  }
+
+  @Override
+  public ModelLoader<ModelT> modelLoader() {
+    return predictorBuilder().modelLoader();
+  }
+
+  @Override
+  public FeatureExtractor<ModelT, InputT, VectorT> featureExtractor() {
+    return predictorBuilder().featureExtractor();
+  }
+
+  @Override
+  public AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn() {
+    return predictorBuilder().predictFn();
+  }
+
+  @Override
+  public BatchingPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    final PredictorBuilder<ModelT, InputT, VectorT, ValueT> pb =
+        predictorBuilder().with(modelLoader, featureExtractor, predictFn);
+
+    return BatchingPredictorBuilder.<ModelT, InputT, VectorT, ValueT>create(
+            maxBatchSize(), maxDelay(), flushExecutor())
+        .apply(pb);
+  }
+}
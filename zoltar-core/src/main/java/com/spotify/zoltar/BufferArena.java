@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Primitive buffers borrowed for the duration of a single prediction. Predictors built with a
+ * {@link BufferPool} bind an arena to the thread running feature extraction, extractors get it
+ * with {@link #current()}, and every buffer goes back to the pool once the prediction's future
+ * completes. Buffers must not be used, nor kept, after that.
+ *
+ * <pre>{@code
+ * ExtractFn<Track, float[]> extractFn =
+ *     ExtractFn.lift(
+ *         track -> {
+ *           final float[] features = BufferArena.current().floats(WIDTH);
+ *           ...
+ *           return features;
+ *         });
+ * }</pre>
+ *
+ * <p>Outside of a prediction, or on threads extraction forks to, {@link #current()} returns an
+ * arena that allocates a new buffer every time, so extractors work the same with and without a
+ * pool. Decorators that keep vectors beyond the prediction, e.g. to memoize them, run the
+ * extraction {@link #withoutPool(Callable) without the pool}.
+ */
+public final class BufferArena implements AutoCloseable {
+
+  private static final BufferArena UNPOOLED = new BufferArena(null);
+  private static final ThreadLocal<BufferArena> CURRENT = new ThreadLocal<>();
+
+  private final BufferPool pool;
+  private final List<Object> borrowed;
+  private boolean closed;
+
+  private BufferArena(final BufferPool pool) {
+    this.pool = pool;
+    this.borrowed = pool == null ? null : new ArrayList<>();
+  }
+
+  static BufferArena create(final BufferPool pool) {
+    return new BufferArena(pool);
+  }
+
+  static BufferArena unpooled() {
+    return UNPOOLED;
+  }
+
+  /** Returns the arena bound to the calling thread, or an unpooled one if there's none. */
+  public static BufferArena current() {
+    final BufferArena arena = CURRENT.get();
+    return arena == null ? UNPOOLED : arena;
+  }
+
+  /**
+   * Runs the callable with an unpooled arena bound to the calling thread, so the buffers it
+   * borrows are never handed to another prediction.
+   *
+   * @param callable e.g. a feature extraction whose vectors are kept after the prediction.
+   */
+  public static <T> T withoutPool(final Callable<T> callable) throws Exception {
+    final BufferArena previous = UNPOOLED.bind();
+    try {
+      return callable.call();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /** Borrows a zeroed {@code float[]} of the given length. */
+  public float[] floats(final int length) {
+    if (pool == null) {
+      return new float[length];
+    }
+    final float[] buffer = pool.takeFloats(length);
+    Arrays.fill(buffer, 0);
+    borrow(buffer);
+    return buffer;
+  }
+
+  /** Borrows a zeroed {@code double[]} of the given length. */
+  public double[] doubles(final int length) {
+    if (pool == null) {
+      return new double[length];
+    }
+    final double[] buffer = pool.takeDoubles(length);
+    Arrays.fill(buffer, 0);
+    borrow(buffer);
+    return buffer;
+  }
+
+  /** Borrows a zeroed {@code long[]} of the given length. */
+  public long[] longs(final int length) {
+    if (pool == null) {
+      return new long[length];
+    }
+    final long[] buffer = pool.takeLongs(length);
+    Arrays.fill(buffer, 0);
+    borrow(buffer);
+    return buffer;
+  }
+
+  /** Returns whether buffers borrowed from this arena go back to a pool. */
+  public boolean isPooled() {
+    return pool != null;
+  }
+
+  /** Returns every borrowed buffer to the pool, closing it more than once has no effect. */
+  @Override
+  public void close() {
+    if (pool == null) {
+      return;
+    }
+    final Object[] buffers;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      buffers = borrowed.toArray();
+      borrowed.clear();
+    }
+    for (final Object buffer : buffers) {
+      if (buffer instanceof float[]) {
+        pool.give((float[]) buffer);
+      } else if (buffer instanceof double[]) {
+        pool.give((double[]) buffer);
+      } else {
+        pool.give((long[]) buffer);
+      }
+    }
+  }
+
+  /** Binds this arena to the calling thread, returns the previously bound one to restore. */
+  BufferArena bind() {
+    final BufferArena previous = CURRENT.get();
+    CURRENT.set(this);
+    return previous;
+  }
+
+  /** Restores the arena that was bound before {@link #bind()}. */
+  static void restore(final BufferArena previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  private synchronized void borrow(final Object buffer) {
+    if (closed) {
+      // borrowed past the end of the prediction, it's simply left to the garbage collector.
+      return;
+    }
+    borrowed.add(buffer);
+  }
+}
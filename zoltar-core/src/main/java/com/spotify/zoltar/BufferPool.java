@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Pool of primitive buffers shared by the {@link BufferArena arenas} of a predictor. Buffers are
+ * pooled by exact length, which suits extractors that produce fixed-size feature vectors; up to
+ * {@code maxBuffersPerLength} buffers of each length are kept, extra ones are left to the garbage
+ * collector. Only the first {@code maxLengths} lengths of each primitive type get a shelf, buffers
+ * of other lengths aren't pooled, so extractors with variable-size vectors can't grow the pool
+ * without bound.
+ *
+ * <pre>{@code
+ * Predictors.newBuilder(
+ *         modelLoader, extractFn, predictFn, ExecutionPolicy.defaults(), BufferPool.create(1024))
+ *     .predictor();
+ * }</pre>
+ */
+public final class BufferPool {
+
+  private static final int DEFAULT_MAX_LENGTHS = 64;
+  private static final BufferPool NONE = new BufferPool(0, 0);
+
+  private final int maxBuffersPerLength;
+  private final int maxLengths;
+  private final Shelves<float[]> floats = new Shelves<>(float[]::new);
+  private final Shelves<double[]> doubles = new Shelves<>(double[]::new);
+  private final Shelves<long[]> longs = new Shelves<>(long[]::new);
+
+  private BufferPool(final int maxBuffersPerLength, final int maxLengths) {
+    this.maxBuffersPerLength = maxBuffersPerLength;
+    this.maxLengths = maxLengths;
+  }
+
+  /**
+   * Creates a buffer pool that pools up to 64 lengths of each primitive type.
+   *
+   * @param maxBuffersPerLength maximum number of idle buffers kept for each buffer length.
+   */
+  public static BufferPool create(final int maxBuffersPerLength) {
+    return create(maxBuffersPerLength, DEFAULT_MAX_LENGTHS);
+  }
+
+  /**
+   * Creates a buffer pool.
+   *
+   * @param maxBuffersPerLength maximum number of idle buffers kept for each buffer length.
+   * @param maxLengths maximum number of buffer lengths pooled for each primitive type.
+   */
+  public static BufferPool create(final int maxBuffersPerLength, final int maxLengths) {
+    if (maxBuffersPerLength < 1) {
+      throw new IllegalArgumentException(
+          "maxBuffersPerLength must be positive: " + maxBuffersPerLength);
+    }
+    if (maxLengths < 1) {
+      throw new IllegalArgumentException("maxLengths must be positive: " + maxLengths);
+    }
+    return new BufferPool(maxBuffersPerLength, maxLengths);
+  }
+
+  /** Returns a pool that keeps no buffers, its arenas allocate a new buffer every time. */
+  public static BufferPool none() {
+    return NONE;
+  }
+
+  /** Returns a new arena that borrows from this pool, or the unpooled arena for {@link #none()}. */
+  public BufferArena arena() {
+    return this == NONE ? BufferArena.unpooled() : BufferArena.create(this);
+  }
+
+  /** Returns the number of idle buffers in the pool. */
+  public int pooled() {
+    return floats.count.get() + doubles.count.get() + longs.count.get();
+  }
+
+  float[] takeFloats(final int length) {
+    return floats.take(length);
+  }
+
+  double[] takeDoubles(final int length) {
+    return doubles.take(length);
+  }
+
+  long[] takeLongs(final int length) {
+    return longs.take(length);
+  }
+
+  void give(final float[] buffer) {
+    floats.give(buffer.length, buffer);
+  }
+
+  void give(final double[] buffer) {
+    doubles.give(buffer.length, buffer);
+  }
+
+  void give(final long[] buffer) {
+    longs.give(buffer.length, buffer);
+  }
+
+  /** Idle buffers of one primitive type, by length. */
+  private final class Shelves<T> {
+
+    private final ConcurrentMap<Integer, Shelf<T>> shelves = new ConcurrentHashMap<>();
+    private final AtomicInteger lengths = new AtomicInteger();
+    private final AtomicInteger count = new AtomicInteger();
+    private final IntFunction<T> allocator;
+
+    private Shelves(final IntFunction<T> allocator) {
+      this.allocator = allocator;
+    }
+
+    private T take(final int length) {
+      final Shelf<T> shelf = shelves.get(length);
+      final T buffer = shelf == null ? null : shelf.take();
+      if (buffer == null) {
+        return allocator.apply(length);
+      }
+      count.decrementAndGet();
+      return buffer;
+    }
+
+    private void give(final int length, final T buffer) {
+      final Shelf<T> shelf = shelf(length);
+      if (shelf != null && shelf.give(buffer, maxBuffersPerLength)) {
+        count.incrementAndGet();
+      }
+    }
+
+    private Shelf<T> shelf(final int length) {
+      final Shelf<T> shelf = shelves.get(length);
+      if (shelf != null) {
+        return shelf;
+      }
+      // a length is reserved first, so concurrent returns can't add more shelves than allowed.
+      if (lengths.incrementAndGet() > maxLengths) {
+        lengths.decrementAndGet();
+        return null;
+      }
+      final Shelf<T> created = new Shelf<>();
+      final Shelf<T> raced = shelves.putIfAbsent(length, created);
+      if (raced != null) {
+        lengths.decrementAndGet();
+        return raced;
+      }
+      return created;
+    }
+  }
+
+  /** Idle buffers of one length. */
+  private static final class Shelf<T> {
+
+    private final Queue<T> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private T take() {
+      final T buffer = buffers.poll();
+      if (buffer != null) {
+        size.decrementAndGet();
+      }
+      return buffer;
+    }
+
+    private boolean give(final T buffer, final int max) {
+      // the size is reserved first, so concurrent returns can't overfill the shelf.
+      if (size.incrementAndGet() > max) {
+        size.decrementAndGet();
+        return false;
+      }
+      buffers.offer(buffer);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget and cancellation signal of a single prediction. A deadline is handed down to the
+ * {@link FeatureExtractor} and {@link PredictFns.AsyncPredictFn} so they can skip work nobody is
+ * waiting for anymore and bound, or abort, calls into the model backend.
+ *
+ * <p>A deadline is cancelled by the {@link Predictor} when the prediction times out or is
+ * cancelled by the caller. Cancellation propagates to every deadline {@link #split(double) split}
+ * from it.
+ */
+public final class Deadline {
+
+  private final long startNanos;
+  private final long budgetNanos;
+  private final CompletableFuture<Void> cancellation = new CompletableFuture<>();
+
+  private Deadline(final long startNanos, final long budgetNanos) {
+    this.startNanos = startNanos;
+    this.budgetNanos = budgetNanos;
+  }
+
+  /**
+   * Returns a deadline that expires after the given duration.
+   *
+   * @param timeout time budget, from now.
+   */
+  public static Deadline after(final Duration timeout) {
+    return new Deadline(System.nanoTime(), toNanos(timeout));
+  }
+
+  /** Returns a deadline that never expires, it can still be cancelled. */
+  public static Deadline none() {
+    return new Deadline(System.nanoTime(), Long.MAX_VALUE);
+  }
+
+  /** Returns the remaining time budget, zero if expired. */
+  public Duration remaining() {
+    return Duration.ofNanos(remainingNanos());
+  }
+
+  /** Returns the remaining time budget in the given unit, zero if expired. */
+  public long remaining(final TimeUnit unit) {
+    return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns true if this deadline never expires. */
+  public boolean isUnbounded() {
+    return budgetNanos == Long.MAX_VALUE;
+  }
+
+  /** Returns true if the time budget is exhausted or the deadline was cancelled. */
+  public boolean isExpired() {
+    return isCancelled() || remainingNanos() == 0;
+  }
+
+  /** Returns true if the deadline was cancelled. */
+  public boolean isCancelled() {
+    return cancellation.isDone();
+  }
+
+  /**
+   * Throws if the time budget is exhausted or the deadline was cancelled. Use it to skip queued
+   * work whose result nobody is waiting for.
+   *
+   * @throws CancellationException if the deadline was cancelled.
+   * @throws TimeoutException if the time budget is exhausted.
+   */
+  public void throwIfExpired() throws TimeoutException {
+    if (isCancelled()) {
+      throw new CancellationException("deadline cancelled");
+    }
+    if (remainingNanos() == 0) {
+      throw new TimeoutException("deadline exceeded");
+    }
+  }
+
+  /** Cancels this deadline and every deadline split from it, runs the cancellation callbacks. */
+  public void cancel() {
+    cancellation.complete(null);
+  }
+
+  /**
+   * Registers a callback invoked when this deadline is cancelled, e.g. to abort an in-flight call.
+   * Runs immediately if the deadline is already cancelled.
+   */
+  public void onCancel(final Runnable callback) {
+    cancellation.thenRun(callback);
+  }
+
+  /**
+   * Returns a child deadline with a fraction of the remaining budget, e.g. to reserve part of the
+   * budget for a later stage. The child is cancelled together with this deadline.
+   *
+   * @param fraction fraction of the remaining budget, in (0, 1].
+   */
+  public Deadline split(final double fraction) {
+    if (!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("fraction must be in (0, 1]: " + fraction);
+    }
+    final long budget = isUnbounded() ? Long.MAX_VALUE : (long) (remainingNanos() * fraction);
+    final Deadline child = new Deadline(System.nanoTime(), budget);
+    onCancel(child::cancel);
+    return child;
+  }
+
+  private long remainingNanos() {
+    if (isUnbounded()) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0, budgetNanos - (System.nanoTime() - startNanos));
+  }
+
+  private static long toNanos(final Duration duration) {
+    try {
+      return Math.max(0, duration.toNanos());
+    } catch (final ArithmeticException e) {
+      // practically infinite timeouts, e.g. Predictor#predict(Object[]).
+      return Long.MAX_VALUE;
+    }
+  }
+}
@@ -15,9 +15,13 @@
  */
 package com.spotify.zoltar;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -27,7 +31,7 @@ import com.spotify.zoltar.PredictFns.PredictFn;
 
 /**
  * Allows E2E prediction given a recipe made of a {@link Model}, {@link FeatureExtractor} and a
- * {@link PredictFn}.
+ * {@link PredictFn}. The model is {@link ModelLoader#lease() leased} for the whole prediction.
  *
  * @param <InputT> type of the feature extraction input.
  * @param <ValueT> type of the prediction output.
@@ -35,6 +39,18 @@ import com.spotify.zoltar.PredictFns.PredictFn;
 @FunctionalInterface
 interface DefaultPredictor<InputT, ValueT> extends Predictor<InputT, ValueT> {
 
+  /** Functional interface. Inputs are passed to feature extraction without being copied. */
+  @Override
+  CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      ScheduledExecutorService scheduler, Duration timeout, List<InputT> input);
+
+  @Override
+  default CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... input) {
+    // extractors implementing the varargs method get the caller's array back.
+    return predict(scheduler, timeout, Inputs.view(input));
+  }
+
   /**
    * Returns a predictor given a {@link Model}, {@link FeatureExtractor} and a {@link
    * AsyncPredictFn}.
@@ -51,31 +67,125 @@ interface DefaultPredictor<InputT, ValueT> extends Predictor<InputT, ValueT> {
       final ModelLoader<ModelT> modelLoader,
       final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
       final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    return create(modelLoader, featureExtractor, predictFn, ExecutionPolicy.defaults());
+  }
+
+  /**
+   * Returns a predictor given a {@link Model}, {@link FeatureExtractor}, a {@link AsyncPredictFn}
+   * and an {@link ExecutionPolicy}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link AsyncPredictFn}.
+   * @param executionPolicy executors used to run feature extraction and callbacks, and how the
+   *     time budget is split between them.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  static <ModelT extends Model<?>, InputT, VectorT, ValueT> DefaultPredictor<InputT, ValueT> create(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+      final ExecutionPolicy executionPolicy) {
+    return create(modelLoader, featureExtractor, predictFn, executionPolicy, BufferPool.none());
+  }
+
+  /**
+   * Returns a predictor given a {@link Model}, {@link FeatureExtractor}, a {@link AsyncPredictFn},
+   * an {@link ExecutionPolicy} and a {@link BufferPool}. Every prediction extracts features with a
+   * {@link BufferArena} of its own bound to the extracting thread, its buffers go back to the pool
+   * once the prediction function's future completes.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link AsyncPredictFn}.
+   * @param executionPolicy executors used to run feature extraction and callbacks, and how the
+   *     time budget is split between them.
+   * @param bufferPool pool extractors borrow primitive buffers from.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  static <ModelT extends Model<?>, InputT, VectorT, ValueT> DefaultPredictor<InputT, ValueT> create(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+      final ExecutionPolicy executionPolicy,
+      final BufferPool bufferPool) {
+    final Executor extractExecutor = executionPolicy.extractExecutor();
+    final Executor callbackExecutor = executionPolicy.callbackExecutor();
+    final double extractBudget = executionPolicy.extractBudget();
     return (scheduler, timeout, inputs) -> {
+      final Deadline deadline = Deadline.after(timeout);
       final CompletableFuture<List<Prediction<InputT, ValueT>>> future =
           modelLoader
-              .get()
-              .thenCompose(
-                  model -> {
+              .lease()
+              .thenComposeAsync(
+                  lease -> {
+                    final ModelT model = lease.model();
+                    final BufferArena arena = bufferPool.arena();
                     try {
-                      return predictFn.apply(model, featureExtractor.extract(model, inputs));
+                      final Deadline extractDeadline =
+                          extractBudget < 1 ? deadline.split(extractBudget) : deadline;
+                      final List<Vector<InputT, VectorT>> vectors;
+                      final BufferArena previous = arena.bind();
+                      try {
+                        vectors = featureExtractor.extract(model, extractDeadline, inputs);
+                      } finally {
+                        BufferArena.restore(previous);
+                      }
+                      final CompletableFuture<List<Prediction<InputT, ValueT>>> prediction =
+                          predictFn.apply(model, vectors, deadline).toCompletableFuture();
+                      // the backend may use the model and the vectors until its own future
+                      // completes, even if the caller timed out, so both are held until then.
+                      return prediction.whenComplete(
+                          (r, t) -> {
+                            arena.close();
+                            lease.close();
+                          });
                     } catch (final Exception e) {
+                      arena.close();
+                      lease.close();
                       throw new CompletionException(e);
                     }
-                  })
+                  },
+                  extractExecutor)
               .toCompletableFuture();
 
       final ScheduledFuture<?> schedule =
           scheduler.schedule(
               () -> {
                 future.completeExceptionally(new TimeoutException());
+                deadline.cancel();
               },
               timeout.toMillis(),
               TimeUnit.MILLISECONDS);
 
-      future.whenComplete((r, t) -> schedule.cancel(true));
+      future.whenComplete(
+          (r, t) -> {
+            schedule.cancel(true);
+            if (t != null) {
+              deadline.cancel();
+            }
+          });
+
+      if (ExecutionPolicy.isDirect(callbackExecutor)) {
+        return future;
+      }
 
-      return future;
+      final CompletableFuture<List<Prediction<InputT, ValueT>>> callback =
+          future.whenCompleteAsync((r, t) -> {}, callbackExecutor);
+      // the caller only holds the callback stage, cancelling it must reach the prediction.
+      callback.whenComplete(
+          (r, t) -> {
+            if (callback.isCancelled()) {
+              future.cancel(true);
+            }
+          });
+      return callback;
     };
   }
 }
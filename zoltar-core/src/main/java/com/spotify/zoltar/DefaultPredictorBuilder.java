@@ -111,11 +111,100 @@ abstract class DefaultPredictorBuilder<ModelT extends Model<?>, InputT, VectorT,
           final ModelLoader<ModelT> modelLoader,
           final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
           final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    return create(modelLoader, featureExtractor, predictFn, ExecutionPolicy.defaults());
+  }
+
+  /**
+   * Returns a context given a {@link Model}, {@link FeatureExtractor}, a {@link PredictFn} and an
+   * {@link ExecutionPolicy}. The prediction function runs on {@link
+   * ExecutionPolicy#predictExecutor()}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param extractFn a feature extract function to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link PredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> create(
+          final ModelLoader<ModelT> modelLoader,
+          final ExtractFn<InputT, VectorT> extractFn,
+          final PredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy) {
+    return create(modelLoader, FeatureExtractor.create(extractFn), predictFn, executionPolicy);
+  }
+
+  /**
+   * Returns a context given a {@link Model}, {@link FeatureExtractor}, a {@link PredictFn} and an
+   * {@link ExecutionPolicy}. The prediction function runs on {@link
+   * ExecutionPolicy#predictExecutor()}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link PredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> create(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final PredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy) {
+    return create(
+        modelLoader,
+        featureExtractor,
+        AsyncPredictFn.lift(predictFn, executionPolicy.predictExecutor()),
+        executionPolicy);
+  }
+
+  /**
+   * Returns a context given a {@link Model}, {@link FeatureExtractor}, a {@link AsyncPredictFn}
+   * and an {@link ExecutionPolicy}.
+   *
+   * @param modelLoader model loader that loads the model to perform prediction on.
+   * @param featureExtractor a feature extractor to use to transform input into extracted features.
+   * @param predictFn a prediction function to perform prediction with {@link AsyncPredictFn}.
+   * @param executionPolicy executors used to run each stage of the prediction.
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> create(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy) {
+    return create(modelLoader, featureExtractor, predictFn, executionPolicy, BufferPool.none());
+  }
+
+  @SuppressWarnings("checkstyle:LineLength")
+  private static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> create(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final ExecutionPolicy executionPolicy,
+          final BufferPool bufferPool) {
     return new AutoValue_DefaultPredictorBuilder<>(
         modelLoader,
         featureExtractor,
         predictFn,
-        DefaultPredictor.create(modelLoader, featureExtractor, predictFn));
+        executionPolicy,
+        bufferPool,
+        DefaultPredictor.create(
+            modelLoader, featureExtractor, predictFn, executionPolicy, bufferPool));
   }
 
   public abstract ModelLoader<ModelT> modelLoader();
@@ -124,6 +213,10 @@ abstract class DefaultPredictorBuilder<ModelT extends Model<?>, InputT, VectorT,
 
   public abstract AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn();
 
+  public abstract ExecutionPolicy executionPolicy();
+
+  public abstract BufferPool bufferPool();
+
   public abstract Predictor<InputT, ValueT> predictor();
 
   @Override
@@ -131,6 +224,24 @@ abstract class DefaultPredictorBuilder<ModelT extends Model<?>, InputT, VectorT,
       final ModelLoader<ModelT> modelLoader,
       final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
       final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
-    return create(modelLoader, featureExtractor, predictFn);
+    return create(modelLoader, featureExtractor, predictFn, executionPolicy(), bufferPool());
+  }
+
+  /**
+   * Returns a new builder that runs each stage of the prediction with the given policy. Note that
+   * an already lifted {@link PredictFn} keeps running on the executor it was lifted with.
+   */
+  public DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final ExecutionPolicy executionPolicy) {
+    return create(modelLoader(), featureExtractor(), predictFn(), executionPolicy, bufferPool());
+  }
+
+  /**
+   * Returns a new builder whose predictions extract features with a {@link BufferArena} borrowing
+   * from the given pool, see {@link BufferArena#current()}.
+   */
+  public DefaultPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final BufferPool bufferPool) {
+    return create(modelLoader(), featureExtractor(), predictFn(), executionPolicy(), bufferPool);
   }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+
+/**
+ * Describes on which {@link Executor} each stage of a {@link Predictor} runs, and how the
+ * prediction's {@link Deadline} is split across stages.
+ *
+ * <ul>
+ *   <li>{@link #extractExecutor()} runs the {@link FeatureExtractor}.
+ *   <li>{@link #predictExecutor()} runs synchronous {@link PredictFn}s lifted with {@link
+ *       AsyncPredictFn#lift(PredictFn, Executor)}.
+ *   <li>{@link #callbackExecutor()} completes the future returned to the caller, i.e. runs the
+ *       caller's non-async continuations.
+ * </ul>
+ *
+ * <p>{@link #defaults()} keeps the historical behaviour: extraction runs on the thread that
+ * completes the model loading, inference runs on the common {@link ForkJoinPool} and callbacks run
+ * on the thread that completes the prediction.
+ */
+@AutoValue
+public abstract class ExecutionPolicy {
+
+  private static final ExecutionPolicy DEFAULTS = builder().build();
+
+  /** Executor that runs feature extraction. */
+  public abstract Executor extractExecutor();
+
+  /** Executor that runs blocking inference of synchronous prediction functions. */
+  public abstract Executor predictExecutor();
+
+  /** Executor that completes the future returned to the caller. */
+  public abstract Executor callbackExecutor();
+
+  /**
+   * Fraction, in (0, 1], of the prediction's remaining time budget that feature extraction may use
+   * before it's abandoned. Inference always gets whatever budget is left after extraction.
+   */
+  public abstract double extractBudget();
+
+  /** Returns the default execution policy. */
+  public static ExecutionPolicy defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns an execution policy with a dedicated, fixed size, thread pool per stage.
+   *
+   * @param extractThreads number of threads used for feature extraction.
+   * @param predictThreads number of threads used for inference.
+   * @param callbackThreads number of threads used to complete callers' futures.
+   */
+  public static ExecutionPolicy bounded(
+      final int extractThreads, final int predictThreads, final int callbackThreads) {
+    return builder()
+        .extractExecutor(fixedThreadPool("zoltar-extract-%d", extractThreads))
+        .predictExecutor(fixedThreadPool("zoltar-predict-%d", predictThreads))
+        .callbackExecutor(fixedThreadPool("zoltar-callback-%d", callbackThreads))
+        .build();
+  }
+
+  /**
+   * Returns an execution policy that runs blocking inference on virtual threads, see {@link
+   * VirtualThreads}. Feature extraction and callbacks behave as in {@link #defaults()}.
+   *
+   * @throws UnsupportedOperationException if the running JDK doesn't support virtual threads.
+   */
+  public static ExecutionPolicy virtualThreads() {
+    return builder().predictExecutor(VirtualThreads.executor()).build();
+  }
+
+  /** Returns a builder, by default every stage behaves as in {@link #defaults()}. */
+  public static Builder builder() {
+    return new AutoValue_ExecutionPolicy.Builder()
+        .extractExecutor(MoreExecutors.directExecutor())
+        .predictExecutor(ForkJoinPool.commonPool())
+        .callbackExecutor(MoreExecutors.directExecutor())
+        .extractBudget(1);
+  }
+
+  static boolean isDirect(final Executor executor) {
+    return executor == MoreExecutors.directExecutor();
+  }
+
+  private static ExecutorService fixedThreadPool(final String nameFormat, final int threads) {
+    return Executors.newFixedThreadPool(
+        threads, new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+  }
+
+  /** Builder for {@link ExecutionPolicy}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    public abstract Builder extractExecutor(Executor executor);
+
+    public abstract Builder predictExecutor(Executor executor);
+
+    public abstract Builder callbackExecutor(Executor executor);
+
+    public abstract Builder extractBudget(double fraction);
+
+    abstract ExecutionPolicy autoBuild();
+
+    /** Builds the policy. */
+    public ExecutionPolicy build() {
+      final ExecutionPolicy policy = autoBuild();
+      if (!(policy.extractBudget() > 0 && policy.extractBudget() <= 1)) {
+        throw new IllegalArgumentException(
+            "extractBudget must be in (0, 1]: " + policy.extractBudget());
+      }
+      return policy;
+    }
+  }
+}
@@ -17,7 +17,9 @@ package com.spotify.zoltar;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import com.google.common.collect.ImmutableList;
@@ -41,22 +43,86 @@ public interface FeatureExtractFns {
   interface ExtractFn<InputT, VectorT> {
 
     static <InputT, VectorT> ExtractFn<InputT, VectorT> lift(final Function<InputT, VectorT> fn) {
-      return inputs -> {
-        final List<VectorT> result = new ArrayList<>();
-        for (InputT inputT : inputs) {
-          result.add(fn.apply(inputT));
+      return new ExtractFn<InputT, VectorT>() {
+        @Override
+        public List<VectorT> apply(final InputT... inputs) {
+          final List<VectorT> result = new ArrayList<>(inputs.length);
+          for (InputT inputT : inputs) {
+            result.add(fn.apply(inputT));
+          }
+          return result;
+        }
+
+        @Override
+        public List<VectorT> apply(final List<InputT> inputs) {
+          final int size = inputs.size();
+          final List<VectorT> result = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            result.add(fn.apply(inputs.get(i)));
+          }
+          return result;
         }
-        return result;
       };
     }
 
+    /**
+     * Lifts a function into an extraction function that extracts batches of at least {@code
+     * threshold} inputs in parallel on the common {@link ForkJoinPool}, keeping input order.
+     * Smaller batches are extracted on the calling thread, as with {@link #lift(Function)}.
+     *
+     * @param fn extraction function of a single input, it must be thread-safe.
+     * @param threshold minimum batch size extracted in parallel.
+     */
+    static <InputT, VectorT> ExtractFn<InputT, VectorT> parallel(
+        final Function<InputT, VectorT> fn, final int threshold) {
+      return parallel(fn, threshold, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lifts a function into an extraction function that extracts batches of at least {@code
+     * threshold} inputs in parallel on a {@link ForkJoinPool}, keeping input order. Smaller
+     * batches are extracted on the calling thread, as with {@link #lift(Function)}.
+     *
+     * @param fn extraction function of a single input, it must be thread-safe.
+     * @param threshold minimum batch size extracted in parallel.
+     * @param pool pool that runs the extraction.
+     */
+    static <InputT, VectorT> ExtractFn<InputT, VectorT> parallel(
+        final Function<InputT, VectorT> fn, final int threshold, final ForkJoinPool pool) {
+      return ParallelExtractFn.create(fn, threshold, pool);
+    }
+
     static <InputT> ExtractFn<InputT, InputT> identity() {
-      return Arrays::asList;
+      return new ExtractFn<InputT, InputT>() {
+        @Override
+        public List<InputT> apply(final InputT... inputs) {
+          return Arrays.asList(inputs);
+        }
+
+        @Override
+        public List<InputT> apply(final List<InputT> inputs) {
+          return inputs;
+        }
+      };
     }
 
     /** Functional interface. Perform feature extraction. */
     List<VectorT> apply(InputT... inputs) throws Exception;
 
+    /**
+     * Perform feature extraction on a list of inputs. By default the list is passed to the varargs
+     * method as an array, see {@link Inputs} for its type, the functions returned by the factory
+     * methods extract it in place. Functions given other lists of inputs of different classes that
+     * only share an interface, or lists of nulls, must override this method. Empty lists give no
+     * vectors.
+     */
+    default List<VectorT> apply(final List<InputT> inputs) throws Exception {
+      if (inputs.isEmpty()) {
+        return Collections.emptyList();
+      }
+      return apply(Inputs.toArray(inputs));
+    }
+
     default <C extends ExtractFn<InputT, VectorT>> C with(
         final Function<ExtractFn<InputT, VectorT>, C> fn) {
       return fn.apply(this);
@@ -75,14 +141,12 @@ public interface FeatureExtractFns {
   @Deprecated
   interface BatchExtractFn<InputT, VectorT> extends ExtractFn<List<InputT>, List<VectorT>> {
 
-    @SuppressWarnings("unchecked")
     static <InputT, VectorT> BatchExtractFn<InputT, VectorT> lift(
         final ExtractFn<InputT, VectorT> fn) {
       return inputs -> {
         final ImmutableList.Builder<List<VectorT>> output = ImmutableList.builder();
         for (final List<InputT> batch : inputs) {
-          final InputT[] objects = batch.toArray((InputT[]) new Object[0]);
-          output.add(fn.apply(objects));
+          output.add(fn.apply(batch));
         }
 
         return output.build();
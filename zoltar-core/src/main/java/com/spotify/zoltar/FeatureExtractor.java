@@ -15,9 +15,8 @@
  */
 package com.spotify.zoltar;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
@@ -45,20 +44,70 @@ public interface FeatureExtractor<ModelT extends Model<?>, InputT, VectorT> {
   @SuppressWarnings("checkstyle:LineLength")
   static <ModelT extends Model<?>, InputT, VectorT>
       FeatureExtractor<ModelT, InputT, VectorT> create(final ExtractFn<InputT, VectorT> fn) {
-    return (model, inputs) -> {
-      final List<Vector<InputT, VectorT>> result = new ArrayList<>();
-      final Iterator<InputT> i1 = Arrays.asList(inputs).iterator();
-      final Iterator<VectorT> i2 = fn.apply(inputs).iterator();
-      while (i1.hasNext() && i2.hasNext()) {
-        result.add(Vector.create(i1.next(), i2.next()));
+    return new FeatureExtractor<ModelT, InputT, VectorT>() {
+      @Override
+      public List<Vector<InputT, VectorT>> extract(final ModelT model, final InputT... inputs)
+          throws Exception {
+        return Vector.zip(Arrays.asList(inputs), fn.apply(inputs));
+      }
+
+      @Override
+      public List<Vector<InputT, VectorT>> extract(final ModelT model, final List<InputT> inputs)
+          throws Exception {
+        return Vector.zip(inputs, fn.apply(inputs));
+      }
+
+      @Override
+      public List<Vector<InputT, VectorT>> extract(
+          final ModelT model, final Deadline deadline, final List<InputT> inputs)
+          throws Exception {
+        deadline.throwIfExpired();
+        return extract(model, inputs);
       }
-      return result;
     };
   }
 
   /** Functional interface. Perform the feature extraction given the input. */
   List<Vector<InputT, VectorT>> extract(ModelT model, InputT... input) throws Exception;
 
+  /**
+   * Perform the feature extraction given the input, within the given {@link Deadline}. By default
+   * the extraction is skipped if the deadline has already expired.
+   */
+  default List<Vector<InputT, VectorT>> extract(
+      final ModelT model, final Deadline deadline, final InputT... input) throws Exception {
+    deadline.throwIfExpired();
+    return extract(model, input);
+  }
+
+  /**
+   * Perform the feature extraction given a list of inputs. By default the list is passed to the
+   * varargs method as an array, see {@link Inputs} for its type, extractors created with {@link
+   * #create(ExtractFn)} extract it in place. Extractors given other lists of inputs of different
+   * classes that only share an interface, or lists of nulls, must override this method. Empty lists
+   * give no vectors.
+   */
+  default List<Vector<InputT, VectorT>> extract(final ModelT model, final List<InputT> input)
+      throws Exception {
+    if (input.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return extract(model, Inputs.toArray(input));
+  }
+
+  /**
+   * Perform the feature extraction given a list of inputs, within the given {@link Deadline}. By
+   * default the list is passed as an array to {@link #extract(Model, Deadline, Object[])}.
+   */
+  default List<Vector<InputT, VectorT>> extract(
+      final ModelT model, final Deadline deadline, final List<InputT> input) throws Exception {
+    if (input.isEmpty()) {
+      deadline.throwIfExpired();
+      return Collections.emptyList();
+    }
+    return extract(model, deadline, Inputs.toArray(input));
+  }
+
   default <C extends FeatureExtractor<ModelT, InputT, VectorT>> C with(
       final Function<FeatureExtractor<ModelT, InputT, VectorT>, C> fn) {
     return fn.apply(this);
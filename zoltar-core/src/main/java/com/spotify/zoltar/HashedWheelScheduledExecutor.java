@@ -0,0 +1,560 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link ScheduledExecutorService} backed by a hashed timing wheel. Scheduling and cancelling are
+ * O(1): new timeouts go through a lock-free queue and cancellation is a single CAS, cancelled
+ * timeouts are unlinked from the wheel lazily by the worker thread. All timeouts that expire on the
+ * same tick are handed to the dispatch {@link Executor} as a single batch.
+ *
+ * <p>Timeouts fire with tick granularity, which is fine for prediction timeouts but makes this
+ * unsuitable as a general purpose scheduler. Periodic tasks are rescheduled after every run, so
+ * their period is rounded up to the tick as well.
+ *
+ * <p>Shutting down cancels every timeout and periodic task that hasn't run yet.
+ */
+final class HashedWheelScheduledExecutor extends AbstractExecutorService
+    implements ScheduledExecutorService {
+
+  private static final int STARTED = 0;
+  private static final int SHUTDOWN = 1;
+
+  // Upper bound on the new timeouts moved into the wheel per tick, so a burst of schedules can't
+  // stall the expiration of the current bucket.
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Executor dispatcher;
+  private final Queue<WheelTimeout<?>> pending = new ConcurrentLinkedQueue<>();
+  private final Set<PeriodicTimeout> periodic = ConcurrentHashMap.newKeySet();
+  private final Thread worker;
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private final long startNanos;
+
+  private volatile int state = STARTED;
+
+  private HashedWheelScheduledExecutor(
+      final Duration tick,
+      final int ticksPerWheel,
+      final Executor dispatcher,
+      final ThreadFactory threadFactory) {
+    this.tickNanos = tick.toNanos();
+    this.wheel = new Bucket[ticksPerWheel];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = ticksPerWheel - 1;
+    this.dispatcher = dispatcher;
+    this.startNanos = System.nanoTime();
+    this.worker = threadFactory.newThread(this::run);
+    this.worker.start();
+  }
+
+  /**
+   * Creates and starts a new timing wheel.
+   *
+   * @param tick duration of a single tick, i.e. the precision of the timeouts.
+   * @param ticksPerWheel number of buckets in the wheel, must be a power of two.
+   * @param dispatcher executor that runs expired timeouts.
+   * @param threadFactory factory of the thread that advances the wheel.
+   */
+  static HashedWheelScheduledExecutor create(
+      final Duration tick,
+      final int ticksPerWheel,
+      final Executor dispatcher,
+      final ThreadFactory threadFactory) {
+    if (tick.isNegative() || tick.isZero()) {
+      throw new IllegalArgumentException("tick must be positive");
+    }
+    if (ticksPerWheel < 1 || Integer.bitCount(ticksPerWheel) != 1) {
+      throw new IllegalArgumentException("ticksPerWheel must be a power of two");
+    }
+    return new HashedWheelScheduledExecutor(tick, ticksPerWheel, dispatcher, threadFactory);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(
+      final Runnable command, final long delay, final TimeUnit unit) {
+    return schedule(
+        () -> {
+          command.run();
+          return null;
+        },
+        delay,
+        unit);
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(
+      final Callable<V> callable, final long delay, final TimeUnit unit) {
+    if (state != STARTED) {
+      throw new RejectedExecutionException("scheduler is shut down");
+    }
+
+    final long now = System.nanoTime() - startNanos;
+    final long delayNanos = Math.max(0, unit.toNanos(delay));
+    // saturate instead of overflowing for practically infinite timeouts.
+    final long deadline = delayNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayNanos;
+
+    final WheelTimeout<V> timeout = new WheelTimeout<>(callable, startNanos, deadline);
+    pending.add(timeout);
+    // the worker may have cancelled the pending timeouts before this one was added.
+    if (state != STARTED) {
+      timeout.cancel(false);
+      throw new RejectedExecutionException("scheduler is shut down");
+    }
+    return timeout;
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+    if (period <= 0) {
+      throw new IllegalArgumentException("period must be positive");
+    }
+    return schedulePeriodic(command, initialDelay, unit.toNanos(period), unit);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+    if (delay <= 0) {
+      throw new IllegalArgumentException("delay must be positive");
+    }
+    return schedulePeriodic(command, initialDelay, -unit.toNanos(delay), unit);
+  }
+
+  private ScheduledFuture<?> schedulePeriodic(
+      final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+    final PeriodicTimeout task =
+        new PeriodicTimeout(command, period, System.nanoTime() + unit.toNanos(initialDelay));
+    periodic.add(task);
+    task.done.whenComplete((r, t) -> periodic.remove(task));
+    if (state != STARTED) {
+      task.cancel(false);
+      throw new RejectedExecutionException("scheduler is shut down");
+    }
+    task.scheduleNext();
+    return task;
+  }
+
+  @Override
+  public void execute(final Runnable command) {
+    if (state != STARTED) {
+      throw new RejectedExecutionException("scheduler is shut down");
+    }
+    dispatcher.execute(command);
+  }
+
+  @Override
+  public void shutdown() {
+    state = SHUTDOWN;
+    LockSupport.unpark(worker);
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    return Collections.emptyList();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return state != STARTED;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final TimeUnit unit)
+      throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  private void run() {
+    long tick = 0;
+    try {
+      while (state == STARTED) {
+        final long deadline = tickNanos * (tick + 1);
+        long sleep;
+        while ((sleep = deadline - (System.nanoTime() - startNanos)) > 0) {
+          LockSupport.parkNanos(this, sleep);
+          if (state != STARTED) {
+            return;
+          }
+        }
+
+        transferPending(tick);
+
+        final List<WheelTimeout<?>> expired = wheel[(int) (tick & mask)].expire(deadline);
+        if (!expired.isEmpty()) {
+          dispatch(expired);
+        }
+        tick++;
+      }
+    } finally {
+      // cancel, rather than drop, the timeouts that didn't fire so nobody waits on them forever.
+      for (final Bucket bucket : wheel) {
+        bucket.cancelAll();
+      }
+      WheelTimeout<?> timeout;
+      while ((timeout = pending.poll()) != null) {
+        timeout.cancel(false);
+      }
+      for (final PeriodicTimeout task : periodic) {
+        task.cancel(false);
+      }
+      terminated.countDown();
+    }
+  }
+
+  private void transferPending(final long currentTick) {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      final WheelTimeout<?> timeout = pending.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.isCancelled()) {
+        continue;
+      }
+
+      final long ticks = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (ticks - currentTick) / wheel.length;
+      final long stopTick = Math.max(ticks, currentTick);
+      wheel[(int) (stopTick & mask)].add(timeout);
+    }
+  }
+
+  private void dispatch(final List<WheelTimeout<?>> expired) {
+    try {
+      dispatcher.execute(
+          () -> {
+            for (final WheelTimeout<?> timeout : expired) {
+              timeout.expire();
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      for (final WheelTimeout<?> timeout : expired) {
+        timeout.expire();
+      }
+    }
+  }
+
+  /** Doubly-linked list of timeouts, only accessed by the worker thread. */
+  private static final class Bucket {
+    private WheelTimeout<?> head;
+    private WheelTimeout<?> tail;
+
+    void add(final WheelTimeout<?> timeout) {
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    List<WheelTimeout<?>> expire(final long deadline) {
+      List<WheelTimeout<?>> expired = Collections.emptyList();
+      WheelTimeout<?> timeout = head;
+      while (timeout != null) {
+        final WheelTimeout<?> next = timeout.next;
+        if (timeout.isCancelled()) {
+          remove(timeout);
+        } else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+          remove(timeout);
+          if (expired.isEmpty()) {
+            expired = new ArrayList<>();
+          }
+          expired.add(timeout);
+        } else {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+      return expired;
+    }
+
+    void cancelAll() {
+      WheelTimeout<?> timeout = head;
+      while (timeout != null) {
+        final WheelTimeout<?> next = timeout.next;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.cancel(false);
+        timeout = next;
+      }
+      head = tail = null;
+    }
+
+    private void remove(final WheelTimeout<?> timeout) {
+      final WheelTimeout<?> next = timeout.next;
+      if (timeout.prev != null) {
+        timeout.prev.next = next;
+      }
+      if (next != null) {
+        next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+
+  /**
+   * A periodic task, rescheduled as a new timeout after every run. Positive periods are fixed rate,
+   * negative periods are fixed delay. The task stops when it's cancelled, when a run fails or when
+   * the scheduler shuts down.
+   */
+  private final class PeriodicTimeout implements ScheduledFuture<Object>, Runnable {
+    private final Runnable command;
+    private final long period;
+    private final CompletableFuture<Object> done = new CompletableFuture<>();
+
+    private volatile long nextRun;
+    private volatile ScheduledFuture<?> current;
+
+    private PeriodicTimeout(final Runnable command, final long period, final long firstRun) {
+      this.command = command;
+      this.period = period;
+      this.nextRun = firstRun;
+    }
+
+    @Override
+    public void run() {
+      if (done.isDone()) {
+        return;
+      }
+      try {
+        command.run();
+      } catch (final Throwable t) {
+        done.completeExceptionally(t);
+        return;
+      }
+      nextRun = period > 0 ? nextRun + period : System.nanoTime() - period;
+      scheduleNext();
+    }
+
+    void scheduleNext() {
+      try {
+        current = schedule(this, nextRun - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (final RejectedExecutionException e) {
+        cancel(false);
+        return;
+      }
+      // cancel may have raced with the reschedule.
+      if (done.isDone()) {
+        current.cancel(false);
+      }
+    }
+
+    @Override
+    public long getDelay(final TimeUnit unit) {
+      return unit.convert(nextRun - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(final Delayed o) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      final boolean cancelled = done.cancel(mayInterruptIfRunning);
+      final ScheduledFuture<?> scheduled = current;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+      return cancelled;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return done.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return done.isDone();
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+      return done.get();
+    }
+
+    @Override
+    public Object get(final long timeout, final TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return done.get(timeout, unit);
+    }
+  }
+
+  /** A scheduled timeout, doubles as its own {@link ScheduledFuture}. */
+  private static final class WheelTimeout<V> implements ScheduledFuture<V> {
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+        AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "timeoutState");
+
+    // dropped once the timeout is cancelled or run, a cancelled timeout stays in its bucket until
+    // the wheel reaches it and mustn't keep the task's captured state reachable until then.
+    private Callable<V> callable;
+    private final long startNanos;
+    private final long deadline;
+
+    private volatile int timeoutState = INIT;
+    private V result;
+    private Throwable failure;
+
+    // only accessed by the worker thread.
+    private long remainingRounds;
+    private WheelTimeout<?> prev;
+    private WheelTimeout<?> next;
+
+    private WheelTimeout(final Callable<V> callable, final long startNanos, final long deadline) {
+      this.callable = callable;
+      this.startNanos = startNanos;
+      this.deadline = deadline;
+    }
+
+    void expire() {
+      if (!STATE_UPDATER.compareAndSet(this, INIT, RUNNING)) {
+        return;
+      }
+      try {
+        result = callable.call();
+      } catch (final Throwable t) {
+        failure = t;
+      }
+      callable = null;
+      synchronized (this) {
+        timeoutState = DONE;
+        notifyAll();
+      }
+    }
+
+    @Override
+    public long getDelay(final TimeUnit unit) {
+      return unit.convert(deadline - (System.nanoTime() - startNanos), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(final Delayed o) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      if (STATE_UPDATER.compareAndSet(this, INIT, CANCELLED)) {
+        callable = null;
+        synchronized (this) {
+          notifyAll();
+        }
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return timeoutState == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+      return timeoutState == CANCELLED || timeoutState == DONE;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+      synchronized (this) {
+        while (!isDone()) {
+          wait();
+        }
+      }
+      return report();
+    }
+
+    @Override
+    public V get(final long timeout, final TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      final long end = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (this) {
+        long remaining;
+        while (!isDone()) {
+          remaining = end - System.nanoTime();
+          if (remaining <= 0) {
+            throw new TimeoutException();
+          }
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+      }
+      return report();
+    }
+
+    private V report() throws ExecutionException {
+      if (isCancelled()) {
+        throw new CancellationException();
+      }
+      if (failure != null) {
+        throw new ExecutionException(failure);
+      }
+      return result;
+    }
+  }
+}
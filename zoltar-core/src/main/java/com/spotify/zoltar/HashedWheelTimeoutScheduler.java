@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * {@link PredictorTimeoutScheduler} backed by a hashed timing wheel. Unlike {@link
+ * DefaultPredictorTimeoutScheduler}, scheduling and cancelling a prediction timeout doesn't contend
+ * on a shared priority queue, which makes it a better fit for high request rates. Timeouts fire
+ * with tick granularity and are dispatched in batches.
+ *
+ * <pre>{@code
+ * final PredictorTimeoutScheduler timeouts = HashedWheelTimeoutScheduler.create();
+ * predictor.predict(timeouts.scheduler(), Duration.ofMillis(100), input);
+ * }</pre>
+ */
+public final class HashedWheelTimeoutScheduler implements PredictorTimeoutScheduler {
+
+  private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+  private static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+  private final ScheduledExecutorService scheduler;
+
+  private HashedWheelTimeoutScheduler(final ScheduledExecutorService scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Returns a scheduler backed by a shared timing wheel with a 10ms tick, expired timeouts run on
+   * the common {@link ForkJoinPool}.
+   */
+  public static HashedWheelTimeoutScheduler create() {
+    return Holder.SHARED;
+  }
+
+  /**
+   * Creates a scheduler backed by a new timing wheel. The wheel's worker thread runs until the
+   * {@link #scheduler()} is shut down.
+   *
+   * @param tick duration of a single tick, i.e. the precision of the timeouts.
+   * @param ticksPerWheel number of buckets in the wheel, must be a power of two.
+   * @param dispatcher executor that runs expired timeouts.
+   */
+  public static HashedWheelTimeoutScheduler create(
+      final Duration tick, final int ticksPerWheel, final Executor dispatcher) {
+    return new HashedWheelTimeoutScheduler(newWheel(tick, ticksPerWheel, dispatcher));
+  }
+
+  @Override
+  public ScheduledExecutorService scheduler() {
+    return scheduler;
+  }
+
+  private static ScheduledExecutorService newWheel(
+      final Duration tick, final int ticksPerWheel, final Executor dispatcher) {
+    return HashedWheelScheduledExecutor.create(
+        tick,
+        ticksPerWheel,
+        dispatcher,
+        new ThreadFactoryBuilder()
+            .setNameFormat("zoltar-timeout-wheel-%d")
+            .setDaemon(true)
+            .build());
+  }
+
+  // Lazily starts the shared wheel on first use.
+  private static final class Holder {
+    private static final HashedWheelTimeoutScheduler SHARED =
+        new HashedWheelTimeoutScheduler(
+            newWheel(DEFAULT_TICK, DEFAULT_TICKS_PER_WHEEL, ForkJoinPool.commonPool()));
+  }
+}
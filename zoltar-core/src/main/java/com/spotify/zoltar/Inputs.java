@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Lists of inputs that keep the array type of a varargs call. Lambdas implementing the varargs
+ * methods of the core interfaces, e.g. {@code ExtractFn<String, Integer> fn = inputs -> ...}, cast
+ * the array they're given, so a list path between the caller and such a lambda must hand it an
+ * array of the caller's type.
+ *
+ * <p>A {@link #view(Object[]) view} of the caller's array reaches the varargs methods as that
+ * array, and its {@link List#subList(int, int) sub lists} as copies of the same type. Lists made by
+ * {@link #newList(List, int)}, e.g. the inputs routed to one of several models, keep the type of
+ * the array behind the list they're made from. Any other list is copied into an array typed with
+ * the most specific class shared by its inputs, found by walking superclasses: inputs of unrelated
+ * classes that only share an interface, or lists of nulls, then give an {@code Object[]}, and
+ * implementations that take such lists must implement the List overloads. Empty lists never reach
+ * the varargs methods.
+ */
+public final class Inputs {
+
+  private Inputs() {}
+
+  /**
+   * Returns a fixed-size list view of the inputs, passed on to varargs methods as the same array.
+   *
+   * @param inputs inputs of a varargs call.
+   * @param <InputT> type of the inputs.
+   */
+  public static <InputT> List<InputT> view(final InputT[] inputs) {
+    return new ArrayView<>(inputs, 0, inputs.length);
+  }
+
+  /**
+   * Returns an empty list to collect some of the inputs into, passed on to varargs methods as an
+   * array of the same type as the array behind {@code inputs}.
+   *
+   * @param inputs inputs the new list takes its array type from.
+   * @param capacity initial capacity of the list.
+   * @param <InputT> type of the inputs.
+   */
+  public static <InputT> List<InputT> newList(
+      final List<? extends InputT> inputs, final int capacity) {
+    return new TypedList<>(componentType(inputs), capacity);
+  }
+
+  @SuppressWarnings("unchecked")
+  static <InputT> InputT[] toArray(final List<InputT> inputs) {
+    if (inputs instanceof ArrayView) {
+      return ((ArrayView<InputT>) inputs).array();
+    }
+    Class<?> type = componentType(inputs);
+    if (type == null) {
+      final int size = inputs.size();
+      for (int i = 0; i < size; i++) {
+        final InputT input = inputs.get(i);
+        if (input == null) {
+          continue;
+        }
+        if (type == null) {
+          type = input.getClass();
+        }
+        while (!type.isInstance(input)) {
+          type = type.getSuperclass();
+        }
+      }
+    }
+    final InputT[] array =
+        (InputT[]) Array.newInstance(type == null ? Object.class : type, inputs.size());
+    return inputs.toArray(array);
+  }
+
+  /** Returns the array type the inputs keep, or null if it has to be worked out from them. */
+  private static Class<?> componentType(final List<?> inputs) {
+    if (inputs instanceof ArrayView) {
+      return ((ArrayView<?>) inputs).array.getClass().getComponentType();
+    }
+    if (inputs instanceof TypedList) {
+      return ((TypedList<?>) inputs).type;
+    }
+    return null;
+  }
+
+  private static final class ArrayView<E> extends AbstractList<E> implements RandomAccess {
+
+    private final E[] array;
+    private final int offset;
+    private final int size;
+
+    private ArrayView(final E[] array, final int offset, final int size) {
+      this.array = array;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    @Override
+    public E get(final int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+      }
+      return array[offset + index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /** Returns the array behind the view, or a copy of the range it covers. */
+    private E[] array() {
+      return offset == 0 && size == array.length
+          ? array
+          : Arrays.copyOfRange(array, offset, offset + size);
+    }
+
+    @Override
+    public List<E> subList(final int from, final int to) {
+      if (from < 0 || to > size || from > to) {
+        throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", size: " + size);
+      }
+      return new ArrayView<>(array, offset + from, to - from);
+    }
+  }
+
+  private static final class TypedList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> type;
+
+    private TypedList(final Class<?> type, final int capacity) {
+      super(capacity);
+      this.type = type;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+
+/**
+ * {@link AsyncPredictFn} that runs a synchronous {@link PredictFn} on an {@link Executor}. When a
+ * {@link Deadline} is given, predictions whose deadline expired while queued are skipped.
+ */
+final class LiftedPredictFn<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements AsyncPredictFn<ModelT, InputT, VectorT, ValueT> {
+
+  private final PredictFn<ModelT, InputT, VectorT, ValueT> fn;
+  private final Executor executor;
+  private final Function<Exception, RuntimeException> wrapper;
+
+  LiftedPredictFn(
+      final PredictFn<ModelT, InputT, VectorT, ValueT> fn,
+      final Executor executor,
+      final Function<Exception, RuntimeException> wrapper) {
+    this.fn = fn;
+    this.executor = executor;
+    this.wrapper = wrapper;
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+      final ModelT model, final List<Vector<InputT, VectorT>> vectors) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return fn.apply(model, vectors);
+          } catch (final Exception e) {
+            throw wrapper.apply(e);
+          }
+        },
+        executor);
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+      final ModelT model, final List<Vector<InputT, VectorT>> vectors, final Deadline deadline) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            deadline.throwIfExpired();
+          } catch (final TimeoutException e) {
+            throw new CompletionException(e);
+          }
+          try {
+            return fn.apply(model, vectors, deadline);
+          } catch (final Exception e) {
+            throw wrapper.apply(e);
+          }
+        },
+        executor);
+  }
+}
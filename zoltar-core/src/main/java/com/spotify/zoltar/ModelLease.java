@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+/**
+ * A lease on a {@link Model}, obtained with {@link ModelLoader#lease()}. While at least one lease
+ * is held, loaders that manage the model lifecycle don't close the model, so native resources
+ * can't be released under an in-flight prediction. Leases must be closed once the model isn't
+ * used anymore.
+ *
+ * @param <M> Model instance type.
+ */
+@FunctionalInterface
+public interface ModelLease<M extends Model<?>> extends AutoCloseable {
+
+  /**
+   * Returns a lease that doesn't protect the model, for loaders that don't manage the model
+   * lifecycle.
+   *
+   * @param model leased model.
+   */
+  static <M extends Model<?>> ModelLease<M> unmanaged(final M model) {
+    return () -> model;
+  }
+
+  /** Returns the leased model, it must not be used after the lease is closed. */
+  M model();
+
+  /** Returns the lease, closing it more than once has no effect. */
+  @Override
+  default void close() {}
+}
@@ -221,6 +221,17 @@ public interface ModelLoader<M extends Model<?>> extends Closeable {
     return get().toCompletableFuture().get(duration.toMillis(), TimeUnit.MILLISECONDS);
   }
 
+  /**
+   * Leases the underlying model instance, the lease must be closed once the model isn't used
+   * anymore. By default the lease doesn't protect the model from being closed, see {@link
+   * com.spotify.zoltar.loaders.RefCountingModelLoader}.
+   *
+   * @return lease on the model instance
+   */
+  default CompletionStage<ModelLease<M>> lease() {
+    return get().thenApply(ModelLease::unmanaged);
+  }
+
   @Deprecated
   default <L extends ModelLoader<M>> L with(final Function<ModelLoader<M>, L> fn) {
     return compose(fn);
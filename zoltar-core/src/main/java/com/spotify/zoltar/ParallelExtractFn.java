@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+
+/**
+ * {@link ExtractFn} that splits batches of at least {@code threshold} inputs into ranges extracted
+ * in parallel on a {@link ForkJoinPool}. Every range writes into its own slots of a pre-sized
+ * array, so input order is kept without any merging.
+ *
+ * @param <InputT> type of the input to feature extraction.
+ * @param <VectorT> type of feature extraction result.
+ */
+final class ParallelExtractFn<InputT, VectorT> implements ExtractFn<InputT, VectorT> {
+
+  private final Function<InputT, VectorT> fn;
+  private final int threshold;
+  private final ForkJoinPool pool;
+
+  private ParallelExtractFn(
+      final Function<InputT, VectorT> fn, final int threshold, final ForkJoinPool pool) {
+    this.fn = fn;
+    this.threshold = threshold;
+    this.pool = pool;
+  }
+
+  static <InputT, VectorT> ParallelExtractFn<InputT, VectorT> create(
+      final Function<InputT, VectorT> fn, final int threshold, final ForkJoinPool pool) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be positive: " + threshold);
+    }
+    return new ParallelExtractFn<>(fn, threshold, pool);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<VectorT> apply(final InputT... inputs) {
+    if (inputs.length < threshold) {
+      final List<VectorT> result = new ArrayList<>(inputs.length);
+      for (final InputT input : inputs) {
+        result.add(fn.apply(input));
+      }
+      return result;
+    }
+
+    final Object[] result = new Object[inputs.length];
+    // ranges never get smaller than half the threshold, or than a fair share of the pool.
+    final int grain = Math.max(threshold / 2, inputs.length / (pool.getParallelism() * 4) + 1);
+    pool.invoke(new Range(inputs, result, 0, inputs.length, grain));
+    return (List<VectorT>) Arrays.asList(result);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<VectorT> apply(final List<InputT> inputs) {
+    final int size = inputs.size();
+    if (size >= threshold) {
+      // ranges index into an array, the copy is small next to a parallel extraction.
+      return apply((InputT[]) inputs.toArray());
+    }
+    final List<VectorT> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(fn.apply(inputs.get(i)));
+    }
+    return result;
+  }
+
+  private final class Range extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final InputT[] inputs;
+    private final Object[] result;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    private Range(
+        final InputT[] inputs,
+        final Object[] result,
+        final int from,
+        final int to,
+        final int grain) {
+      this.inputs = inputs;
+      this.result = result;
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        for (int i = from; i < to; i++) {
+          result[i] = fn.apply(inputs[i]);
+        }
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(
+          new Range(inputs, result, from, middle, grain),
+          new Range(inputs, result, middle, to, grain));
+    }
+  }
+}
@@ -17,7 +17,10 @@ package com.spotify.zoltar;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 /**
@@ -51,15 +54,26 @@ public interface PredictFns {
     static <ModelT extends Model<?>, InputT, VectorT, ValueT>
         AsyncPredictFn<ModelT, InputT, VectorT, ValueT> lift(
             final PredictFn<ModelT, InputT, VectorT, ValueT> fn) {
-      return (model, vectors) ->
-          CompletableFuture.supplyAsync(
-              () -> {
-                try {
-                  return fn.apply(model, vectors);
-                } catch (final Exception e) {
-                  throw new RuntimeException(e.getCause());
-                }
-              });
+      return new LiftedPredictFn<>(
+          fn, ForkJoinPool.commonPool(), e -> new RuntimeException(e.getCause()));
+    }
+
+    /**
+     * Lifts prediction function to asynchronous prediction function that runs on the given {@link
+     * Executor}.
+     *
+     * @param fn synchronous prediction function.
+     * @param executor the executor to run the prediction on.
+     * @param <ModelT> type of the {@link Model}
+     * @param <InputT> type of the feature extraction input.
+     * @param <VectorT> type of the feature extraction output.
+     * @param <ValueT> type of the prediction output.
+     */
+    @SuppressWarnings("checkstyle:LineLength")
+    static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+        AsyncPredictFn<ModelT, InputT, VectorT, ValueT> lift(
+            final PredictFn<ModelT, InputT, VectorT, ValueT> fn, final Executor executor) {
+      return new LiftedPredictFn<>(fn, executor, CompletionException::new);
     }
 
     /**
@@ -76,6 +90,29 @@ public interface PredictFns {
     CompletionStage<List<Prediction<InputT, ValueT>>> apply(
         ModelT model, List<Vector<InputT, VectorT>> vectors);
 
+    /**
+     * Performs the prediction within the given {@link Deadline}. Implementations that call into a
+     * backend should bound, or abort on cancellation, the call with the deadline. By default the
+     * prediction is skipped if the deadline has already expired.
+     *
+     * @param model model to perform prediction on.
+     * @param vectors extracted features.
+     * @param deadline time budget and cancellation signal of the prediction.
+     * @return {@link CompletionStage} of predictions ({@link Prediction}).
+     */
+    default CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+        final ModelT model, final List<Vector<InputT, VectorT>> vectors, final Deadline deadline) {
+      try {
+        deadline.throwIfExpired();
+      } catch (final Exception e) {
+        final CompletableFuture<List<Prediction<InputT, ValueT>>> future =
+            new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+      }
+      return apply(model, vectors);
+    }
+
     default <C extends AsyncPredictFn<ModelT, InputT, VectorT, ValueT>> C with(
         final Function<AsyncPredictFn<ModelT, InputT, VectorT, ValueT>, C> fn) {
       return fn.apply(this);
@@ -103,6 +140,21 @@ public interface PredictFns {
     List<Prediction<InputT, ValueT>> apply(ModelT model, List<Vector<InputT, VectorT>> vectors)
         throws Exception;
 
+    /**
+     * Performs the prediction within the given {@link Deadline}. By default the deadline is
+     * ignored, lifted functions are skipped if the deadline expired while queued.
+     *
+     * @param model model to perform prediction on.
+     * @param vectors extracted features.
+     * @param deadline time budget and cancellation signal of the prediction.
+     * @return predictions ({@link Prediction}).
+     */
+    default List<Prediction<InputT, ValueT>> apply(
+        final ModelT model, final List<Vector<InputT, VectorT>> vectors, final Deadline deadline)
+        throws Exception {
+      return apply(model, vectors);
+    }
+
     default <C extends PredictFn<ModelT, InputT, VectorT, ValueT>> C with(
         final Function<PredictFn<ModelT, InputT, VectorT, ValueT>, C> fn) {
       return fn.apply(this);
@@ -16,7 +16,9 @@
 package com.spotify.zoltar;
 
 import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -34,7 +36,13 @@ import com.spotify.zoltar.PredictFns.PredictFn;
 @FunctionalInterface
 public interface Predictor<InputT, ValueT> {
 
-  /** timeout scheduler for predict functions. */
+  /**
+   * timeout scheduler for predict functions. Defaults to a shared scheduled thread pool whose
+   * timeouts are precise to the millisecond. Predictors serving high request rates, where
+   * scheduling and cancelling a timeout per prediction contends on the pool's queue, can override
+   * it to return {@link HashedWheelTimeoutScheduler#create()} if timeouts firing on a 10ms tick
+   * are acceptable.
+   */
   default PredictorTimeoutScheduler timeoutScheduler() {
     return DefaultPredictorTimeoutScheduler.create();
   }
@@ -52,6 +60,31 @@ public interface Predictor<InputT, ValueT> {
   CompletionStage<List<Prediction<InputT, ValueT>>> predict(
       ScheduledExecutorService scheduler, Duration timeout, InputT... input);
 
+  /**
+   * Perform prediction on a list of inputs. By default the list is passed to the varargs method as
+   * an array, see {@link Inputs} for its type, the predictors built by {@link PredictorBuilder}
+   * pass it through to feature extraction as is. Predictors given other lists of inputs of
+   * different classes that only share an interface, or lists of nulls, must override this method.
+   * Empty lists give no predictions.
+   *
+   * @param input a list of inputs to perform feature extraction and prediction on.
+   * @param timeout implementation specific timeout.
+   * @param scheduler implementation specific scheduler.
+   */
+  default CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final List<InputT> input) {
+    if (input.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+    return predict(scheduler, timeout, Inputs.toArray(input));
+  }
+
+  /** Perform prediction on a list of inputs with a default scheduler. */
+  default CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final Duration timeout, final List<InputT> input) {
+    return predict(timeoutScheduler().scheduler(), timeout, input);
+  }
+
   /** Perform prediction with a default scheduler. */
   default CompletionStage<List<Prediction<InputT, ValueT>>> predict(
       final Duration timeout, final InputT... input) {
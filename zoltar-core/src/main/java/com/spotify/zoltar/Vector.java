@@ -16,6 +16,8 @@
 package com.spotify.zoltar;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.google.auto.value.AutoValue;
 
@@ -37,4 +39,15 @@ public abstract class Vector<InputT, ValueT> implements Serializable {
       final InputT input, final ValueT value) {
     return new AutoValue_Vector<>(input, value);
   }
+
+  /** Pairs inputs with their extracted values by index, up to the shorter of the two lists. */
+  static <InputT, ValueT> List<Vector<InputT, ValueT>> zip(
+      final List<InputT> inputs, final List<ValueT> values) {
+    final int size = Math.min(inputs.size(), values.size());
+    final List<Vector<InputT, ValueT>> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(create(inputs.get(i), values.get(i)));
+    }
+    return result;
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.spotify.zoltar.ModelLoader.ThrowableSupplier;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+
+/**
+ * Virtual thread (JDK 21+) utilities. Blocking stages such as synchronous {@link PredictFn}s lifted
+ * with {@link AsyncPredictFn#lift(PredictFn, java.util.concurrent.Executor)} or {@link
+ * ThrowableSupplier} model loaders can run on virtual threads, so that blocking on I/O doesn't pin
+ * a platform thread for the whole duration of the call.
+ *
+ * <pre>{@code
+ * final ModelLoader<MlEngineModel> loader =
+ *     ModelLoader.load(supplier, VirtualThreads.executor());
+ * final PredictorBuilder<MlEngineModel, Input, Vector, Value> builder =
+ *     Predictors.newBuilder(loader, extractFn, predictFn, ExecutionPolicy.virtualThreads());
+ * }</pre>
+ *
+ * <p>On JDKs without virtual thread support {@link #isSupported()} returns false and every other
+ * method throws {@link UnsupportedOperationException}.
+ */
+public final class VirtualThreads {
+
+  private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+  // Suppresses default constructor, ensuring non-instantiability.
+  private VirtualThreads() {}
+
+  /** Returns true if the running JDK supports virtual threads. */
+  public static boolean isSupported() {
+    return Holder.EXECUTOR != null;
+  }
+
+  /**
+   * Returns a shared executor that starts a new virtual thread per task.
+   *
+   * @throws UnsupportedOperationException if the running JDK doesn't support virtual threads.
+   */
+  public static ExecutorService executor() {
+    if (Holder.EXECUTOR == null) {
+      throw new UnsupportedOperationException("virtual threads require JDK 21 or later");
+    }
+    return Holder.EXECUTOR;
+  }
+
+  /**
+   * Returns a new executor that starts a new virtual thread per task. The caller owns the executor
+   * and is responsible to shut it down.
+   *
+   * @throws UnsupportedOperationException if the running JDK doesn't support virtual threads.
+   */
+  public static ExecutorService newExecutor() {
+    final ExecutorService executor = tryNewExecutor();
+    if (executor == null) {
+      throw new UnsupportedOperationException("virtual threads require JDK 21 or later");
+    }
+    return executor;
+  }
+
+  /**
+   * Structured fan-out. Runs every task on its own virtual thread and waits for all of them to
+   * complete. If any task fails, or the timeout is met, the remaining tasks are cancelled and
+   * interrupted before this method returns, so no task outlives the call.
+   *
+   * @param tasks tasks to run, e.g. predictions against different models.
+   * @param timeout maximum amount of time to wait for all tasks.
+   * @return results in the same order as the tasks.
+   * @throws ExecutionException if any of the tasks failed, with the first failure as the cause.
+   * @throws TimeoutException if the tasks didn't complete within the timeout.
+   */
+  public static <T> List<T> invokeAll(
+      final List<? extends Callable<T>> tasks, final Duration timeout)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final ExecutorService executor = newExecutor();
+    final List<Future<T>> futures = new ArrayList<>(tasks.size());
+    try {
+      final ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+      for (final Callable<T> task : tasks) {
+        futures.add(completion.submit(task));
+      }
+
+      final long deadline = System.nanoTime() + timeout.toNanos();
+      for (int i = 0; i < futures.size(); i++) {
+        final long remaining = deadline - System.nanoTime();
+        final Future<T> done = completion.poll(remaining, TimeUnit.NANOSECONDS);
+        if (done == null) {
+          throw new TimeoutException();
+        }
+        // fails fast, the finally block cancels the siblings.
+        done.get();
+      }
+
+      final List<T> results = new ArrayList<>(futures.size());
+      for (final Future<T> future : futures) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      for (final Future<T> future : futures) {
+        future.cancel(true);
+      }
+      executor.shutdownNow();
+    }
+  }
+
+  private static ExecutorService tryNewExecutor() {
+    if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke();
+    } catch (final UnsupportedOperationException e) {
+      // JDK 19 and 20 expose the method but require --enable-preview.
+      return null;
+    } catch (final Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static MethodHandle lookup() {
+    try {
+      return MethodHandles.publicLookup()
+          .findStatic(
+              Executors.class,
+              "newVirtualThreadPerTaskExecutor",
+              MethodType.methodType(ExecutorService.class));
+    } catch (final NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  // Lazily creates the shared executor on first use.
+  private static final class Holder {
+    private static final ExecutorService EXECUTOR = tryNewExecutor();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.auto.value.AutoValue;
+
+/** Options of {@link BulkPredictor#predictAll(Iterable, BulkOptions)}. */
+@AutoValue
+public abstract class BulkOptions {
+
+  /** Maximum number of inputs per batch. */
+  public abstract int batchSize();
+
+  /** Maximum number of batches in flight. */
+  public abstract int parallelism();
+
+  /** Executor that runs feature extraction, inference runs wherever the predict fn runs it. */
+  public abstract Executor executor();
+
+  /** Notified after every batch. */
+  public abstract BulkProgress.Listener listener();
+
+  /**
+   * Returns a builder, by default batches of 1024 inputs on the common {@link ForkJoinPool}, with
+   * as many batches in flight as the pool has threads.
+   */
+  public static Builder builder() {
+    return new AutoValue_BulkOptions.Builder()
+        .batchSize(1024)
+        .parallelism(ForkJoinPool.commonPool().getParallelism())
+        .executor(ForkJoinPool.commonPool())
+        .listener(progress -> {});
+  }
+
+  /** Builder for {@link BulkOptions}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    public abstract Builder batchSize(int batchSize);
+
+    public abstract Builder parallelism(int parallelism);
+
+    public abstract Builder executor(Executor executor);
+
+    public abstract Builder listener(BulkProgress.Listener listener);
+
+    abstract BulkOptions autoBuild();
+
+    /** Builds the options. */
+    public BulkOptions build() {
+      final BulkOptions options = autoBuild();
+      Chunks.checkSize("batchSize", options.batchSize());
+      Chunks.checkSize("parallelism", options.parallelism());
+      return options;
+    }
+  }
+}
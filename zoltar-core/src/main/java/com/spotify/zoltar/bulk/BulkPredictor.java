@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.PredictorBuilder;
+import com.spotify.zoltar.Vector;
+
+/**
+ * Scores large input sets, e.g. in offline jobs. Inputs are split into batches that fan out over an
+ * executor, a fork-join pool by default, and the predictions are reassembled in input order. It
+ * runs the {@link PredictorBuilder}'s feature extractor and predict fn directly, so any backend
+ * scales with the number of cores.
+ *
+ * <pre>{@code
+ * final List<Prediction<Iris, Long>> predictions =
+ *     BulkPredictor.create(predictorBuilder)
+ *         .predictAll(irises, BulkOptions.builder().listener(log::progress).build())
+ *         .toCompletableFuture()
+ *         .join();
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+public final class BulkPredictor<ModelT extends Model<?>, InputT, VectorT, ValueT> {
+
+  private final PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder;
+
+  private BulkPredictor(final PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder) {
+    this.predictorBuilder = predictorBuilder;
+  }
+
+  /**
+   * Creates a bulk predictor.
+   *
+   * @param predictorBuilder provides the model loader, feature extractor and predict fn.
+   */
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      BulkPredictor<ModelT, InputT, VectorT, ValueT> create(
+          final PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder) {
+    return new BulkPredictor<>(predictorBuilder);
+  }
+
+  /**
+   * Predicts all the inputs. The model is leased once for the whole job. The first failed batch
+   * fails the job once the batches in flight complete, and no new batches are started from then
+   * on. The lease is returned before the job completes.
+   *
+   * @param inputs inputs, iterated once.
+   * @param options batching, parallelism and progress reporting.
+   * @return predictions in input order.
+   */
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predictAll(
+      final Iterable<? extends InputT> inputs, final BulkOptions options) {
+    return predictorBuilder
+        .modelLoader()
+        .lease()
+        .thenCompose(lease -> new Job(lease, inputs, options).start());
+  }
+
+  /** A single predictAll call, keeps up to parallelism batches in flight. */
+  private final class Job {
+
+    private final ModelLease<ModelT> lease;
+    private final Iterator<? extends InputT> inputs;
+    private final List<? extends InputT> source;
+    private final BulkOptions options;
+    private final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor;
+    private final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn;
+    private final CompletableFuture<List<Prediction<InputT, ValueT>>> result =
+        new CompletableFuture<>();
+    private final List<List<Prediction<InputT, ValueT>>> batches = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private int outstanding;
+    private long predicted;
+    private long completed;
+    private boolean exhausted;
+    private Throwable failure;
+
+    private Job(
+        final ModelLease<ModelT> lease,
+        final Iterable<? extends InputT> inputs,
+        final BulkOptions options) {
+      this.lease = lease;
+      this.inputs = inputs.iterator();
+      // chunks of a list keep its array type, e.g. for a list view of the caller's array.
+      this.source =
+          inputs instanceof List ? (List<? extends InputT>) inputs : Collections.emptyList();
+      this.options = options;
+      this.featureExtractor = predictorBuilder.featureExtractor();
+      this.predictFn = predictorBuilder.predictFn();
+    }
+
+    private CompletableFuture<List<Prediction<InputT, ValueT>>> start() {
+      for (int i = 0; i < options.parallelism(); i++) {
+        if (!submit()) {
+          break;
+        }
+      }
+      finishIfDone();
+      return result;
+    }
+
+    private boolean submit() {
+      final List<InputT> chunk;
+      final int index;
+      synchronized (this) {
+        if (exhausted || failure != null) {
+          return false;
+        }
+        try {
+          chunk = Chunks.next(inputs, source, options.batchSize());
+        } catch (final RuntimeException e) {
+          exhausted = true;
+          fail(e);
+          return false;
+        }
+        if (chunk == null) {
+          exhausted = true;
+          return false;
+        }
+        index = batches.size();
+        batches.add(null);
+        outstanding++;
+      }
+
+      final ModelT model = lease.model();
+      try {
+        CompletableFuture.supplyAsync(() -> extract(model, chunk), options.executor())
+            .thenCompose(vectors -> predictFn.apply(model, vectors))
+            .whenComplete((predictions, t) -> onBatch(index, chunk.size(), predictions, t));
+      } catch (final RuntimeException e) {
+        // e.g. the executor rejected the batch, it'll never complete.
+        synchronized (this) {
+          outstanding--;
+          fail(e);
+        }
+        return false;
+      }
+      return true;
+    }
+
+    private List<Vector<InputT, VectorT>> extract(final ModelT model, final List<InputT> chunk) {
+      try {
+        return featureExtractor.extract(model, chunk);
+      } catch (final Exception e) {
+        throw new CompletionException(e);
+      }
+    }
+
+    private void onBatch(
+        final int index,
+        final int size,
+        final List<Prediction<InputT, ValueT>> predictions,
+        final Throwable t) {
+      final BulkProgress progress;
+      synchronized (this) {
+        outstanding--;
+        if (t != null) {
+          fail(t);
+          progress = null;
+        } else {
+          batches.set(index, predictions);
+          predicted += size;
+          completed++;
+          progress =
+              BulkProgress.create(
+                  predicted, completed, Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+      }
+      if (progress != null) {
+        try {
+          options.listener().onProgress(progress);
+          submit();
+        } catch (final RuntimeException e) {
+          // a failing listener fails the job, the batches in flight still return the lease.
+          synchronized (this) {
+            fail(e);
+          }
+        }
+      }
+      finishIfDone();
+    }
+
+    // keeps the first failure, the caller holds the lock.
+    private void fail(final Throwable t) {
+      if (failure == null) {
+        failure = t;
+      }
+    }
+
+    private void finishIfDone() {
+      final List<Prediction<InputT, ValueT>> predictions;
+      final Throwable t;
+      synchronized (this) {
+        if (outstanding != 0 || !(exhausted || failure != null)) {
+          return;
+        }
+        // makes later calls return early, the lease is returned exactly once.
+        outstanding = -1;
+        t = failure;
+        if (t != null) {
+          predictions = null;
+        } else {
+          predictions = new ArrayList<>((int) predicted);
+          batches.forEach(predictions::addAll);
+        }
+      }
+      lease.close();
+      if (t != null) {
+        result.completeExceptionally(t);
+      } else {
+        result.complete(predictions);
+      }
+    }
+  }
+}
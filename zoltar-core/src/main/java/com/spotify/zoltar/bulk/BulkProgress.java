@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.time.Duration;
+
+import com.google.auto.value.AutoValue;
+
+/** Progress of a bulk prediction job. */
+@AutoValue
+public abstract class BulkProgress {
+
+  /** Number of inputs predicted so far. */
+  public abstract long inputs();
+
+  /** Number of batches predicted so far. */
+  public abstract long batches();
+
+  /** Time since the job started. */
+  public abstract Duration elapsed();
+
+  /** Returns the number of inputs predicted per second so far. */
+  public double throughput() {
+    final long nanos = elapsed().toNanos();
+    return nanos == 0 ? 0 : inputs() * 1e9 / nanos;
+  }
+
+  static BulkProgress create(final long inputs, final long batches, final Duration elapsed) {
+    return new AutoValue_BulkProgress(inputs, batches, elapsed);
+  }
+
+  /** Progress notifications, called concurrently from the threads completing batches. */
+  @FunctionalInterface
+  public interface Listener {
+
+    void onProgress(BulkProgress progress);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.spotify.zoltar.Inputs;
+
+/** Splits inputs into model-sized chunks. */
+final class Chunks {
+
+  private Chunks() {}
+
+  /** Returns the next chunk of at most {@code size} inputs, or null if there are none left. */
+  static <InputT> List<InputT> next(final Iterator<? extends InputT> inputs, final int size) {
+    return next(inputs, Collections.emptyList(), size);
+  }
+
+  /**
+   * Returns the next chunk of at most {@code size} inputs of the source list, or null if there
+   * are none left. Chunks keep the array type of the source, see {@link Inputs#newList(List,
+   * int)}.
+   */
+  static <InputT> List<InputT> next(
+      final Iterator<? extends InputT> inputs,
+      final List<? extends InputT> source,
+      final int size) {
+    if (!inputs.hasNext()) {
+      return null;
+    }
+    final List<InputT> chunk = Inputs.newList(source, size);
+    while (chunk.size() < size && inputs.hasNext()) {
+      chunk.add(inputs.next());
+    }
+    return chunk;
+  }
+
+  /** Returns a view of the {@code index}-th chunk of at most {@code size} inputs. */
+  static <InputT> List<InputT> slice(final List<InputT> inputs, final int index, final int size) {
+    final int from = index * size;
+    return inputs.subList(from, Math.min(from + size, inputs.size()));
+  }
+
+  /** Returns the number of chunks of at most {@code size} inputs. */
+  static int count(final int inputs, final int size) {
+    return (inputs + size - 1) / size;
+  }
+
+  static void checkSize(final String name, final int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException(name + " must be positive: " + size);
+    }
+  }
+}
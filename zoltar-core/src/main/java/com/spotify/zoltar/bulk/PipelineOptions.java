@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.auto.value.AutoValue;
+
+/** Options of the pipelined predictor, see {@link PipelinedPredictorBuilder}. */
+@AutoValue
+public abstract class PipelineOptions {
+
+  /** Maximum number of inputs per chunk. */
+  public abstract int chunkSize();
+
+  /** Maximum number of chunks extracted concurrently. */
+  public abstract int extractParallelism();
+
+  /** Maximum number of chunks in the predict fn concurrently. */
+  public abstract int predictParallelism();
+
+  /**
+   * Maximum number of chunks extracted, or being extracted, but not yet handed to the predict fn.
+   * Bounds the vectors held in memory when extraction outpaces inference.
+   */
+  public abstract int queueCapacity();
+
+  /** Executor that runs feature extraction, it must not run tasks on the calling thread. */
+  public abstract Executor extractExecutor();
+
+  /**
+   * Returns a builder, by default chunks of 256 inputs, one extraction overlapping one inference,
+   * with extraction on the common {@link ForkJoinPool}.
+   */
+  public static Builder builder() {
+    return new AutoValue_PipelineOptions.Builder()
+        .chunkSize(256)
+        .extractParallelism(1)
+        .predictParallelism(1)
+        .queueCapacity(2)
+        .extractExecutor(ForkJoinPool.commonPool());
+  }
+
+  /** Builder for {@link PipelineOptions}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    public abstract Builder chunkSize(int chunkSize);
+
+    public abstract Builder extractParallelism(int extractParallelism);
+
+    public abstract Builder predictParallelism(int predictParallelism);
+
+    public abstract Builder queueCapacity(int queueCapacity);
+
+    public abstract Builder extractExecutor(Executor executor);
+
+    abstract PipelineOptions autoBuild();
+
+    /** Builds the options. */
+    public PipelineOptions build() {
+      final PipelineOptions options = autoBuild();
+      Chunks.checkSize("chunkSize", options.chunkSize());
+      Chunks.checkSize("extractParallelism", options.extractParallelism());
+      Chunks.checkSize("predictParallelism", options.predictParallelism());
+      Chunks.checkSize("queueCapacity", options.queueCapacity());
+      return options;
+    }
+  }
+}
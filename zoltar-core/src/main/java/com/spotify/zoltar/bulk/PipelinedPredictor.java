@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Inputs;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Vector;
+
+/**
+ * {@link Predictor} that splits a call's inputs into chunks and runs them through a two stage
+ * pipeline, so that extraction of a chunk overlaps inference of the previous ones.
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+final class PipelinedPredictor<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements Predictor<InputT, ValueT> {
+
+  private final ModelLoader<ModelT> modelLoader;
+  private final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor;
+  private final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn;
+  private final PipelineOptions options;
+
+  private PipelinedPredictor(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+      final PipelineOptions options) {
+    this.modelLoader = modelLoader;
+    this.featureExtractor = featureExtractor;
+    this.predictFn = predictFn;
+    this.options = options;
+  }
+
+  static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      PipelinedPredictor<ModelT, InputT, VectorT, ValueT> create(
+          final ModelLoader<ModelT> modelLoader,
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+          final PipelineOptions options) {
+    return new PipelinedPredictor<>(modelLoader, featureExtractor, predictFn, options);
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    return predict(scheduler, timeout, Inputs.view(inputs));
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final List<InputT> inputs) {
+    final Deadline deadline = Deadline.after(timeout);
+    final CompletableFuture<List<Prediction<InputT, ValueT>>> future =
+        modelLoader
+            .lease()
+            .thenCompose(lease -> new Pipeline(lease, deadline, inputs).start())
+            .toCompletableFuture();
+
+    final ScheduledFuture<?> schedule =
+        scheduler.schedule(
+            () -> {
+              future.completeExceptionally(new TimeoutException());
+              deadline.cancel();
+            },
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS);
+
+    future.whenComplete(
+        (r, t) -> {
+          schedule.cancel(true);
+          if (t != null) {
+            deadline.cancel();
+          }
+        });
+
+    return future;
+  }
+
+  /** State of a single predict call. Stage transitions happen under the pipeline's lock. */
+  private final class Pipeline {
+
+    private final ModelLease<ModelT> lease;
+    private final Deadline deadline;
+    private final List<InputT> inputs;
+    private final int chunks;
+    private final Queue<Extracted> ready = new ArrayDeque<>();
+    private final List<List<Prediction<InputT, ValueT>>> results;
+    private final CompletableFuture<List<Prediction<InputT, ValueT>>> result =
+        new CompletableFuture<>();
+    private int next;
+    private int extracting;
+    private int predicting;
+    private int predicted;
+    private boolean released;
+
+    private Pipeline(
+        final ModelLease<ModelT> lease, final Deadline deadline, final List<InputT> inputs) {
+      this.lease = lease;
+      this.deadline = deadline;
+      this.inputs = inputs;
+      this.chunks = Chunks.count(inputs.size(), options.chunkSize());
+      this.results = new ArrayList<>(chunks);
+      for (int i = 0; i < chunks; i++) {
+        results.add(null);
+      }
+    }
+
+    private CompletableFuture<List<Prediction<InputT, ValueT>>> start() {
+      // the caller may give up on a timeout, stop feeding the pipeline from then on.
+      deadline.onCancel(() -> fail(new CancellationException("prediction cancelled")));
+      if (chunks == 0) {
+        result.complete(new ArrayList<>());
+      }
+      pump();
+      return result;
+    }
+
+    // Starts as much work as the bounds allow, the stages themselves run outside of the lock.
+    private void pump() {
+      final List<Integer> toExtract = new ArrayList<>();
+      final List<Extracted> toPredict = new ArrayList<>();
+      synchronized (this) {
+        if (result.isDone()) {
+          releaseIfIdle();
+          return;
+        }
+        while (next < chunks
+            && extracting < options.extractParallelism()
+            && extracting + ready.size() < options.queueCapacity()) {
+          toExtract.add(next++);
+          extracting++;
+        }
+        while (predicting < options.predictParallelism() && !ready.isEmpty()) {
+          toPredict.add(ready.poll());
+          predicting++;
+        }
+      }
+      toExtract.forEach(this::extract);
+      toPredict.forEach(this::predict);
+    }
+
+    private void extract(final int index) {
+      final List<InputT> chunk = Chunks.slice(inputs, index, options.chunkSize());
+      CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return featureExtractor.extract(lease.model(), deadline, chunk);
+                } catch (final Exception e) {
+                  throw new CompletionException(e);
+                }
+              },
+              options.extractExecutor())
+          .whenComplete(
+              (vectors, t) -> {
+                synchronized (this) {
+                  extracting--;
+                  if (t == null) {
+                    ready.add(new Extracted(index, vectors));
+                  }
+                }
+                if (t != null) {
+                  fail(t);
+                }
+                pump();
+              });
+    }
+
+    private void predict(final Extracted extracted) {
+      final CompletionStage<List<Prediction<InputT, ValueT>>> prediction;
+      try {
+        prediction = predictFn.apply(lease.model(), extracted.vectors, deadline);
+      } catch (final RuntimeException e) {
+        onPredicted(extracted.index, null, e);
+        return;
+      }
+      prediction.whenComplete((predictions, t) -> onPredicted(extracted.index, predictions, t));
+    }
+
+    private void onPredicted(
+        final int index, final List<Prediction<InputT, ValueT>> predictions, final Throwable t) {
+      final boolean done;
+      synchronized (this) {
+        predicting--;
+        if (t == null) {
+          results.set(index, predictions);
+          predicted++;
+        }
+        done = t == null && predicted == chunks;
+      }
+      if (t != null) {
+        fail(t);
+      } else if (done) {
+        final List<Prediction<InputT, ValueT>> merged = new ArrayList<>(inputs.size());
+        results.forEach(merged::addAll);
+        result.complete(merged);
+      }
+      pump();
+    }
+
+    private void fail(final Throwable t) {
+      result.completeExceptionally(t);
+    }
+
+    // The lease is returned once no stage uses the model anymore.
+    private void releaseIfIdle() {
+      if (!released && extracting == 0 && predicting == 0) {
+        released = true;
+        lease.close();
+      }
+    }
+  }
+
+  /** Extracted chunk waiting for inference. */
+  private final class Extracted {
+
+    private final int index;
+    private final List<Vector<InputT, VectorT>> vectors;
+
+    private Extracted(final int index, final List<Vector<InputT, VectorT>> vectors) {
+      this.index = index;
+      this.vectors = vectors;
+    }
+  }
+}
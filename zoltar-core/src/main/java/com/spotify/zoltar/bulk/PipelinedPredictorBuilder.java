@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.util.function.Function;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * {@link PredictorBuilder} that creates a pipelined {@link Predictor}. The inputs of each call are
+ * split into chunks, and extraction of the next chunks runs while the previous ones are in the
+ * predict fn, e.g. CPU heavy Featran extraction overlaps native TensorFlow inference. Bounded
+ * queues between the stages cap the extracted vectors held in memory, and predictions are merged
+ * back in input order. The pipeline runs the builder's extractor and predict fn itself, so it
+ * should decorate the base builder, before decorators that wrap the predictor.
+ *
+ * <pre>{@code
+ * final Predictor<Iris, Long> predictor =
+ *     Predictors.newBuilder(loader, extractFn, predictFn)
+ *         .with(
+ *             PipelinedPredictorBuilder.create(
+ *                 PipelineOptions.builder().chunkSize(512).extractParallelism(2).build()))
+ *         .predictor();
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+@AutoValue
+public abstract class PipelinedPredictorBuilder<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements PredictorBuilder<ModelT, InputT, VectorT, ValueT> {
+
+  public abstract PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder();
+
+  public abstract PipelineOptions options();
+
+  /**
+   * Pipelines the predictions of an existent predictor builder.
+   *
+   * @param options chunk size, per stage parallelism and queue bounds.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              PipelinedPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final PipelineOptions options) {
+    return predictorBuilder -> new AutoValue_PipelinedPredictorBuilder<>(predictorBuilder, options);
+  }
+
+  @Override
+  public Predictor<InputT, ValueT> predictor() {
+    return PipelinedPredictor.create(modelLoader(), featureExtractor(), predictFn(), options());
+  }
+
+  @Override
+  public ModelLoader<ModelT> modelLoader() {
+    return predictorBuilder().modelLoader();
+  }
+
+  @Override
+  public FeatureExtractor<ModelT, InputT, VectorT> featureExtractor() {
+    return predictorBuilder().featureExtractor();
+  }
+
+  @Override
+  public AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn() {
+    return predictorBuilder().predictFn();
+  }
+
+  @Override
+  public PipelinedPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    final PredictorBuilder<ModelT, InputT, VectorT, ValueT> pb =
+        predictorBuilder().with(modelLoader, featureExtractor, predictFn);
+
+    return PipelinedPredictorBuilder.<ModelT, InputT, VectorT, ValueT>create(options()).apply(pb);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * Streams inputs through a {@link Predictor}, for input sets that don't fit in memory. Inputs are
+ * chunked into model-sized batches and pulled lazily, a bounded number of batches is in flight at
+ * any time, and predictions are emitted in input order as the downstream consumes them. Memory
+ * stays bounded by {@code batchSize * maxInFlight} however large the input is.
+ *
+ * <pre>{@code
+ * final StreamingPredictor<Iris, Long> streaming =
+ *     StreamingPredictor.create(predictorBuilder, Options.builder().batchSize(1024).build());
+ * try (Stream<Prediction<Iris, Long>> predictions = streaming.predict(readIrises())) {
+ *   predictions.forEach(writer::write);
+ * }
+ * }</pre>
+ *
+ * @param <InputT> type of the feature extraction input.
+ * @param <ValueT> type of the prediction output.
+ */
+public final class StreamingPredictor<InputT, ValueT> {
+
+  private final Predictor<InputT, ValueT> predictor;
+  private final Options options;
+
+  private StreamingPredictor(final Predictor<InputT, ValueT> predictor, final Options options) {
+    this.predictor = predictor;
+    this.options = options;
+  }
+
+  /**
+   * Creates a streaming predictor.
+   *
+   * @param predictor predictor each batch goes through.
+   * @param options batching and in flight bounds.
+   */
+  public static <InputT, ValueT> StreamingPredictor<InputT, ValueT> create(
+      final Predictor<InputT, ValueT> predictor, final Options options) {
+    return new StreamingPredictor<>(predictor, options);
+  }
+
+  /**
+   * Creates a streaming predictor from a builder's {@link PredictorBuilder#predictor()}.
+   *
+   * @param predictorBuilder builder of the predictor each batch goes through.
+   * @param options batching and in flight bounds.
+   */
+  public static <InputT, ValueT> StreamingPredictor<InputT, ValueT> create(
+      final PredictorBuilder<?, InputT, ?, ValueT> predictorBuilder, final Options options) {
+    return create(predictorBuilder.predictor(), options);
+  }
+
+  /**
+   * Returns a lazy, sequential, stream of predictions in input order. Closing it closes the input
+   * stream. A failed batch fails the stream with a {@link java.util.concurrent.CompletionException}
+   * when its predictions are reached.
+   */
+  public Stream<Prediction<InputT, ValueT>> predict(final Stream<? extends InputT> inputs) {
+    return StreamSupport.stream(new PredictionSpliterator(inputs.iterator()), false)
+        .onClose(inputs::close);
+  }
+
+  /** Returns a lazy iterator of predictions in input order. */
+  public Iterator<Prediction<InputT, ValueT>> predict(final Iterator<? extends InputT> inputs) {
+    return Spliterators.iterator(new PredictionSpliterator(inputs));
+  }
+
+  /** Pulls batches as predictions are consumed, keeping up to maxInFlight of them outstanding. */
+  private final class PredictionSpliterator
+      extends Spliterators.AbstractSpliterator<Prediction<InputT, ValueT>> {
+
+    private final Iterator<? extends InputT> inputs;
+    private final Queue<CompletableFuture<List<Prediction<InputT, ValueT>>>> inFlight =
+        new ArrayDeque<>();
+    private Iterator<Prediction<InputT, ValueT>> current = Collections.emptyIterator();
+
+    private PredictionSpliterator(final Iterator<? extends InputT> inputs) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.inputs = inputs;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Prediction<InputT, ValueT>> action) {
+      while (!current.hasNext()) {
+        fill();
+        final CompletableFuture<List<Prediction<InputT, ValueT>>> next = inFlight.poll();
+        if (next == null) {
+          return false;
+        }
+        current = next.join().iterator();
+      }
+      action.accept(current.next());
+      return true;
+    }
+
+    private void fill() {
+      while (inFlight.size() < options.maxInFlight()) {
+        final List<InputT> chunk = Chunks.next(inputs, options.batchSize());
+        if (chunk == null) {
+          return;
+        }
+        inFlight.add(predictor.predict(options.timeout(), chunk).toCompletableFuture());
+      }
+    }
+  }
+
+  /** Streaming options. */
+  @AutoValue
+  public abstract static class Options {
+
+    /** Maximum number of inputs per predictor call. */
+    public abstract int batchSize();
+
+    /** Maximum number of batches in flight. */
+    public abstract int maxInFlight();
+
+    /** Timeout of each batch. */
+    public abstract Duration timeout();
+
+    /** Returns a builder, by default batches of 256 inputs, 4 in flight and a 1 minute timeout. */
+    public static Builder builder() {
+      return new AutoValue_StreamingPredictor_Options.Builder()
+          .batchSize(256)
+          .maxInFlight(4)
+          .timeout(Duration.ofMinutes(1));
+    }
+
+    /** Builder for {@link Options}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+
+      public abstract Builder batchSize(int batchSize);
+
+      public abstract Builder maxInFlight(int maxInFlight);
+
+      public abstract Builder timeout(Duration timeout);
+
+      abstract Options autoBuild();
+
+      /** Builds the options. */
+      public Options build() {
+        final Options options = autoBuild();
+        Chunks.checkSize("batchSize", options.batchSize());
+        Chunks.checkSize("maxInFlight", options.maxInFlight());
+        return options;
+      }
+    }
+  }
+}
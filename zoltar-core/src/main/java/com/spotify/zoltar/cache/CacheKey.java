@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.Model;
+
+/** Cache key, values computed with different model instances never share a key. */
+@AutoValue
+abstract class CacheKey {
+
+  abstract Model.Id modelId();
+
+  abstract long generation();
+
+  abstract Object inputKey();
+
+  static CacheKey create(final Model.Id modelId, final long generation, final Object inputKey) {
+    return new AutoValue_CacheKey(modelId, generation, inputKey);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Options of a prediction cache, see {@link CachingPredictorBuilder}.
+ *
+ * @param <InputT> type of the prediction input.
+ * @param <ValueT> type of the prediction result.
+ */
+@AutoValue
+public abstract class CacheOptions<InputT, ValueT> {
+
+  /** Maps an input to its cache key, inputs with equal keys share the cached prediction. */
+  public abstract Function<InputT, ?> keyFn();
+
+  /**
+   * Maximum number of cached predictions or, if a {@link #weigher()} is set, maximum total weight
+   * of the cached predictions.
+   */
+  public abstract long maximumSize();
+
+  /** Weight of a cached prediction value. */
+  public abstract Optional<ToIntFunction<ValueT>> weigher();
+
+  /** Cached predictions expire after this amount of time since they were computed. */
+  public abstract Optional<Duration> expireAfterWrite();
+
+  /**
+   * Cached predictions older than this are still served but recomputed in the background, so that
+   * popular inputs don't see a miss when they expire.
+   */
+  public abstract Optional<Duration> refreshAfterWrite();
+
+  /**
+   * Whether frequency admission is used. Once the cache is full, a new prediction is only cached
+   * if its input was requested more than once recently, as estimated by a count-min sketch, so
+   * one-hit wonders don't evict popular entries. Unlike TinyLFU, the frequency isn't compared with
+   * the one of the entry that would be evicted.
+   */
+  public abstract boolean admission();
+
+  /**
+   * Returns a builder with a maximum size of 10000 predictions, frequency admission and no
+   * expiration.
+   *
+   * @param keyFn maps an input to its cache key.
+   */
+  public static <InputT, ValueT> Builder<InputT, ValueT> builder(
+      final Function<InputT, ?> keyFn) {
+    return new AutoValue_CacheOptions.Builder<InputT, ValueT>()
+        .keyFn(keyFn)
+        .maximumSize(10_000)
+        .admission(true);
+  }
+
+  /** Builder for {@link CacheOptions}. */
+  @AutoValue.Builder
+  public abstract static class Builder<InputT, ValueT> {
+
+    abstract Builder<InputT, ValueT> keyFn(Function<InputT, ?> keyFn);
+
+    public abstract Builder<InputT, ValueT> maximumSize(long maximumSize);
+
+    public abstract Builder<InputT, ValueT> weigher(ToIntFunction<ValueT> weigher);
+
+    public abstract Builder<InputT, ValueT> expireAfterWrite(Duration duration);
+
+    public abstract Builder<InputT, ValueT> refreshAfterWrite(Duration duration);
+
+    public abstract Builder<InputT, ValueT> admission(boolean admission);
+
+    abstract CacheOptions<InputT, ValueT> autoBuild();
+
+    /** Builds the options. */
+    public CacheOptions<InputT, ValueT> build() {
+      final CacheOptions<InputT, ValueT> options = autoBuild();
+      if (options.maximumSize() < 0) {
+        throw new IllegalArgumentException("maximumSize must not be negative");
+      }
+      return options;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * {@link Predictor} that serves repeated inputs from a cache and only sends the misses of a batch
+ * to the underlying predictor. Predictions are cached by the predict function, under the model
+ * instance that computed them, so they're never attributed to a model the underlying predictor
+ * didn't lease.
+ *
+ * <p>A cached prediction is only served while the {@link ModelLoader} hands out the instance that
+ * computed it, or one seen before it. Once a newer instance shows up, e.g. a model reloaded under
+ * the same {@link Model.Id} by {@link com.spotify.zoltar.loaders.ReloadingModelLoader}, the
+ * predictions of the previous ones are recomputed. With pooled loaders every instance is seen once
+ * and the cache converges on the predictions of the last one. The cache is cleared whenever the
+ * loader hands out a model with a new id.
+ */
+final class CachingPredictor<ModelT extends Model<?>, InputT, ValueT>
+    implements Predictor<InputT, ValueT> {
+
+  // once the cache is full, inputs seen fewer times than this recently aren't admitted.
+  private static final int ADMISSION_FREQUENCY = 2;
+
+  private final ModelLoader<ModelT> modelLoader;
+  // runs the misses, its predict function caches what it computes.
+  private final Predictor<InputT, ValueT> predictor;
+  private final Function<InputT, ?> keyFn;
+  private final Cache<CacheKey, Entry<ValueT>> cache;
+  private final FrequencySketch sketch;
+  private final long refreshNanos;
+  private final Set<CacheKey> refreshing = ConcurrentHashMap.newKeySet();
+  // predictions of a previous model id are unreachable, drop them.
+  private final ModelGeneration generations = new ModelGeneration(this::invalidateAll);
+  private volatile boolean full;
+
+  private <VectorT> CachingPredictor(
+      final PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder,
+      final CacheOptions<InputT, ValueT> options) {
+    final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn = predictorBuilder.predictFn();
+    this.modelLoader = predictorBuilder.modelLoader();
+    this.predictor =
+        predictorBuilder
+            .with(
+                modelLoader,
+                predictorBuilder.featureExtractor(),
+                (model, vectors) ->
+                    predictFn
+                        .apply(model, vectors)
+                        .thenApply(
+                            predictions -> {
+                              admit(model, predictions);
+                              return predictions;
+                            }))
+            .predictor();
+    this.keyFn = options.keyFn();
+    this.cache = newCache(options);
+    this.sketch = options.admission() ? FrequencySketch.create(options.maximumSize()) : null;
+    this.refreshNanos = options.refreshAfterWrite().map(Duration::toNanos).orElse(Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a caching predictor.
+   *
+   * @param predictorBuilder builder of the predictor the misses go through, it's rebuilt with a
+   *     predict function that caches the predictions.
+   * @param options cache key, bounds and expiration.
+   */
+  static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      CachingPredictor<ModelT, InputT, ValueT> create(
+          final PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder,
+          final CacheOptions<InputT, ValueT> options) {
+    return new CachingPredictor<>(predictorBuilder, options);
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    // the timeout bounds the model loading as well, the misses get whatever budget is left.
+    final Deadline deadline = Deadline.after(timeout);
+    final CompletableFuture<List<Prediction<InputT, ValueT>>> future =
+        modelLoader
+            .get()
+            .thenCompose(model -> predict(model, scheduler, deadline.remaining(), inputs))
+            .toCompletableFuture();
+
+    final ScheduledFuture<?> schedule =
+        scheduler.schedule(
+            () -> {
+              future.completeExceptionally(new TimeoutException());
+            },
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS);
+
+    future.whenComplete((r, t) -> schedule.cancel(true));
+
+    return future;
+  }
+
+  /** Returns the cache statistics. */
+  CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Discards all cached predictions, see {@link CachingPredictorBuilder#invalidateAll()}. */
+  void invalidateAll() {
+    cache.invalidateAll();
+    full = false;
+  }
+
+  private CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ModelT model,
+      final ScheduledExecutorService scheduler,
+      final Duration timeout,
+      final InputT[] inputs) {
+    final long generation = generations.of(model);
+    final long instance = generations.instance(model);
+    final int n = inputs.length;
+    final CacheKey[] keys = new CacheKey[n];
+    final List<Entry<ValueT>> hits = new ArrayList<>(n);
+    final Map<CacheKey, Integer> missIndex = new HashMap<>();
+    final InputT[] misses = Arrays.copyOf(inputs, n);
+    int missCount = 0;
+
+    for (int i = 0; i < n; i++) {
+      final Object inputKey = keyFn.apply(inputs[i]);
+      final CacheKey key = CacheKey.create(model.id(), generation, inputKey);
+      keys[i] = key;
+      if (sketch != null) {
+        sketch.increment(inputKey);
+      }
+
+      final Entry<ValueT> cached = cache.getIfPresent(key);
+      // computed by an instance older than the one handed out, e.g. before a reload.
+      final Entry<ValueT> entry = cached != null && cached.instance() >= instance ? cached : null;
+      hits.add(entry);
+      if (entry != null) {
+        maybeRefresh(key, entry, scheduler, timeout, Arrays.copyOfRange(inputs, i, i + 1));
+      } else if (!missIndex.containsKey(key)) {
+        missIndex.put(key, missCount);
+        misses[missCount++] = inputs[i];
+      }
+    }
+
+    if (missCount == 0) {
+      return CompletableFuture.completedFuture(assemble(inputs, hits, keys, missIndex, null));
+    }
+
+    final int expected = missCount;
+    return predictor
+        .predict(scheduler, timeout, Arrays.copyOf(misses, missCount))
+        .thenApply(
+            predictions -> {
+              if (predictions.size() != expected) {
+                throw new IllegalStateException(
+                    String.format(
+                        "expected %d predictions, got %d", expected, predictions.size()));
+              }
+              return assemble(inputs, hits, keys, missIndex, predictions);
+            });
+  }
+
+  private List<Prediction<InputT, ValueT>> assemble(
+      final InputT[] inputs,
+      final List<Entry<ValueT>> hits,
+      final CacheKey[] keys,
+      final Map<CacheKey, Integer> missIndex,
+      final List<Prediction<InputT, ValueT>> predictions) {
+    final List<Prediction<InputT, ValueT>> result = new ArrayList<>(inputs.length);
+    for (int i = 0; i < inputs.length; i++) {
+      final Entry<ValueT> hit = hits.get(i);
+      final ValueT value =
+          hit != null ? hit.value() : predictions.get(missIndex.get(keys[i])).value();
+      result.add(Prediction.create(inputs[i], value));
+    }
+    return result;
+  }
+
+  /** Caches the predictions computed by the given model, unless a newer model replaced it. */
+  private void admit(final ModelT model, final List<Prediction<InputT, ValueT>> predictions) {
+    final long generation = generations.current(model);
+    if (generation < 0) {
+      return;
+    }
+    final long instance = generations.instance(model);
+    final long now = System.nanoTime();
+    for (final Prediction<InputT, ValueT> prediction : predictions) {
+      final Object inputKey = keyFn.apply(prediction.input());
+      if (sketch != null && full && sketch.frequency(inputKey) < ADMISSION_FREQUENCY) {
+        continue;
+      }
+      // a late prediction of an older instance never replaces one of a newer instance.
+      cache
+          .asMap()
+          .merge(
+              CacheKey.create(model.id(), generation, inputKey),
+              Entry.create(prediction.value(), now, instance),
+              (cached, computed) -> cached.instance() > computed.instance() ? cached : computed);
+    }
+  }
+
+  private void maybeRefresh(
+      final CacheKey key,
+      final Entry<ValueT> entry,
+      final ScheduledExecutorService scheduler,
+      final Duration timeout,
+      final InputT[] input) {
+    if (System.nanoTime() - entry.writeNanos() < refreshNanos || !refreshing.add(key)) {
+      return;
+    }
+    predictor
+        .predict(scheduler, timeout, input)
+        // the predict function caches the recomputed prediction.
+        .whenComplete((predictions, t) -> refreshing.remove(key));
+  }
+
+  private Cache<CacheKey, Entry<ValueT>> newCache(final CacheOptions<InputT, ValueT> options) {
+    final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (options.weigher().isPresent()) {
+      builder
+          .maximumWeight(options.maximumSize())
+          .weigher(
+              (final CacheKey key, final Entry<ValueT> entry) ->
+                  options.weigher().get().applyAsInt(entry.value()));
+    } else {
+      builder.maximumSize(options.maximumSize());
+    }
+    options
+        .expireAfterWrite()
+        .ifPresent(d -> builder.expireAfterWrite(d.toNanos(), TimeUnit.NANOSECONDS));
+
+    return builder
+        .removalListener(
+            (final RemovalNotification<CacheKey, Entry<ValueT>> n) -> {
+              if (n.getCause() == RemovalCause.SIZE) {
+                full = true;
+              }
+            })
+        .build();
+  }
+
+  /** Cached prediction value. */
+  @AutoValue
+  abstract static class Entry<ValueT> {
+
+    abstract ValueT value();
+
+    abstract long writeNanos();
+
+    /** Number of the model instance that computed the value, see {@link ModelGeneration}. */
+    abstract long instance();
+
+    static <ValueT> Entry<ValueT> create(
+        final ValueT value, final long writeNanos, final long instance) {
+      return new AutoValue_CachingPredictor_Entry<>(value, writeNanos, instance);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.util.function.Function;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.cache.CacheStats;
+
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * {@link PredictorBuilder} that creates a {@link Predictor} with a prediction cache. Predictions
+ * are cached by an input key under the model instance that computed them, only the cache misses
+ * of a batch go through feature extraction and the model. Predictions are recomputed
+ * automatically once the {@link ModelLoader} hands out a new model instance, even under the same
+ * {@link Model.Id}, call {@link #invalidateAll()} to discard them for any other reason.
+ *
+ * <pre>{@code
+ * final Predictor<Iris, Long> predictor =
+ *     Predictors.newBuilder(loader, extractFn, predictFn)
+ *         .with(
+ *             CachingPredictorBuilder.create(
+ *                 CacheOptions.<Iris, Long>builder(Iris::id)
+ *                     .maximumSize(100_000)
+ *                     .expireAfterWrite(Duration.ofMinutes(10))
+ *                     .refreshAfterWrite(Duration.ofMinutes(5))
+ *                     .build()))
+ *         .predictor();
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+@AutoValue
+public abstract class CachingPredictorBuilder<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements PredictorBuilder<ModelT, InputT, VectorT, ValueT> {
+
+  public abstract PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder();
+
+  public abstract CacheOptions<InputT, ValueT> options();
+
+  abstract CachingPredictor<ModelT, InputT, ValueT> cachingPredictor();
+
+  /**
+   * Adds a prediction cache to an existent predictor builder.
+   *
+   * @param options cache key, bounds and expiration.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              CachingPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final CacheOptions<InputT, ValueT> options) {
+    return predictorBuilder -> {
+      final CachingPredictor<ModelT, InputT, ValueT> predictor =
+          CachingPredictor.create(predictorBuilder, options);
+
+      return new AutoValue_CachingPredictorBuilder<>(predictorBuilder, options, predictor);
+    };
+  }
+
+  @Override
+  public Predictor<InputT, ValueT> predictor() {
+    return cachingPredictor();
+  }
+
+  /** Returns the hit, miss and eviction statistics of the prediction cache. */
+  public CacheStats stats() {
+    return cachingPredictor().stats();
+  }
+
+  /** Discards all cached predictions. */
+  public void invalidateAll() {
+    cachingPredictor().invalidateAll();
+  }
+
+  @Override
+  public ModelLoader<ModelT> modelLoader() {
+    return predictorBuilder().modelLoader();
+  }
+
+  @Override
+  public FeatureExtractor<ModelT, InputT, VectorT> featureExtractor() {
+    return predictorBuilder().featureExtractor();
+  }
+
+  @Override
+  public AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn() {
+    return predictorBuilder().predictFn();
+  }
+
+  @Override
+  public CachingPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    final PredictorBuilder<ModelT, InputT, VectorT, ValueT> pb =
+        predictorBuilder().with(modelLoader, featureExtractor, predictFn);
+
+    return CachingPredictorBuilder.<ModelT, InputT, VectorT, ValueT>create(options()).apply(pb);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count-min sketch of 4-bit counters that estimates how often an element was seen, with
+ * periodic aging so the estimate follows the recent popularity of an element. The sketch is the
+ * one of TinyLFU, see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache
+ * Admission Policy</a>, the prediction cache only compares its estimates with a fixed threshold,
+ * see {@link CacheOptions#admission()}.
+ *
+ * <p>Each element maps to four counters of the same 64-bit word group, its frequency is the
+ * minimum of them. Counters saturate at 15 and are all halved once the number of increments
+ * reaches ten times the capacity.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEED = {
+    0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_CAPACITY = 1 << 20;
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private final AtomicInteger size = new AtomicInteger();
+
+  private FrequencySketch(final int capacity) {
+    final int length = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.table = new AtomicLongArray(length);
+    this.tableMask = length - 1;
+    this.sampleSize = 10 * Math.max(1, capacity);
+  }
+
+  /**
+   * Creates a sketch sized for the given number of distinct elements.
+   *
+   * @param capacity expected number of distinct elements, e.g. the maximum size of the cache.
+   */
+  static FrequencySketch create(final long capacity) {
+    return new FrequencySketch((int) Math.min(Math.max(1, capacity), MAX_CAPACITY));
+  }
+
+  /** Returns the estimated number of occurrences of the element, up to 15. */
+  int frequency(final Object e) {
+    final int hash = spread(e.hashCode());
+    final int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      final int offset = (start + i) << 2;
+      final int count = (int) ((table.get(indexOf(hash, i)) >>> offset) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /** Records an occurrence of the element, ages all counters once the sample is complete. */
+  void increment(final Object e) {
+    final int hash = spread(e.hashCode());
+    final int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && size.incrementAndGet() >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(final int index, final int counter) {
+    final int offset = counter << 2;
+    final long mask = 0xfL << offset;
+    while (true) {
+      final long current = table.get(index);
+      if ((current & mask) == mask) {
+        return false;
+      }
+      if (table.compareAndSet(index, current, current + (1L << offset))) {
+        return true;
+      }
+    }
+  }
+
+  private void reset() {
+    final int current = size.get();
+    // a single thread wins the right to age the counters.
+    if (current < sampleSize || !size.compareAndSet(current, current >>> 1)) {
+      return;
+    }
+    for (int i = 0; i < table.length(); i++) {
+      long value;
+      do {
+        value = table.get(i);
+      } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+    }
+  }
+
+  private int indexOf(final int hash, final int depth) {
+    long h = (hash + SEED[depth]) * SEED[depth];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(final int hash) {
+    int x = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
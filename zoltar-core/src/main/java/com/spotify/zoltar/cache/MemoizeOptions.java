@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Options of a feature vector cache, see {@link MemoizingFeatureExtractor}.
+ *
+ * @param <InputT> type of the feature extraction input.
+ * @param <VectorT> type of the feature extraction result.
+ */
+@AutoValue
+public abstract class MemoizeOptions<InputT, VectorT> {
+
+  /** Maps an input to its cache key, inputs with equal keys share the cached vector. */
+  public abstract Function<InputT, ?> keyFn();
+
+  /**
+   * Maximum number of cached vectors or, if a {@link #weigher()} or {@link #codec()} is set,
+   * maximum total weight of the cached vectors. The weight of an off-heap vector is its size in
+   * bytes.
+   */
+  public abstract long maximumSize();
+
+  /** Weight of a cached vector kept on-heap. */
+  public abstract Optional<ToIntFunction<VectorT>> weigher();
+
+  /** Cached vectors expire after this amount of time since they were computed. */
+  public abstract Optional<Duration> expireAfterWrite();
+
+  /**
+   * If set, vectors are serialized with the codec and stored in slots of 1MiB direct slabs,
+   * outside of the Java heap, so that a large cache doesn't add to the GC's work. Evicted slots
+   * are reused rather than left for the GC to free.
+   */
+  public abstract Optional<VectorCodec<VectorT>> codec();
+
+  /**
+   * Returns a builder with a maximum size of 10000 on-heap vectors and no expiration.
+   *
+   * @param keyFn maps an input to its cache key.
+   */
+  public static <InputT, VectorT> Builder<InputT, VectorT> builder(
+      final Function<InputT, ?> keyFn) {
+    return new AutoValue_MemoizeOptions.Builder<InputT, VectorT>()
+        .keyFn(keyFn)
+        .maximumSize(10_000);
+  }
+
+  /** Builder for {@link MemoizeOptions}. */
+  @AutoValue.Builder
+  public abstract static class Builder<InputT, VectorT> {
+
+    abstract Builder<InputT, VectorT> keyFn(Function<InputT, ?> keyFn);
+
+    public abstract Builder<InputT, VectorT> maximumSize(long maximumSize);
+
+    public abstract Builder<InputT, VectorT> weigher(ToIntFunction<VectorT> weigher);
+
+    public abstract Builder<InputT, VectorT> expireAfterWrite(Duration duration);
+
+    public abstract Builder<InputT, VectorT> codec(VectorCodec<VectorT> codec);
+
+    abstract MemoizeOptions<InputT, VectorT> autoBuild();
+
+    /** Builds the options. */
+    public MemoizeOptions<InputT, VectorT> build() {
+      final MemoizeOptions<InputT, VectorT> options = autoBuild();
+      if (options.maximumSize() < 0) {
+        throw new IllegalArgumentException("maximumSize must not be negative");
+      }
+      if (options.weigher().isPresent() && options.codec().isPresent()) {
+        throw new IllegalArgumentException("off-heap vectors are weighed by their size in bytes");
+      }
+      return options;
+    }
+  }
+}
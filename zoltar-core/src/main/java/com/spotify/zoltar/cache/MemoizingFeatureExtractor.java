@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+
+import com.spotify.zoltar.BufferArena;
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.Vector;
+
+/**
+ * {@link FeatureExtractor} decorator that memoizes feature vectors per input key, so recurring
+ * inputs skip the, often expensive, feature extraction. Only the cache misses of a batch are
+ * extracted. Vectors are optionally serialized and kept off-heap, see {@link
+ * MemoizeOptions#codec()}. The cache is cleared when a model with a new {@link Model.Id} shows up.
+ * Vectors kept on-heap are extracted without the predictor's {@link BufferArena}, so memoized
+ * vectors never share a pooled buffer with another prediction.
+ *
+ * <pre>{@code
+ * final FeatureExtractor<TensorFlowModel, Iris, Example> extractor =
+ *     FeatureExtractor.<TensorFlowModel, Iris, Example>create(extractFn)
+ *         .with(
+ *             MemoizingFeatureExtractor.create(
+ *                 MemoizeOptions.<Iris, Example>builder(Iris::id)
+ *                     .maximumSize(256 * 1024 * 1024)
+ *                     .codec(VectorCodec.bytes(Example::toByteArray, Example::parseFrom))
+ *                     .build()));
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to feature extraction.
+ * @param <VectorT> type of feature extraction result.
+ */
+public final class MemoizingFeatureExtractor<ModelT extends Model<?>, InputT, VectorT>
+    implements FeatureExtractor<ModelT, InputT, VectorT> {
+
+  private final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor;
+  private final Function<InputT, ?> keyFn;
+  private final VectorCodec<VectorT> codec;
+  private final OffHeapSlabs slabs;
+  private final Cache<CacheKey, Object> cache;
+  // vectors extracted for a previous model may be stale, drop them.
+  private final ModelGeneration generations = new ModelGeneration(this::invalidateAll);
+
+  private MemoizingFeatureExtractor(
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final MemoizeOptions<InputT, VectorT> options) {
+    this.featureExtractor = featureExtractor;
+    this.keyFn = options.keyFn();
+    this.codec = options.codec().orElse(null);
+    this.slabs = codec == null ? null : new OffHeapSlabs(options.maximumSize());
+    this.cache = newCache(options);
+  }
+
+  /**
+   * Adds memoization to an existent feature extractor.
+   *
+   * @param options cache key, bounds and storage of the memoized vectors.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT>
+      Function<
+              FeatureExtractor<ModelT, InputT, VectorT>,
+              MemoizingFeatureExtractor<ModelT, InputT, VectorT>>
+          create(final MemoizeOptions<InputT, VectorT> options) {
+    return featureExtractor -> new MemoizingFeatureExtractor<>(featureExtractor, options);
+  }
+
+  /** Returns the hit, miss and eviction statistics of the vector cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Returns the number of memoized vectors. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns the off-heap memory reserved for the memoized vectors, 0 if they are kept on-heap. */
+  public long offHeapBytes() {
+    return slabs == null ? 0 : slabs.reservedBytes();
+  }
+
+  /** Discards all memoized vectors. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public List<Vector<InputT, VectorT>> extract(final ModelT model, final InputT... inputs)
+      throws Exception {
+    return extract(model, null, inputs);
+  }
+
+  @Override
+  public List<Vector<InputT, VectorT>> extract(
+      final ModelT model, final Deadline deadline, final InputT... inputs) throws Exception {
+    final long generation = generations.of(model);
+    final int n = inputs.length;
+    final CacheKey[] keys = new CacheKey[n];
+    final List<VectorT> hits = new ArrayList<>(n);
+    final Map<CacheKey, Integer> missIndex = new HashMap<>();
+    final InputT[] misses = Arrays.copyOf(inputs, n);
+    int missCount = 0;
+
+    for (int i = 0; i < n; i++) {
+      final CacheKey key = CacheKey.create(model.id(), generation, keyFn.apply(inputs[i]));
+      keys[i] = key;
+      final VectorT hit = lookup(key);
+      hits.add(hit);
+      if (hit == null && !missIndex.containsKey(key)) {
+        missIndex.put(key, missCount);
+        misses[missCount++] = inputs[i];
+      }
+    }
+
+    List<Vector<InputT, VectorT>> extracted = null;
+    if (missCount > 0) {
+      final InputT[] toExtract = Arrays.copyOf(misses, missCount);
+      final Callable<List<Vector<InputT, VectorT>>> extraction =
+          () ->
+              deadline == null
+                  ? featureExtractor.extract(model, toExtract)
+                  : featureExtractor.extract(model, deadline, toExtract);
+      // vectors kept on-heap outlive the prediction, they must not borrow pooled buffers.
+      extracted = codec == null ? BufferArena.withoutPool(extraction) : extraction.call();
+      if (extracted.size() != missCount) {
+        throw new IllegalStateException(
+            String.format("expected %d vectors, got %d", missCount, extracted.size()));
+      }
+      for (final Map.Entry<CacheKey, Integer> miss : missIndex.entrySet()) {
+        final Object stored = store(extracted.get(miss.getValue()).value());
+        if (stored != null) {
+          cache.put(miss.getKey(), stored);
+        }
+      }
+    }
+
+    final List<Vector<InputT, VectorT>> result = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final VectorT hit = hits.get(i);
+      final VectorT value = hit != null ? hit : extracted.get(missIndex.get(keys[i])).value();
+      result.add(Vector.create(inputs[i], value));
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private VectorT lookup(final CacheKey key) throws Exception {
+    final Object stored = cache.getIfPresent(key);
+    if (stored == null || codec == null) {
+      return (VectorT) stored;
+    }
+    // holds the slot so it can't be reused by another vector while it's decoded.
+    final OffHeapSlabs.Slot slot = (OffHeapSlabs.Slot) stored;
+    final ByteBuffer buffer = slot.retain();
+    if (buffer == null) {
+      return null;
+    }
+    try {
+      return codec.decode(buffer);
+    } finally {
+      slot.release();
+    }
+  }
+
+  /** Returns what the cache stores for the vector, or null if it can't be stored. */
+  private Object store(final VectorT vector) {
+    if (codec == null) {
+      return vector;
+    }
+    return slabs.store(codec.encode(vector));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <InputT, VectorT> Cache<CacheKey, Object> newCache(
+      final MemoizeOptions<InputT, VectorT> options) {
+    final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (options.codec().isPresent()) {
+      builder
+          .maximumWeight(options.maximumSize())
+          .weigher((final Object key, final Object stored) -> ((OffHeapSlabs.Slot) stored).length())
+          .removalListener(
+              (final RemovalNotification<Object, Object> n) ->
+                  ((OffHeapSlabs.Slot) n.getValue()).release());
+    } else if (options.weigher().isPresent()) {
+      builder
+          .maximumWeight(options.maximumSize())
+          .weigher(
+              (final Object key, final Object stored) ->
+                  options.weigher().get().applyAsInt((VectorT) stored));
+    } else {
+      builder.maximumSize(options.maximumSize());
+    }
+    options
+        .expireAfterWrite()
+        .ifPresent(d -> builder.expireAfterWrite(d.toNanos(), TimeUnit.NANOSECONDS));
+    return builder.build();
+  }
+}
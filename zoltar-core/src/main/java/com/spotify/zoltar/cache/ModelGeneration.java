@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.collect.MapMaker;
+
+import com.spotify.zoltar.Model;
+
+/**
+ * Numbers the models handed out by a loader. {@link #of(Model)} numbers their {@link Model.Id}s in
+ * order of appearance, and runs a callback whenever a new id shows up, e.g. to clear values
+ * computed with the previous model. Ids are compared rather than instances, since pooled loaders
+ * hand out one of several instances of the same model on every call.
+ *
+ * <p>{@link #instance(Model)} numbers the instances themselves, by identity, in the order they're
+ * first seen. A model reloaded under the same id, e.g. by {@link
+ * com.spotify.zoltar.loaders.ReloadingModelLoader}, gets a higher number than the instances it
+ * replaces.
+ */
+final class ModelGeneration {
+
+  private final AtomicReference<Current> current = new AtomicReference<>();
+  // weak identity keys, numbers don't keep retired models reachable.
+  private final ConcurrentMap<Model<?>, Long> instances = new MapMaker().weakKeys().makeMap();
+  private final AtomicLong sequence = new AtomicLong();
+  private final Runnable onSwap;
+
+  ModelGeneration(final Runnable onSwap) {
+    this.onSwap = onSwap;
+  }
+
+  /** Returns the generation of the given model's id. */
+  long of(final Model<?> model) {
+    final Model.Id id = model.id();
+    while (true) {
+      final Current c = current.get();
+      if (c != null && c.id.equals(id)) {
+        return c.generation;
+      }
+      final Current next = new Current(id, c == null ? 0 : c.generation + 1);
+      if (current.compareAndSet(c, next)) {
+        if (c != null) {
+          onSwap.run();
+        }
+        return next.generation;
+      }
+    }
+  }
+
+  /**
+   * Returns the generation of the given model's id if it's the current one, or -1 if a newer id
+   * has been seen since, without advancing the generation.
+   */
+  long current(final Model<?> model) {
+    final Current c = current.get();
+    return c != null && c.id.equals(model.id()) ? c.generation : -1;
+  }
+
+  /** Returns the number of the given model instance, instances seen later get higher numbers. */
+  long instance(final Model<?> model) {
+    final Long seen = instances.get(model);
+    if (seen != null) {
+      return seen;
+    }
+    final Long next = sequence.getAndIncrement();
+    final Long raced = instances.putIfAbsent(model, next);
+    return raced != null ? raced : next;
+  }
+
+  private static final class Current {
+    private final Model.Id id;
+    private final long generation;
+
+    private Current(final Model.Id id, final long generation) {
+      this.id = id;
+      this.generation = generation;
+    }
+  }
+}
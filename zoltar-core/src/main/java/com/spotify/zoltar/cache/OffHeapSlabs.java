@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carves the off-heap storage of memoized vectors out of large direct slabs, instead of a direct
+ * buffer per vector whose native memory is only freed by the GC. Slots come in power of two size
+ * classes, every slab is split into slots of a single class and evicted slots are reused by the
+ * next vector of their class. A slab whose slots are all free is dropped unless it's the last one
+ * of its class, so memory moves between classes as the vector sizes change.
+ *
+ * <p>Vectors larger than a slab get a direct buffer of their own.
+ */
+final class OffHeapSlabs {
+
+  static final int SLAB_SIZE = 1 << 20;
+
+  private static final int MIN_SLOT_SHIFT = 6;
+  private static final int SLAB_SHIFT = 20;
+  private static final int SIZE_CLASSES = SLAB_SHIFT - MIN_SLOT_SHIFT + 1;
+
+  private final long capacity;
+  // slabs with at least one free slot, per size class, guarded by this.
+  private final List<ArrayDeque<Slab>> available;
+  private long reserved;
+
+  /**
+   * Creates slabs for vectors of up to the given size in total. Slots round vectors up to a power
+   * of two, and a partially used slab per size class is reserved on top of that.
+   *
+   * @param maximumSize maximum size in bytes of the memoized vectors.
+   */
+  OffHeapSlabs(final long maximumSize) {
+    this.capacity = 2 * maximumSize + (long) SIZE_CLASSES * SLAB_SIZE;
+    this.available = new ArrayList<>(SIZE_CLASSES);
+    for (int i = 0; i < SIZE_CLASSES; i++) {
+      available.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Copies the encoded vector to a slot, or returns null if the capacity is exhausted.
+   *
+   * @param encoded vector read from its position to its limit.
+   */
+  Slot store(final ByteBuffer encoded) {
+    final int length = encoded.remaining();
+    final Slot slot = allocate(length);
+    if (slot != null) {
+      slot.region.put(encoded.duplicate()).clear();
+    }
+    return slot;
+  }
+
+  /** Returns the off-heap memory reserved by slabs and oversized vectors. */
+  synchronized long reservedBytes() {
+    return reserved;
+  }
+
+  private synchronized Slot allocate(final int length) {
+    if (length > SLAB_SIZE) {
+      if (reserved + length > capacity) {
+        return null;
+      }
+      reserved += length;
+      return new Slot(this, null, ByteBuffer.allocateDirect(length), length);
+    }
+
+    final int sizeClass = sizeClass(length);
+    final ArrayDeque<Slab> slabs = available.get(sizeClass);
+    Slab slab = slabs.peekFirst();
+    if (slab == null) {
+      if (reserved + SLAB_SIZE > capacity) {
+        return null;
+      }
+      reserved += SLAB_SIZE;
+      slab = new Slab(sizeClass);
+      slabs.addFirst(slab);
+    }
+
+    final ByteBuffer region = slab.free.pop();
+    if (slab.free.isEmpty()) {
+      slabs.pollFirst();
+    }
+    return new Slot(this, slab, region, length);
+  }
+
+  private synchronized void release(final Slab slab, final ByteBuffer region) {
+    if (slab == null) {
+      // oversized vectors don't live in a slab.
+      reserved -= region.capacity();
+      return;
+    }
+
+    final ArrayDeque<Slab> slabs = available.get(slab.sizeClass);
+    if (slab.free.isEmpty()) {
+      slabs.addLast(slab);
+    }
+    slab.free.push(region);
+    if (slab.free.size() == slab.slots && slabs.size() > 1) {
+      slabs.remove(slab);
+      reserved -= SLAB_SIZE;
+    }
+  }
+
+  private static int sizeClass(final int length) {
+    final int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+    return Math.max(shift, MIN_SLOT_SHIFT) - MIN_SLOT_SHIFT;
+  }
+
+  // a direct buffer split in slots of a single size class.
+  private static final class Slab {
+
+    private final int sizeClass;
+    private final int slots;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    private Slab(final int sizeClass) {
+      final int slotSize = 1 << (sizeClass + MIN_SLOT_SHIFT);
+      final ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+      for (int position = 0; position < SLAB_SIZE; position += slotSize) {
+        slab.limit(position + slotSize).position(position);
+        free.push(slab.slice());
+      }
+      this.sizeClass = sizeClass;
+      this.slots = free.size();
+    }
+  }
+
+  /**
+   * A memoized vector. The cache holds one reference, readers hold another while they decode, the
+   * slot goes back to its slab once the vector is evicted and the last reader is done.
+   */
+  static final class Slot {
+
+    private final OffHeapSlabs slabs;
+    private final Slab slab;
+    private final ByteBuffer region;
+    private final int length;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private Slot(
+        final OffHeapSlabs slabs, final Slab slab, final ByteBuffer region, final int length) {
+      this.slabs = slabs;
+      this.slab = slab;
+      this.region = region;
+      this.length = length;
+    }
+
+    /** Size in bytes of the vector. */
+    int length() {
+      return length;
+    }
+
+    /**
+     * Returns a read-only view of the vector that must be given back with {@link #release()}, or
+     * null if the slot was already given back to its slab.
+     */
+    ByteBuffer retain() {
+      while (true) {
+        final int current = references.get();
+        if (current == 0) {
+          return null;
+        }
+        if (references.compareAndSet(current, current + 1)) {
+          final ByteBuffer view = region.asReadOnlyBuffer();
+          view.limit(length);
+          return view;
+        }
+      }
+    }
+
+    /** Returns a reference, the last one gives the slot back to its slab. */
+    void release() {
+      if (references.decrementAndGet() == 0) {
+        slabs.release(slab, region);
+      }
+    }
+  }
+}
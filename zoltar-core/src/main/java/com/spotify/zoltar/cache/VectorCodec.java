@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Serializes feature vectors so that {@link MemoizingFeatureExtractor} can keep them off-heap.
+ *
+ * @param <VectorT> type of the feature extraction result.
+ */
+public interface VectorCodec<VectorT> {
+
+  /** Codec of dense float vectors. */
+  static VectorCodec<float[]> floats() {
+    return new VectorCodec<float[]>() {
+      @Override
+      public ByteBuffer encode(final float[] vector) {
+        final ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES);
+        buffer.asFloatBuffer().put(vector);
+        return buffer;
+      }
+
+      @Override
+      public float[] decode(final ByteBuffer buffer) {
+        final float[] vector = new float[buffer.remaining() / Float.BYTES];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+      }
+    };
+  }
+
+  /** Codec of dense double vectors. */
+  static VectorCodec<double[]> doubles() {
+    return new VectorCodec<double[]>() {
+      @Override
+      public ByteBuffer encode(final double[] vector) {
+        final ByteBuffer buffer = ByteBuffer.allocate(vector.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(vector);
+        return buffer;
+      }
+
+      @Override
+      public double[] decode(final ByteBuffer buffer) {
+        final double[] vector = new double[buffer.remaining() / Double.BYTES];
+        buffer.asDoubleBuffer().get(vector);
+        return vector;
+      }
+    };
+  }
+
+  /**
+   * Codec of vectors with a byte array representation, e.g. TensorFlow examples:
+   *
+   * <pre>{@code
+   * VectorCodec.bytes(Example::toByteArray, Example::parseFrom)
+   * }</pre>
+   *
+   * @param encoder serializes a vector.
+   * @param decoder deserializes a vector.
+   */
+  static <VectorT> VectorCodec<VectorT> bytes(
+      final Function<VectorT, byte[]> encoder, final Decoder<VectorT> decoder) {
+    return new VectorCodec<VectorT>() {
+      @Override
+      public ByteBuffer encode(final VectorT vector) {
+        return ByteBuffer.wrap(encoder.apply(vector));
+      }
+
+      @Override
+      public VectorT decode(final ByteBuffer buffer) throws Exception {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return decoder.decode(bytes);
+      }
+    };
+  }
+
+  /** Serializes the vector, the returned buffer is read from its position to its limit. */
+  ByteBuffer encode(VectorT vector);
+
+  /** Deserializes a vector from the buffer's position to its limit. */
+  VectorT decode(ByteBuffer buffer) throws Exception;
+
+  /** Deserializes a vector from a byte array. */
+  @FunctionalInterface
+  interface Decoder<VectorT> {
+    VectorT decode(byte[] bytes) throws Exception;
+  }
+}
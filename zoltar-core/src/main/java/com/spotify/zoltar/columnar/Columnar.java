@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.columnar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Vector;
+
+/**
+ * Adapts {@link ColumnarBatch}es to the list based API. Extraction functions write every input
+ * straight into one contiguous batch and hand out row views as vectors, prediction functions get
+ * the whole batch back without copying it, as long as the rows weren't reordered or filtered on the
+ * way, e.g. by a cache.
+ *
+ * <pre>{@code
+ * final Predictor<Iris, FloatBatch.Row> predictor =
+ *     Predictors.newBuilder(
+ *             loader,
+ *             Columnar.floatExtractFn(Iris::writeFeatures),
+ *             Columnar.floatPredictFn(XGBoostBatches::predict))
+ *         .predictor();
+ * }</pre>
+ */
+public final class Columnar {
+
+  private Columnar() {}
+
+  /**
+   * Writes the features of an input into the current row of a batch.
+   *
+   * @param <InputT> type of the input to feature extraction.
+   */
+  @FunctionalInterface
+  public interface FloatRowFn<InputT> {
+
+    void extract(InputT input, FloatBatch.Builder row) throws Exception;
+  }
+
+  /**
+   * Writes the features of an input into the current row of a batch.
+   *
+   * @param <InputT> type of the input to feature extraction.
+   */
+  @FunctionalInterface
+  public interface DoubleRowFn<InputT> {
+
+    void extract(InputT input, DoubleBatch.Builder row) throws Exception;
+  }
+
+  /**
+   * Writes the features of an input into the current row of a batch.
+   *
+   * @param <InputT> type of the input to feature extraction.
+   */
+  @FunctionalInterface
+  public interface LongRowFn<InputT> {
+
+    void extract(InputT input, LongBatch.Builder row) throws Exception;
+  }
+
+  /**
+   * Predicts a whole batch at once, the result must have a row per feature row.
+   *
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <BatchT> type of the feature batch.
+   * @param <ResultT> type of the result batch.
+   */
+  @FunctionalInterface
+  public interface BatchPredictFn<ModelT extends Model<?>, BatchT, ResultT> {
+
+    ResultT predict(ModelT model, BatchT batch) throws Exception;
+  }
+
+  /** Returns an extraction function that writes all the inputs into one {@link FloatBatch}. */
+  public static <InputT> ExtractFn<InputT, FloatBatch.Row> floatExtractFn(
+      final FloatRowFn<InputT> fn) {
+    return inputs -> {
+      final FloatBatch.Builder builder = FloatBatch.builder(inputs.length, inputs.length * 16);
+      for (final InputT input : inputs) {
+        fn.extract(input, builder);
+        builder.endRow();
+      }
+      return builder.build().rowList();
+    };
+  }
+
+  /** Returns an extraction function that writes all the inputs into one {@link DoubleBatch}. */
+  public static <InputT> ExtractFn<InputT, DoubleBatch.Row> doubleExtractFn(
+      final DoubleRowFn<InputT> fn) {
+    return inputs -> {
+      final DoubleBatch.Builder builder = DoubleBatch.builder(inputs.length, inputs.length * 16);
+      for (final InputT input : inputs) {
+        fn.extract(input, builder);
+        builder.endRow();
+      }
+      return builder.build().rowList();
+    };
+  }
+
+  /** Returns an extraction function that writes all the inputs into one {@link LongBatch}. */
+  public static <InputT> ExtractFn<InputT, LongBatch.Row> longExtractFn(
+      final LongRowFn<InputT> fn) {
+    return inputs -> {
+      final LongBatch.Builder builder = LongBatch.builder(inputs.length, inputs.length * 16);
+      for (final InputT input : inputs) {
+        fn.extract(input, builder);
+        builder.endRow();
+      }
+      return builder.build().rowList();
+    };
+  }
+
+  /**
+   * Returns a prediction function over {@link FloatBatch} features, see {@link
+   * FloatBatch#gather(List)}.
+   *
+   * @param fn predicts a whole feature batch.
+   */
+  public static <ModelT extends Model<?>, InputT, ResultRowT>
+      PredictFn<ModelT, InputT, FloatBatch.Row, ResultRowT> floatPredictFn(
+          final BatchPredictFn<ModelT, FloatBatch, ? extends ColumnarBatch<ResultRowT>> fn) {
+    return (model, vectors) -> {
+      final List<FloatBatch.Row> rows = new ArrayList<>(vectors.size());
+      for (final Vector<InputT, FloatBatch.Row> vector : vectors) {
+        rows.add(vector.value());
+      }
+      return predictions(vectors, fn.predict(model, FloatBatch.gather(rows)));
+    };
+  }
+
+  /**
+   * Returns a prediction function over {@link DoubleBatch} features, see {@link
+   * DoubleBatch#gather(List)}.
+   *
+   * @param fn predicts a whole feature batch.
+   */
+  public static <ModelT extends Model<?>, InputT, ResultRowT>
+      PredictFn<ModelT, InputT, DoubleBatch.Row, ResultRowT> doublePredictFn(
+          final BatchPredictFn<ModelT, DoubleBatch, ? extends ColumnarBatch<ResultRowT>> fn) {
+    return (model, vectors) -> {
+      final List<DoubleBatch.Row> rows = new ArrayList<>(vectors.size());
+      for (final Vector<InputT, DoubleBatch.Row> vector : vectors) {
+        rows.add(vector.value());
+      }
+      return predictions(vectors, fn.predict(model, DoubleBatch.gather(rows)));
+    };
+  }
+
+  /**
+   * Returns a prediction function over {@link LongBatch} features, see {@link
+   * LongBatch#gather(List)}.
+   *
+   * @param fn predicts a whole feature batch.
+   */
+  public static <ModelT extends Model<?>, InputT, ResultRowT>
+      PredictFn<ModelT, InputT, LongBatch.Row, ResultRowT> longPredictFn(
+          final BatchPredictFn<ModelT, LongBatch, ? extends ColumnarBatch<ResultRowT>> fn) {
+    return (model, vectors) -> {
+      final List<LongBatch.Row> rows = new ArrayList<>(vectors.size());
+      for (final Vector<InputT, LongBatch.Row> vector : vectors) {
+        rows.add(vector.value());
+      }
+      return predictions(vectors, fn.predict(model, LongBatch.gather(rows)));
+    };
+  }
+
+  private static <InputT, RowT, ResultRowT> List<Prediction<InputT, ResultRowT>> predictions(
+      final List<Vector<InputT, RowT>> vectors, final ColumnarBatch<ResultRowT> result) {
+    if (result.rows() != vectors.size()) {
+      throw new IllegalStateException(
+          String.format("expected %d result rows, got %d", vectors.size(), result.rows()));
+    }
+    final List<Prediction<InputT, ResultRowT>> predictions = new ArrayList<>(vectors.size());
+    for (int i = 0; i < vectors.size(); i++) {
+      predictions.add(Prediction.create(vectors.get(i).input(), result.row(i)));
+    }
+    return predictions;
+  }
+}
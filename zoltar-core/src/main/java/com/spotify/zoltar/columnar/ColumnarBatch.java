@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.columnar;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Batch of primitive vectors stored in a single contiguous array, with row offsets, instead of an
+ * array per row. Rows are exposed as lightweight views, so batches can flow through the list
+ * based {@link com.spotify.zoltar.FeatureExtractor} and {@link com.spotify.zoltar.PredictFns} API
+ * while backends read and write the contiguous storage directly, see {@link Columnar}.
+ *
+ * @param <RowT> type of the row views.
+ */
+public interface ColumnarBatch<RowT> {
+
+  /** Returns the number of rows. */
+  int rows();
+
+  /** Returns the total number of values over all rows. */
+  int size();
+
+  /** Returns the number of values of a row. */
+  int width(int row);
+
+  /** Returns true if every row has the same width, i.e. the batch is a matrix. */
+  boolean isDense();
+
+  /** Returns a view of a row, it doesn't copy the row's values. */
+  RowT row(int row);
+
+  /** Returns views of all the rows, it doesn't copy any value. */
+  default List<RowT> rowList() {
+    return new RowList<>(this);
+  }
+
+  /** Lazy list of row views. */
+  final class RowList<RowT> extends AbstractList<RowT> implements RandomAccess {
+
+    private final ColumnarBatch<RowT> batch;
+
+    private RowList(final ColumnarBatch<RowT> batch) {
+      this.batch = batch;
+    }
+
+    @Override
+    public RowT get(final int index) {
+      return batch.row(index);
+    }
+
+    @Override
+    public int size() {
+      return batch.rows();
+    }
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.columnar;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ColumnarBatch} of {@code float} vectors.
+ *
+ * <pre>{@code
+ * final FloatBatch.Builder builder = FloatBatch.builder(inputs.length, inputs.length * 4);
+ * for (final Iris input : inputs) {
+ *   builder.add(input.sepalLength()).add(input.sepalWidth()).endRow();
+ * }
+ * final FloatBatch batch = builder.build();
+ * }</pre>
+ */
+public final class FloatBatch implements ColumnarBatch<FloatBatch.Row> {
+
+  private final float[] values;
+  private final int[] offsets;
+  private final int rows;
+
+  private FloatBatch(final float[] values, final int[] offsets, final int rows) {
+    this.values = values;
+    this.offsets = offsets;
+    this.rows = rows;
+  }
+
+  /** Returns a builder. */
+  public static Builder builder() {
+    return builder(16, 256);
+  }
+
+  /**
+   * Returns a builder sized for the expected batch, it grows as needed.
+   *
+   * @param expectedRows expected number of rows.
+   * @param expectedSize expected number of values over all rows.
+   */
+  public static Builder builder(final int expectedRows, final int expectedSize) {
+    return new Builder(expectedRows, expectedSize);
+  }
+
+  /**
+   * Wraps a row-major matrix without copying it.
+   *
+   * @param values row-major values, at least {@code rows * width} long.
+   * @param rows number of rows.
+   * @param width number of values per row.
+   */
+  public static FloatBatch dense(final float[] values, final int rows, final int width) {
+    if (rows < 0 || width < 0 || (long) rows * width > values.length) {
+      throw new IllegalArgumentException(
+          String.format("%d values can't hold %d rows of %d", values.length, rows, width));
+    }
+    final int[] offsets = new int[rows + 1];
+    for (int i = 1; i <= rows; i++) {
+      offsets[i] = offsets[i - 1] + width;
+    }
+    return new FloatBatch(values, offsets, rows);
+  }
+
+  /** Copies row arrays into a batch. */
+  public static FloatBatch of(final List<float[]> rows) {
+    int size = 0;
+    for (final float[] row : rows) {
+      size += row.length;
+    }
+    final Builder builder = builder(rows.size(), size);
+    for (final float[] row : rows) {
+      builder.add(row).endRow();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns a batch holding the given rows. If they are all the rows of a single batch, in order,
+   * that batch is returned without copying, otherwise the rows are copied into a new batch.
+   */
+  public static FloatBatch gather(final List<Row> rows) {
+    if (!rows.isEmpty()) {
+      final FloatBatch batch = rows.get(0).batch;
+      boolean contiguous = batch.rows == rows.size();
+      for (int i = 0; contiguous && i < rows.size(); i++) {
+        final Row row = rows.get(i);
+        contiguous = row.batch == batch && row.index == i;
+      }
+      if (contiguous) {
+        return batch;
+      }
+    }
+    int size = 0;
+    for (final Row row : rows) {
+      size += row.width();
+    }
+    final Builder builder = builder(rows.size(), size);
+    for (final Row row : rows) {
+      builder.add(row.batch.values, row.batch.offsets[row.index], row.width()).endRow();
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int rows() {
+    return rows;
+  }
+
+  @Override
+  public int size() {
+    return offsets[rows];
+  }
+
+  /** Returns the index of the first value of a row in {@link #values()}. */
+  public int offset(final int row) {
+    checkRow(row);
+    return offsets[row];
+  }
+
+  @Override
+  public int width(final int row) {
+    checkRow(row);
+    return offsets[row + 1] - offsets[row];
+  }
+
+  @Override
+  public boolean isDense() {
+    for (int i = 1; i < rows; i++) {
+      if (offsets[i + 1] - offsets[i] != offsets[1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the width of every row of a dense batch.
+   *
+   * @throws IllegalStateException if rows have different widths.
+   */
+  public int width() {
+    if (!isDense()) {
+      throw new IllegalStateException("batch rows have different widths");
+    }
+    return rows == 0 ? 0 : offsets[1];
+  }
+
+  /** Returns a value. */
+  public float get(final int row, final int column) {
+    final int width = width(row);
+    if (column < 0 || column >= width) {
+      throw new IndexOutOfBoundsException("column " + column + " of row width " + width);
+    }
+    return values[offsets[row] + column];
+  }
+
+  /**
+   * Returns the backing array, for zero-copy hand-off to backends. Only the first {@link #size()}
+   * values belong to the batch, and they must not be modified.
+   */
+  public float[] values() {
+    return values;
+  }
+
+  /** Returns a read-only buffer over the batch values, without copying them. */
+  public FloatBuffer buffer() {
+    return FloatBuffer.wrap(values, 0, size()).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public Row row(final int row) {
+    checkRow(row);
+    return new Row(this, row);
+  }
+
+  private void checkRow(final int row) {
+    if (row < 0 || row >= rows) {
+      throw new IndexOutOfBoundsException("row " + row + " of " + rows);
+    }
+  }
+
+  /** View of a batch row. */
+  public static final class Row {
+
+    private final FloatBatch batch;
+    private final int index;
+
+    private Row(final FloatBatch batch, final int index) {
+      this.batch = batch;
+      this.index = index;
+    }
+
+    /** Returns the batch the row belongs to. */
+    public FloatBatch batch() {
+      return batch;
+    }
+
+    /** Returns the index of the row in its batch. */
+    public int index() {
+      return index;
+    }
+
+    /** Returns the number of values. */
+    public int width() {
+      return batch.offsets[index + 1] - batch.offsets[index];
+    }
+
+    /** Returns a value. */
+    public float get(final int column) {
+      return batch.get(index, column);
+    }
+
+    /** Copies the values into a new array. */
+    public float[] toArray() {
+      return Arrays.copyOfRange(batch.values, batch.offsets[index], batch.offsets[index + 1]);
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(toArray());
+    }
+  }
+
+  /** Appends rows to a batch, values are written straight into the contiguous storage. */
+  public static final class Builder {
+
+    private float[] values;
+    private int[] offsets;
+    private int size;
+    private int rows;
+    private boolean built;
+
+    private Builder(final int expectedRows, final int expectedSize) {
+      this.values = new float[Math.max(1, expectedSize)];
+      this.offsets = new int[Math.max(1, expectedRows) + 1];
+    }
+
+    /** Appends a value to the current row. */
+    public Builder add(final float value) {
+      ensureCapacity(1);
+      values[size++] = value;
+      return this;
+    }
+
+    /** Appends values to the current row. */
+    public Builder add(final float[] row) {
+      return add(row, 0, row.length);
+    }
+
+    /** Appends a range of values to the current row. */
+    public Builder add(final float[] row, final int offset, final int length) {
+      ensureCapacity(length);
+      System.arraycopy(row, offset, values, size, length);
+      size += length;
+      return this;
+    }
+
+    /** Ends the current row, the next values go to a new row. */
+    public Builder endRow() {
+      checkNotBuilt();
+      if (rows + 2 > offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      offsets[++rows] = size;
+      return this;
+    }
+
+    /**
+     * Builds the batch without copying, the builder can't be used afterwards. Values added after
+     * the last {@link #endRow()} are discarded.
+     */
+    public FloatBatch build() {
+      checkNotBuilt();
+      built = true;
+      return new FloatBatch(values, offsets, rows);
+    }
+
+    private void checkNotBuilt() {
+      if (built) {
+        throw new IllegalStateException("batch already built");
+      }
+    }
+
+    private void ensureCapacity(final int length) {
+      checkNotBuilt();
+      if (size + length > values.length) {
+        values = Arrays.copyOf(values, Math.max(values.length * 2, size + length));
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.Inputs;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * {@link Predictor} that runs every input through a cheap first stage, and only the inputs whose
+ * first stage prediction isn't confident enough through an expensive second stage, as one
+ * sub-batch. Second stage predictions replace the first stage ones in place, so input order is
+ * kept.
+ *
+ * <pre>{@code
+ * final CascadePredictor<Track, Float> predictor =
+ *     CascadePredictor.create(
+ *         smallModelBuilder,
+ *         largeModelBuilder,
+ *         prediction -> Math.abs(prediction.value() - 0.5) > 0.4);
+ * }</pre>
+ *
+ * <p>Both stages share the call's timeout, the second stage gets whatever the first one left. If
+ * the second stage fails the call fails, confident first stage predictions included. The second
+ * stage must return one prediction per escalated input, in input order, or the call fails with an
+ * {@link IllegalStateException}.
+ *
+ * @param <InputT> type of the input to both stages.
+ * @param <ValueT> type of the prediction result of both stages.
+ */
+public final class CascadePredictor<InputT, ValueT> implements Predictor<InputT, ValueT> {
+
+  private final Predictor<InputT, ValueT> first;
+  private final Predictor<InputT, ValueT> second;
+  private final Predicate<Prediction<InputT, ValueT>> confident;
+  private final LongAdder inputs = new LongAdder();
+  private final LongAdder escalated = new LongAdder();
+
+  private CascadePredictor(
+      final Predictor<InputT, ValueT> first,
+      final Predictor<InputT, ValueT> second,
+      final Predicate<Prediction<InputT, ValueT>> confident) {
+    this.first = first;
+    this.second = second;
+    this.confident = confident;
+  }
+
+  /**
+   * Creates a cascade of two stages.
+   *
+   * @param first builder of the cheap stage every input goes through.
+   * @param second builder of the expensive stage, for inputs the first stage isn't confident on.
+   * @param confident whether a first stage prediction is final.
+   */
+  public static <InputT, ValueT> CascadePredictor<InputT, ValueT> create(
+      final PredictorBuilder<?, InputT, ?, ValueT> first,
+      final PredictorBuilder<?, InputT, ?, ValueT> second,
+      final Predicate<Prediction<InputT, ValueT>> confident) {
+    return new CascadePredictor<>(first.predictor(), second.predictor(), confident);
+  }
+
+  /** Returns the number of inputs predicted by the first stage. */
+  public long inputs() {
+    return inputs.sum();
+  }
+
+  /** Returns the number of inputs escalated to the second stage. */
+  public long escalated() {
+    return escalated.sum();
+  }
+
+  /** Returns the fraction of all the inputs so far that were escalated to the second stage. */
+  public double escalationRate() {
+    final long total = inputs.sum();
+    return total == 0 ? 0 : (double) escalated.sum() / total;
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    return predict(scheduler, timeout, Inputs.view(inputs));
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final List<InputT> inputs) {
+    final Deadline deadline = Deadline.after(timeout);
+    return first
+        .predict(scheduler, timeout, inputs)
+        .thenCompose(predictions -> escalate(scheduler, deadline, inputs, predictions));
+  }
+
+  private CompletionStage<List<Prediction<InputT, ValueT>>> escalate(
+      final ScheduledExecutorService scheduler,
+      final Deadline deadline,
+      final List<InputT> batch,
+      final List<Prediction<InputT, ValueT>> predictions) {
+    final int size = predictions.size();
+    // escalated inputs reach the second stage in an array of the caller's type.
+    final List<InputT> uncertain = Inputs.newList(batch, size);
+    final int[] positions = new int[size];
+    for (int i = 0; i < size; i++) {
+      final Prediction<InputT, ValueT> prediction = predictions.get(i);
+      if (!confident.test(prediction)) {
+        positions[uncertain.size()] = i;
+        uncertain.add(prediction.input());
+      }
+    }
+    inputs.add(size);
+    if (uncertain.isEmpty()) {
+      return CompletableFuture.completedFuture(predictions);
+    }
+    escalated.add(uncertain.size());
+
+    final Duration remaining = deadline.remaining();
+    if (deadline.isExpired()) {
+      final CompletableFuture<List<Prediction<InputT, ValueT>>> timeout =
+          new CompletableFuture<>();
+      timeout.completeExceptionally(new TimeoutException());
+      return timeout;
+    }
+    return second
+        .predict(scheduler, remaining, uncertain)
+        .thenApply(
+            escalations -> {
+              // escalations replace predictions by position, they must line up with the inputs.
+              if (escalations.size() != uncertain.size()) {
+                throw new IllegalStateException(
+                    String.format(
+                        "second stage returned %d predictions for %d inputs",
+                        escalations.size(), uncertain.size()));
+              }
+              final List<Prediction<InputT, ValueT>> merged = new ArrayList<>(predictions);
+              for (int i = 0; i < escalations.size(); i++) {
+                merged.set(positions[i], escalations.get(i));
+              }
+              return merged;
+            });
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.util.List;
+
+/**
+ * Combines the votes of the {@link EnsemblePredictor} members for one input into the ensemble
+ * prediction. See {@link Combiners} for the common ones.
+ *
+ * @param <InputT> type of the input to the ensemble.
+ * @param <ValueT> type of the member prediction result.
+ * @param <ResultT> type of the ensemble prediction result.
+ */
+@FunctionalInterface
+public interface Combiner<InputT, ValueT, ResultT> {
+
+  /**
+   * Combines the votes for an input, at least one of them has a value.
+   *
+   * @param input the input the members predicted on.
+   * @param votes one vote per member, in the order members were added.
+   */
+  ResultT combine(InputT input, List<Vote<ValueT>> votes) throws Exception;
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.util.function.Function;
+
+/** Common {@link Combiner combiners} of numeric member predictions. */
+public final class Combiners {
+
+  private Combiners() {}
+
+  /** Returns the mean of the member predictions that are present. */
+  public static <InputT, ValueT extends Number> Combiner<InputT, ValueT, Double> mean() {
+    return (input, votes) -> {
+      double sum = 0;
+      int count = 0;
+      for (final Vote<ValueT> vote : votes) {
+        if (vote.value().isPresent()) {
+          sum += vote.value().get().doubleValue();
+          count++;
+        }
+      }
+      return sum / count;
+    };
+  }
+
+  /**
+   * Returns the mean of the member predictions that are present, weighted by the member weights.
+   * Weights are renormalized over the present members, so a dropped member doesn't bias the
+   * result towards zero.
+   */
+  public static <InputT, ValueT extends Number> Combiner<InputT, ValueT, Double> weighted() {
+    return (input, votes) -> {
+      double sum = 0;
+      double weights = 0;
+      for (final Vote<ValueT> vote : votes) {
+        if (vote.value().isPresent()) {
+          sum += vote.weight() * vote.value().get().doubleValue();
+          weights += vote.weight();
+        }
+      }
+      return sum / weights;
+    };
+  }
+
+  /**
+   * Returns a stacking combiner, the member predictions are the features of a meta model. Dropped
+   * members are passed as {@link Double#NaN}, the meta model decides how to impute them.
+   *
+   * @param metaModel predicts on the member predictions, in member order.
+   */
+  public static <InputT, ValueT extends Number, ResultT> Combiner<InputT, ValueT, ResultT> stacking(
+      final Function<double[], ResultT> metaModel) {
+    return (input, votes) -> {
+      final double[] features = new double[votes.size()];
+      for (int i = 0; i < features.length; i++) {
+        final Vote<ValueT> vote = votes.get(i);
+        features[i] = vote.value().isPresent() ? vote.value().get().doubleValue() : Double.NaN;
+      }
+      return metaModel.apply(features);
+    };
+  }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Inputs;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Vector;
+
+/**
+ * {@link Predictor} that extracts features once and dispatches them to several members, each a
+ * model and an {@link AsyncPredictFn}, concurrently. Member predictions of every input are merged
+ * by a {@link Combiner}, e.g. {@link Combiners#mean()}.
+ *
+ * <p>Members may use different model types, as long as they predict on the same extracted vector,
+ * which may hold a representation for each of them. A member with a timeout is dropped once it
+ * elapses, and the ensemble is combined from the remaining members; a member that fails, or that
+ * doesn't return one prediction per input in input order, is dropped as well. The prediction only
+ * fails if every member is dropped, or if no member predicted a value for one of the inputs.
+ *
+ * <pre>{@code
+ * final EnsemblePredictor<Track, Features, Float, Double> predictor =
+ *     EnsemblePredictor.builder(extractFn, Combiners.<Track, Float>weighted())
+ *         .member("tf", tfLoader, tfPredictFn, 2)
+ *         .member("xgboost", xgboostLoader, xgboostPredictFn, 1, Duration.ofMillis(20))
+ *         .build();
+ * }</pre>
+ *
+ * @param <InputT> type of the input to the {@link ExtractFn}.
+ * @param <VectorT> type of the output from {@link ExtractFn}.
+ * @param <ValueT> type of the member prediction result.
+ * @param <ResultT> type of the ensemble prediction result.
+ */
+public final class EnsemblePredictor<InputT, VectorT, ValueT, ResultT>
+    implements Predictor<InputT, ResultT> {
+
+  private final FeatureExtractor<Model<?>, InputT, VectorT> featureExtractor;
+  private final Combiner<InputT, ValueT, ResultT> combiner;
+  private final List<Member<?, InputT, VectorT, ValueT>> members;
+
+  private EnsemblePredictor(final Builder<InputT, VectorT, ValueT, ResultT> builder) {
+    this.featureExtractor = FeatureExtractor.create(builder.extractFn);
+    this.combiner = builder.combiner;
+    this.members = ImmutableList.copyOf(builder.members);
+  }
+
+  /**
+   * Returns a builder of an ensemble.
+   *
+   * @param extractFn extracts the features every member predicts on.
+   * @param combiner combines the member predictions of an input.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <InputT, VectorT, ValueT, ResultT>
+      Builder<InputT, VectorT, ValueT, ResultT> builder(
+          final ExtractFn<InputT, VectorT> extractFn,
+          final Combiner<InputT, ValueT, ResultT> combiner) {
+    return new Builder<>(extractFn, combiner);
+  }
+
+  /** Returns the number of calls each member was dropped from, by member name. */
+  public Map<String, Long> dropped() {
+    final ImmutableMap.Builder<String, Long> dropped = ImmutableMap.builder();
+    for (final Member<?, InputT, VectorT, ValueT> member : members) {
+      dropped.put(member.name, member.dropped.sum());
+    }
+    return dropped.build();
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ResultT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    return predict(scheduler, timeout, Inputs.view(inputs));
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ResultT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final List<InputT> inputs) {
+    final Deadline deadline = Deadline.after(timeout);
+    final List<Vector<InputT, VectorT>> vectors;
+    try {
+      // the extractor is created from an ExtractFn, it doesn't use the model.
+      vectors = featureExtractor.extract(null, deadline, inputs);
+    } catch (final Exception e) {
+      final CompletableFuture<List<Prediction<InputT, ResultT>>> failure =
+          new CompletableFuture<>();
+      failure.completeExceptionally(e);
+      return failure;
+    }
+
+    final List<CompletableFuture<List<Prediction<InputT, ValueT>>>> results =
+        new ArrayList<>(members.size());
+    for (final Member<?, InputT, VectorT, ValueT> member : members) {
+      results.add(member.predict(vectors, deadline, scheduler));
+    }
+    final CompletableFuture<List<Prediction<InputT, ResultT>>> future =
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+            .handle((v, t) -> combine(inputs, results));
+    return Timeouts.bound(future, deadline, scheduler, timeout);
+  }
+
+  private List<Prediction<InputT, ResultT>> combine(
+      final List<InputT> inputs,
+      final List<CompletableFuture<List<Prediction<InputT, ValueT>>>> results) {
+    final int size = members.size();
+    final List<List<Prediction<InputT, ValueT>>> predictions = new ArrayList<>(size);
+    Throwable failure = null;
+    int dropped = 0;
+    for (int m = 0; m < size; m++) {
+      final CompletableFuture<List<Prediction<InputT, ValueT>>> result = results.get(m);
+      if (result.isCompletedExceptionally()) {
+        members.get(m).dropped.increment();
+        dropped++;
+        if (failure == null) {
+          failure = exceptionOf(result);
+        }
+        predictions.add(ImmutableList.of());
+      } else {
+        predictions.add(result.join());
+      }
+    }
+    if (dropped == size) {
+      // every member was dropped, the call fails like the first of them.
+      throw new CompletionException(failure);
+    }
+
+    final List<Prediction<InputT, ResultT>> combined = new ArrayList<>(inputs.size());
+    for (int i = 0; i < inputs.size(); i++) {
+      final List<Vote<ValueT>> votes = new ArrayList<>(size);
+      boolean present = false;
+      for (int m = 0; m < size; m++) {
+        final Member<?, InputT, VectorT, ValueT> member = members.get(m);
+        final List<Prediction<InputT, ValueT>> memberPredictions = predictions.get(m);
+        // dropped members have no predictions, the others have one per input.
+        final Prediction<InputT, ValueT> prediction =
+            memberPredictions.isEmpty() ? null : memberPredictions.get(i);
+        final Optional<ValueT> value =
+            prediction == null ? Optional.empty() : Optional.ofNullable(prediction.value());
+        present |= value.isPresent();
+        votes.add(Vote.create(member.name, member.weight, value));
+      }
+      if (!present) {
+        // skipping the input would shift every later prediction off its input.
+        throw new CompletionException(
+            new IllegalStateException(
+                String.format("no member predicted a value for input %d: %s", i, inputs.get(i))));
+      }
+      try {
+        combined.add(Prediction.create(inputs.get(i), combiner.combine(inputs.get(i), votes)));
+      } catch (final Exception e) {
+        throw new CompletionException(e);
+      }
+    }
+    return combined;
+  }
+
+  private static Throwable exceptionOf(final CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (final CompletionException e) {
+      return e.getCause() != null ? e.getCause() : e;
+    } catch (final RuntimeException e) {
+      return e;
+    }
+  }
+
+  /** A model and its prediction function. */
+  private static final class Member<ModelT extends Model<?>, InputT, VectorT, ValueT> {
+
+    private final String name;
+    private final ModelLoader<ModelT> modelLoader;
+    private final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn;
+    private final double weight;
+    private final Duration timeout;
+    private final LongAdder dropped = new LongAdder();
+
+    private Member(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final double weight,
+        final Duration timeout) {
+      this.name = name;
+      this.modelLoader = modelLoader;
+      this.predictFn = predictFn;
+      this.weight = weight;
+      this.timeout = timeout;
+    }
+
+    private CompletableFuture<List<Prediction<InputT, ValueT>>> predict(
+        final List<Vector<InputT, VectorT>> vectors,
+        final Deadline deadline,
+        final ScheduledExecutorService scheduler) {
+      final Deadline memberDeadline;
+      if (timeout == null || deadline.remaining().compareTo(timeout) <= 0) {
+        memberDeadline = deadline;
+      } else {
+        memberDeadline = Deadline.after(timeout);
+        deadline.onCancel(memberDeadline::cancel);
+      }
+
+      final CompletableFuture<List<Prediction<InputT, ValueT>>> result = new CompletableFuture<>();
+      modelLoader
+          .lease()
+          .thenCompose(
+              lease -> {
+                try {
+                  // the lease is held until the backend is done, even if the member was dropped.
+                  return predictFn
+                      .apply(lease.model(), vectors, memberDeadline)
+                      .whenComplete((r, t) -> lease.close());
+                } catch (final RuntimeException e) {
+                  lease.close();
+                  throw e;
+                }
+              })
+          .whenComplete(
+              (r, t) -> {
+                if (t != null) {
+                  result.completeExceptionally(t);
+                } else if (r.size() != vectors.size()) {
+                  // votes are matched to inputs by position, a member that skips inputs is dropped.
+                  result.completeExceptionally(
+                      new IllegalStateException(
+                          String.format(
+                              "member %s returned %d predictions for %d inputs",
+                              name, r.size(), vectors.size())));
+                } else {
+                  result.complete(r);
+                }
+              });
+
+      if (memberDeadline != deadline) {
+        final ScheduledFuture<?> schedule =
+            scheduler.schedule(
+                () -> {
+                  result.completeExceptionally(new TimeoutException());
+                  memberDeadline.cancel();
+                },
+                timeout.toMillis(),
+                TimeUnit.MILLISECONDS);
+        result.whenComplete((r, t) -> schedule.cancel(true));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Builder of an {@link EnsemblePredictor}.
+   *
+   * @param <InputT> type of the input to the {@link ExtractFn}.
+   * @param <VectorT> type of the output from {@link ExtractFn}.
+   * @param <ValueT> type of the member prediction result.
+   * @param <ResultT> type of the ensemble prediction result.
+   */
+  public static final class Builder<InputT, VectorT, ValueT, ResultT> {
+
+    private final ExtractFn<InputT, VectorT> extractFn;
+    private final Combiner<InputT, ValueT, ResultT> combiner;
+    private final List<Member<?, InputT, VectorT, ValueT>> members = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+
+    private Builder(
+        final ExtractFn<InputT, VectorT> extractFn,
+        final Combiner<InputT, ValueT, ResultT> combiner) {
+      this.extractFn = extractFn;
+      this.combiner = combiner;
+    }
+
+    /**
+     * Adds a member of weight 1, without a timeout of its own.
+     *
+     * @param name unique name of the member.
+     * @param modelLoader loader of the member's model.
+     * @param predictFn prediction function of the member.
+     */
+    public <ModelT extends Model<?>> Builder<InputT, VectorT, ValueT, ResultT> member(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+      return member(name, modelLoader, predictFn, 1);
+    }
+
+    /**
+     * Adds a member without a timeout of its own.
+     *
+     * @param name unique name of the member.
+     * @param modelLoader loader of the member's model.
+     * @param predictFn prediction function of the member.
+     * @param weight weight of the member, see {@link Vote#weight()}.
+     */
+    public <ModelT extends Model<?>> Builder<InputT, VectorT, ValueT, ResultT> member(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final double weight) {
+      return add(name, modelLoader, predictFn, weight, null);
+    }
+
+    /**
+     * Adds a member that is dropped from a call once its timeout elapses.
+     *
+     * @param name unique name of the member.
+     * @param modelLoader loader of the member's model.
+     * @param predictFn prediction function of the member.
+     * @param weight weight of the member, see {@link Vote#weight()}.
+     * @param timeout time after which the ensemble is combined without the member.
+     */
+    public <ModelT extends Model<?>> Builder<InputT, VectorT, ValueT, ResultT> member(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final double weight,
+        final Duration timeout) {
+      if (timeout.isNegative() || timeout.isZero()) {
+        throw new IllegalArgumentException("timeout must be positive: " + timeout);
+      }
+      return add(name, modelLoader, predictFn, weight, timeout);
+    }
+
+    /** Builds the ensemble, it needs at least one member. */
+    public EnsemblePredictor<InputT, VectorT, ValueT, ResultT> build() {
+      if (members.isEmpty()) {
+        throw new IllegalStateException("an ensemble needs at least one member");
+      }
+      return new EnsemblePredictor<>(this);
+    }
+
+    private <ModelT extends Model<?>> Builder<InputT, VectorT, ValueT, ResultT> add(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final double weight,
+        final Duration timeout) {
+      if (!(weight > 0)) {
+        throw new IllegalArgumentException("weight must be positive: " + weight);
+      }
+      if (!names.add(name)) {
+        throw new IllegalArgumentException("duplicate member name: " + name);
+      }
+      members.add(new Member<>(name, modelLoader, predictFn, weight, timeout));
+      return this;
+    }
+  }
+}
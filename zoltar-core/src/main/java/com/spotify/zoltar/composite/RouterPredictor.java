@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Inputs;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Vector;
+
+/**
+ * {@link Predictor} that splits traffic between model versions sharing one {@link
+ * FeatureExtractor}, e.g. for A/B tests and canaries. Every input is routed by a {@link
+ * RoutingStrategy} and its features are extracted once, with the model of the route serving it.
+ *
+ * <p>Shadow models get a sampled copy of the extracted features. They run asynchronously on their
+ * own executor once the primary routes are done extracting, their results and failures are
+ * discarded, and they never delay the primary prediction. Shadow calls are bounded by the call's
+ * timeout, and sampled calls are dropped while {@link Builder#maxShadowsInFlight(int)} shadow calls
+ * are already in flight.
+ *
+ * <p>The prediction function of a route must return one prediction per input, in input order, a
+ * route that doesn't fails the call with an {@link IllegalStateException}.
+ *
+ * <pre>{@code
+ * final RouterPredictor<XGBoostModel, Track, LabeledPoint, Float> predictor =
+ *     RouterPredictor.builder(featureExtractor)
+ *         .route("control", controlLoader, predictFn, 90)
+ *         .route("canary", canaryLoader, predictFn, 10)
+ *         .shadow("next", nextLoader, predictFn, 0.05)
+ *         .strategy(RoutingStrategy.sticky(Track::userId))
+ *         .build();
+ * }</pre>
+ *
+ * <p>Routes and shadows share the extracted vectors, prediction functions must not modify them.
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+public final class RouterPredictor<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements Predictor<InputT, ValueT> {
+
+  private final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor;
+  private final List<Variant<ModelT, InputT, VectorT, ValueT>> routes;
+  private final List<Variant<ModelT, InputT, VectorT, ValueT>> shadows;
+  private final int[] bounds;
+  private final int totalWeight;
+  private final RoutingStrategy<InputT> strategy;
+  private final Executor shadowExecutor;
+  private final int maxShadowsInFlight;
+  private final AtomicInteger shadowsInFlight = new AtomicInteger();
+
+  private RouterPredictor(final Builder<ModelT, InputT, VectorT, ValueT> builder) {
+    this.featureExtractor = builder.featureExtractor;
+    this.routes = ImmutableList.copyOf(builder.routes);
+    this.shadows = ImmutableList.copyOf(builder.shadows);
+    this.bounds = new int[routes.size()];
+    int total = 0;
+    for (int i = 0; i < bounds.length; i++) {
+      total = Math.addExact(total, routes.get(i).weight);
+      bounds[i] = total;
+    }
+    this.totalWeight = total;
+    this.strategy = builder.strategy;
+    this.shadowExecutor = builder.shadowExecutor;
+    this.maxShadowsInFlight = builder.maxShadowsInFlight;
+  }
+
+  /**
+   * Returns a builder of a router whose routes share the given feature extractor.
+   *
+   * @param featureExtractor extracts the features of every route and shadow.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Builder<ModelT, InputT, VectorT, ValueT> builder(
+          final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor) {
+    return new Builder<>(featureExtractor);
+  }
+
+  /** Returns the number of inputs served by each route, by route name. */
+  public Map<String, Long> served() {
+    return counts(routes, v -> v.count);
+  }
+
+  /** Returns the number of calls sampled to each shadow, by shadow name. */
+  public Map<String, Long> shadowed() {
+    return counts(shadows, v -> v.count);
+  }
+
+  /**
+   * Returns the number of sampled calls dropped because too many shadow calls were in flight, by
+   * shadow name.
+   */
+  public Map<String, Long> shadowsDropped() {
+    return counts(shadows, v -> v.dropped);
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    return predict(scheduler, timeout, Inputs.view(inputs));
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final List<InputT> inputs) {
+    if (inputs.isEmpty()) {
+      return CompletableFuture.completedFuture(ImmutableList.of());
+    }
+    final Deadline deadline = Deadline.after(timeout);
+    final List<Group> groups = route(inputs);
+    for (final Group group : groups) {
+      group.start(deadline);
+    }
+    shadow(groups, inputs.size(), scheduler, timeout);
+
+    final CompletableFuture<List<Prediction<InputT, ValueT>>> future;
+    if (groups.size() == 1) {
+      future = groups.get(0).predictions;
+    } else {
+      future =
+          allOf(groups, g -> g.predictions)
+              .thenApply(v -> merge(groups, inputs.size(), g -> g.predictions.join()));
+    }
+    return Timeouts.bound(future, deadline, scheduler, timeout);
+  }
+
+  private List<Group> route(final List<InputT> inputs) {
+    final int size = inputs.size();
+    final ToIntFunction<InputT> points = strategy.forCall(totalWeight);
+    final int[] assigned = new int[size];
+    final int[] counts = new int[routes.size()];
+    for (int i = 0; i < size; i++) {
+      assigned[i] = routeOf(points.applyAsInt(inputs.get(i)));
+      counts[assigned[i]]++;
+    }
+
+    final List<Group> groups = new ArrayList<>(1);
+    for (int r = 0; r < counts.length; r++) {
+      if (counts[r] == 0) {
+        continue;
+      }
+      routes.get(r).count.add(counts[r]);
+      if (counts[r] == size) {
+        // the whole call goes to one route, inputs are passed on as they are.
+        groups.add(new Group(routes.get(r), inputs, null));
+        continue;
+      }
+      final List<InputT> routed = Inputs.newList(inputs, counts[r]);
+      final int[] positions = new int[counts[r]];
+      for (int i = 0; i < size; i++) {
+        if (assigned[i] == r) {
+          positions[routed.size()] = i;
+          routed.add(inputs.get(i));
+        }
+      }
+      groups.add(new Group(routes.get(r), routed, positions));
+    }
+    return groups;
+  }
+
+  private int routeOf(final int point) {
+    for (int i = 0; i < bounds.length; i++) {
+      if (point < bounds[i]) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("routing point out of range: " + point);
+  }
+
+  private void shadow(
+      final List<Group> groups,
+      final int size,
+      final ScheduledExecutorService scheduler,
+      final Duration timeout) {
+    List<Variant<ModelT, InputT, VectorT, ValueT>> sampled = null;
+    for (final Variant<ModelT, InputT, VectorT, ValueT> shadow : shadows) {
+      if (ThreadLocalRandom.current().nextDouble() < shadow.sampleRate) {
+        if (sampled == null) {
+          sampled = new ArrayList<>(shadows.size());
+        }
+        sampled.add(shadow);
+      }
+    }
+    if (sampled == null) {
+      return;
+    }
+
+    final List<Variant<ModelT, InputT, VectorT, ValueT>> targets = sampled;
+    allOf(groups, g -> g.vectors)
+        .thenRunAsync(
+            () -> {
+              final List<Vector<InputT, VectorT>> vectors =
+                  groups.size() == 1
+                      ? groups.get(0).vectors.join()
+                      : merge(groups, size, g -> g.vectors.join());
+              for (final Variant<ModelT, InputT, VectorT, ValueT> target : targets) {
+                if (!tryStartShadow()) {
+                  target.dropped.increment();
+                  continue;
+                }
+                target.count.increment();
+                final Deadline deadline = Deadline.after(timeout);
+                Timeouts.bound(target.predict(vectors, deadline), deadline, scheduler, timeout)
+                    .whenComplete((r, t) -> shadowsInFlight.decrementAndGet());
+              }
+            },
+            shadowExecutor);
+  }
+
+  private boolean tryStartShadow() {
+    while (true) {
+      final int current = shadowsInFlight.get();
+      if (current >= maxShadowsInFlight) {
+        return false;
+      }
+      if (shadowsInFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  private CompletableFuture<Void> allOf(
+      final List<Group> groups, final Function<Group, CompletableFuture<?>> future) {
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[groups.size()];
+    for (int i = 0; i < futures.length; i++) {
+      futures[i] = future.apply(groups.get(i));
+    }
+    return CompletableFuture.allOf(futures);
+  }
+
+  // every group's results line up with its inputs, see Group#start.
+  @SuppressWarnings("unchecked")
+  private <T> List<T> merge(
+      final List<Group> groups, final int size, final Function<Group, List<T>> results) {
+    final Object[] merged = new Object[size];
+    for (final Group group : groups) {
+      final List<T> result = aligned(group, results.apply(group));
+      for (int i = 0; i < result.size(); i++) {
+        merged[group.positions[i]] = result.get(i);
+      }
+    }
+    return (List<T>) Arrays.asList(merged);
+  }
+
+  private <T> List<T> aligned(final Group group, final List<T> results) {
+    if (results.size() != group.inputs.size()) {
+      throw new IllegalStateException(
+          String.format(
+              "route %s returned %d results for %d inputs",
+              group.route.name, results.size(), group.inputs.size()));
+    }
+    return results;
+  }
+
+  private static Map<String, Long> counts(
+      final List<? extends Variant<?, ?, ?, ?>> variants,
+      final Function<Variant<?, ?, ?, ?>, LongAdder> count) {
+    final ImmutableMap.Builder<String, Long> counts = ImmutableMap.builder();
+    for (final Variant<?, ?, ?, ?> variant : variants) {
+      counts.put(variant.name, count.apply(variant).sum());
+    }
+    return counts.build();
+  }
+
+  /** Inputs of one call served by the same route. */
+  private final class Group {
+
+    private final Variant<ModelT, InputT, VectorT, ValueT> route;
+    private final List<InputT> inputs;
+    private final int[] positions;
+    private final CompletableFuture<List<Vector<InputT, VectorT>>> vectors =
+        new CompletableFuture<>();
+    private CompletableFuture<List<Prediction<InputT, ValueT>>> predictions;
+
+    private Group(
+        final Variant<ModelT, InputT, VectorT, ValueT> route,
+        final List<InputT> inputs,
+        final int[] positions) {
+      this.route = route;
+      this.inputs = inputs;
+      this.positions = positions;
+    }
+
+    private void start(final Deadline deadline) {
+      predictions =
+          route
+              .modelLoader
+              .lease()
+              .thenCompose(
+                  lease -> {
+                    try {
+                      final List<Vector<InputT, VectorT>> extracted =
+                          aligned(this, featureExtractor.extract(lease.model(), deadline, inputs));
+                      vectors.complete(extracted);
+                      return route
+                          .predictFn
+                          .apply(lease.model(), extracted, deadline)
+                          .whenComplete((r, t) -> lease.close())
+                          .thenApply(predictions -> aligned(this, predictions));
+                    } catch (final Exception e) {
+                      lease.close();
+                      throw new CompletionException(e);
+                    }
+                  })
+              .toCompletableFuture();
+      // shadows only run for calls whose extraction succeeded everywhere.
+      predictions.whenComplete(
+          (r, t) -> {
+            if (t != null) {
+              vectors.completeExceptionally(t);
+            }
+          });
+    }
+  }
+
+  /** A model version, either a route or a shadow. */
+  private static final class Variant<ModelT extends Model<?>, InputT, VectorT, ValueT> {
+
+    private final String name;
+    private final ModelLoader<ModelT> modelLoader;
+    private final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn;
+    private final int weight;
+    private final double sampleRate;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private Variant(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final int weight,
+        final double sampleRate) {
+      this.name = name;
+      this.modelLoader = modelLoader;
+      this.predictFn = predictFn;
+      this.weight = weight;
+      this.sampleRate = sampleRate;
+    }
+
+    // results and failures of shadows are discarded, only the lease is released.
+    private CompletableFuture<List<Prediction<InputT, ValueT>>> predict(
+        final List<Vector<InputT, VectorT>> vectors, final Deadline deadline) {
+      return modelLoader
+          .lease()
+          .thenCompose(
+              lease -> {
+                try {
+                  return predictFn
+                      .apply(lease.model(), vectors, deadline)
+                      .whenComplete((r, t) -> lease.close());
+                } catch (final RuntimeException e) {
+                  lease.close();
+                  throw e;
+                }
+              })
+          .toCompletableFuture();
+    }
+  }
+
+  /**
+   * Builder of a {@link RouterPredictor}.
+   *
+   * @param <ModelT> underlying type of the {@link Model}.
+   * @param <InputT> type of the input to the {@link FeatureExtractor}.
+   * @param <VectorT> type of the output from {@link FeatureExtractor}.
+   * @param <ValueT> type of the prediction result.
+   */
+  public static final class Builder<ModelT extends Model<?>, InputT, VectorT, ValueT> {
+
+    private final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor;
+    private final List<Variant<ModelT, InputT, VectorT, ValueT>> routes = new ArrayList<>();
+    private final List<Variant<ModelT, InputT, VectorT, ValueT>> shadows = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private RoutingStrategy<InputT> strategy = RoutingStrategy.weighted();
+    private Executor shadowExecutor = ForkJoinPool.commonPool();
+    private int maxShadowsInFlight = 64;
+
+    private Builder(final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor) {
+      this.featureExtractor = featureExtractor;
+    }
+
+    /**
+     * Adds a route serving a share of the traffic proportional to its weight.
+     *
+     * @param name unique name of the route.
+     * @param modelLoader loader of the route's model version.
+     * @param predictFn prediction function of the route.
+     * @param weight positive weight of the route.
+     */
+    public Builder<ModelT, InputT, VectorT, ValueT> route(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final int weight) {
+      if (weight < 1) {
+        throw new IllegalArgumentException("weight must be positive: " + weight);
+      }
+      routes.add(new Variant<>(checkName(name), modelLoader, predictFn, weight, 0));
+      return this;
+    }
+
+    /**
+     * Adds a shadow that gets a sampled copy of the extracted features, its results are discarded.
+     *
+     * @param name unique name of the shadow.
+     * @param modelLoader loader of the shadow's model version.
+     * @param predictFn prediction function of the shadow.
+     * @param sampleRate fraction, in [0, 1], of the calls copied to the shadow.
+     */
+    public Builder<ModelT, InputT, VectorT, ValueT> shadow(
+        final String name,
+        final ModelLoader<ModelT> modelLoader,
+        final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn,
+        final double sampleRate) {
+      if (!(sampleRate >= 0 && sampleRate <= 1)) {
+        throw new IllegalArgumentException("sampleRate must be in [0, 1]: " + sampleRate);
+      }
+      shadows.add(new Variant<>(checkName(name), modelLoader, predictFn, 0, sampleRate));
+      return this;
+    }
+
+    /** Sets how inputs are routed, {@link RoutingStrategy#weighted()} by default. */
+    public Builder<ModelT, InputT, VectorT, ValueT> strategy(
+        final RoutingStrategy<InputT> strategy) {
+      this.strategy = strategy;
+      return this;
+    }
+
+    /** Sets the executor shadows are started on, the common {@link ForkJoinPool} by default. */
+    public Builder<ModelT, InputT, VectorT, ValueT> shadowExecutor(final Executor executor) {
+      this.shadowExecutor = executor;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of shadow calls in flight across all shadows, 64 by default. Calls
+     * sampled while the limit is reached aren't shadowed.
+     */
+    public Builder<ModelT, InputT, VectorT, ValueT> maxShadowsInFlight(final int max) {
+      if (max < 1) {
+        throw new IllegalArgumentException("maxShadowsInFlight must be positive: " + max);
+      }
+      this.maxShadowsInFlight = max;
+      return this;
+    }
+
+    /** Builds the router, it needs at least one route. */
+    public RouterPredictor<ModelT, InputT, VectorT, ValueT> build() {
+      if (routes.isEmpty()) {
+        throw new IllegalStateException("a router needs at least one route");
+      }
+      return new RouterPredictor<>(this);
+    }
+
+    private String checkName(final String name) {
+      if (!names.add(name)) {
+        throw new IllegalArgumentException("duplicate route or shadow name: " + name);
+      }
+      return name;
+    }
+  }
+}
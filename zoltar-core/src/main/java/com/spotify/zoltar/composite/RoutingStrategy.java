@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Decides which route of a {@link RouterPredictor} serves each input. Routes own a share of {@code
+ * [0, totalWeight)} proportional to their weight, and the strategy maps every input of a call to a
+ * point in that range.
+ *
+ * @param <InputT> type of the input to route.
+ */
+@FunctionalInterface
+public interface RoutingStrategy<InputT> {
+
+  /**
+   * Routes every call to a random route, picked with probability proportional to its weight. All
+   * the inputs of a call go to the same route.
+   */
+  static <InputT> RoutingStrategy<InputT> weighted() {
+    return totalWeight -> {
+      final int point = ThreadLocalRandom.current().nextInt(totalWeight);
+      return input -> point;
+    };
+  }
+
+  /**
+   * Routes every input by the hash of its key, so a key always goes to the same route as long as
+   * the routes and their weights don't change.
+   *
+   * @param key extracts the routing key of an input, e.g. a user id.
+   */
+  static <InputT> RoutingStrategy<InputT> sticky(final Function<InputT, ?> key) {
+    return totalWeight ->
+        input -> {
+          final int hash = Hashing.murmur3_32().hashInt(Objects.hashCode(key.apply(input))).asInt();
+          return Math.floorMod(hash, totalWeight);
+        };
+  }
+
+  /**
+   * Returns the function that maps the inputs of one call to points in {@code [0, totalWeight)}.
+   *
+   * @param totalWeight sum of the route weights.
+   */
+  ToIntFunction<InputT> forCall(int totalWeight);
+}
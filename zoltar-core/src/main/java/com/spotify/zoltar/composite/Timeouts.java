@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.spotify.zoltar.Deadline;
+
+/** Bounds composite predictions by their timeout, the same way the default predictor does. */
+final class Timeouts {
+
+  private Timeouts() {}
+
+  /**
+   * Fails the future with a {@link TimeoutException} and cancels the deadline once the timeout
+   * elapses, the deadline is also cancelled if the future fails otherwise.
+   */
+  static <T> CompletableFuture<T> bound(
+      final CompletableFuture<T> future,
+      final Deadline deadline,
+      final ScheduledExecutorService scheduler,
+      final Duration timeout) {
+    final ScheduledFuture<?> schedule =
+        scheduler.schedule(
+            () -> {
+              future.completeExceptionally(new TimeoutException());
+              deadline.cancel();
+            },
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS);
+
+    future.whenComplete(
+        (r, t) -> {
+          schedule.cancel(true);
+          if (t != null) {
+            deadline.cancel();
+          }
+        });
+
+    return future;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import java.util.Optional;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Result of one {@link EnsemblePredictor} member for one input. Members that failed or were
+ * dropped after their timeout still vote, with an empty value, so votes keep the member order.
+ *
+ * @param <ValueT> type of the member prediction result.
+ */
+@AutoValue
+public abstract class Vote<ValueT> {
+
+  /** Name of the member. */
+  public abstract String member();
+
+  /** Weight of the member. */
+  public abstract double weight();
+
+  /** Prediction of the member, empty if it was dropped. */
+  public abstract Optional<ValueT> value();
+
+  /** Creates a vote. */
+  public static <ValueT> Vote<ValueT> create(
+      final String member, final double weight, final Optional<ValueT> value) {
+    return new AutoValue_Vote<>(member, weight, value);
+  }
+}
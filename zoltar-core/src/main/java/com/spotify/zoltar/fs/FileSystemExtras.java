@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.google.cloud.storage.contrib.nio.CloudStorageFileSystem;
 
@@ -43,11 +44,23 @@ public final class FileSystemExtras {
    * using ISO_LOCAL_DATE (e.g. YYYY-MM-DD).
    */
   public static Optional<String> getLatestDate(final String src) throws IOException {
-    return Files.list(Paths.get(src))
-        .filter(Files::isDirectory)
-        .map(p -> LocalDate.parse(p.getFileName().toString()))
-        .reduce((x, y) -> x.compareTo(y) > 0 ? x : y)
-        .map(LocalDate::toString);
+    return getLatestDate(Paths.get(src));
+  }
+
+  /**
+   * Finds the latest date directory in the directory src, on any file system, e.g. a GCS path
+   * created with {@link #path(URI)}. It assumes that partitions are formatted using
+   * ISO_LOCAL_DATE (e.g. YYYY-MM-DD).
+   */
+  public static Optional<String> getLatestDate(final Path src) throws IOException {
+    try (final Stream<Path> paths = Files.list(src)) {
+      return paths
+          .filter(Files::isDirectory)
+          // GCS pseudo directories keep their trailing slash.
+          .map(p -> LocalDate.parse(p.getFileName().toString().replace("/", "")))
+          .reduce((x, y) -> x.compareTo(y) > 0 ? x : y)
+          .map(LocalDate::toString);
+    }
   }
 
   /** Creates a {@link Path} given a {@link URI} in a user-friendly and safe way. */
@@ -92,6 +105,22 @@ public final class FileSystemExtras {
     return copyDir(src, temp, true).toUri();
   }
 
+  /**
+   * If the path is not on a local filesystem, it will download the resource to a temporary path on
+   * the local filesystem with the given {@link ModelDownloader}, e.g. to download large files in
+   * parallel chunks.
+   */
+  public static URI downloadIfNonLocal(final URI path, final ModelDownloader downloader)
+      throws IOException {
+    final Path src = path(path);
+    if (src.getFileSystem().equals(FileSystems.getDefault())) {
+      return src.toUri();
+    }
+
+    final Path temp = Files.createTempDirectory("zoltar-");
+    return downloader.copyDir(src, temp, true).toUri();
+  }
+
   static Path copyDir(final Path src, final Path dest, final boolean overwrite) throws IOException {
     final List<Path> paths =
         Files.walk(src).filter(path -> !path.equals(src)).collect(Collectors.toList());
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.fs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Copies model directories, e.g. a SavedModel on GCS, to the local file system with concurrent
+ * file transfers. Files larger than the {@link Options#parallelThreshold() parallel threshold}
+ * are split in chunks read in parallel through positioned {@link SeekableByteChannel} reads, so a
+ * single large variables shard isn't downloaded at single stream speed. File systems whose
+ * channels can't be positioned, e.g. zip files, fall back to a sequential copy of the file.
+ *
+ * <p>{@link FileSystemExtras#downloadIfNonLocal(java.net.URI)} copies one file at a time, which is
+ * faster for small models since every download starts a pool of {@link Options#concurrency()}
+ * threads. Opt in for models with files well above the parallel threshold on a remote file
+ * system, e.g. large variables shards on GCS, by passing a downloader to {@link
+ * FileSystemExtras#downloadIfNonLocal(java.net.URI, ModelDownloader)} or to the model factories
+ * that take one.
+ *
+ * <pre>{@code
+ * final ModelDownloader downloader =
+ *     ModelDownloader.create(
+ *         ModelDownloader.Options.builder()
+ *             .concurrency(16)
+ *             .bytesPerSecond(200L << 20)
+ *             .build());
+ *
+ * final URI local = FileSystemExtras.downloadIfNonLocal(modelUri, downloader);
+ * }</pre>
+ */
+public final class ModelDownloader {
+
+  private static final ModelDownloader DEFAULT = create(Options.builder().build());
+
+  private final Options options;
+  private final RateLimiter rateLimiter;
+
+  private ModelDownloader(final Options options) {
+    this.options = options;
+    this.rateLimiter =
+        options.bytesPerSecond() == Long.MAX_VALUE
+            ? null
+            : RateLimiter.create(options.bytesPerSecond());
+  }
+
+  /**
+   * Creates a downloader.
+   *
+   * @param options concurrency, chunking and bandwidth options.
+   */
+  public static ModelDownloader create(final Options options) {
+    return new ModelDownloader(options);
+  }
+
+  /** Returns the downloader with the default {@link Options}. */
+  public static ModelDownloader defaults() {
+    return DEFAULT;
+  }
+
+  /**
+   * Copies the content of the src directory to the dest directory.
+   *
+   * @param src directory to copy, on any file system.
+   * @param dest local directory to copy to.
+   * @param overwrite replace the files that already exist in dest.
+   * @return dest.
+   */
+  public Path copyDir(final Path src, final Path dest, final boolean overwrite)
+      throws IOException {
+    final List<Path> paths;
+    try (Stream<Path> walk = Files.walk(src)) {
+      paths = walk.filter(path -> !path.equals(src)).collect(Collectors.toList());
+    }
+
+    final ExecutorService executor = newExecutor();
+    try {
+      final List<Future<?>> transfers = new ArrayList<>();
+      for (final Path path : paths) {
+        final Path target = target(src, dest, path);
+        if (Files.isDirectory(path)) {
+          // walk is depth first, so directories are created before their files are submitted.
+          if (overwrite || !Files.exists(target)) {
+            Files.createDirectories(target);
+          } else {
+            throw new FileAlreadyExistsException(target.toString());
+          }
+          continue;
+        }
+
+        transfer(path, target, overwrite, executor, transfers);
+      }
+      await(transfers);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return dest;
+  }
+
+  /**
+   * Copies the src file to the target file, e.g. a single file model.
+   *
+   * @param src file to copy, on any file system.
+   * @param target local file to copy to.
+   * @param overwrite replace the target if it already exists.
+   * @return target.
+   */
+  public Path copyFile(final Path src, final Path target, final boolean overwrite)
+      throws IOException {
+    final ExecutorService executor = newExecutor();
+    try {
+      final List<Future<?>> transfers = new ArrayList<>();
+      transfer(src, target, overwrite, executor, transfers);
+      await(transfers);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return target;
+  }
+
+  private ExecutorService newExecutor() {
+    return Executors.newFixedThreadPool(
+        options.concurrency(),
+        new ThreadFactoryBuilder()
+            .setNameFormat("zoltar-model-downloader-%d")
+            .setDaemon(true)
+            .build());
+  }
+
+  private void transfer(
+      final Path src,
+      final Path target,
+      final boolean overwrite,
+      final ExecutorService executor,
+      final List<Future<?>> transfers)
+      throws IOException {
+    final long size = Files.size(src);
+    if (size >= options.parallelThreshold() && isPositionable(src)) {
+      copyChunked(src, target, size, overwrite, executor, transfers);
+    } else {
+      transfers.add(
+          executor.submit(
+              () -> {
+                copy(src, target, size, overwrite);
+                return null;
+              }));
+    }
+  }
+
+  private void copyChunked(
+      final Path src,
+      final Path target,
+      final long size,
+      final boolean overwrite,
+      final ExecutorService executor,
+      final List<Future<?>> transfers)
+      throws IOException {
+    // pre-size the target so every chunk writes to its own region.
+    try (FileChannel channel = FileChannel.open(target, openOptions(overwrite))) {
+      if (size > 0) {
+        channel.write(ByteBuffer.allocate(1), size - 1);
+      }
+    }
+
+    for (long start = 0; start < size; start += options.chunkSize()) {
+      final long position = start;
+      final long length = Math.min(options.chunkSize(), size - start);
+      transfers.add(
+          executor.submit(
+              () -> {
+                copyRange(src, target, position, length);
+                return null;
+              }));
+    }
+  }
+
+  private void copyRange(final Path src, final Path target, final long position, final long length)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(bufferSize(length));
+    try (SeekableByteChannel in = Files.newByteChannel(src, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      in.position(position);
+      long copied = 0;
+      while (copied < length) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+        final int read = in.read(buffer);
+        if (read < 0) {
+          throw new IOException("unexpected end of " + src + " at " + (position + copied));
+        }
+        throttle(read);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          out.write(buffer, position + copied + buffer.position());
+        }
+        copied += read;
+      }
+    }
+  }
+
+  private void copy(final Path src, final Path target, final long size, final boolean overwrite)
+      throws IOException {
+    if (rateLimiter == null) {
+      final CopyOption[] flags =
+          overwrite ? new CopyOption[] {StandardCopyOption.REPLACE_EXISTING} : new CopyOption[] {};
+      Files.copy(src, target, flags);
+      return;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(bufferSize(size));
+    try (SeekableByteChannel in = Files.newByteChannel(src, StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(target, openOptions(overwrite))) {
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        throttle(read);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          out.write(buffer);
+        }
+        buffer.clear();
+      }
+    }
+  }
+
+  private void throttle(final int bytes) {
+    if (rateLimiter != null && bytes > 0) {
+      rateLimiter.acquire(bytes);
+    }
+  }
+
+  private int bufferSize(final long length) {
+    return (int) Math.max(1, Math.min(options.bufferSize(), length));
+  }
+
+  private boolean isPositionable(final Path path) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.READ)) {
+      channel.position(options.chunkSize());
+      return true;
+    } catch (final UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  private static OpenOption[] openOptions(final boolean overwrite) {
+    return overwrite
+        ? new OpenOption[] {
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        }
+        : new OpenOption[] {StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE};
+  }
+
+  private static Path target(final Path src, final Path dest, final Path path) {
+    // The relativize method requires that src and path are either both absolute or both relative.
+    // For GCS, src will be an absolute CloudStoragePath object, and path will be a relative
+    // UnixPath object. To avoid any mismatch, always make them both absolute.
+    final Path relative = src.toAbsolutePath().relativize(path.toAbsolutePath());
+    // The resolve method can be passed a String or a Path - we must pass String. If copying
+    // from a jar file, the relative path will be ZipPath, while our destination directory will
+    // be UnixPath. This difference will cause resolve to throw ProviderMismatchException, so
+    // we must first convert relative to String.
+    return dest.resolve(relative.toString());
+  }
+
+  private static void await(final List<Future<?>> transfers) throws IOException {
+    try {
+      for (final Future<?> transfer : transfers) {
+        transfer.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("model download interrupted", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) cause).getCause();
+      }
+      throw new IOException("model download failed", cause);
+    } catch (final CancellationException e) {
+      throw new IOException("model download cancelled", e);
+    }
+  }
+
+  /** Download options. */
+  @AutoValue
+  public abstract static class Options {
+
+    /** Maximum number of concurrent transfers, files or chunks of a file. */
+    public abstract int concurrency();
+
+    /** Size from which a file is split in chunks downloaded in parallel. */
+    public abstract long parallelThreshold();
+
+    /** Size of the chunks of a file downloaded in parallel. */
+    public abstract long chunkSize();
+
+    /** Size of the read buffer of every transfer. */
+    public abstract int bufferSize();
+
+    /** Bandwidth limit of a download, across all its transfers. */
+    public abstract long bytesPerSecond();
+
+    /**
+     * Returns a builder with 8 concurrent transfers, 16MiB chunks for files from 32MiB, 1MiB
+     * buffers and no bandwidth limit.
+     */
+    public static Builder builder() {
+      return new AutoValue_ModelDownloader_Options.Builder()
+          .concurrency(8)
+          .parallelThreshold(32L << 20)
+          .chunkSize(16L << 20)
+          .bufferSize(1 << 20)
+          .bytesPerSecond(Long.MAX_VALUE);
+    }
+
+    /** Builder for {@link Options}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+
+      public abstract Builder concurrency(int concurrency);
+
+      public abstract Builder parallelThreshold(long parallelThreshold);
+
+      public abstract Builder chunkSize(long chunkSize);
+
+      public abstract Builder bufferSize(int bufferSize);
+
+      public abstract Builder bytesPerSecond(long bytesPerSecond);
+
+      abstract Options autoBuild();
+
+      /** Builds the options, sizes and limits must be positive. */
+      public Options build() {
+        final Options options = autoBuild();
+        if (options.concurrency() <= 0
+            || options.parallelThreshold() <= 0
+            || options.chunkSize() <= 0
+            || options.bufferSize() <= 0
+            || options.bytesPerSecond() <= 0) {
+          throw new IllegalArgumentException("download options must be positive: " + options);
+        }
+        return options;
+      }
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import java.time.Duration;
+
+/**
+ * Additive increase, multiplicative decrease {@link Limit}. The limit grows by one for every
+ * prediction that completes within the target latency while the limit is in use, and is multiplied
+ * by a backoff ratio whenever a prediction is slower than the target or times out.
+ */
+public final class AimdLimit implements Limit {
+
+  private final long targetNanos;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private volatile int limit;
+
+  private AimdLimit(
+      final long targetNanos,
+      final int initialLimit,
+      final int minLimit,
+      final int maxLimit,
+      final double backoffRatio) {
+    this.targetNanos = targetNanos;
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+  }
+
+  /**
+   * Creates an AIMD limit that starts at 20, stays within [1, 1000] and backs off by 10%.
+   *
+   * @param target latency above which the limit backs off.
+   */
+  public static AimdLimit create(final Duration target) {
+    return create(target, 20, 1, 1000, 0.9);
+  }
+
+  /**
+   * Creates an AIMD limit.
+   *
+   * @param target latency above which the limit backs off.
+   * @param initialLimit limit before any prediction completed.
+   * @param minLimit lower bound of the limit.
+   * @param maxLimit upper bound of the limit.
+   * @param backoffRatio ratio, in (0, 1), the limit is multiplied by when backing off.
+   */
+  public static AimdLimit create(
+      final Duration target,
+      final int initialLimit,
+      final int minLimit,
+      final int maxLimit,
+      final double backoffRatio) {
+    Limits.checkBounds(initialLimit, minLimit, maxLimit);
+    if (!(backoffRatio > 0 && backoffRatio < 1)) {
+      throw new IllegalArgumentException("backoffRatio must be in (0, 1): " + backoffRatio);
+    }
+    return new AimdLimit(target.toNanos(), initialLimit, minLimit, maxLimit, backoffRatio);
+  }
+
+  @Override
+  public int limit() {
+    return limit;
+  }
+
+  @Override
+  public synchronized void onSample(
+      final long latencyNanos, final int inFlight, final boolean dropped) {
+    int next = limit;
+    if (dropped || latencyNanos > targetNanos) {
+      next = (int) (next * backoffRatio);
+    } else if (inFlight * 2 >= next) {
+      // only grows while the limit is actually used, an idle service would drift to the max.
+      next = next + 1;
+    }
+    limit = Math.max(minLimit, Math.min(maxLimit, next));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for predictions. Tracks the predictions in flight against an adaptive {@link
+ * Limit}, and counts the rejected ones. A limiter can be shared by several predictors that compete
+ * for the same backend.
+ */
+public final class ConcurrencyLimiter {
+
+  private final Limit limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  private ConcurrencyLimiter(final Limit limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Creates a limiter.
+   *
+   * @param limit adaptive limit of in flight predictions.
+   */
+  public static ConcurrencyLimiter create(final Limit limit) {
+    return new ConcurrencyLimiter(limit);
+  }
+
+  /** Returns the current limit. */
+  public int limit() {
+    return limit.limit();
+  }
+
+  /** Returns the number of predictions in flight. */
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  /** Returns the number of predictions rejected so far. */
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  /** Returns the number of predictions in flight including this one, or -1 if it's rejected. */
+  int tryAcquire() {
+    while (true) {
+      final int current = inFlight.get();
+      if (current >= limit.limit()) {
+        rejected.increment();
+        return -1;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  /** Releases a completed prediction and feeds its latency to the limit. */
+  void release(final long startNanos, final int inFlight, final boolean dropped) {
+    this.inFlight.decrementAndGet();
+    limit.onSample(System.nanoTime() - startNanos, inFlight, dropped);
+  }
+
+  /** Releases a prediction that failed for reasons unrelated to load. */
+  void ignore() {
+    inFlight.decrementAndGet();
+  }
+}
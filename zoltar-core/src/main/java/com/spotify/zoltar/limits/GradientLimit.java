@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import java.time.Duration;
+
+/**
+ * Gradient based {@link Limit}. The limit is scaled by the ratio of the target latency to the
+ * smoothed observed latency, so it shrinks in proportion to how much queueing slows predictions
+ * down, and a small queue allowance of {@code sqrt(limit)} lets it probe for more capacity once
+ * latency is back within target. Timeouts count as the steepest gradient.
+ */
+public final class GradientLimit implements Limit {
+
+  private static final double MIN_GRADIENT = 0.5;
+  private static final double LATENCY_SMOOTHING = 0.2;
+
+  private final double targetNanos;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double smoothing;
+  private double estimate;
+  private double latencyNanos;
+  private volatile int limit;
+
+  private GradientLimit(
+      final double targetNanos,
+      final int initialLimit,
+      final int minLimit,
+      final int maxLimit,
+      final double smoothing) {
+    this.targetNanos = targetNanos;
+    this.estimate = initialLimit;
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.smoothing = smoothing;
+  }
+
+  /**
+   * Creates a gradient limit that starts at 20, stays within [1, 1000] and moves 20% of the way
+   * towards the new estimate on every sample.
+   *
+   * @param target latency predictions should complete within.
+   */
+  public static GradientLimit create(final Duration target) {
+    return create(target, 20, 1, 1000, 0.2);
+  }
+
+  /**
+   * Creates a gradient limit.
+   *
+   * @param target latency predictions should complete within.
+   * @param initialLimit limit before any prediction completed.
+   * @param minLimit lower bound of the limit.
+   * @param maxLimit upper bound of the limit.
+   * @param smoothing fraction, in (0, 1], of the way the limit moves towards the new estimate.
+   */
+  public static GradientLimit create(
+      final Duration target,
+      final int initialLimit,
+      final int minLimit,
+      final int maxLimit,
+      final double smoothing) {
+    Limits.checkBounds(initialLimit, minLimit, maxLimit);
+    if (!(smoothing > 0 && smoothing <= 1)) {
+      throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+    }
+    return new GradientLimit(target.toNanos(), initialLimit, minLimit, maxLimit, smoothing);
+  }
+
+  @Override
+  public int limit() {
+    return limit;
+  }
+
+  @Override
+  public synchronized void onSample(
+      final long latencyNanos, final int inFlight, final boolean dropped) {
+    this.latencyNanos =
+        this.latencyNanos == 0
+            ? latencyNanos
+            : this.latencyNanos + (latencyNanos - this.latencyNanos) * LATENCY_SMOOTHING;
+
+    final double gradient =
+        dropped
+            ? MIN_GRADIENT
+            : Math.max(MIN_GRADIENT, Math.min(1, targetNanos / this.latencyNanos));
+    if (gradient == 1 && inFlight * 2 < estimate) {
+      // latency is fine but the limit isn't used, growing it would only hide a future overload.
+      return;
+    }
+
+    final double next = estimate * gradient + Math.sqrt(estimate);
+    estimate = Math.max(minLimit, Math.min(maxLimit, estimate + (next - estimate) * smoothing));
+    limit = (int) estimate;
+  }
+}
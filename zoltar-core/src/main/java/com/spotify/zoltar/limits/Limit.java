@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+/**
+ * Adaptive concurrency limit, i.e. the number of predictions allowed in flight at once. The limit
+ * is adjusted from the latency of every completed prediction, see {@link AimdLimit} and {@link
+ * GradientLimit}.
+ */
+public interface Limit {
+
+  /** Returns the current limit. */
+  int limit();
+
+  /**
+   * Records a completed prediction.
+   *
+   * @param latencyNanos time it took to complete the prediction.
+   * @param inFlight number of predictions in flight when it started, itself included.
+   * @param dropped true if the prediction timed out.
+   */
+  void onSample(long latencyNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+/**
+ * Exception a prediction fails with when it's rejected because the concurrency limit is reached.
+ * Rejected predictions never reached the model, so they can safely be retried elsewhere.
+ */
+public final class LimitExceededException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int limit;
+
+  /**
+   * Constructs a new exception for the given limit.
+   *
+   * @param limit concurrency limit at the time of the rejection.
+   */
+  public LimitExceededException(final int limit) {
+    super("concurrency limit of " + limit + " predictions reached");
+    this.limit = limit;
+  }
+
+  /** Returns the concurrency limit at the time of the rejection. */
+  public int limit() {
+    return limit;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+
+/**
+ * {@link Predictor} that rejects predictions right away, with a {@link LimitExceededException},
+ * once the {@link ConcurrencyLimiter} limit of predictions is in flight.
+ *
+ * @param <InputT> type of the feature extraction input.
+ * @param <ValueT> type of the prediction output.
+ */
+final class LimitingPredictor<InputT, ValueT> implements Predictor<InputT, ValueT> {
+
+  private final Predictor<InputT, ValueT> predictor;
+  private final ConcurrencyLimiter limiter;
+
+  private LimitingPredictor(
+      final Predictor<InputT, ValueT> predictor, final ConcurrencyLimiter limiter) {
+    this.predictor = predictor;
+    this.limiter = limiter;
+  }
+
+  static <InputT, ValueT> LimitingPredictor<InputT, ValueT> create(
+      final Predictor<InputT, ValueT> predictor, final ConcurrencyLimiter limiter) {
+    return new LimitingPredictor<>(predictor, limiter);
+  }
+
+  @Override
+  public CompletionStage<List<Prediction<InputT, ValueT>>> predict(
+      final ScheduledExecutorService scheduler, final Duration timeout, final InputT... inputs) {
+    final int inFlight = limiter.tryAcquire();
+    if (inFlight < 0) {
+      final CompletableFuture<List<Prediction<InputT, ValueT>>> rejected =
+          new CompletableFuture<>();
+      rejected.completeExceptionally(new LimitExceededException(limiter.limit()));
+      return rejected;
+    }
+
+    final long startNanos = System.nanoTime();
+    final CompletionStage<List<Prediction<InputT, ValueT>>> prediction;
+    try {
+      prediction = predictor.predict(scheduler, timeout, inputs);
+    } catch (final RuntimeException e) {
+      limiter.ignore();
+      throw e;
+    }
+
+    return prediction.whenComplete(
+        (predictions, t) -> {
+          if (t == null) {
+            limiter.release(startNanos, inFlight, false);
+          } else if (unwrap(t) instanceof TimeoutException) {
+            limiter.release(startNanos, inFlight, true);
+          } else {
+            // failures unrelated to load, e.g. bad inputs, say nothing about the limit.
+            limiter.ignore();
+          }
+        });
+  }
+
+  private static Throwable unwrap(final Throwable t) {
+    return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import java.util.function.Function;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.PredictorBuilder;
+
+/**
+ * {@link PredictorBuilder} that creates a {@link Predictor} with adaptive concurrency limiting.
+ * Predictions beyond the limit fail right away with a {@link LimitExceededException} instead of
+ * queueing up until they time out, which keeps latency stable when the backend is oversubscribed.
+ *
+ * <pre>{@code
+ * final Predictor<Iris, Long> predictor =
+ *     Predictors.newBuilder(loader, extractFn, predictFn)
+ *         .with(LimitingPredictorBuilder.create(GradientLimit.create(Duration.ofMillis(20))))
+ *         .predictor();
+ * }</pre>
+ *
+ * @param <ModelT> underlying type of the {@link Model}.
+ * @param <InputT> type of the input to the {@link FeatureExtractor}.
+ * @param <VectorT> type of the output from {@link FeatureExtractor}.
+ * @param <ValueT> type of the prediction result.
+ */
+@AutoValue
+public abstract class LimitingPredictorBuilder<ModelT extends Model<?>, InputT, VectorT, ValueT>
+    implements PredictorBuilder<ModelT, InputT, VectorT, ValueT> {
+
+  public abstract PredictorBuilder<ModelT, InputT, VectorT, ValueT> predictorBuilder();
+
+  /** Returns the limiter, e.g. to report its limit, in flight and rejected counts. */
+  public abstract ConcurrencyLimiter limiter();
+
+  /**
+   * Adds concurrency limiting to an existent predictor builder.
+   *
+   * @param limit adaptive limit of in flight predictions.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              LimitingPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final Limit limit) {
+    return create(ConcurrencyLimiter.create(limit));
+  }
+
+  /**
+   * Adds concurrency limiting to an existent predictor builder.
+   *
+   * @param limiter limiter, possibly shared with other predictors.
+   */
+  @SuppressWarnings("checkstyle:LineLength")
+  public static <ModelT extends Model<?>, InputT, VectorT, ValueT>
+      Function<
+              PredictorBuilder<ModelT, InputT, VectorT, ValueT>,
+              LimitingPredictorBuilder<ModelT, InputT, VectorT, ValueT>>
+          create(final ConcurrencyLimiter limiter) {
+    return predictorBuilder -> new AutoValue_LimitingPredictorBuilder<>(predictorBuilder, limiter);
+  }
+
+  @Override
+  public Predictor<InputT, ValueT> predictor() {
+    return LimitingPredictor.create(predictorBuilder().predictor(), limiter());
+  }
+
+  @Override
+  public ModelLoader<ModelT> modelLoader() {
+    return predictorBuilder().modelLoader();
+  }
+
+  @Override
+  public FeatureExtractor<ModelT, InputT, VectorT> featureExtractor() {
+    return predictorBuilder().featureExtractor();
+  }
+
+  @Override
+  public AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn() {
+    return predictorBuilder().predictFn();
+  }
+
+  @Override
+  public LimitingPredictorBuilder<ModelT, InputT, VectorT, ValueT> with(
+      final ModelLoader<ModelT> modelLoader,
+      final FeatureExtractor<ModelT, InputT, VectorT> featureExtractor,
+      final AsyncPredictFn<ModelT, InputT, VectorT, ValueT> predictFn) {
+    final PredictorBuilder<ModelT, InputT, VectorT, ValueT> pb =
+        predictorBuilder().with(modelLoader, featureExtractor, predictFn);
+
+    return LimitingPredictorBuilder.<ModelT, InputT, VectorT, ValueT>create(limiter()).apply(pb);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+/** Argument checks shared by the {@link Limit} implementations. */
+final class Limits {
+
+  private Limits() {}
+
+  static void checkBounds(final int initialLimit, final int minLimit, final int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException(
+          String.format("invalid limit bounds [%d, %d]", minLimit, maxLimit));
+    }
+    if (initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException(
+          String.format(
+              "initialLimit %d must be within [%d, %d]", initialLimit, minLimit, maxLimit));
+    }
+  }
+}
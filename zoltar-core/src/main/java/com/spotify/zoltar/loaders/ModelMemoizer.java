@@ -16,7 +16,7 @@
 package com.spotify.zoltar.loaders;
 
 import java.util.Objects;
-import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.spotify.zoltar.Model;
@@ -26,37 +26,53 @@ import com.spotify.zoltar.ModelLoader;
  * Memoizes the result of the supplied {@link ModelLoader}.
  *
  * @param <M> Model instance type.
+ * @deprecated Use {@link SharedModels} to share a model between loaders, it also deduplicates
+ *     loads across loader instances and closes the model once it isn't used anymore.
  */
 @Deprecated
 @FunctionalInterface
 public interface ModelMemoizer<M extends Model<?>> extends ModelLoader<M> {
 
   /**
-   * Creates a memoized model loader.
+   * Creates a memoized model loader. The underlying loader is called once, by the first caller,
+   * the others get the same stage without taking a lock.
    *
    * @param loader ModelLoader to be memoized.
    * @param <M> Model instance type.
    * @return Memoized loader.
    */
   static <M extends Model<?>> ModelMemoizer<M> memoize(final ModelLoader<M> loader) {
-    // AtomicReference can be updated atomically and offers volatile write/read semantics.
-    // However, in this case it's just being used as a container for the CompletionStage.
-    final AtomicReference<CompletionStage<M>> value = new AtomicReference<>();
+    final AtomicReference<CompletableFuture<M>> value = new AtomicReference<>();
     return () -> {
-      CompletionStage<M> val = value.get();
-      if (val == null) {
-        // we want to avoid .get() being called several times from the different threads
-        // because it can be very expensive.
-        synchronized (value) {
-          val = value.get();
-          if (val == null) {
-            val = Objects.requireNonNull(loader.get());
-            value.set(val);
-          }
-        }
+      final CompletableFuture<M> val = value.get();
+      if (val != null) {
+        return val;
       }
 
-      return val;
+      // we want to avoid .get() being called several times from the different threads
+      // because it can be very expensive, only the thread that installs the future calls it.
+      final CompletableFuture<M> memoized = new CompletableFuture<>();
+      if (!value.compareAndSet(null, memoized)) {
+        return value.get();
+      }
+      try {
+        Objects.requireNonNull(loader.get())
+            .whenComplete(
+                (model, t) -> {
+                  if (t != null) {
+                    memoized.completeExceptionally(t);
+                  } else {
+                    memoized.complete(model);
+                  }
+                });
+      } catch (final RuntimeException e) {
+        // nothing was memoized, the next caller tries again.
+        value.set(null);
+        memoized.completeExceptionally(e);
+        throw e;
+      }
+
+      return memoized;
     };
   }
 }
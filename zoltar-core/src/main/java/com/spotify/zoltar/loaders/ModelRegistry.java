@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.fs.FileSystemExtras;
+
+/**
+ * Registry of many models keyed by {@link Model.Id}, for serving more models than fit in memory at
+ * once. Models are loaded on first use, and the least recently used ones are evicted once the
+ * estimated {@link Footprint} of the loaded models exceeds the memory budget. An evicted model is
+ * only closed once it's idle, i.e. its last {@link ModelLease} is returned.
+ *
+ * <p>Lookups are lock-free, only loads and evictions synchronize on the registry. Concurrent first
+ * uses of a model share a single load.
+ *
+ * <pre>{@code
+ * final ModelRegistry<TensorFlowModel> registry =
+ *     ModelRegistry.create(
+ *         id -> TensorFlowModel.create(URI.create("gs://bucket/models/" + id.value())),
+ *         ModelRegistry.Options.<TensorFlowModel>builder()
+ *             .budgetBytes(8L << 30)
+ *             .footprint(FootprintFn.files(model -> modelUri(model.id())))
+ *             .build());
+ *
+ * final ModelLoader<TensorFlowModel> market = registry.loader(Model.Id.create("se"));
+ * }</pre>
+ *
+ * @param <M> Model instance type.
+ */
+public final class ModelRegistry<M extends Model<?>> implements Closeable {
+
+  private final ModelFactory<M> factory;
+  private final Options<M> options;
+  private final ConcurrentMap<Model.Id, Entry<M>> entries = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadFailures = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  // guarded by this.
+  private long residentBytes;
+  private volatile boolean closed;
+
+  private ModelRegistry(final ModelFactory<M> factory, final Options<M> options) {
+    this.factory = factory;
+    this.options = options;
+  }
+
+  /**
+   * Creates a model registry.
+   *
+   * @param factory loads a model given its id.
+   * @param options memory budget and footprint options.
+   * @param <M> Model instance type.
+   */
+  public static <M extends Model<?>> ModelRegistry<M> create(
+      final ModelFactory<M> factory, final Options<M> options) {
+    return new ModelRegistry<>(factory, options);
+  }
+
+  /**
+   * Creates a model registry with the default {@link Options}, it never evicts models.
+   *
+   * @param factory loads a model given its id.
+   * @param <M> Model instance type.
+   */
+  public static <M extends Model<?>> ModelRegistry<M> create(final ModelFactory<M> factory) {
+    return create(factory, Options.<M>builder().build());
+  }
+
+  /**
+   * Returns the model, loading it if needed. The model can be evicted and closed at any time once
+   * returned, prefer {@link #lease(Model.Id)} to use it.
+   *
+   * @param id id of the model.
+   */
+  public CompletionStage<M> get(final Model.Id id) {
+    return entry(id).thenApply(RefCountedModel::model);
+  }
+
+  /**
+   * Leases the model, loading it if needed. The model isn't closed before the lease is returned,
+   * even if it's evicted in the meantime.
+   *
+   * @param id id of the model.
+   */
+  public CompletionStage<ModelLease<M>> lease(final Model.Id id) {
+    return entry(id)
+        .thenCompose(
+            model -> {
+              final ModelLease<M> lease = model.tryAcquire();
+              // the model was evicted and closed in the meantime, load it again.
+              return lease != null ? CompletableFuture.completedFuture(lease) : lease(id);
+            });
+  }
+
+  /**
+   * Returns a {@link ModelLoader} of a single model of this registry, e.g. to build a predictor
+   * with. Closing the loader doesn't close the model, the registry owns it.
+   *
+   * @param id id of the model.
+   */
+  public ModelLoader<M> loader(final Model.Id id) {
+    return new ModelLoader<M>() {
+      @Override
+      public CompletionStage<M> get() {
+        return ModelRegistry.this.get(id);
+      }
+
+      @Override
+      public CompletionStage<ModelLease<M>> lease() {
+        return ModelRegistry.this.lease(id);
+      }
+
+      @Override
+      public void close() {}
+    };
+  }
+
+  /**
+   * Evicts the model, it's closed once its last lease is returned.
+   *
+   * @param id id of the model.
+   * @return true if the model was loaded or loading.
+   */
+  public synchronized boolean evict(final Model.Id id) {
+    final Entry<M> entry = entries.remove(id);
+    if (entry == null) {
+      return false;
+    }
+    evicted(entry);
+    return true;
+  }
+
+  /** Returns the load, eviction and hit counts, and the memory currently used by loaded models. */
+  public synchronized Stats stats() {
+    int models = 0;
+    for (final Entry<M> entry : entries.values()) {
+      if (entry.model != null) {
+        models++;
+      }
+    }
+    return Stats.create(
+        hits.sum(),
+        loads.sum(),
+        loadFailures.sum(),
+        evictions.sum(),
+        models,
+        residentBytes,
+        options.budgetBytes());
+  }
+
+  /** Evicts every model, they're closed once their last lease is returned. */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    final Iterator<Entry<M>> it = entries.values().iterator();
+    while (it.hasNext()) {
+      final Entry<M> entry = it.next();
+      it.remove();
+      evicted(entry);
+    }
+  }
+
+  private CompletableFuture<RefCountedModel<M>> entry(final Model.Id id) {
+    if (closed) {
+      final CompletableFuture<RefCountedModel<M>> failure = new CompletableFuture<>();
+      failure.completeExceptionally(new IllegalStateException("model registry is closed"));
+      return failure;
+    }
+
+    Entry<M> entry = entries.get(id);
+    if (entry == null) {
+      final Entry<M> created = new Entry<>(id);
+      entry = entries.putIfAbsent(id, created);
+      if (entry == null) {
+        loads.increment();
+        options.executor().execute(() -> load(created));
+        return created.future;
+      }
+    }
+
+    hits.increment();
+    entry.lastUsed = System.nanoTime();
+    return entry.future;
+  }
+
+  private void load(final Entry<M> entry) {
+    M model = null;
+    final Footprint footprint;
+    try {
+      model = factory.load(entry.id);
+      footprint = options.footprint().estimate(model);
+    } catch (final Exception e) {
+      closeQuietly(model);
+      loadFailures.increment();
+      entries.remove(entry.id, entry);
+      entry.future.completeExceptionally(e);
+      return;
+    }
+
+    final RefCountedModel<M> counted = new RefCountedModel<>(model, options.onCloseFailure());
+    synchronized (this) {
+      entry.footprint = footprint;
+      entry.model = counted;
+      if (closed) {
+        // inserted by a lookup racing with close, which didn't see it.
+        entries.remove(entry.id, entry);
+        counted.retire();
+      } else if (entries.get(entry.id) == entry) {
+        residentBytes += footprint.bytes();
+        evictOverBudget(entry);
+      } else {
+        // evicted while loading, hand the model out to the waiting callers only.
+        counted.retire();
+      }
+    }
+    entry.future.complete(counted);
+  }
+
+  // never evicts the model that was just loaded, even if it doesn't fit the budget on its own.
+  private void evictOverBudget(final Entry<M> loaded) {
+    while (residentBytes > options.budgetBytes()) {
+      Entry<M> lru = null;
+      for (final Entry<M> entry : entries.values()) {
+        if (entry != loaded
+            && entry.model != null
+            && (lru == null || entry.lastUsed - lru.lastUsed < 0)) {
+          lru = entry;
+        }
+      }
+      if (lru == null || !entries.remove(lru.id, lru)) {
+        return;
+      }
+      evicted(lru);
+    }
+  }
+
+  // guarded by this.
+  private void evicted(final Entry<M> entry) {
+    if (entry.model != null) {
+      residentBytes -= entry.footprint.bytes();
+      evictions.increment();
+      entry.model.retire();
+    }
+  }
+
+  private void closeQuietly(final M model) {
+    if (model == null) {
+      return;
+    }
+    try {
+      model.close();
+    } catch (final Exception e) {
+      options.onCloseFailure().accept(e);
+    }
+  }
+
+  /**
+   * Loads a model given its id.
+   *
+   * @param <M> Model instance type.
+   */
+  @FunctionalInterface
+  public interface ModelFactory<M extends Model<?>> {
+
+    M load(Model.Id id) throws Exception;
+  }
+
+  /**
+   * Estimates the memory used by a loaded model.
+   *
+   * @param <M> Model instance type.
+   */
+  @FunctionalInterface
+  public interface FootprintFn<M extends Model<?>> {
+
+    /**
+     * Gives every model the same footprint, e.g. {@code Footprint.of(1, 0)} turns the budget into
+     * a maximum number of loaded models.
+     *
+     * @param footprint footprint of every model.
+     */
+    static <M extends Model<?>> FootprintFn<M> constant(final Footprint footprint) {
+      return model -> footprint;
+    }
+
+    /**
+     * Estimates the native footprint as the size of the model files, e.g. the variables of a
+     * TensorFlow SavedModel which are loaded in native memory.
+     *
+     * @param location location of the model files on the local file system or GCS.
+     */
+    static <M extends Model<?>> FootprintFn<M> files(final Function<M, URI> location) {
+      return model -> {
+        final Path root = FileSystemExtras.path(location.apply(model));
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+          final Iterator<Path> it = paths.filter(Files::isRegularFile).iterator();
+          while (it.hasNext()) {
+            bytes += Files.size(it.next());
+          }
+        }
+        return Footprint.of(0, bytes);
+      };
+    }
+
+    Footprint estimate(M model) throws IOException;
+  }
+
+  /** Estimated memory used by a loaded model. */
+  @AutoValue
+  public abstract static class Footprint {
+
+    /** Java heap used by the model. */
+    public abstract long heapBytes();
+
+    /** Native memory used by the model, e.g. TensorFlow tensors or XGBoost boosters. */
+    public abstract long nativeBytes();
+
+    /** Total memory used by the model, counted against the budget. */
+    public long bytes() {
+      return heapBytes() + nativeBytes();
+    }
+
+    /**
+     * Creates a footprint.
+     *
+     * @param heapBytes Java heap used by the model.
+     * @param nativeBytes native memory used by the model.
+     */
+    public static Footprint of(final long heapBytes, final long nativeBytes) {
+      if (heapBytes < 0 || nativeBytes < 0) {
+        throw new IllegalArgumentException("footprint can't be negative");
+      }
+      return new AutoValue_ModelRegistry_Footprint(heapBytes, nativeBytes);
+    }
+  }
+
+  /** Registry options. */
+  @AutoValue
+  public abstract static class Options<M extends Model<?>> {
+
+    /**
+     * Memory the loaded models may use before the least recently used ones are evicted. Evicted
+     * models still in use keep their memory until their last lease is returned.
+     */
+    public abstract long budgetBytes();
+
+    public abstract FootprintFn<M> footprint();
+
+    /** Executor the models are loaded on. */
+    public abstract Executor executor();
+
+    public abstract Consumer<Exception> onCloseFailure();
+
+    /** Returns a builder with an unbounded budget, which ignores close failures. */
+    public static <M extends Model<?>> Builder<M> builder() {
+      return new AutoValue_ModelRegistry_Options.Builder<M>()
+          .budgetBytes(Long.MAX_VALUE)
+          .footprint(FootprintFn.constant(Footprint.of(0, 0)))
+          .executor(ModelLoader.DEFAULT_EXECUTOR_SERVICE)
+          .onCloseFailure(e -> {});
+    }
+
+    /** Builder for {@link Options}. */
+    @AutoValue.Builder
+    public abstract static class Builder<M extends Model<?>> {
+
+      public abstract Builder<M> budgetBytes(long budgetBytes);
+
+      public abstract Builder<M> footprint(FootprintFn<M> footprint);
+
+      public abstract Builder<M> executor(Executor executor);
+
+      public abstract Builder<M> onCloseFailure(Consumer<Exception> onCloseFailure);
+
+      public abstract Options<M> build();
+    }
+  }
+
+  /** Registry counters, e.g. to report as metrics. */
+  @AutoValue
+  public abstract static class Stats {
+
+    /** Lookups of a model that was already loaded or loading. */
+    public abstract long hits();
+
+    /** Lookups that started loading a model. */
+    public abstract long loads();
+
+    /** Loads that failed. */
+    public abstract long loadFailures();
+
+    /** Models evicted, because of the budget or explicitly. */
+    public abstract long evictions();
+
+    /** Models currently loaded. */
+    public abstract int models();
+
+    /** Estimated memory used by the currently loaded models. */
+    public abstract long residentBytes();
+
+    /** Memory budget of the registry. */
+    public abstract long budgetBytes();
+
+    /** Fraction of the lookups that found the model already loaded or loading. */
+    public double hitRate() {
+      final long lookups = hits() + loads();
+      return lookups == 0 ? 0 : (double) hits() / lookups;
+    }
+
+    static Stats create(
+        final long hits,
+        final long loads,
+        final long loadFailures,
+        final long evictions,
+        final int models,
+        final long residentBytes,
+        final long budgetBytes) {
+      return new AutoValue_ModelRegistry_Stats(
+          hits, loads, loadFailures, evictions, models, residentBytes, budgetBytes);
+    }
+  }
+
+  private static final class Entry<M extends Model<?>> {
+
+    private final Model.Id id;
+    private final CompletableFuture<RefCountedModel<M>> future = new CompletableFuture<>();
+    private volatile long lastUsed = System.nanoTime();
+    // written under the registry lock before the future completes.
+    private volatile RefCountedModel<M> model;
+    private volatile Footprint footprint;
+
+    private Entry(final Model.Id id) {
+      this.id = id;
+    }
+  }
+}
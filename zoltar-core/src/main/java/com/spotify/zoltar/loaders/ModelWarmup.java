@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.ModelLoader.PreLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Vector;
+
+/**
+ * Runs representative inputs through the full extract and predict path of a freshly loaded model,
+ * so the first real predictions don't pay for cold JIT paths, lazy graph initialization or native
+ * memory allocation. Every configured batch size is exercised once per iteration, round robin,
+ * until the iterations are done or the time budget is exhausted.
+ *
+ * <pre>{@code
+ * final ModelWarmup<TensorFlowModel, Iris, Example, Long> warmup =
+ *     ModelWarmup.builder(extractor, predictFn, WarmupInputs.recorded(samples))
+ *         .batchSizes(1, 16, 128)
+ *         .budget(Duration.ofSeconds(30))
+ *         .build();
+ *
+ * final ModelLoader<TensorFlowModel> loader =
+ *     TensorFlowLoader.create(modelUri).compose(warmup.preload(Duration.ofMinutes(2)));
+ * }</pre>
+ *
+ * <p>A warmup failure fails the model, the same way a failed {@link
+ * ReloadingModelLoader.WarmupFn} keeps a version from serving. Running out of budget doesn't, the
+ * model is reported ready with whatever warmup it got.
+ *
+ * @param <M> Model instance type.
+ * @param <InputT> type of the warmup inputs.
+ * @param <VectorT> type of the feature extraction result.
+ * @param <ValueT> type of the prediction result.
+ */
+public final class ModelWarmup<M extends Model<?>, InputT, VectorT, ValueT> {
+
+  private final FeatureExtractor<M, InputT, VectorT> featureExtractor;
+  private final AsyncPredictFn<M, InputT, VectorT, ValueT> predictFn;
+  private final WarmupInputs<M, InputT> inputs;
+  private final List<Integer> batchSizes;
+  private final int iterations;
+  private final Duration budget;
+  private final Listener listener;
+  private final Executor executor;
+
+  private ModelWarmup(final Builder<M, InputT, VectorT, ValueT> builder) {
+    this.featureExtractor = builder.featureExtractor;
+    this.predictFn = builder.predictFn;
+    this.inputs = builder.inputs;
+    this.batchSizes = builder.batchSizes;
+    this.iterations = builder.iterations;
+    this.budget = builder.budget;
+    this.listener = builder.listener;
+    this.executor = builder.executor;
+  }
+
+  /**
+   * Creates a warmup builder.
+   *
+   * @param featureExtractor extractor of the served predictor.
+   * @param predictFn prediction function of the served predictor.
+   * @param inputs representative inputs for each batch size.
+   */
+  public static <M extends Model<?>, InputT, VectorT, ValueT>
+      Builder<M, InputT, VectorT, ValueT> builder(
+          final FeatureExtractor<M, InputT, VectorT> featureExtractor,
+          final AsyncPredictFn<M, InputT, VectorT, ValueT> predictFn,
+          final WarmupInputs<M, InputT> inputs) {
+    return new Builder<>(featureExtractor, predictFn, inputs);
+  }
+
+  /**
+   * Warms up the given model on the calling thread.
+   *
+   * @param model model to warm up.
+   * @return the latency of every warmup batch.
+   * @throws Exception if generating inputs, extraction or prediction fails.
+   */
+  public Report run(final M model) throws Exception {
+    final Deadline deadline = Deadline.after(budget);
+    final long start = System.nanoTime();
+    final List<Run> runs = new ArrayList<>();
+    boolean exhausted = false;
+
+    warmup:
+    for (int i = 0; i < iterations; i++) {
+      for (final int batchSize : batchSizes) {
+        if (deadline.isExpired()) {
+          exhausted = true;
+          break warmup;
+        }
+
+        final long batchStart = System.nanoTime();
+        try {
+          predict(model, deadline, inputs.inputs(model, batchSize));
+        } catch (final TimeoutException e) {
+          exhausted = true;
+          break warmup;
+        }
+
+        final Run run = Run.create(batchSize, Duration.ofNanos(System.nanoTime() - batchStart));
+        runs.add(run);
+        listener.onBatch(run);
+      }
+    }
+
+    final Report report =
+        Report.create(runs, Duration.ofNanos(System.nanoTime() - start), exhausted);
+    listener.onComplete(report);
+    return report;
+  }
+
+  /**
+   * Returns a loader decorator whose model is only handed out once it has been warmed up. The
+   * warmup runs once per model instance handed out by the decorated loader, on the warmup
+   * executor. A lease is taken first and its model warmed, so a leased model is always a warm one.
+   */
+  public Function<ModelLoader<M>, ModelLoader<M>> loader() {
+    return loader -> {
+      // models are tracked by identity and dropped once they're unreachable, the values must not
+      // reference the model or it would be kept reachable by its own entry.
+      final ConcurrentMap<M, CompletableFuture<Void>> warmed = new MapMaker().weakKeys().makeMap();
+      return new ModelLoader<M>() {
+        @Override
+        public CompletionStage<M> get() {
+          return loader.get().thenCompose(model -> warm(warmed, model));
+        }
+
+        @Override
+        public CompletionStage<ModelLease<M>> lease() {
+          return loader
+              .lease()
+              .thenCompose(
+                  lease ->
+                      warm(warmed, lease.model())
+                          .handle(
+                              (model, t) -> {
+                                if (t != null) {
+                                  lease.close();
+                                  throw t instanceof CompletionException
+                                      ? (CompletionException) t
+                                      : new CompletionException(t);
+                                }
+                                return lease;
+                              }));
+        }
+
+        @Override
+        public void close() throws IOException {
+          loader.close();
+        }
+      };
+    };
+  }
+
+  /**
+   * Returns a blocking {@link PreLoader} decorator. Blocks till the model is loaded and warmed up,
+   * or a {@link Duration} is met.
+   *
+   * @param duration Amount of time that it should wait, if necessary, for the model to be loaded
+   *     and warmed up.
+   */
+  public Function<ModelLoader<M>, PreLoader<M>> preload(final Duration duration) {
+    return loader -> loader.compose(loader()).compose(PreLoader.preload(duration));
+  }
+
+  /** Returns this warmup as a {@link ReloadingModelLoader.WarmupFn}, warming every new version. */
+  public ReloadingModelLoader.WarmupFn<M> asWarmupFn() {
+    return this::run;
+  }
+
+  private void predict(final M model, final Deadline deadline, final List<InputT> batch)
+      throws Exception {
+    final List<Vector<InputT, VectorT>> vectors = featureExtractor.extract(model, deadline, batch);
+    final CompletableFuture<?> predictions =
+        predictFn.apply(model, vectors, deadline).toCompletableFuture();
+    try {
+      predictions.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    } catch (final ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    } catch (final TimeoutException e) {
+      deadline.cancel();
+      throw e;
+    }
+  }
+
+  private CompletableFuture<M> warm(
+      final ConcurrentMap<M, CompletableFuture<Void>> warmed, final M model) {
+    final CompletableFuture<Void> existing = warmed.get(model);
+    if (existing != null) {
+      return existing.thenApply(ignored -> model);
+    }
+
+    final CompletableFuture<Void> warming = new CompletableFuture<>();
+    final CompletableFuture<Void> raced = warmed.putIfAbsent(model, warming);
+    if (raced != null) {
+      return raced.thenApply(ignored -> model);
+    }
+    try {
+      executor.execute(
+          () -> {
+            try {
+              run(model);
+              warming.complete(null);
+            } catch (final Exception e) {
+              warming.completeExceptionally(e);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      // the next caller tries again.
+      warmed.remove(model, warming);
+      warming.completeExceptionally(e);
+    }
+    return warming.thenApply(ignored -> model);
+  }
+
+  /**
+   * Generates warmup inputs, e.g. synthetic ones, recorded production inputs, or inputs derived
+   * from the model signature.
+   *
+   * @param <M> Model instance type.
+   * @param <InputT> type of the warmup inputs.
+   */
+  @FunctionalInterface
+  public interface WarmupInputs<M extends Model<?>, InputT> {
+
+    /**
+     * Returns a batch of inputs.
+     *
+     * @param model model being warmed up, e.g. to read its signature from.
+     * @param batchSize number of inputs to return.
+     */
+    List<InputT> inputs(M model, int batchSize) throws Exception;
+
+    /**
+     * Cycles through recorded inputs to fill each batch.
+     *
+     * @param samples recorded inputs, at least one.
+     */
+    static <M extends Model<?>, InputT> WarmupInputs<M, InputT> recorded(
+        final List<InputT> samples) {
+      if (samples.isEmpty()) {
+        throw new IllegalArgumentException("at least one recorded input is needed");
+      }
+      final List<InputT> copy = ImmutableList.copyOf(samples);
+      return (model, batchSize) -> {
+        final List<InputT> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          batch.add(copy.get(i % copy.size()));
+        }
+        return batch;
+      };
+    }
+
+    /**
+     * Fills each batch with generated inputs.
+     *
+     * @param generator creates one synthetic input per call.
+     */
+    static <M extends Model<?>, InputT> WarmupInputs<M, InputT> synthetic(
+        final Supplier<InputT> generator) {
+      return (model, batchSize) -> {
+        final List<InputT> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+          batch.add(generator.get());
+        }
+        return batch;
+      };
+    }
+  }
+
+  /** Warmup notifications, e.g. to report warmup latencies as metrics. */
+  public interface Listener {
+
+    /** Called after every warmup batch. */
+    default void onBatch(final Run run) {}
+
+    /** Called once the warmup is done, including when the budget ran out. */
+    default void onComplete(final Report report) {}
+  }
+
+  /** Latency of one warmup batch, extraction and prediction included. */
+  @AutoValue
+  public abstract static class Run {
+
+    /** Number of inputs in the batch. */
+    public abstract int batchSize();
+
+    /** Time taken to extract and predict the batch. */
+    public abstract Duration latency();
+
+    static Run create(final int batchSize, final Duration latency) {
+      return new AutoValue_ModelWarmup_Run(batchSize, latency);
+    }
+  }
+
+  /** Outcome of a warmup. */
+  @AutoValue
+  public abstract static class Report {
+
+    /** Every warmup batch that completed, in order. */
+    public abstract List<Run> runs();
+
+    /** Total time spent warming up. */
+    public abstract Duration elapsed();
+
+    /** True if the warmup stopped because the time budget ran out. */
+    public abstract boolean budgetExhausted();
+
+    /**
+     * Returns the latencies of the batches of the given size, in order. The drop between the first
+     * and the last one shows how cold the model was.
+     */
+    public List<Duration> latencies(final int batchSize) {
+      final List<Duration> latencies = new ArrayList<>();
+      for (final Run run : runs()) {
+        if (run.batchSize() == batchSize) {
+          latencies.add(run.latency());
+        }
+      }
+      return latencies;
+    }
+
+    static Report create(
+        final List<Run> runs, final Duration elapsed, final boolean budgetExhausted) {
+      return new AutoValue_ModelWarmup_Report(
+          Collections.unmodifiableList(runs), elapsed, budgetExhausted);
+    }
+  }
+
+  /**
+   * Builder of a {@link ModelWarmup}.
+   *
+   * @param <M> Model instance type.
+   * @param <InputT> type of the warmup inputs.
+   * @param <VectorT> type of the feature extraction result.
+   * @param <ValueT> type of the prediction result.
+   */
+  public static final class Builder<M extends Model<?>, InputT, VectorT, ValueT> {
+
+    private final FeatureExtractor<M, InputT, VectorT> featureExtractor;
+    private final AsyncPredictFn<M, InputT, VectorT, ValueT> predictFn;
+    private final WarmupInputs<M, InputT> inputs;
+    private List<Integer> batchSizes = ImmutableList.of(1);
+    private int iterations = 10;
+    private Duration budget = Duration.ofSeconds(30);
+    private Listener listener = new Listener() {};
+    private Executor executor = ModelLoader.DEFAULT_EXECUTOR_SERVICE;
+
+    private Builder(
+        final FeatureExtractor<M, InputT, VectorT> featureExtractor,
+        final AsyncPredictFn<M, InputT, VectorT, ValueT> predictFn,
+        final WarmupInputs<M, InputT> inputs) {
+      this.featureExtractor = featureExtractor;
+      this.predictFn = predictFn;
+      this.inputs = inputs;
+    }
+
+    /** Batch sizes to warm up, defaults to a single input per batch. */
+    public Builder<M, InputT, VectorT, ValueT> batchSizes(final int... batchSizes) {
+      if (batchSizes.length == 0) {
+        throw new IllegalArgumentException("at least one batch size is needed");
+      }
+      final ImmutableList.Builder<Integer> sizes = ImmutableList.builder();
+      for (final int batchSize : batchSizes) {
+        if (batchSize <= 0) {
+          throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        sizes.add(batchSize);
+      }
+      this.batchSizes = sizes.build();
+      return this;
+    }
+
+    /** Number of times every batch size is run, defaults to 10. */
+    public Builder<M, InputT, VectorT, ValueT> iterations(final int iterations) {
+      if (iterations <= 0) {
+        throw new IllegalArgumentException("iterations must be positive: " + iterations);
+      }
+      this.iterations = iterations;
+      return this;
+    }
+
+    /** Time after which the warmup stops and the model is reported ready, defaults to 30s. */
+    public Builder<M, InputT, VectorT, ValueT> budget(final Duration budget) {
+      if (budget.isNegative() || budget.isZero()) {
+        throw new IllegalArgumentException("budget must be positive: " + budget);
+      }
+      this.budget = budget;
+      return this;
+    }
+
+    /** Warmup notifications, e.g. latency metrics. */
+    public Builder<M, InputT, VectorT, ValueT> listener(final Listener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /** Executor running the warmup of {@link ModelWarmup#loader()} decorated loaders. */
+    public Builder<M, InputT, VectorT, ValueT> executor(final Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** Builds the warmup. */
+    public ModelWarmup<M, InputT, VectorT, ValueT> build() {
+      return new ModelWarmup<>(this);
+    }
+  }
+}
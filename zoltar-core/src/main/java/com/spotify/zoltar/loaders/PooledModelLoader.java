@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+
+/**
+ * {@link ModelLoader} that loads several independent instances of a model and leases each instance
+ * to one caller at a time, for backends that aren't safe, or don't scale, when a single instance is
+ * shared across threads, e.g. XGBoost boosters.
+ *
+ * <p>{@link #lease()} claims an idle instance without locking. When every instance is leased, the
+ * returned stage completes as soon as an instance is returned, or fails with a {@link
+ * TimeoutException} if none is returned within the maximum wait. {@link #get()} doesn't provide
+ * exclusive access and only exists for compatibility, predictors built with {@code
+ * Predictors.newBuilder} lease the model for each prediction.
+ *
+ * <pre>{@code
+ * final PooledModelLoader<XGBoostModel> loader =
+ *     PooledModelLoader.create(() -> XGBoostModel.create(modelUri), 8, Mode.AFFINITY);
+ * }</pre>
+ *
+ * @param <M> Model instance type.
+ */
+public final class PooledModelLoader<M extends Model<?>> implements ModelLoader<M> {
+
+  /** Maximum time a lease waits for an instance, unless given otherwise. */
+  public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(10);
+
+  /** How instances are picked. */
+  public enum Mode {
+    /** Any idle instance is leased. */
+    POOL,
+    /**
+     * Every thread leases the same instance as long as it's idle, which keeps per-instance state
+     * warm in that thread's CPU caches. Falls back to any idle instance otherwise.
+     */
+    AFFINITY
+  }
+
+  private final CompletableFuture<List<Slot<M>>> slots;
+  private final int instances;
+  private final Mode mode;
+  private final Executor executor;
+  private final Duration maxWait;
+  private final Queue<Waiter<M>> waiters = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final ThreadLocal<Integer> affinity = ThreadLocal.withInitial(next::getAndIncrement);
+  private final AtomicInteger leased = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private volatile boolean closed;
+
+  private PooledModelLoader(
+      final CompletableFuture<List<Slot<M>>> slots,
+      final int instances,
+      final Mode mode,
+      final Executor executor,
+      final Duration maxWait) {
+    this.slots = slots;
+    this.instances = instances;
+    this.mode = mode;
+    this.executor = executor;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Creates a pool of model instances.
+   *
+   * @param supplier loads one model instance, it's called once per instance.
+   * @param instances number of instances.
+   */
+  public static <M extends Model<?>> PooledModelLoader<M> create(
+      final ThrowableSupplier<M> supplier, final int instances) {
+    return create(supplier, instances, Mode.POOL);
+  }
+
+  /**
+   * Creates a pool of model instances.
+   *
+   * @param supplier loads one model instance, it's called once per instance.
+   * @param instances number of instances.
+   * @param mode how instances are picked.
+   */
+  public static <M extends Model<?>> PooledModelLoader<M> create(
+      final ThrowableSupplier<M> supplier, final int instances, final Mode mode) {
+    return create(supplier, instances, mode, DEFAULT_EXECUTOR_SERVICE);
+  }
+
+  /**
+   * Creates a pool of model instances.
+   *
+   * @param supplier loads one model instance, it's called once per instance.
+   * @param instances number of instances.
+   * @param mode how instances are picked.
+   * @param executor loads the instances in parallel, and hands returned instances over to waiting
+   *     callers.
+   */
+  public static <M extends Model<?>> PooledModelLoader<M> create(
+      final ThrowableSupplier<M> supplier,
+      final int instances,
+      final Mode mode,
+      final Executor executor) {
+    return create(supplier, instances, mode, executor, DEFAULT_MAX_WAIT);
+  }
+
+  /**
+   * Creates a pool of model instances.
+   *
+   * @param supplier loads one model instance, it's called once per instance.
+   * @param instances number of instances.
+   * @param mode how instances are picked.
+   * @param executor loads the instances in parallel, and hands returned instances over to waiting
+   *     callers.
+   * @param maxWait maximum time a lease waits for an instance before it fails with a {@link
+   *     TimeoutException}.
+   */
+  public static <M extends Model<?>> PooledModelLoader<M> create(
+      final ThrowableSupplier<M> supplier,
+      final int instances,
+      final Mode mode,
+      final Executor executor,
+      final Duration maxWait) {
+    if (instances < 1) {
+      throw new IllegalArgumentException("instances must be positive: " + instances);
+    }
+    if (maxWait.isNegative() || maxWait.isZero()) {
+      throw new IllegalArgumentException("maxWait must be positive: " + maxWait);
+    }
+    final List<CompletableFuture<M>> models = new ArrayList<>(instances);
+    for (int i = 0; i < instances; i++) {
+      models.add(ModelLoader.load(supplier, executor).get().toCompletableFuture());
+    }
+    final CompletableFuture<List<Slot<M>>> slots =
+        CompletableFuture.allOf(models.toArray(new CompletableFuture<?>[0]))
+            .handle(
+                (ignored, t) -> {
+                  if (t != null) {
+                    // don't leak the instances that did load.
+                    models.forEach(model -> model.thenAccept(PooledModelLoader::closeQuietly));
+                    throw new IllegalStateException("failed to load model instances", t);
+                  }
+                  final List<Slot<M>> loaded = new ArrayList<>(instances);
+                  models.forEach(model -> loaded.add(new Slot<>(model.join())));
+                  return loaded;
+                });
+    return new PooledModelLoader<>(slots, instances, mode, executor, maxWait);
+  }
+
+  /**
+   * Returns one of the instances, without exclusive access. In {@link Mode#AFFINITY} mode it's the
+   * calling thread's instance.
+   */
+  @Override
+  public CompletionStage<M> get() {
+    final int hint = mode == Mode.AFFINITY ? affinity.get() : next.getAndIncrement();
+    return slots.thenApply(loaded -> loaded.get(Math.floorMod(hint, loaded.size())).model);
+  }
+
+  /** Leases an instance exclusively, it's handed to the next caller once the lease is closed. */
+  @Override
+  public CompletionStage<ModelLease<M>> lease() {
+    // picked on the calling thread, loading may complete on another one.
+    final int hint = mode == Mode.AFFINITY ? affinity.get() : ThreadLocalRandom.current().nextInt();
+    return slots.thenCompose(loaded -> acquire(loaded, hint));
+  }
+
+  /** Returns a snapshot of the pool statistics. */
+  public Stats stats() {
+    return Stats.create(
+        instances,
+        leased.get(),
+        waiting.get(),
+        waits.sum(),
+        Duration.ofNanos(waitNanos.sum()),
+        timeouts.sum());
+  }
+
+  /**
+   * Closes idle instances right away, leased ones when they're returned. Callers still waiting for
+   * an instance fail with an {@link IllegalStateException}.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    Waiter<M> waiter;
+    while ((waiter = waiters.poll()) != null) {
+      waiting.decrementAndGet();
+      waiter.future.completeExceptionally(new IllegalStateException("model pool is closed"));
+    }
+    slots.thenAccept(this::closeIdle);
+  }
+
+  private CompletionStage<ModelLease<M>> acquire(final List<Slot<M>> loaded, final int hint) {
+    if (closed) {
+      final CompletableFuture<ModelLease<M>> failure = new CompletableFuture<>();
+      failure.completeExceptionally(new IllegalStateException("model pool is closed"));
+      return failure;
+    }
+    final Slot<M> slot = tryClaim(loaded, hint);
+    if (slot != null) {
+      return CompletableFuture.completedFuture(lease(loaded, slot));
+    }
+    final Waiter<M> waiter = new Waiter<>(System.nanoTime());
+    waiting.incrementAndGet();
+    waiters.offer(waiter);
+    final ScheduledFuture<?> timeout =
+        Timeouts.SCHEDULER.schedule(
+            () -> expire(waiter), maxWait.toNanos(), TimeUnit.NANOSECONDS);
+    waiter.future.whenComplete((r, t) -> timeout.cancel(false));
+    // an instance may have been returned before the waiter was queued.
+    drain(loaded);
+    return waiter.future;
+  }
+
+  private void expire(final Waiter<M> waiter) {
+    // a waiter drain already dequeued gets its instance, or hands it back if it's too late.
+    if (waiters.remove(waiter)) {
+      waiting.decrementAndGet();
+      timeouts.increment();
+      waiter.future.completeExceptionally(
+          new TimeoutException("no model instance returned within " + maxWait));
+    }
+  }
+
+  // Hands idle instances over to waiters. Both acquire and release run it after publishing their
+  // side, so either one sees the other and no waiter is left behind.
+  private void drain(final List<Slot<M>> loaded) {
+    while (!waiters.isEmpty()) {
+      final Slot<M> slot = tryClaim(loaded, ThreadLocalRandom.current().nextInt());
+      if (slot == null) {
+        return;
+      }
+      final Waiter<M> waiter = waiters.poll();
+      if (waiter == null) {
+        slot.free();
+        continue;
+      }
+      waiting.decrementAndGet();
+      waits.increment();
+      waitNanos.add(System.nanoTime() - waiter.startNanos);
+      final ModelLease<M> lease = lease(loaded, slot);
+      // completes on the executor, a synchronous prediction chain would otherwise recurse here.
+      executor.execute(
+          () -> {
+            if (!waiter.future.complete(lease)) {
+              lease.close();
+            }
+          });
+    }
+  }
+
+  private Slot<M> tryClaim(final List<Slot<M>> loaded, final int hint) {
+    final int size = loaded.size();
+    final int start = Math.floorMod(hint, size);
+    for (int i = 0; i < size; i++) {
+      final Slot<M> slot = loaded.get((start + i) % size);
+      if (slot.claim()) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  private ModelLease<M> lease(final List<Slot<M>> loaded, final Slot<M> slot) {
+    leased.incrementAndGet();
+    return new Lease<>(slot.model, () -> release(loaded, slot));
+  }
+
+  private void release(final List<Slot<M>> loaded, final Slot<M> slot) {
+    leased.decrementAndGet();
+    slot.free();
+    if (closed) {
+      closeIdle(loaded);
+    } else {
+      drain(loaded);
+    }
+  }
+
+  // Claimed slots are never freed again, so every instance is closed once.
+  private void closeIdle(final List<Slot<M>> loaded) {
+    for (final Slot<M> slot : loaded) {
+      if (slot.claim()) {
+        closeQuietly(slot.model);
+      }
+    }
+  }
+
+  private static void closeQuietly(final Model<?> model) {
+    try {
+      model.close();
+    } catch (final Exception e) {
+      // nothing left to do with a model that's being discarded.
+    }
+  }
+
+  /** Pool statistics. */
+  @AutoValue
+  public abstract static class Stats {
+
+    /** Number of instances in the pool. */
+    public abstract int instances();
+
+    /** Number of instances currently leased. */
+    public abstract int leased();
+
+    /** Number of callers currently waiting for an instance. */
+    public abstract int waiting();
+
+    /** Number of leases that had to wait for an instance. */
+    public abstract long waits();
+
+    /** Total time spent waiting for an instance. */
+    public abstract Duration waitTime();
+
+    /** Number of leases that failed because no instance was returned within the maximum wait. */
+    public abstract long timeouts();
+
+    /** Fraction of the instances currently leased. */
+    public double utilization() {
+      return instances() == 0 ? 0 : (double) leased() / instances();
+    }
+
+    static Stats create(
+        final int instances,
+        final int leased,
+        final int waiting,
+        final long waits,
+        final Duration waitTime,
+        final long timeouts) {
+      return new AutoValue_PooledModelLoader_Stats(
+          instances, leased, waiting, waits, waitTime, timeouts);
+    }
+  }
+
+  private static final class Slot<M extends Model<?>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Slot> BUSY =
+        AtomicIntegerFieldUpdater.newUpdater(Slot.class, "busy");
+
+    private final M model;
+    private volatile int busy;
+
+    private Slot(final M model) {
+      this.model = model;
+    }
+
+    private boolean claim() {
+      return busy == 0 && BUSY.compareAndSet(this, 0, 1);
+    }
+
+    private void free() {
+      busy = 0;
+    }
+  }
+
+  // Lazily creates the scheduler that expires waiters on first use.
+  private static final class Timeouts {
+    private static final ScheduledExecutorService SCHEDULER =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("zoltar-model-pool-timeout-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  private static final class Waiter<M extends Model<?>> {
+
+    private final CompletableFuture<ModelLease<M>> future = new CompletableFuture<>();
+    private final long startNanos;
+
+    private Waiter(final long startNanos) {
+      this.startNanos = startNanos;
+    }
+  }
+
+  private static final class Lease<M extends Model<?>> implements ModelLease<M> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Lease> RELEASED =
+        AtomicIntegerFieldUpdater.newUpdater(Lease.class, "released");
+
+    private final M model;
+    private final Runnable onRelease;
+    private volatile int released;
+
+    private Lease(final M model, final Runnable onRelease) {
+      this.model = model;
+      this.onRelease = onRelease;
+    }
+
+    @Override
+    public M model() {
+      return model;
+    }
+
+    @Override
+    public void close() {
+      if (RELEASED.compareAndSet(this, 0, 1)) {
+        onRelease.run();
+      }
+    }
+  }
+}
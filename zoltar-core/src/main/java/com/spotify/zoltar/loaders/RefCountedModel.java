@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+
+/**
+ * Lock-free reference count of a {@link Model}. The owner holds one reference until it {@link
+ * #retire() retires} the model, every {@link ModelLease} holds another. The model is closed when
+ * the last reference is returned, and can't be leased anymore from then on.
+ *
+ * @param <M> Model instance type.
+ */
+final class RefCountedModel<M extends Model<?>> {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<RefCountedModel> REFS =
+      AtomicIntegerFieldUpdater.newUpdater(RefCountedModel.class, "refs");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<RefCountedModel> RETIRED =
+      AtomicIntegerFieldUpdater.newUpdater(RefCountedModel.class, "retired");
+
+  private final M model;
+  private final Consumer<Exception> onCloseFailure;
+
+  // starts with the owner's reference.
+  private volatile int refs = 1;
+  private volatile int retired;
+
+  RefCountedModel(final M model, final Consumer<Exception> onCloseFailure) {
+    this.model = model;
+    this.onCloseFailure = onCloseFailure;
+  }
+
+  M model() {
+    return model;
+  }
+
+  /** Returns a new lease, or null if the model is already closed. */
+  ModelLease<M> tryAcquire() {
+    while (true) {
+      final int current = refs;
+      if (current == 0) {
+        return null;
+      }
+      if (REFS.compareAndSet(this, current, current + 1)) {
+        return new Lease<>(this);
+      }
+    }
+  }
+
+  /** Returns the owner's reference, the model is closed once all the leases are returned. */
+  void retire() {
+    if (RETIRED.compareAndSet(this, 0, 1)) {
+      release();
+    }
+  }
+
+  /** Returns the number of outstanding leases. */
+  int leases() {
+    return Math.max(0, refs - (retired == 0 ? 1 : 0));
+  }
+
+  /** Returns true once the model was closed. */
+  boolean isClosed() {
+    return refs == 0;
+  }
+
+  private void release() {
+    if (REFS.decrementAndGet(this) == 0) {
+      try {
+        model.close();
+      } catch (final Exception e) {
+        onCloseFailure.accept(e);
+      }
+    }
+  }
+
+  private static final class Lease<M extends Model<?>> implements ModelLease<M> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Lease> RELEASED =
+        AtomicIntegerFieldUpdater.newUpdater(Lease.class, "released");
+
+    private final RefCountedModel<M> owner;
+    private volatile int released;
+
+    private Lease(final RefCountedModel<M> owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    public M model() {
+      return owner.model;
+    }
+
+    @Override
+    public void close() {
+      if (RELEASED.compareAndSet(this, 0, 1)) {
+        owner.release();
+      }
+    }
+  }
+}
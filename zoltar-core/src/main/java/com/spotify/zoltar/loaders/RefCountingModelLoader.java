@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import com.google.common.collect.MapMaker;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+
+/**
+ * {@link ModelLoader} that reference counts the models handed out by another loader. Every model
+ * instance handed out is tracked, by identity, until it's {@link #retire(Model) retired}, and
+ * closed as soon as its last {@link ModelLease} is returned. A retired instance is never tracked
+ * again, getting or leasing it fails. Instances that are still tracked are retired when the loader
+ * is closed. Leasing a tracked instance is lock-free, so it's cheap enough for every prediction.
+ *
+ * <p>Handing out another instance doesn't retire the previous ones, since pooling loaders hand out
+ * a different instance on almost every call. Loaders that swap models call {@link #retire(Model)}
+ * once the previous model was replaced.
+ *
+ * <pre>{@code
+ * final ModelLoader<TensorFlowModel> loader =
+ *     TensorFlowLoader.create(modelUri).compose(RefCountingModelLoader::create);
+ * }</pre>
+ *
+ * @param <M> Model instance type.
+ */
+public final class RefCountingModelLoader<M extends Model<?>> implements ModelLoader<M> {
+
+  private final ModelLoader<M> loader;
+  private final Consumer<Exception> onCloseFailure;
+  // weak keys are compared by identity.
+  private final ConcurrentMap<M, RefCountedModel<M>> tracked = new MapMaker().weakKeys().makeMap();
+  private final Set<M> retired =
+      Collections.newSetFromMap(new MapMaker().weakKeys().<M, Boolean>makeMap());
+  // guards tracking new instances against retire and close.
+  private final Object lock = new Object();
+  private volatile boolean closed;
+
+  private RefCountingModelLoader(
+      final ModelLoader<M> loader, final Consumer<Exception> onCloseFailure) {
+    this.loader = loader;
+    this.onCloseFailure = onCloseFailure;
+  }
+
+  /**
+   * Creates a reference counting loader, failures to close retired models are ignored.
+   *
+   * @param loader loader of the models to reference count.
+   */
+  public static <M extends Model<?>> RefCountingModelLoader<M> create(
+      final ModelLoader<M> loader) {
+    return create(loader, e -> {});
+  }
+
+  /**
+   * Creates a reference counting loader.
+   *
+   * @param loader loader of the models to reference count.
+   * @param onCloseFailure called when a retired model fails to close.
+   */
+  public static <M extends Model<?>> RefCountingModelLoader<M> create(
+      final ModelLoader<M> loader, final Consumer<Exception> onCloseFailure) {
+    return new RefCountingModelLoader<>(loader, onCloseFailure);
+  }
+
+  @Override
+  public CompletionStage<M> get() {
+    return loader.get().thenApply(model -> track(model).model());
+  }
+
+  @Override
+  public CompletionStage<ModelLease<M>> lease() {
+    return loader
+        .get()
+        .thenCompose(
+            model -> {
+              final ModelLease<M> lease = track(model).tryAcquire();
+              // the model was retired in the meantime, lease the one that replaced it.
+              return lease != null ? CompletableFuture.completedFuture(lease) : lease();
+            });
+  }
+
+  /**
+   * Retires a model instance, e.g. once the underlying loader swapped it for a newer one. It's
+   * closed once its last lease is returned, and can't be got or leased through this loader
+   * anymore.
+   *
+   * @param model model instance handed out by the underlying loader.
+   */
+  public void retire(final M model) {
+    final RefCountedModel<M> counted;
+    synchronized (lock) {
+      retired.add(model);
+      counted = tracked.remove(model);
+    }
+    if (counted != null) {
+      counted.retire();
+    }
+  }
+
+  /** Returns the number of outstanding leases on the tracked models. */
+  public int leases() {
+    int leases = 0;
+    for (final RefCountedModel<M> model : tracked.values()) {
+      leases += model.leases();
+    }
+    return leases;
+  }
+
+  /** Retires the tracked models, they're closed once their last lease is returned. */
+  @Override
+  public void close() {
+    final List<RefCountedModel<M>> models;
+    synchronized (lock) {
+      closed = true;
+      models = new ArrayList<>(tracked.values());
+      tracked.clear();
+    }
+    models.forEach(RefCountedModel::retire);
+  }
+
+  private RefCountedModel<M> track(final M model) {
+    final RefCountedModel<M> counted = tracked.get(model);
+    if (counted != null) {
+      return counted;
+    }
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("loader is closed");
+      }
+      // a retired instance may already be closed, never hand it out again.
+      if (retired.contains(model)) {
+        throw new IllegalStateException("model instance was retired");
+      }
+      return tracked.computeIfAbsent(model, m -> new RefCountedModel<>(m, onCloseFailure));
+    }
+  }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.fs.FileSystemExtras;
+
+/**
+ * {@link ModelLoader} that polls a model root for new versions and swaps them in without downtime.
+ * A new version is loaded and warmed up in the background while the current one keeps serving,
+ * then {@link #get()} atomically starts returning the new model. The previous model is retired
+ * after a drain timeout, and closed once the last {@link ModelLease} on it is returned, so a
+ * prediction that leased the model is never cut short.
+ *
+ * <pre>{@code
+ * final ReloadingModelLoader<TensorFlowModel> loader =
+ *     ReloadingModelLoader.create(
+ *         VersionResolver.latestDate(URI.create("gs://bucket/models/iris")),
+ *         TensorFlowModel::create,
+ *         ReloadingModelLoader.Options.<TensorFlowModel>builder()
+ *             .pollInterval(Duration.ofMinutes(5))
+ *             .build());
+ * }</pre>
+ *
+ * @param <M> Model instance type.
+ */
+public final class ReloadingModelLoader<M extends Model<?>> implements ModelLoader<M> {
+
+  private final VersionResolver resolver;
+  private final VersionLoader<M> loader;
+  private final Options<M> options;
+  private final ScheduledExecutorService scheduler;
+  private final CompletableFuture<M> initial = new CompletableFuture<>();
+  private final AtomicReference<Loaded<M>> current = new AtomicReference<>();
+  private final Queue<RefCountedModel<M>> retiring = new ConcurrentLinkedQueue<>();
+  // guards the swap of the current model against close.
+  private final Object lock = new Object();
+  private volatile URI failed;
+  private volatile boolean closed;
+
+  private ReloadingModelLoader(
+      final VersionResolver resolver, final VersionLoader<M> loader, final Options<M> options) {
+    this.resolver = resolver;
+    this.loader = loader;
+    this.options = options;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("zoltar-model-reloader-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * Creates a reloading loader and starts polling for versions.
+   *
+   * @param resolver finds the latest model version.
+   * @param loader loads a model given its version.
+   * @param options polling, warmup and drain options.
+   * @param <M> Model instance type.
+   */
+  public static <M extends Model<?>> ReloadingModelLoader<M> create(
+      final VersionResolver resolver, final VersionLoader<M> loader, final Options<M> options) {
+    final ReloadingModelLoader<M> reloading = new ReloadingModelLoader<>(resolver, loader, options);
+    reloading.scheduler.scheduleWithFixedDelay(
+        reloading::poll, 0, options.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+    return reloading;
+  }
+
+  /**
+   * Creates a reloading loader with the default {@link Options} and starts polling for versions.
+   *
+   * @param resolver finds the latest model version.
+   * @param loader loads a model given its version.
+   * @param <M> Model instance type.
+   */
+  public static <M extends Model<?>> ReloadingModelLoader<M> create(
+      final VersionResolver resolver, final VersionLoader<M> loader) {
+    return create(resolver, loader, Options.<M>builder().build());
+  }
+
+  /**
+   * Returns the current model. Until the first version is loaded, the returned stage completes
+   * when it is, or fails if it can't be loaded.
+   */
+  @Override
+  public CompletionStage<M> get() {
+    final Loaded<M> loaded = current.get();
+    return loaded != null ? loaded.future() : initial;
+  }
+
+  /**
+   * Leases the current model, it isn't closed before the lease is returned even if a newer version
+   * replaces it in the meantime.
+   */
+  @Override
+  public CompletionStage<ModelLease<M>> lease() {
+    if (closed) {
+      final CompletableFuture<ModelLease<M>> failure = new CompletableFuture<>();
+      failure.completeExceptionally(new IllegalStateException("model loader is closed"));
+      return failure;
+    }
+    final Loaded<M> loaded = current.get();
+    if (loaded == null) {
+      return initial.thenCompose(model -> lease());
+    }
+    final ModelLease<M> lease = loaded.model().tryAcquire();
+    // the model was retired in the meantime, lease the one that replaced it.
+    return lease != null ? CompletableFuture.completedFuture(lease) : lease();
+  }
+
+  /** Returns the version of the current model, if any. */
+  public Optional<URI> version() {
+    return Optional.ofNullable(current.get()).map(Loaded::version);
+  }
+
+  /**
+   * Stops polling and retires the current and retiring models, they're closed once their last
+   * lease is returned.
+   */
+  @Override
+  public void close() throws IOException {
+    final Loaded<M> loaded;
+    synchronized (lock) {
+      closed = true;
+      loaded = current.getAndSet(null);
+    }
+    scheduler.shutdownNow();
+    if (loaded != null) {
+      retiring.add(loaded.model());
+    }
+    RefCountedModel<M> model;
+    while ((model = retiring.poll()) != null) {
+      model.retire();
+    }
+  }
+
+  // Runs on the scheduler thread only, so loads never overlap. Nothing may escape, an exception
+  // would silently cancel the polling.
+  private void poll() {
+    try {
+      reload();
+    } catch (final RuntimeException e) {
+      notifyFailure(null, e);
+    }
+  }
+
+  private void reload() {
+    final URI version;
+    try {
+      final Optional<URI> latest = resolver.latest();
+      if (!latest.isPresent()) {
+        return;
+      }
+      version = latest.get();
+    } catch (final Exception e) {
+      notifyFailure(null, e);
+      return;
+    }
+
+    final Loaded<M> previous = current.get();
+    if ((previous != null && previous.version().equals(version)) || version.equals(failed)) {
+      return;
+    }
+
+    M model = null;
+    try {
+      model = loader.load(version);
+      options.warmup().warmup(model);
+    } catch (final Exception e) {
+      closeQuietly(model);
+      // broken versions aren't retried until a newer version shows up.
+      failed = version;
+      if (previous == null) {
+        initial.completeExceptionally(e);
+      }
+      notifyFailure(version, e);
+      return;
+    }
+
+    // a model swapped in after close would never be retired.
+    synchronized (lock) {
+      if (closed) {
+        closeQuietly(model);
+        return;
+      }
+      current.set(Loaded.create(version, new RefCountedModel<>(model, this::closeFailed)));
+    }
+    initial.complete(model);
+
+    if (previous != null) {
+      retire(previous.model());
+    }
+
+    try {
+      options.listener().onReload(version, model);
+    } catch (final RuntimeException e) {
+      notifyFailure(version, e);
+    }
+  }
+
+  // callers that use get() instead of lease() are covered by the drain timeout.
+  private void retire(final RefCountedModel<M> model) {
+    retiring.add(model);
+    try {
+      scheduler.schedule(
+          () -> {
+            if (retiring.remove(model)) {
+              model.retire();
+            }
+          },
+          options.drainTimeout().toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (final RejectedExecutionException e) {
+      // closed in the meantime, close retires everything that's retiring right away.
+      if (retiring.remove(model)) {
+        model.retire();
+      }
+    }
+  }
+
+  private void notifyFailure(final URI version, final Exception e) {
+    try {
+      options.listener().onFailure(version, e);
+    } catch (final RuntimeException ignored) {
+      // a failing listener must not stop the reloading.
+    }
+  }
+
+  private void closeQuietly(final M model) {
+    if (model == null) {
+      return;
+    }
+    try {
+      model.close();
+    } catch (final Exception e) {
+      closeFailed(e);
+    }
+  }
+
+  private void closeFailed(final Exception e) {
+    notifyFailure(null, e);
+  }
+
+  /** Finds the latest version of a model. */
+  @FunctionalInterface
+  public interface VersionResolver {
+
+    /**
+     * Resolves versions as date partitions of a model root, e.g. {@code
+     * gs://bucket/models/iris/2019-01-01}, see {@link FileSystemExtras#getLatestDate(Path)}.
+     *
+     * @param root model root on the local file system or GCS.
+     */
+    static VersionResolver latestDate(final URI root) {
+      return () -> {
+        final Path path = FileSystemExtras.path(root);
+        return FileSystemExtras.getLatestDate(path).map(date -> path.resolve(date).toUri());
+      };
+    }
+
+    /** Returns the latest version, if any. */
+    Optional<URI> latest() throws IOException;
+  }
+
+  /**
+   * Loads a model version.
+   *
+   * @param <M> Model instance type.
+   */
+  @FunctionalInterface
+  public interface VersionLoader<M extends Model<?>> {
+
+    M load(URI version) throws Exception;
+  }
+
+  /**
+   * Warms up a freshly loaded model before it starts serving, e.g. by running a few predictions.
+   *
+   * @param <M> Model instance type.
+   */
+  @FunctionalInterface
+  public interface WarmupFn<M extends Model<?>> {
+
+    void warmup(M model) throws Exception;
+  }
+
+  /**
+   * Reload notifications. Failures never stop the loader, the current model keeps serving.
+   * Exceptions thrown by the listener are ignored.
+   *
+   * @param <M> Model instance type.
+   */
+  public interface Listener<M extends Model<?>> {
+
+    /** Called when a new version starts serving. */
+    default void onReload(final URI version, final M model) {}
+
+    /** Called when a version can't be resolved, loaded, warmed up or closed. */
+    default void onFailure(final URI version, final Throwable cause) {}
+  }
+
+  /** Reloading options. */
+  @AutoValue
+  public abstract static class Options<M extends Model<?>> {
+
+    /** Time between two version checks. */
+    public abstract Duration pollInterval();
+
+    /**
+     * Time given to in-flight users of {@link #get()} on the previous model before it's retired.
+     * Leased models are closed when their last lease is returned instead.
+     */
+    public abstract Duration drainTimeout();
+
+    public abstract WarmupFn<M> warmup();
+
+    public abstract Listener<M> listener();
+
+    /** Returns a builder that polls every minute, drains for 30s and doesn't warm up. */
+    public static <M extends Model<?>> Builder<M> builder() {
+      return new AutoValue_ReloadingModelLoader_Options.Builder<M>()
+          .pollInterval(Duration.ofMinutes(1))
+          .drainTimeout(Duration.ofSeconds(30))
+          .warmup(model -> {})
+          .listener(new Listener<M>() {});
+    }
+
+    /** Builder for {@link Options}. */
+    @AutoValue.Builder
+    public abstract static class Builder<M extends Model<?>> {
+
+      public abstract Builder<M> pollInterval(Duration pollInterval);
+
+      public abstract Builder<M> drainTimeout(Duration drainTimeout);
+
+      public abstract Builder<M> warmup(WarmupFn<M> warmup);
+
+      public abstract Builder<M> listener(Listener<M> listener);
+
+      public abstract Options<M> build();
+    }
+  }
+
+  @AutoValue
+  abstract static class Loaded<M extends Model<?>> {
+
+    abstract URI version();
+
+    abstract RefCountedModel<M> model();
+
+    abstract CompletableFuture<M> future();
+
+    static <M extends Model<?>> Loaded<M> create(
+        final URI version, final RefCountedModel<M> model) {
+      return new AutoValue_ReloadingModelLoader_Loaded<>(
+          version, model, CompletableFuture.completedFuture(model.model()));
+    }
+  }
+}
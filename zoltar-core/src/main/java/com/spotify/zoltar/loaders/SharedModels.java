@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.google.auto.value.AutoValue;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.ModelLoader.ThrowableSupplier;
+
+/**
+ * Process-wide registry that shares one model instance between all the loaders of the same {@link
+ * Key}, e.g. every {@code TensorFlowLoader.shared(modelUri)} of a process. Concurrent and repeated
+ * loads of a key are deduplicated: the first loader of a key loads the model, the others wait for
+ * that load.
+ *
+ * <p>Every loader holds a reference on the shared model until it's {@link ModelLoader#close()
+ * closed}. The model is closed once the last loader of its key is closed and its last {@link
+ * ModelLease} is returned, a later loader of the same key loads it again. Failed loads aren't
+ * shared, the next loader of the key retries.
+ *
+ * <p>Getting a loader and leasing the model are lock-free.
+ *
+ * <pre>{@code
+ * final ModelLoader<XGBoostModel> loader =
+ *     SharedModels.global()
+ *         .loader(
+ *             SharedModels.Key.of(XGBoostModel.class, modelUri),
+ *             () -> XGBoostModel.create(URI.create(modelUri)));
+ * }</pre>
+ */
+public final class SharedModels {
+
+  private static final SharedModels GLOBAL = create(ModelLoader.DEFAULT_EXECUTOR_SERVICE);
+
+  private final Executor executor;
+  private final ConcurrentMap<Key, Entry<?>> entries = new ConcurrentHashMap<>();
+
+  private SharedModels(final Executor executor) {
+    this.executor = executor;
+  }
+
+  /** Returns the process-wide registry, models are loaded on the default executor. */
+  public static SharedModels global() {
+    return GLOBAL;
+  }
+
+  /**
+   * Creates a registry, e.g. to scope sharing to a part of the process.
+   *
+   * @param executor executor the models are loaded on.
+   */
+  public static SharedModels create(final Executor executor) {
+    return new SharedModels(executor);
+  }
+
+  /**
+   * Returns a loader of the model shared by all the loaders of the key. The model is loaded with
+   * the supplier unless it's already loaded or loading.
+   *
+   * @param key identifies the model, every loader of the key must load the same model type.
+   * @param supplier loads the model if it isn't shared yet.
+   * @param <M> Model instance type.
+   */
+  public <M extends Model<?>> ModelLoader<M> loader(
+      final Key key, final ThrowableSupplier<M> supplier) {
+    while (true) {
+      @SuppressWarnings("unchecked")
+      final Entry<M> existing = (Entry<M>) entries.get(key);
+      if (existing != null) {
+        if (existing.acquire()) {
+          return new SharedLoader<>(this, existing);
+        }
+        // the entry is being released, replace it.
+        entries.remove(key, existing);
+        continue;
+      }
+
+      final Entry<M> created = new Entry<>(key);
+      if (entries.putIfAbsent(key, created) == null) {
+        executor.execute(() -> load(created, supplier));
+        return new SharedLoader<>(this, created);
+      }
+    }
+  }
+
+  /** Returns the number of models shared, loaded or loading. */
+  public int size() {
+    return entries.size();
+  }
+
+  /** Returns the number of open loaders of the key. */
+  public int loaders(final Key key) {
+    final Entry<?> entry = entries.get(key);
+    return entry == null ? 0 : Math.max(0, entry.handles.get());
+  }
+
+  private <M extends Model<?>> void load(
+      final Entry<M> entry, final ThrowableSupplier<M> supplier) {
+    try {
+      entry.future.complete(new RefCountedModel<>(supplier.get(), e -> {}));
+    } catch (final Exception e) {
+      // failed loads aren't shared, the next loader retries.
+      entries.remove(entry.key, entry);
+      entry.future.completeExceptionally(e);
+    }
+  }
+
+  private void release(final Entry<?> entry) {
+    if (entry.release()) {
+      entries.remove(entry.key, entry);
+      entry.future.thenAccept(RefCountedModel::retire);
+    }
+  }
+
+  /** Identifies a shared model, e.g. by its URI, load options and signature. */
+  @AutoValue
+  public abstract static class Key {
+
+    public abstract List<Object> parts();
+
+    /**
+     * Creates a key, parts are compared with {@link Object#equals(Object)}.
+     *
+     * @param parts e.g. the model type, URI, load options and signature.
+     */
+    public static Key of(final Object... parts) {
+      return new AutoValue_SharedModels_Key(Arrays.asList(parts.clone()));
+    }
+  }
+
+  // every open loader holds a handle, the entry is dead once the last handle is released.
+  private static final class Entry<M extends Model<?>> {
+
+    private static final int DEAD = -1;
+
+    private final Key key;
+    private final CompletableFuture<RefCountedModel<M>> future = new CompletableFuture<>();
+    // starts with the handle of the loader that created the entry.
+    private final AtomicInteger handles = new AtomicInteger(1);
+
+    private Entry(final Key key) {
+      this.key = key;
+    }
+
+    /** Takes a handle, or returns false if the entry is dead. */
+    private boolean acquire() {
+      while (true) {
+        final int current = handles.get();
+        if (current == DEAD) {
+          return false;
+        }
+        if (handles.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /** Returns a handle, and true if it was the last one and the entry is now dead. */
+    private boolean release() {
+      return handles.decrementAndGet() == 0 && handles.compareAndSet(0, DEAD);
+    }
+  }
+
+  private static final class SharedLoader<M extends Model<?>> implements ModelLoader<M> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<SharedLoader> CLOSED =
+        AtomicIntegerFieldUpdater.newUpdater(SharedLoader.class, "closed");
+
+    private final SharedModels registry;
+    private final Entry<M> entry;
+    private volatile int closed;
+
+    private SharedLoader(final SharedModels registry, final Entry<M> entry) {
+      this.registry = registry;
+      this.entry = entry;
+    }
+
+    @Override
+    public CompletionStage<M> get() {
+      return entry.future.thenApply(RefCountedModel::model);
+    }
+
+    @Override
+    public CompletionStage<ModelLease<M>> lease() {
+      if (closed != 0) {
+        final CompletableFuture<ModelLease<M>> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new IllegalStateException("model loader is closed"));
+        return failure;
+      }
+      return entry.future.thenApply(
+          model -> {
+            // the model can't be closed while this loader holds its handle.
+            final ModelLease<M> lease = model.tryAcquire();
+            if (lease == null) {
+              throw new IllegalStateException("model loader is closed");
+            }
+            return lease;
+          });
+    }
+
+    /** Returns this loader's handle, the model is closed once nobody uses it anymore. */
+    @Override
+    public void close() {
+      if (CLOSED.compareAndSet(this, 0, 1)) {
+        registry.release(entry);
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.jmh;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.spotify.zoltar.Deadline;
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+/**
+ * Compares per-call allocations of the array and the list entry points of feature extraction and
+ * prediction, for callers holding their inputs in a {@link List}. Run with the {@link GCProfiler}
+ * and compare {@code gc.alloc.rate.norm}, the bytes allocated per call: the {@code list} path
+ * should allocate less than the {@code array} one, which copies the inputs first.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(value = 1)
+@Fork(value = 1)
+public class BenchmarkAllocation {
+
+  @Param({"array", "list"})
+  private String path;
+
+  @Param({"1", "16", "256"})
+  private int batchSize;
+
+  private final DummyModel model = new DummyModel();
+
+  private FeatureExtractor<DummyModel, Integer, Float> featureExtractor;
+
+  private Predictor<Integer, Float> predictor;
+
+  private List<Integer> inputs;
+
+  /** run benchmarks. */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder()
+            .include(BenchmarkAllocation.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    new Runner(opt).run();
+  }
+
+  /** initialize extractor and predictor. */
+  @Setup
+  public void setup() {
+    final ExtractFn<Integer, Float> extractFn = ExtractFn.lift(input -> (float) input);
+    final AsyncPredictFn<DummyModel, Integer, Float, Float> predictFn =
+        (model, vectors) -> {
+          final List<Prediction<Integer, Float>> predictions =
+              vectors
+                  .stream()
+                  .map(vector -> Prediction.create(vector.input(), vector.value()))
+                  .collect(Collectors.toList());
+          return CompletableFuture.completedFuture(predictions);
+        };
+
+    featureExtractor = FeatureExtractor.create(extractFn);
+    predictor =
+        Predictors.newBuilder(ModelLoader.loaded(model), featureExtractor, predictFn).predictor();
+    inputs = IntStream.range(0, batchSize).boxed().collect(Collectors.toList());
+  }
+
+  /** extracts features from a list of inputs. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void extract(final Blackhole blackhole) throws Exception {
+    if ("list".equals(path)) {
+      blackhole.consume(featureExtractor.extract(model, Deadline.none(), inputs));
+    } else {
+      blackhole.consume(
+          featureExtractor.extract(model, Deadline.none(), inputs.toArray(new Integer[0])));
+    }
+  }
+
+  /** predicts a list of inputs. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void predict(final Blackhole blackhole) throws Exception {
+    final Duration timeout = Duration.ofSeconds(1);
+    if ("list".equals(path)) {
+      blackhole.consume(predictor.predict(timeout, inputs).toCompletableFuture().get());
+    } else {
+      blackhole.consume(
+          predictor
+              .predict(timeout, inputs.toArray(new Integer[0]))
+              .toCompletableFuture()
+              .get());
+    }
+  }
+
+  private static final class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return this;
+    }
+
+    @Override
+    public void close() {}
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.jmh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.cloud.storage.contrib.nio.CloudStorageConfiguration;
+import com.google.cloud.storage.contrib.nio.CloudStorageFileSystem;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+
+import com.spotify.zoltar.fs.ModelDownloader;
+
+/**
+ * Downloads a SavedModel shaped directory, a large variables shard and a few small files, from an
+ * in-memory GCS stand-in. {@code sequential} copies one file at a time like the former {@code
+ * FileSystemExtras.copyDir}, {@code parallel} transfers files concurrently and splits the shard in
+ * ranged reads. The stand-in has no network latency, so this measures the engine overhead and how
+ * it scales with cores, real GCS downloads gain more from the concurrency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+public class BenchmarkDownload {
+
+  @Param({"sequential", "parallel"})
+  private String engine;
+
+  @Param({"4", "16"})
+  private int concurrency;
+
+  @Param({"64"})
+  private int shardMegabytes;
+
+  private Path src;
+  private Path dest;
+  private ModelDownloader downloader;
+
+  /** run benchmarks. */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder().include(BenchmarkDownload.class.getSimpleName()).build();
+
+    new Runner(opt).run();
+  }
+
+  /** upload the model to the in-memory bucket. */
+  @Setup
+  public void setup() throws IOException {
+    final CloudStorageFileSystem gcs =
+        CloudStorageFileSystem.forBucket(
+            "bucket", CloudStorageConfiguration.DEFAULT, LocalStorageHelper.getOptions());
+    src = gcs.getPath("/model/");
+    Files.write(
+        gcs.getPath("/model/variables/variables.data-00000-of-00001"),
+        random(shardMegabytes << 20));
+    Files.write(gcs.getPath("/model/variables/variables.index"), random(16 << 10));
+    Files.write(gcs.getPath("/model/saved_model.pb"), random(512 << 10));
+
+    downloader =
+        "sequential".equals(engine)
+            ? ModelDownloader.create(
+                ModelDownloader.Options.builder()
+                    .concurrency(1)
+                    .parallelThreshold(Long.MAX_VALUE)
+                    .build())
+            : ModelDownloader.create(
+                ModelDownloader.Options.builder()
+                    .concurrency(concurrency)
+                    .parallelThreshold(8L << 20)
+                    .chunkSize(4L << 20)
+                    .build());
+  }
+
+  /** fresh destination for every download. */
+  @Setup(Level.Invocation)
+  public void createDest() throws IOException {
+    dest = Files.createTempDirectory("zoltar-jmh-");
+  }
+
+  /** remove the downloaded model. */
+  @TearDown(Level.Invocation)
+  public void deleteDest() throws IOException {
+    try (Stream<Path> paths = Files.walk(dest)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /** download the model. */
+  @Benchmark
+  public Path download() throws IOException {
+    return downloader.copyDir(src, dest, true);
+  }
+
+  private static byte[] random(final int size) {
+    final byte[] bytes = new byte[size];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+
+/**
+ * Finds the batch size above which parallel extraction beats extraction on the calling thread, for
+ * a few per-input extraction costs. The crossover is the smallest {@code batchSize} where the
+ * {@code parallel} mode wins, a good starting point for {@link ExtractFn#parallel(Function, int)}'s
+ * threshold.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(value = 1)
+@Fork(value = 1)
+public class BenchmarkParallelExtraction {
+
+  @Param({"sequential", "parallel"})
+  private String mode;
+
+  @Param({"8", "32", "128", "512", "2048"})
+  private int batchSize;
+
+  /** Number of floating point operations per extracted input. */
+  @Param({"100", "1000", "10000"})
+  private int work;
+
+  private ExtractFn<Integer, double[]> extractFn;
+
+  private Integer[] inputs;
+
+  /** run benchmarks. */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder().include(BenchmarkParallelExtraction.class.getSimpleName()).build();
+
+    new Runner(opt).run();
+  }
+
+  /** initialize extraction functions. */
+  @Setup
+  public void setup() {
+    final Function<Integer, double[]> fn =
+        input -> {
+          final double[] features = new double[8];
+          for (int i = 0; i < work; i++) {
+            features[i & 7] += Math.sqrt(input + i);
+          }
+          return features;
+        };
+    // a threshold of 1 always goes parallel, so every batch size measures the parallel path.
+    extractFn = "parallel".equals(mode) ? ExtractFn.parallel(fn, 1) : ExtractFn.lift(fn);
+    inputs = IntStream.range(0, batchSize).boxed().toArray(Integer[]::new);
+  }
+
+  /** extracts a batch. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public void extract(final Blackhole blackhole) throws Exception {
+    final List<double[]> vectors = extractFn.apply(inputs);
+    blackhole.consume(vectors);
+  }
+}
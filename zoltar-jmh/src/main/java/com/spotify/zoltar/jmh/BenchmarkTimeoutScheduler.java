@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.jmh;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.spotify.zoltar.HashedWheelTimeoutScheduler;
+import com.spotify.zoltar.Predictor;
+
+/**
+ * Measures the per request overhead of the prediction timeout, i.e. scheduling a timeout and
+ * cancelling it once the prediction completes, for the default scheduler and the hashed wheel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+public class BenchmarkTimeoutScheduler {
+
+  private static final Runnable NOOP = () -> {};
+
+  @Param({"default", "wheel"})
+  private String scheduler;
+
+  private ScheduledExecutorService executor;
+
+  /** run benchmarks. */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder().include(BenchmarkTimeoutScheduler.class.getSimpleName()).build();
+
+    new Runner(opt).run();
+  }
+
+  /** initialize schedulers. */
+  @Setup
+  public void setup() {
+    final Predictor<Object, Object> predictor = (s, timeout, inputs) -> null;
+    executor =
+        "wheel".equals(scheduler)
+            ? HashedWheelTimeoutScheduler.create().scheduler()
+            : predictor.timeoutScheduler().scheduler();
+  }
+
+  /** schedule and cancel a timeout from a single thread. */
+  @Benchmark
+  @Threads(1)
+  public boolean threads1() {
+    return scheduleAndCancel();
+  }
+
+  /** schedule and cancel a timeout from 8 threads. */
+  @Benchmark
+  @Threads(8)
+  public boolean threads8() {
+    return scheduleAndCancel();
+  }
+
+  /** schedule and cancel a timeout from 32 threads. */
+  @Benchmark
+  @Threads(32)
+  public boolean threads32() {
+    return scheduleAndCancel();
+  }
+
+  private boolean scheduleAndCancel() {
+    return executor.schedule(NOOP, 1, TimeUnit.SECONDS).cancel(false);
+  }
+}
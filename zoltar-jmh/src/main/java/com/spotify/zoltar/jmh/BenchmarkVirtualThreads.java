@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.jmh;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.spotify.zoltar.ExecutionPolicy;
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+/**
+ * Compares the pool-based execution of blocking, I/O heavy, prediction functions against the
+ * virtual thread execution mode. Requires JDK 21 or later to run the virtual thread variant.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(value = 1)
+@Fork(value = 1)
+public class BenchmarkVirtualThreads {
+
+  @Param({"pool", "virtual"})
+  private String mode;
+
+  @Param({"16", "256"})
+  private int concurrency;
+
+  @Param({"1"})
+  private int blockingMillis;
+
+  private Predictor<Integer, Integer> predictor;
+
+  /** run benchmarks. */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt =
+        new OptionsBuilder().include(BenchmarkVirtualThreads.class.getSimpleName()).build();
+
+    new Runner(opt).run();
+  }
+
+  /** initialize predictors. */
+  @Setup
+  public void setup() {
+    final ExecutionPolicy policy =
+        "virtual".equals(mode) ? ExecutionPolicy.virtualThreads() : ExecutionPolicy.defaults();
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<BlockingModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          // simulates a remote call, e.g. MlEngineModel#predict.
+          Thread.sleep(blockingMillis);
+          final List<Prediction<Integer, Integer>> predictions = new ArrayList<>(vectors.size());
+          vectors.forEach(v -> predictions.add(Prediction.create(v.input(), v.value())));
+          return predictions;
+        };
+
+    final ModelLoader<BlockingModel> loader = ModelLoader.loaded(new BlockingModel());
+    predictor = Predictors.newBuilder(loader, extractFn, predictFn, policy).predictor();
+  }
+
+  /** concurrent, blocking, predictions. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  public void predict() {
+    final List<CompletableFuture<?>> futures = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      futures.add(predictor.predict(i).toCompletableFuture());
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+  }
+
+  private static final class BlockingModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("blocking");
+    }
+
+    @Override
+    public Object instance() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void close() {}
+  }
+}
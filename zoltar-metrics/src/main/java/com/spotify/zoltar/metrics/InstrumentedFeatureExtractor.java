@@ -18,6 +18,7 @@ package com.spotify.zoltar.metrics;
 import java.util.List;
 import java.util.function.Function;
 
+import com.spotify.zoltar.Deadline;
 import com.spotify.zoltar.FeatureExtractor;
 import com.spotify.zoltar.Model;
 import com.spotify.zoltar.Vector;
@@ -41,13 +42,52 @@ interface InstrumentedFeatureExtractor<ModelT extends Model<?>, InputT, ValueT>
               InstrumentedFeatureExtractor<ModelT, InputT, ValueT>>
           create(final FeatureExtractorMetrics<InputT, ValueT> metrics) {
     return extractFn ->
-        (model, inputs) -> {
-          final VectorMetrics<InputT, ValueT> vectorMetrics = metrics.apply(model.id());
-          final List<Vector<InputT, ValueT>> result = extractFn.extract(model, inputs);
+        new InstrumentedFeatureExtractor<ModelT, InputT, ValueT>() {
+          @Override
+          public List<Vector<InputT, ValueT>> extract(final ModelT model, final InputT... inputs)
+              throws Exception {
+            final VectorMetrics<InputT, ValueT> vectorMetrics = metrics.apply(model.id());
+            final List<Vector<InputT, ValueT>> result = extractFn.extract(model, inputs);
 
-          vectorMetrics.extraction(result);
+            vectorMetrics.extraction(result);
 
-          return result;
+            return result;
+          }
+
+          @Override
+          public List<Vector<InputT, ValueT>> extract(
+              final ModelT model, final Deadline deadline, final InputT... inputs)
+              throws Exception {
+            final VectorMetrics<InputT, ValueT> vectorMetrics = metrics.apply(model.id());
+            final List<Vector<InputT, ValueT>> result = extractFn.extract(model, deadline, inputs);
+
+            vectorMetrics.extraction(result);
+
+            return result;
+          }
+
+          @Override
+          public List<Vector<InputT, ValueT>> extract(
+              final ModelT model, final List<InputT> inputs) throws Exception {
+            final VectorMetrics<InputT, ValueT> vectorMetrics = metrics.apply(model.id());
+            final List<Vector<InputT, ValueT>> result = extractFn.extract(model, inputs);
+
+            vectorMetrics.extraction(result);
+
+            return result;
+          }
+
+          @Override
+          public List<Vector<InputT, ValueT>> extract(
+              final ModelT model, final Deadline deadline, final List<InputT> inputs)
+              throws Exception {
+            final VectorMetrics<InputT, ValueT> vectorMetrics = metrics.apply(model.id());
+            final List<Vector<InputT, ValueT>> result = extractFn.extract(model, deadline, inputs);
+
+            vectorMetrics.extraction(result);
+
+            return result;
+          }
         };
   }
 }
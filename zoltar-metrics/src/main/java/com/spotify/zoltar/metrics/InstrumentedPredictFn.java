@@ -19,9 +19,11 @@ import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
+import com.spotify.zoltar.Deadline;
 import com.spotify.zoltar.Model;
 import com.spotify.zoltar.PredictFns.AsyncPredictFn;
 import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Vector;
 
 /**
  * Instrumented Asynchronous prediction functional interface {@link AsyncPredictFn}.
@@ -42,12 +44,28 @@ interface InstrumentedPredictFn<ModelT extends Model<?>, InputT, VectorT, ValueT
               InstrumentedPredictFn<ModelT, InputT, VectorT, ValueT>>
           create(final PredictFnMetrics<InputT, ValueT> metrics) {
     return predictfn ->
-        (model, vectors) -> {
-          final PredictMetrics<InputT, ValueT> predictMetrics = metrics.apply(model.id());
-          final CompletionStage<List<Prediction<InputT, ValueT>>> result =
-              predictfn.apply(model, vectors);
+        new InstrumentedPredictFn<ModelT, InputT, VectorT, ValueT>() {
+          @Override
+          public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+              final ModelT model, final List<Vector<InputT, VectorT>> vectors) {
+            final PredictMetrics<InputT, ValueT> predictMetrics = metrics.apply(model.id());
+            final CompletionStage<List<Prediction<InputT, ValueT>>> result =
+                predictfn.apply(model, vectors);
 
-          return result.whenComplete((r, t) -> predictMetrics.prediction(r));
+            return result.whenComplete((r, t) -> predictMetrics.prediction(r));
+          }
+
+          @Override
+          public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+              final ModelT model,
+              final List<Vector<InputT, VectorT>> vectors,
+              final Deadline deadline) {
+            final PredictMetrics<InputT, ValueT> predictMetrics = metrics.apply(model.id());
+            final CompletionStage<List<Prediction<InputT, ValueT>>> result =
+                predictfn.apply(model, vectors, deadline);
+
+            return result.whenComplete((r, t) -> predictMetrics.prediction(r));
+          }
         };
   }
 }
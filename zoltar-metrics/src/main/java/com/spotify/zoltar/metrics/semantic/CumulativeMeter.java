@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import java.util.function.LongSupplier;
+
+import com.codahale.metrics.Meter;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+
+/**
+ * {@link Meter} that follows a cumulative count kept elsewhere, e.g. a cache's hit count. The
+ * count is read whenever the meter is reported, and what it grew by since the last report is
+ * marked, so the backend gets rates rather than an ever growing gauge.
+ */
+final class CumulativeMeter extends Meter {
+
+  private final LongSupplier count;
+  // guarded by this.
+  private long marked;
+
+  private CumulativeMeter(final LongSupplier count) {
+    this.count = count;
+  }
+
+  /**
+   * Registers a meter that follows the cumulative count.
+   *
+   * @param registry registry to register the meter with.
+   * @param metricId id of the meter.
+   * @param count cumulative, never decreasing, count.
+   */
+  static Meter register(
+      final SemanticMetricRegistry registry, final MetricId metricId, final LongSupplier count) {
+    return registry.register(metricId, new CumulativeMeter(count));
+  }
+
+  @Override
+  public long getCount() {
+    sync();
+    return super.getCount();
+  }
+
+  @Override
+  public double getOneMinuteRate() {
+    sync();
+    return super.getOneMinuteRate();
+  }
+
+  @Override
+  public double getFiveMinuteRate() {
+    sync();
+    return super.getFiveMinuteRate();
+  }
+
+  @Override
+  public double getFifteenMinuteRate() {
+    sync();
+    return super.getFifteenMinuteRate();
+  }
+
+  @Override
+  public double getMeanRate() {
+    sync();
+    return super.getMeanRate();
+  }
+
+  private synchronized void sync() {
+    final long current = count.getAsLong();
+    if (current > marked) {
+      mark(current - marked);
+      marked = current;
+    }
+  }
+}
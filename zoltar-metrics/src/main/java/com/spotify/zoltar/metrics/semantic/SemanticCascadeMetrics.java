@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.CASCADE_INPUTS;
+import static com.spotify.zoltar.metrics.semantic.What.ESCALATED;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.composite.CascadePredictor;
+
+/** Semantic metrics of a {@link CascadePredictor}. */
+public final class SemanticCascadeMetrics {
+
+  private SemanticCascadeMetrics() {}
+
+  /**
+   * Registers the input and escalated meters of a cascade, their rates give the escalation rate.
+   *
+   * @param registry registry to register the meters with.
+   * @param metricId base metric id, tagged with the 'what' of each meter.
+   * @param cascade cascade to report on.
+   */
+  public static void register(
+      final SemanticMetricRegistry registry,
+      final MetricId metricId,
+      final CascadePredictor<?, ?> cascade) {
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", CASCADE_INPUTS.tag()), cascade::inputs);
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", ESCALATED.tag()), cascade::escalated);
+  }
+}
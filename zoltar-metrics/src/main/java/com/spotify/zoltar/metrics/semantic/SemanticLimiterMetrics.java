@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.CONCURRENCY_LIMIT;
+import static com.spotify.zoltar.metrics.semantic.What.IN_FLIGHT;
+import static com.spotify.zoltar.metrics.semantic.What.REJECTED;
+
+import com.codahale.metrics.Gauge;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.limits.ConcurrencyLimiter;
+
+/** Semantic metrics of a {@link ConcurrencyLimiter}. */
+public final class SemanticLimiterMetrics {
+
+  private SemanticLimiterMetrics() {}
+
+  /**
+   * Registers the limit and in flight gauges, and the rejected meter of a limiter.
+   *
+   * @param registry registry to register the metrics with.
+   * @param metricId base metric id, tagged with the 'what' of each metric.
+   * @param limiter limiter to report on.
+   */
+  public static void register(
+      final SemanticMetricRegistry registry,
+      final MetricId metricId,
+      final ConcurrencyLimiter limiter) {
+    registry.register(
+        metricId.tagged("what", CONCURRENCY_LIMIT.tag()), (Gauge<Integer>) limiter::limit);
+    registry.register(metricId.tagged("what", IN_FLIGHT.tag()), (Gauge<Integer>) limiter::inFlight);
+    CumulativeMeter.register(registry, metricId.tagged("what", REJECTED.tag()), limiter::rejected);
+  }
+}
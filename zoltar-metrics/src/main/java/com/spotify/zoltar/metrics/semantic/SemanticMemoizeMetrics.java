@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.MEMOIZED_VECTORS;
+import static com.spotify.zoltar.metrics.semantic.What.MEMOIZE_EVICTIONS;
+import static com.spotify.zoltar.metrics.semantic.What.MEMOIZE_HITS;
+import static com.spotify.zoltar.metrics.semantic.What.MEMOIZE_MISSES;
+import static com.spotify.zoltar.metrics.semantic.What.MEMOIZE_OFF_HEAP_BYTES;
+
+import com.codahale.metrics.Gauge;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.cache.MemoizingFeatureExtractor;
+
+/** Semantic metrics of a {@link MemoizingFeatureExtractor}. */
+public final class SemanticMemoizeMetrics {
+
+  private SemanticMemoizeMetrics() {}
+
+  /**
+   * Registers the hit, miss and eviction meters, and the memoized vector and off-heap memory gauges
+   * of a memoizing feature extractor.
+   *
+   * @param registry registry to register the metrics with.
+   * @param metricId base metric id, tagged with the 'what' of each metric.
+   * @param extractor memoizing feature extractor to report on.
+   */
+  public static void register(
+      final SemanticMetricRegistry registry,
+      final MetricId metricId,
+      final MemoizingFeatureExtractor<?, ?, ?> extractor) {
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", MEMOIZE_HITS.tag()), () -> extractor.stats().hitCount());
+    CumulativeMeter.register(
+        registry,
+        metricId.tagged("what", MEMOIZE_MISSES.tag()),
+        () -> extractor.stats().missCount());
+    CumulativeMeter.register(
+        registry,
+        metricId.tagged("what", MEMOIZE_EVICTIONS.tag()),
+        () -> extractor.stats().evictionCount());
+    registry.register(
+        metricId.tagged("what", MEMOIZED_VECTORS.tag()), (Gauge<Long>) extractor::size);
+    registry.register(
+        metricId.tagged("what", MEMOIZE_OFF_HEAP_BYTES.tag()),
+        (Gauge<Long>) extractor::offHeapBytes);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.POOL_INSTANCES;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_LEASED;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_TIMEOUTS;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_UTILIZATION;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_WAITING;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_WAITS;
+import static com.spotify.zoltar.metrics.semantic.What.POOL_WAIT_TIME;
+
+import com.codahale.metrics.Gauge;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.loaders.PooledModelLoader;
+
+/** Semantic metrics of a {@link PooledModelLoader}. */
+public final class SemanticPoolMetrics {
+
+  private SemanticPoolMetrics() {}
+
+  /**
+   * Registers the instance, leased, utilization and waiting gauges, and the wait, wait time and
+   * timeout meters of a model pool.
+   *
+   * @param registry registry to register the metrics with.
+   * @param metricId base metric id, tagged with the 'what' of each metric.
+   * @param pool model pool to report on.
+   */
+  public static void register(
+      final SemanticMetricRegistry registry,
+      final MetricId metricId,
+      final PooledModelLoader<?> pool) {
+    registry.register(
+        metricId.tagged("what", POOL_INSTANCES.tag()),
+        (Gauge<Integer>) () -> pool.stats().instances());
+    registry.register(
+        metricId.tagged("what", POOL_LEASED.tag()), (Gauge<Integer>) () -> pool.stats().leased());
+    registry.register(
+        metricId.tagged("what", POOL_UTILIZATION.tag()),
+        (Gauge<Double>) () -> pool.stats().utilization());
+    registry.register(
+        metricId.tagged("what", POOL_WAITING.tag()), (Gauge<Integer>) () -> pool.stats().waiting());
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", POOL_WAITS.tag()), () -> pool.stats().waits());
+    CumulativeMeter.register(
+        registry,
+        metricId.tagged("what", POOL_WAIT_TIME.tag()),
+        () -> pool.stats().waitTime().toMillis());
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", POOL_TIMEOUTS.tag()), () -> pool.stats().timeouts());
+  }
+}
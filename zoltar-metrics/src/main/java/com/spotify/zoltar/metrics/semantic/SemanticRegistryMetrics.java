@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.LOADED_MODELS;
+import static com.spotify.zoltar.metrics.semantic.What.MODEL_EVICTIONS;
+import static com.spotify.zoltar.metrics.semantic.What.MODEL_HITS;
+import static com.spotify.zoltar.metrics.semantic.What.MODEL_LOADS;
+import static com.spotify.zoltar.metrics.semantic.What.MODEL_LOAD_FAILURES;
+import static com.spotify.zoltar.metrics.semantic.What.RESIDENT_BYTES;
+
+import com.codahale.metrics.Gauge;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.loaders.ModelRegistry;
+
+/** Semantic metrics of a {@link ModelRegistry}. */
+public final class SemanticRegistryMetrics {
+
+  private SemanticRegistryMetrics() {}
+
+  /**
+   * Registers the hit, load, load failure and eviction meters, and the loaded model and resident
+   * memory gauges of a model registry.
+   *
+   * @param registry registry to register the metrics with.
+   * @param metricId base metric id, tagged with the 'what' of each metric.
+   * @param models model registry to report on.
+   */
+  public static void register(
+      final SemanticMetricRegistry registry,
+      final MetricId metricId,
+      final ModelRegistry<?> models) {
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", MODEL_HITS.tag()), () -> models.stats().hits());
+    CumulativeMeter.register(
+        registry, metricId.tagged("what", MODEL_LOADS.tag()), () -> models.stats().loads());
+    CumulativeMeter.register(
+        registry,
+        metricId.tagged("what", MODEL_LOAD_FAILURES.tag()),
+        () -> models.stats().loadFailures());
+    CumulativeMeter.register(
+        registry,
+        metricId.tagged("what", MODEL_EVICTIONS.tag()),
+        () -> models.stats().evictions());
+    registry.register(
+        metricId.tagged("what", LOADED_MODELS.tag()),
+        (Gauge<Integer>) () -> models.stats().models());
+    registry.register(
+        metricId.tagged("what", RESIDENT_BYTES.tag()),
+        (Gauge<Long>) () -> models.stats().residentBytes());
+  }
+}
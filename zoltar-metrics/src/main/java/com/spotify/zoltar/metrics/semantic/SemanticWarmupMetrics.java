@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.metrics.semantic;
+
+import static com.spotify.zoltar.metrics.semantic.What.WARMUP_BATCH_DURATION;
+import static com.spotify.zoltar.metrics.semantic.What.WARMUP_DURATION;
+
+import java.util.concurrent.TimeUnit;
+
+import com.spotify.metrics.core.MetricId;
+import com.spotify.metrics.core.SemanticMetricRegistry;
+import com.spotify.zoltar.loaders.ModelWarmup;
+import com.spotify.zoltar.loaders.ModelWarmup.Report;
+import com.spotify.zoltar.loaders.ModelWarmup.Run;
+
+/** Semantic metric timers of a {@link ModelWarmup}. */
+public final class SemanticWarmupMetrics {
+
+  private SemanticWarmupMetrics() {}
+
+  /**
+   * Returns a warmup listener timing every warmup batch, tagged with its batch size, and the whole
+   * warmup.
+   *
+   * @param registry registry to register the timers with.
+   * @param metricId base metric id, tagged with the 'what' of each timer.
+   */
+  public static ModelWarmup.Listener listener(
+      final SemanticMetricRegistry registry, final MetricId metricId) {
+    final MetricId batchDurationId = metricId.tagged("what", WARMUP_BATCH_DURATION.tag());
+    final MetricId durationId = metricId.tagged("what", WARMUP_DURATION.tag());
+    return new ModelWarmup.Listener() {
+      @Override
+      public void onBatch(final Run run) {
+        registry
+            .timer(batchDurationId.tagged("batch-size", Integer.toString(run.batchSize())))
+            .update(run.latency().toNanos(), TimeUnit.NANOSECONDS);
+      }
+
+      @Override
+      public void onComplete(final Report report) {
+        registry.timer(durationId).update(report.elapsed().toNanos(), TimeUnit.NANOSECONDS);
+      }
+    };
+  }
+}
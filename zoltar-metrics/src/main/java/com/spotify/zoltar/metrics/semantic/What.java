@@ -24,7 +24,57 @@ public enum What {
   /** Feature Extraction duration. */
   FEATURE_EXTRACT_DURATION("feature-extract-duration"),
   /** Feature Extraction rate. */
-  FEATURE_EXTRACT_RATE("feature-extract-rate");
+  FEATURE_EXTRACT_RATE("feature-extract-rate"),
+  /** Concurrency limit. */
+  CONCURRENCY_LIMIT("concurrency-limit"),
+  /** Predictions in flight. */
+  IN_FLIGHT("in-flight"),
+  /** Predictions rejected by the concurrency limit. */
+  REJECTED("rejected"),
+  /** Inputs predicted by the first stage of a cascade. */
+  CASCADE_INPUTS("cascade-inputs"),
+  /** Inputs escalated to the second stage of a cascade. */
+  ESCALATED("escalated"),
+  /** Duration of a single model warmup batch, tagged with its batch size. */
+  WARMUP_BATCH_DURATION("warmup-batch-duration"),
+  /** Duration of a whole model warmup. */
+  WARMUP_DURATION("warmup-duration"),
+  /** Registry lookups of a model that was already loaded or loading. */
+  MODEL_HITS("model-hits"),
+  /** Registry lookups that started loading a model. */
+  MODEL_LOADS("model-loads"),
+  /** Registry model loads that failed. */
+  MODEL_LOAD_FAILURES("model-load-failures"),
+  /** Models evicted from a registry. */
+  MODEL_EVICTIONS("model-evictions"),
+  /** Models currently loaded in a registry. */
+  LOADED_MODELS("loaded-models"),
+  /** Estimated memory used by the models loaded in a registry. */
+  RESIDENT_BYTES("resident-bytes"),
+  /** Feature vectors served from a memoizing feature extractor. */
+  MEMOIZE_HITS("memoize-hits"),
+  /** Feature vectors a memoizing feature extractor had to extract. */
+  MEMOIZE_MISSES("memoize-misses"),
+  /** Feature vectors evicted from a memoizing feature extractor. */
+  MEMOIZE_EVICTIONS("memoize-evictions"),
+  /** Feature vectors currently memoized. */
+  MEMOIZED_VECTORS("memoized-vectors"),
+  /** Off-heap memory reserved for memoized feature vectors. */
+  MEMOIZE_OFF_HEAP_BYTES("memoize-off-heap-bytes"),
+  /** Model instances of a pool. */
+  POOL_INSTANCES("pool-instances"),
+  /** Model instances of a pool currently leased. */
+  POOL_LEASED("pool-leased"),
+  /** Fraction of the model instances of a pool currently leased. */
+  POOL_UTILIZATION("pool-utilization"),
+  /** Leases currently waiting for a pooled model instance. */
+  POOL_WAITING("pool-waiting"),
+  /** Leases that had to wait for a pooled model instance. */
+  POOL_WAITS("pool-waits"),
+  /** Time spent waiting for pooled model instances, in milliseconds. */
+  POOL_WAIT_TIME("pool-wait-time"),
+  /** Leases that timed out waiting for a pooled model instance. */
+  POOL_TIMEOUTS("pool-timeouts");
 
   private final String tag;
 
@@ -16,12 +16,19 @@
 package com.spotify.zoltar.mlengine;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.tensorflow.proto.example.Example;
@@ -31,6 +38,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.googleapis.util.Utils;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.services.ml.v1.CloudMachineLearningEngine;
@@ -38,10 +47,13 @@ import com.google.api.services.ml.v1.CloudMachineLearningEngineScopes;
 import com.google.api.services.ml.v1.model.GoogleApiHttpBody;
 import com.google.api.services.ml.v1.model.GoogleCloudMlV1PredictRequest;
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Throwables;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import com.spotify.zoltar.Deadline;
 import com.spotify.zoltar.Model;
 import com.spotify.zoltar.mlengine.MlEngineModel.Response.Predictions;
 
@@ -54,6 +66,10 @@ public abstract class MlEngineModel implements Model<CloudMachineLearningEngine>
 
   private static final String APPLICATION_NAME = "zoltar";
 
+  private static final ExecutorService CALLS =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("zoltar-mlengine-%d").setDaemon(true).build());
+
   /**
    * Creates a Google Cloud ML Engine backed model.
    *
@@ -117,6 +133,86 @@ public abstract class MlEngineModel implements Model<CloudMachineLearningEngine>
     final GoogleApiHttpBody httpBody =
         instance().projects().predict(id().value(), predict).execute();
 
+    return predictions(httpBody);
+  }
+
+  /**
+   * Predict within the given {@link Deadline}. The HTTP call is skipped if the deadline already
+   * expired, its connect and read timeouts are bounded by the remaining budget. Cancelling the
+   * deadline releases the caller, whether it waits for the response or reads it, and drops the
+   * connection.
+   *
+   * @param data prediction input data.
+   * @param deadline time budget and cancellation signal of the prediction.
+   */
+  public Predictions predict(final List<?> data, final Deadline deadline)
+      throws IOException, MlEnginePredictException, TimeoutException {
+    deadline.throwIfExpired();
+
+    final GoogleCloudMlV1PredictRequest predict =
+        new GoogleCloudMlV1PredictRequest().set("instances", data);
+    final HttpRequest request =
+        instance().projects().predict(id().value(), predict).buildHttpRequest();
+    if (!deadline.isUnbounded()) {
+      final int timeout =
+          (int) Math.min(Integer.MAX_VALUE, Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS)));
+      request.setConnectTimeout(timeout).setReadTimeout(timeout);
+    }
+
+    final HttpResponse response = execute(request, deadline);
+    deadline.onCancel(() -> disconnect(response));
+    try {
+      return predictions(response.parseAs(GoogleApiHttpBody.class));
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  /**
+   * Executes the request on a call thread. The caller waits for the response and is released as
+   * soon as the deadline is cancelled, the call thread is interrupted and a late response is
+   * disconnected.
+   *
+   * @throws CancellationException if the deadline was cancelled.
+   */
+  static HttpResponse execute(final HttpRequest request, final Deadline deadline)
+      throws IOException {
+    final FutureTask<HttpResponse> call =
+        new FutureTask<HttpResponse>(request::execute) {
+          @Override
+          protected void set(final HttpResponse response) {
+            super.set(response);
+            if (isCancelled()) {
+              disconnect(response);
+            }
+          }
+        };
+    // registered before the call, a cancellation while waiting for the response must reach it.
+    deadline.onCancel(() -> call.cancel(true));
+    CALLS.execute(call);
+    try {
+      return call.get();
+    } catch (final ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    } catch (final InterruptedException e) {
+      call.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private static void disconnect(final HttpResponse response) {
+    try {
+      response.disconnect();
+    } catch (final IOException e) {
+      // the pending read fails either way.
+    }
+  }
+
+  private static Predictions predictions(final GoogleApiHttpBody httpBody)
+      throws MlEnginePredictException {
     final Response response = Response.from(httpBody);
     return response
         .predictions()
@@ -133,19 +229,31 @@ public abstract class MlEngineModel implements Model<CloudMachineLearningEngine>
    */
   public Predictions predictExamples(final List<Example> examples)
       throws IOException, MlEnginePredictException {
-    final List<Map<String, String>> data =
-        examples
-            .stream()
-            .map(
-                example -> {
-                  final byte[] bytes = example.toByteArray();
-                  final String b64 = BaseEncoding.base64().encode(bytes);
+    return predict(base64(examples));
+  }
 
-                  return Collections.singletonMap("b64", b64);
-                })
-            .collect(Collectors.toList());
+  /**
+   * Predict within the given {@link Deadline}, see {@link #predict(List, Deadline)}.
+   *
+   * @param examples TensorFlow {@link Example} input data.
+   * @param deadline time budget and cancellation signal of the prediction.
+   */
+  public Predictions predictExamples(final List<Example> examples, final Deadline deadline)
+      throws IOException, MlEnginePredictException, TimeoutException {
+    return predict(base64(examples), deadline);
+  }
+
+  private static List<Map<String, String>> base64(final List<Example> examples) {
+    return examples
+        .stream()
+        .map(
+            example -> {
+              final byte[] bytes = example.toByteArray();
+              final String b64 = BaseEncoding.base64().encode(bytes);
 
-    return predict(data);
+              return Collections.singletonMap("b64", b64);
+            })
+        .collect(Collectors.toList());
   }
 
   /** Close the model. */
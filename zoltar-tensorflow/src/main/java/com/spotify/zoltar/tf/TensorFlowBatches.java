@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.tf;
+
+import org.tensorflow.ndarray.Shape;
+import org.tensorflow.ndarray.buffer.DataBuffers;
+import org.tensorflow.ndarray.buffer.DoubleDataBuffer;
+import org.tensorflow.ndarray.buffer.FloatDataBuffer;
+import org.tensorflow.ndarray.buffer.LongDataBuffer;
+import org.tensorflow.types.TFloat32;
+import org.tensorflow.types.TFloat64;
+import org.tensorflow.types.TInt64;
+
+import com.spotify.zoltar.columnar.DoubleBatch;
+import com.spotify.zoltar.columnar.FloatBatch;
+import com.spotify.zoltar.columnar.LongBatch;
+
+/**
+ * Converts dense {@link com.spotify.zoltar.columnar.ColumnarBatch}es to and from {@code [rows,
+ * width]} tensors. Batch values are copied into the tensor's native memory in a single bulk copy,
+ * straight from the batch's contiguous storage, without any per-row array.
+ */
+public final class TensorFlowBatches {
+
+  private TensorFlowBatches() {}
+
+  /** Returns a {@code [rows, width]} tensor, the caller must close it. */
+  public static TFloat32 tensor(final FloatBatch batch) {
+    final FloatDataBuffer values =
+        DataBuffers.of(batch.values(), true, false).narrow(batch.size());
+    return TFloat32.tensorOf(Shape.of(batch.rows(), batch.width()), values);
+  }
+
+  /** Returns a {@code [rows, width]} tensor, the caller must close it. */
+  public static TFloat64 tensor(final DoubleBatch batch) {
+    final DoubleDataBuffer values =
+        DataBuffers.of(batch.values(), true, false).narrow(batch.size());
+    return TFloat64.tensorOf(Shape.of(batch.rows(), batch.width()), values);
+  }
+
+  /** Returns a {@code [rows, width]} tensor, the caller must close it. */
+  public static TInt64 tensor(final LongBatch batch) {
+    final LongDataBuffer values =
+        DataBuffers.of(batch.values(), true, false).narrow(batch.size());
+    return TInt64.tensorOf(Shape.of(batch.rows(), batch.width()), values);
+  }
+
+  /** Returns a batch with a row per element of the first dimension of a rank 1 or 2 tensor. */
+  public static FloatBatch floats(final TFloat32 tensor) {
+    final Shape shape = tensor.shape();
+    final float[] values = new float[Math.toIntExact(shape.size())];
+    tensor.read(DataBuffers.of(values, false, false));
+    return FloatBatch.dense(values, rows(shape), width(shape));
+  }
+
+  /** Returns a batch with a row per element of the first dimension of a rank 1 or 2 tensor. */
+  public static DoubleBatch doubles(final TFloat64 tensor) {
+    final Shape shape = tensor.shape();
+    final double[] values = new double[Math.toIntExact(shape.size())];
+    tensor.read(DataBuffers.of(values, false, false));
+    return DoubleBatch.dense(values, rows(shape), width(shape));
+  }
+
+  /** Returns a batch with a row per element of the first dimension of a rank 1 or 2 tensor. */
+  public static LongBatch longs(final TInt64 tensor) {
+    final Shape shape = tensor.shape();
+    final long[] values = new long[Math.toIntExact(shape.size())];
+    tensor.read(DataBuffers.of(values, false, false));
+    return LongBatch.dense(values, rows(shape), width(shape));
+  }
+
+  private static int rows(final Shape shape) {
+    if (shape.numDimensions() < 1 || shape.numDimensions() > 2) {
+      throw new IllegalArgumentException("expected a rank 1 or 2 tensor: " + shape);
+    }
+    return Math.toIntExact(shape.size(0));
+  }
+
+  private static int width(final Shape shape) {
+    return shape.numDimensions() == 2 ? Math.toIntExact(shape.size(1)) : 1;
+  }
+}
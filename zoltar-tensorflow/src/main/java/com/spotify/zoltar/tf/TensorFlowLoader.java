@@ -16,11 +16,21 @@
 package com.spotify.zoltar.tf;
 
 import java.net.URI;
+import java.util.concurrent.CompletionStage;
 
 import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
 import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.fs.ModelDownloader;
+import com.spotify.zoltar.loaders.SharedModels;
 
-/** {@link TensorFlowModel} loader. */
+/**
+ * {@link TensorFlowModel} loader.
+ *
+ * <p>Every {@code create} loader downloads and loads its own copy of the model, two loaders of the
+ * same model hold it twice. Loaders built with {@link #shared(Model.Id, String,
+ * TensorFlowModel.Options, String)} load it once.
+ */
 @FunctionalInterface
 public interface TensorFlowLoader extends ModelLoader<TensorFlowModel> {
 
@@ -70,7 +80,9 @@ public interface TensorFlowLoader extends ModelLoader<TensorFlowModel> {
   }
 
   /**
-   * Returns a TensorFlow model loader based on a saved model.
+   * Returns a TensorFlow model loader based on a saved model. The loader loads its own copy of the
+   * model, use {@link #shared(Model.Id, String, TensorFlowModel.Options, String)} to share it with
+   * the other loaders of the same model.
    *
    * @param id model id @{link Model.Id}.
    * @param modelUri should point to a directory of the saved TensorFlow {@link
@@ -86,6 +98,28 @@ public interface TensorFlowLoader extends ModelLoader<TensorFlowModel> {
     return create(() -> TensorFlowModel.create(id, URI.create(modelUri), options, signatureDef));
   }
 
+  /**
+   * Returns a TensorFlow model loader based on a saved model, a non-local model is downloaded with
+   * the given {@link ModelDownloader}. Use it for models with large variables shards on a remote
+   * file system such as GCS, smaller models download faster with the other factories.
+   *
+   * @param id model id @{link Model.Id}.
+   * @param modelUri should point to a directory of the saved TensorFlow {@link
+   *     org.tensorflow.SavedModelBundle}, can be a URI to a local filesystem, resource, GCS etc.
+   * @param options TensorFlow options, see {@link TensorFlowModel.Options}.
+   * @param signatureDef name of the signature definition to load from the exported model
+   * @param downloader downloader of non-local models.
+   */
+  static TensorFlowLoader create(
+      final Model.Id id,
+      final String modelUri,
+      final TensorFlowModel.Options options,
+      final String signatureDef,
+      final ModelDownloader downloader) {
+    return create(
+        () -> TensorFlowModel.create(id, URI.create(modelUri), options, signatureDef, downloader));
+  }
+
   /**
    * Returns a TensorFlow model loader based on a saved model.
    *
@@ -94,4 +128,44 @@ public interface TensorFlowLoader extends ModelLoader<TensorFlowModel> {
   static TensorFlowLoader create(final ThrowableSupplier<TensorFlowModel> supplier) {
     return ModelLoader.load(supplier)::get;
   }
+
+  /**
+   * Returns a TensorFlow model loader that shares the model with every other shared loader of the
+   * same id, URI, options and signature definition in the process, the saved model is downloaded
+   * and loaded once. Closing the loader releases its reference on the model, see {@link
+   * SharedModels}.
+   *
+   * @param id model id @{link Model.Id}.
+   * @param modelUri should point to a directory of the saved TensorFlow {@link
+   *     org.tensorflow.SavedModelBundle}, can be a URI to a local filesystem, resource, GCS etc.
+   * @param options TensorFlow options, see {@link TensorFlowModel.Options}.
+   * @param signatureDef name of the signature definition to load from the exported model
+   */
+  static TensorFlowLoader shared(
+      final Model.Id id,
+      final String modelUri,
+      final TensorFlowModel.Options options,
+      final String signatureDef) {
+    final ModelLoader<TensorFlowModel> shared =
+        SharedModels.global()
+            .loader(
+                SharedModels.Key.of(TensorFlowModel.class, id, modelUri, options, signatureDef),
+                () -> TensorFlowModel.create(id, URI.create(modelUri), options, signatureDef));
+    return new TensorFlowLoader() {
+      @Override
+      public CompletionStage<TensorFlowModel> get() {
+        return shared.get();
+      }
+
+      @Override
+      public CompletionStage<ModelLease<TensorFlowModel>> lease() {
+        return shared.lease();
+      }
+
+      @Override
+      public void close() {
+        shared.close();
+      }
+    };
+  }
 }
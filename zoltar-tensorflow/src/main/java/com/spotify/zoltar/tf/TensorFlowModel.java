@@ -33,6 +33,7 @@ import com.google.cloud.storage.contrib.nio.CloudStorageFileSystem;
 
 import com.spotify.zoltar.Model;
 import com.spotify.zoltar.fs.FileSystemExtras;
+import com.spotify.zoltar.fs.ModelDownloader;
 
 /**
  * This model can be used to load TensorFlow {@link SavedModelBundle} model. Whenever possible
@@ -101,15 +102,43 @@ public abstract class TensorFlowModel implements Model<SavedModelBundle> {
       final Options options,
       final String signatureDefinition)
       throws IOException {
-    // GCS requires that directory URIs have a trailing slash, so add the slash if
-    // it's missing
-    // and the URI starts with 'gs'.
-    final URI normalizedUri =
-        !CloudStorageFileSystem.URI_SCHEME.equalsIgnoreCase(modelResource.getScheme())
-                || modelResource.toString().endsWith("/")
-            ? modelResource
-            : URI.create(modelResource.toString() + "/");
-    final URI localDir = FileSystemExtras.downloadIfNonLocal(normalizedUri);
+    final URI localDir = FileSystemExtras.downloadIfNonLocal(normalize(modelResource));
+    return load(id, localDir, options, signatureDefinition);
+  }
+
+  /**
+   * Note: Please use Models from zoltar-models module.
+   *
+   * <p>Returns a TensorFlow model with metadata given {@link SavedModelBundle} export directory URI
+   * and {@link Options}, a non-local model is downloaded with the given {@link ModelDownloader}.
+   * Use it for models with large variables shards on a remote file system such as GCS, smaller
+   * models download faster with the other factories.
+   */
+  public static TensorFlowModel create(
+      final Model.Id id,
+      final URI modelResource,
+      final Options options,
+      final String signatureDefinition,
+      final ModelDownloader downloader)
+      throws IOException {
+    final URI localDir = FileSystemExtras.downloadIfNonLocal(normalize(modelResource), downloader);
+    return load(id, localDir, options, signatureDefinition);
+  }
+
+  // GCS requires that directory URIs have a trailing slash, so add the slash if
+  // it's missing and the URI starts with 'gs'.
+  private static URI normalize(final URI modelResource) {
+    return !CloudStorageFileSystem.URI_SCHEME.equalsIgnoreCase(modelResource.getScheme())
+            || modelResource.toString().endsWith("/")
+        ? modelResource
+        : URI.create(modelResource.toString() + "/");
+  }
+
+  private static TensorFlowModel load(
+      final Model.Id id,
+      final URI localDir,
+      final Options options,
+      final String signatureDefinition) {
     final SavedModelBundle model =
         SavedModelBundle.load(localDir.toString(), options.tags().toArray(new String[0]));
     final SignatureDef signatureDef =
@@ -17,10 +17,15 @@ package com.spotify.zoltar.tf;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -30,9 +35,11 @@ import org.tensorflow.Tensor;
 import org.tensorflow.ndarray.NdArray;
 import org.tensorflow.ndarray.NdArrays;
 import org.tensorflow.proto.example.Example;
+import org.tensorflow.proto.framework.RunOptions;
 import org.tensorflow.types.TString;
 
 import com.spotify.futures.CompletableFutures;
+import com.spotify.zoltar.Deadline;
 import com.spotify.zoltar.PredictFns.AsyncPredictFn;
 import com.spotify.zoltar.Prediction;
 import com.spotify.zoltar.Vector;
@@ -57,39 +64,77 @@ public interface TensorFlowPredictFn<InputT, VectorT, ValueT>
   static <InputT, ValueT> TensorFlowPredictFn<InputT, Example, ValueT> example(
       final Function<Map<String, Tensor>, List<ValueT>> outTensorExtractor,
       final String... fetchOps) {
-    return (model, vectors) ->
-        CompletableFuture.supplyAsync(
+    return example(outTensorExtractor, ForkJoinPool.commonPool(), fetchOps);
+  }
+
+  /**
+   * TensorFlow Example prediction function that runs the session on the given {@link Executor}. The
+   * session run is bounded by the prediction's {@link Deadline}.
+   *
+   * @param outTensorExtractor Function to extract the output value from Tensor's
+   * @param executor the executor to run the session on.
+   * @param fetchOps operations to fetch.
+   */
+  static <InputT, ValueT> TensorFlowPredictFn<InputT, Example, ValueT> example(
+      final Function<Map<String, Tensor>, List<ValueT>> outTensorExtractor,
+      final Executor executor,
+      final String... fetchOps) {
+    return new TensorFlowPredictFn<InputT, Example, ValueT>() {
+      @Override
+      public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+          final TensorFlowModel model, final List<Vector<InputT, Example>> vectors) {
+        return apply(model, vectors, Deadline.none());
+      }
+
+      @Override
+      public CompletionStage<List<Prediction<InputT, ValueT>>> apply(
+          final TensorFlowModel model,
+          final List<Vector<InputT, Example>> vectors,
+          final Deadline deadline) {
+        return CompletableFuture.supplyAsync(
             () -> {
-              final byte[][] bytes =
-                  vectors
-                      .stream()
-                      .map(Vector::value)
-                      .map(Example::toByteArray)
-                      .toArray(byte[][]::new);
+              try {
+                // skips sessions queued past the deadline.
+                deadline.throwIfExpired();
+              } catch (final TimeoutException e) {
+                throw new CompletionException(e);
+              }
+
+              final int size = vectors.size();
+              final byte[][] bytes = new byte[size][];
+              for (int i = 0; i < size; i++) {
+                bytes[i] = vectors.get(i).value().toByteArray();
+              }
               final NdArray<byte[]> examplesNdArray = NdArrays.vectorOfObjects(bytes);
 
               try (final Tensor t = TString.tensorOfBytes(examplesNdArray)) {
                 final Session.Runner runner =
                     model.instance().session().runner().feed("input_example_tensor", t);
+                if (!deadline.isUnbounded()) {
+                  // lets the session abort the run instead of finishing it for nobody.
+                  runner.setOptions(
+                      RunOptions.newBuilder()
+                          .setTimeoutInMs(Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS)))
+                          .build());
+                }
 
                 return TensorFlowExtras.runAndExtract(
                     runner,
                     Arrays.asList(fetchOps),
                     result -> {
-                      final Iterator<Vector<InputT, Example>> vectorIterator = vectors.iterator();
-                      final Iterator<ValueT> valueTIterator =
-                          outTensorExtractor.apply(result).iterator();
-                      final List<Prediction<InputT, ValueT>> predictions = new ArrayList<>();
-
-                      while (vectorIterator.hasNext() && valueTIterator.hasNext()) {
-                        predictions.add(
-                            Prediction.create(
-                                vectorIterator.next().input(), valueTIterator.next()));
+                      final List<ValueT> values = outTensorExtractor.apply(result);
+                      final int count = Math.min(size, values.size());
+                      final List<Prediction<InputT, ValueT>> predictions = new ArrayList<>(count);
+                      for (int i = 0; i < count; i++) {
+                        predictions.add(Prediction.create(vectors.get(i).input(), values.get(i)));
                       }
                       return predictions;
                     });
               }
-            });
+            },
+            executor);
+      }
+    };
   }
 
   /**
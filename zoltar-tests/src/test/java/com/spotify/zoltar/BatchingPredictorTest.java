@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+
+public class BatchingPredictorTest {
+
+  static class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static Predictor<Integer, Integer> predictor(
+      final AtomicInteger calls, final int maxBatchSize, final Duration maxDelay) {
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          calls.incrementAndGet();
+          return vectors
+              .stream()
+              .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+              .collect(Collectors.toList());
+        };
+
+    final ModelLoader<DummyModel> loader = ModelLoader.loaded(new DummyModel());
+    return DefaultPredictorBuilder.create(loader, extractFn, predictFn)
+        .with(BatchingPredictorBuilder.create(maxBatchSize, maxDelay))
+        .predictor();
+  }
+
+  @Test
+  public void coalescesConcurrentCalls() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final Predictor<Integer, Integer> predictor = predictor(calls, 4, Duration.ofSeconds(10));
+
+    final List<CompletableFuture<List<Prediction<Integer, Integer>>>> futures = new ArrayList<>();
+    futures.add(predictor.predict(1).toCompletableFuture());
+    futures.add(predictor.predict(2, 3).toCompletableFuture());
+    futures.add(predictor.predict(4).toCompletableFuture());
+
+    assertThat(futures.get(0).get(1, TimeUnit.SECONDS).get(0), is(Prediction.create(1, 2)));
+    assertThat(futures.get(1).get(1, TimeUnit.SECONDS).size(), is(2));
+    assertThat(futures.get(1).get(1, TimeUnit.SECONDS).get(1), is(Prediction.create(3, 6)));
+    assertThat(futures.get(2).get(1, TimeUnit.SECONDS).get(0), is(Prediction.create(4, 8)));
+    assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  public void flushesAfterMaxDelay() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final Predictor<Integer, Integer> predictor = predictor(calls, 100, Duration.ofMillis(10));
+
+    final List<Prediction<Integer, Integer>> predictions =
+        predictor.predict(5).toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+    assertThat(predictions.size(), is(1));
+    assertThat(predictions.get(0), is(Prediction.create(5, 10)));
+    assertThat(calls.get(), is(1));
+  }
+
+  @Test
+  public void neverExceedsMaxBatchSize() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final Predictor<Integer, Integer> predictor = predictor(calls, 3, Duration.ofSeconds(10));
+
+    final CompletableFuture<List<Prediction<Integer, Integer>>> first =
+        predictor.predict(1, 2).toCompletableFuture();
+    final CompletableFuture<List<Prediction<Integer, Integer>>> second =
+        predictor.predict(3, 4).toCompletableFuture();
+
+    // second call overflows the batch, so the first one is dispatched on its own.
+    assertThat(first.get(1, TimeUnit.SECONDS).size(), is(2));
+    assertThat(second.isDone(), is(false));
+    assertThat(predictor.predict(5).toCompletableFuture().get(1, TimeUnit.SECONDS).size(), is(1));
+    assertThat(second.get(1, TimeUnit.SECONDS).get(1), is(Prediction.create(4, 8)));
+    assertThat(calls.get(), is(2));
+  }
+
+  @Test
+  public void flushesAfterMaxDelayOffTheSchedulerThread() throws Exception {
+    final AtomicReference<String> extractThread = new AtomicReference<>();
+    final ExtractFn<Integer, Integer> extractFn =
+        ExtractFn.lift(
+            input -> {
+              extractThread.set(Thread.currentThread().getName());
+              return input;
+            });
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) ->
+            vectors
+                .stream()
+                .map(vector -> Prediction.create(vector.input(), vector.value()))
+                .collect(Collectors.toList());
+    final ScheduledExecutorService scheduler =
+        Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "zoltar-test-scheduler"));
+    try {
+      final Predictor<Integer, Integer> predictor =
+          DefaultPredictorBuilder.create(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+              .with(
+                  BatchingPredictorBuilder.create(
+                      100, Duration.ofMillis(10), r -> new Thread(r, "zoltar-test-flush").start()))
+              .predictor();
+
+      predictor
+          .predict(scheduler, Duration.ofSeconds(1), 1)
+          .toCompletableFuture()
+          .get(1, TimeUnit.SECONDS);
+
+      assertThat(extractThread.get(), is("zoltar-test-flush"));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void batchesForTypedVarargsExtractors() throws Exception {
+    // the lambda implements the varargs method, it's handed an Integer[].
+    final ExtractFn<Integer, Integer> extractFn =
+        inputs -> {
+          final List<Integer> vectors = new ArrayList<>(inputs.length);
+          for (final Integer input : inputs) {
+            vectors.add(input + 1);
+          }
+          return vectors;
+        };
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) ->
+            vectors
+                .stream()
+                .map(vector -> Prediction.create(vector.input(), vector.value()))
+                .collect(Collectors.toList());
+    final Predictor<Integer, Integer> predictor =
+        DefaultPredictorBuilder.create(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+            .with(BatchingPredictorBuilder.create(3, Duration.ofSeconds(10)))
+            .predictor();
+
+    final CompletableFuture<List<Prediction<Integer, Integer>>> first =
+        predictor.predict(1).toCompletableFuture();
+    final CompletableFuture<List<Prediction<Integer, Integer>>> second =
+        predictor.predict(2, 3).toCompletableFuture();
+
+    assertThat(first.get(1, TimeUnit.SECONDS).get(0), is(Prediction.create(1, 2)));
+    assertThat(second.get(1, TimeUnit.SECONDS).get(1), is(Prediction.create(3, 4)));
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictorTest.DummyModel;
+import com.spotify.zoltar.cache.MemoizeOptions;
+import com.spotify.zoltar.cache.MemoizingFeatureExtractor;
+
+public class BufferArenaTest {
+
+  private final List<float[]> borrowed = new ArrayList<>();
+
+  private final ExtractFn<Integer, float[]> extractFn =
+      ExtractFn.lift(
+          input -> {
+            final float[] features = BufferArena.current().floats(4);
+            features[0] = input;
+            synchronized (borrowed) {
+              borrowed.add(features);
+            }
+            return features;
+          });
+
+  private static Predictor<Integer, float[]> predictor(
+      final ExtractFn<Integer, float[]> extractFn,
+      final AsyncPredictFn<DummyModel, Integer, float[], float[]> predictFn,
+      final BufferPool pool) {
+    return DefaultPredictorBuilder.create(
+            ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+        .with(pool)
+        .predictor();
+  }
+
+  private static CompletionStage<List<Prediction<Integer, float[]>>> identity(
+      final List<Vector<Integer, float[]>> vectors) {
+    final List<Prediction<Integer, float[]>> predictions = new ArrayList<>();
+    for (final Vector<Integer, float[]> vector : vectors) {
+      predictions.add(Prediction.create(vector.input(), vector.value().clone()));
+    }
+    return CompletableFuture.completedFuture(predictions);
+  }
+
+  @Test
+  public void reusesBuffersAcrossPredictions() throws Exception {
+    final BufferPool pool = BufferPool.create(8);
+    final Predictor<Integer, float[]> predictor =
+        predictor(extractFn, (model, vectors) -> identity(vectors), pool);
+
+    final List<Prediction<Integer, float[]>> first =
+        predictor.predict(1, 2).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    assertThat(first.get(1).value()[0], is(2f));
+    assertThat(pool.pooled(), is(2));
+
+    predictor.predict(3).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    assertThat(borrowed.size(), is(3));
+    assertThat(borrowed.get(2) == borrowed.get(0) || borrowed.get(2) == borrowed.get(1), is(true));
+    assertThat(pool.pooled(), is(2));
+  }
+
+  @Test
+  public void holdsBuffersUntilPredictionCompletes() throws Exception {
+    final BufferPool pool = BufferPool.create(8);
+    final CompletableFuture<List<Prediction<Integer, float[]>>> inference =
+        new CompletableFuture<>();
+    final Predictor<Integer, float[]> predictor =
+        predictor(extractFn, (model, vectors) -> inference, pool);
+
+    final CompletableFuture<List<Prediction<Integer, float[]>>> prediction =
+        predictor.predict(1).toCompletableFuture();
+    assertThat(borrowed.size(), is(1));
+    assertThat(pool.pooled(), is(0));
+
+    inference.complete(new ArrayList<>());
+    prediction.get(1, TimeUnit.SECONDS);
+    assertThat(pool.pooled(), is(1));
+  }
+
+  @Test
+  public void returnsBuffersWhenExtractionFails() throws Exception {
+    final BufferPool pool = BufferPool.create(8);
+    final ExtractFn<Integer, float[]> failing =
+        inputs -> {
+          BufferArena.current().floats(4);
+          throw new IllegalStateException("extraction failed");
+        };
+    final Predictor<Integer, float[]> predictor =
+        predictor(failing, (model, vectors) -> identity(vectors), pool);
+
+    assertThat(predictor.predict(1).toCompletableFuture().isCompletedExceptionally(), is(true));
+    assertThat(pool.pooled(), is(1));
+  }
+
+  @Test
+  public void borrowedBuffersAreZeroed() {
+    final BufferPool pool = BufferPool.create(8);
+    try (BufferArena arena = pool.arena()) {
+      arena.doubles(3)[1] = 42;
+    }
+    try (BufferArena arena = pool.arena()) {
+      assertThat(arena.doubles(3)[1], is(0d));
+    }
+  }
+
+  @Test
+  public void keepsAtMostMaxBuffersPerLength() {
+    final BufferPool pool = BufferPool.create(1);
+    try (BufferArena arena = pool.arena()) {
+      arena.longs(2);
+      arena.longs(2);
+      arena.longs(3);
+    }
+    assertThat(pool.pooled(), is(2));
+  }
+
+  @Test
+  public void poolsAtMostMaxLengths() {
+    final BufferPool pool = BufferPool.create(8, 2);
+    try (BufferArena arena = pool.arena()) {
+      for (int length = 1; length <= 100; length++) {
+        arena.floats(length);
+      }
+      arena.doubles(1);
+    }
+    assertThat(pool.pooled(), is(3));
+  }
+
+  @Test
+  public void allocatesOutsideOfPredictions() {
+    assertThat(BufferArena.current().isPooled(), is(false));
+    assertThat(BufferPool.none().arena().isPooled(), is(false));
+    assertThat(BufferArena.current().floats(2).length, is(2));
+  }
+
+  @Test
+  public void memoizedVectorsDontBorrowPooledBuffers() throws Exception {
+    final BufferPool pool = BufferPool.create(8);
+    final FeatureExtractor<DummyModel, Integer, float[]> memoizing =
+        FeatureExtractor.<DummyModel, Integer, float[]>create(extractFn)
+            .with(
+                MemoizingFeatureExtractor.create(
+                    MemoizeOptions.<Integer, float[]>builder(i -> i).build()));
+    final Predictor<Integer, float[]> predictor =
+        DefaultPredictorBuilder.create(
+                ModelLoader.loaded(new DummyModel()),
+                memoizing,
+                (AsyncPredictFn<DummyModel, Integer, float[], float[]>)
+                    (model, vectors) -> identity(vectors))
+            .with(pool)
+            .predictor();
+
+    predictor.predict(1).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    predictor.predict(2).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    final List<Prediction<Integer, float[]>> memoized =
+        predictor.predict(1).toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+    assertThat(memoized.get(0).value()[0], is(1f));
+    assertThat(borrowed.get(0) == borrowed.get(1), is(false));
+    assertThat(pool.pooled(), is(0));
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+
+public class DeadlineTest {
+
+  @Test
+  public void expires() throws InterruptedException {
+    final Deadline deadline = Deadline.after(Duration.ofMillis(10));
+    assertThat(deadline.isExpired(), is(false));
+
+    Thread.sleep(20);
+
+    assertThat(deadline.isExpired(), is(true));
+    assertThat(deadline.remaining(), is(Duration.ZERO));
+    try {
+      deadline.throwIfExpired();
+      fail("should throw TimeoutException");
+    } catch (final TimeoutException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void unbounded() {
+    final Deadline deadline = Deadline.after(Duration.ofDays(Integer.MAX_VALUE));
+
+    assertThat(deadline.isUnbounded(), is(true));
+    assertThat(deadline.isExpired(), is(false));
+    assertThat(deadline.split(0.5).isUnbounded(), is(true));
+  }
+
+  @Test
+  public void splitGetsFractionOfRemainingBudget() {
+    final Deadline deadline = Deadline.after(Duration.ofSeconds(10));
+    final Deadline child = deadline.split(0.25);
+
+    assertThat(child.remaining(TimeUnit.SECONDS) <= 2, is(true));
+    assertThat(child.remaining(TimeUnit.SECONDS) >= 1, is(true));
+  }
+
+  @Test
+  public void cancellationPropagatesToChildren() throws TimeoutException {
+    final Deadline deadline = Deadline.after(Duration.ofSeconds(10));
+    final Deadline child = deadline.split(0.5);
+    final AtomicInteger cancelled = new AtomicInteger();
+    child.onCancel(cancelled::incrementAndGet);
+
+    deadline.cancel();
+
+    assertThat(child.isCancelled(), is(true));
+    assertThat(child.isExpired(), is(true));
+    assertThat(cancelled.get(), is(1));
+    try {
+      child.throwIfExpired();
+      fail("should throw CancellationException");
+    } catch (final CancellationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void timeoutCancelsInFlightPrediction() throws Exception {
+    final CompletableFuture<Object> inFlight = new CompletableFuture<>();
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final AsyncPredictFn<PredictorTest.DummyModel, Integer, Integer, Integer> predictFn =
+        new AsyncPredictFn<PredictorTest.DummyModel, Integer, Integer, Integer>() {
+          @Override
+          public CompletableFuture<List<Prediction<Integer, Integer>>> apply(
+              final PredictorTest.DummyModel model,
+              final List<Vector<Integer, Integer>> vectors) {
+            return new CompletableFuture<>();
+          }
+
+          @Override
+          public CompletableFuture<List<Prediction<Integer, Integer>>> apply(
+              final PredictorTest.DummyModel model,
+              final List<Vector<Integer, Integer>> vectors,
+              final Deadline deadline) {
+            deadline.onCancel(() -> inFlight.complete("aborted"));
+            return new CompletableFuture<>();
+          }
+        };
+
+    final Predictor<Integer, Integer> predictor =
+        DefaultPredictorBuilder.create(
+                ModelLoader.loaded(new PredictorTest.DummyModel()), extractFn, predictFn)
+            .predictor();
+
+    try {
+      predictor.predict(Duration.ofMillis(10), 1).toCompletableFuture().get();
+      fail("should throw TimeoutException");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof TimeoutException, is(true));
+    }
+    assertThat(inFlight.get(1, TimeUnit.SECONDS), is("aborted"));
+  }
+
+  @Test
+  public void callerCancellationCancelsInFlightPrediction() throws Exception {
+    final CompletableFuture<Object> inFlight = new CompletableFuture<>();
+    final CountDownLatch applied = new CountDownLatch(1);
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final AsyncPredictFn<PredictorTest.DummyModel, Integer, Integer, Integer> predictFn =
+        new AsyncPredictFn<PredictorTest.DummyModel, Integer, Integer, Integer>() {
+          @Override
+          public CompletableFuture<List<Prediction<Integer, Integer>>> apply(
+              final PredictorTest.DummyModel model,
+              final List<Vector<Integer, Integer>> vectors) {
+            return new CompletableFuture<>();
+          }
+
+          @Override
+          public CompletableFuture<List<Prediction<Integer, Integer>>> apply(
+              final PredictorTest.DummyModel model,
+              final List<Vector<Integer, Integer>> vectors,
+              final Deadline deadline) {
+            deadline.onCancel(() -> inFlight.complete("aborted"));
+            applied.countDown();
+            return new CompletableFuture<>();
+          }
+        };
+    // callbacks run on their own executor, the caller holds a dependent stage.
+    final ExecutionPolicy policy = ExecutionPolicy.bounded(1, 1, 1);
+    final Predictor<Integer, Integer> predictor =
+        DefaultPredictorBuilder.create(
+                ModelLoader.loaded(new PredictorTest.DummyModel()),
+                FeatureExtractor.create(extractFn),
+                predictFn,
+                policy)
+            .predictor();
+
+    final CompletableFuture<?> prediction =
+        predictor.predict(Duration.ofSeconds(10), 1).toCompletableFuture();
+    assertThat(applied.await(1, TimeUnit.SECONDS), is(true));
+    prediction.cancel(true);
+
+    assertThat(inFlight.get(1, TimeUnit.SECONDS), is("aborted"));
+  }
+
+  @Test
+  public void skipsPredictionsQueuedPastTheirDeadline() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<PredictorTest.DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          calls.incrementAndGet();
+          blocked.await();
+          return Collections.emptyList();
+        };
+    final ExecutionPolicy policy = ExecutionPolicy.bounded(1, 1, 1);
+    final Predictor<Integer, Integer> predictor =
+        DefaultPredictorBuilder.create(
+                ModelLoader.loaded(new PredictorTest.DummyModel()), extractFn, predictFn, policy)
+            .predictor();
+
+    // occupies the only inference thread.
+    final CompletableFuture<?> first =
+        predictor.predict(Duration.ofSeconds(10), 1).toCompletableFuture();
+    final CompletableFuture<?> second =
+        predictor.predict(Duration.ofMillis(10), 2).toCompletableFuture();
+
+    try {
+      second.get(1, TimeUnit.SECONDS);
+      fail("should throw TimeoutException");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof TimeoutException, is(true));
+    }
+    blocked.countDown();
+    first.get(1, TimeUnit.SECONDS);
+    Thread.sleep(50);
+
+    assertThat(calls.get(), is(1));
+  }
+}
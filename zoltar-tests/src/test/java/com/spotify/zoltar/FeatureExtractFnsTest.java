@@ -18,7 +18,12 @@ package com.spotify.zoltar;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -41,4 +46,46 @@ public class FeatureExtractFnsTest {
 
     assertThat(extracted, is(expected));
   }
+
+  @Test
+  public void parallelExtractFnKeepsOrder() throws Exception {
+    final Set<String> threads = ConcurrentHashMap.newKeySet();
+    final ExtractFn<Integer, Integer> fn =
+        ExtractFn.parallel(
+            input -> {
+              threads.add(Thread.currentThread().getName());
+              return input * 2;
+            },
+            16,
+            new ForkJoinPool(4));
+
+    final Integer[] inputs = IntStream.range(0, 10_000).boxed().toArray(Integer[]::new);
+    final List<Integer> extracted = fn.apply(inputs);
+
+    assertThat(extracted.size(), is(10_000));
+    for (int i = 0; i < inputs.length; i++) {
+      assertThat(extracted.get(i), is(i * 2));
+    }
+    assertThat(threads.size() > 1, is(true));
+  }
+
+  @Test
+  public void parallelExtractFnRunsSmallBatchesInline() throws Exception {
+    final String caller = Thread.currentThread().getName();
+    final ExtractFn<Integer, String> fn =
+        ExtractFn.parallel(input -> Thread.currentThread().getName(), 16);
+
+    assertThat(fn.apply(1, 2, 3), is(ImmutableList.of(caller, caller, caller)));
+  }
+
+  @Test
+  public void listApply() throws Exception {
+    final List<Integer> inputs = Arrays.asList(1, 2, 3);
+
+    final List<Integer> expected = ImmutableList.of(2, 4, 6);
+
+    assertThat(ExtractFn.lift((Integer i) -> i * 2).apply(inputs), is(expected));
+    assertThat(ExtractFn.parallel((Integer i) -> i * 2, 2).apply(inputs), is(expected));
+    assertThat(ExtractFn.<Integer>identity().apply(inputs) == inputs, is(true));
+  }
 }
@@ -18,6 +18,7 @@ package com.spotify.zoltar;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -44,4 +45,55 @@ public class FeatureExtractorTest {
     assertThat(vectors.size(), is(1));
     assertThat(vectors.get(0), is(Vector.create(1, 0.1f)));
   }
+
+  @Test
+  public void listExtract() throws Exception {
+    final ExtractFn<Integer, Float> fn = ExtractFn.lift(input -> (float) input / 10);
+    final FeatureExtractor<Model<?>, Integer, Float> extractor = FeatureExtractor.create(fn);
+    final List<Vector<Integer, Float>> vectors =
+        extractor.extract(null, Deadline.none(), Arrays.asList(1, 2));
+
+    assertThat(vectors.size(), is(2));
+    assertThat(vectors.get(1), is(Vector.create(2, 0.2f)));
+  }
+
+  @Test
+  public void listExtractDefaultsToArray() throws Exception {
+    final FeatureExtractor<Model<?>, Integer, Integer> extractor =
+        (model, inputs) -> Collections.singletonList(Vector.create(inputs.length, inputs.length));
+
+    assertThat(extractor.extract(null, Arrays.asList(1, 2, 3)).get(0).value(), is(3));
+  }
+
+  @Test(expected = ClassCastException.class)
+  public void listOfInterfaceInputsNeedsTheListOverload() throws Exception {
+    final FeatureExtractor<Model<?>, CharSequence, Integer> extractor =
+        (model, inputs) -> Collections.singletonList(Vector.create(inputs[0], inputs.length));
+
+    // String and StringBuilder only share an interface, the copy is an Object[].
+    extractor.extract(null, Arrays.<CharSequence>asList("a", new StringBuilder("bc")));
+  }
+
+  @Test
+  public void listOfInterfaceInputsWithTheListOverload() throws Exception {
+    final FeatureExtractor<Model<?>, CharSequence, Integer> extractor =
+        new FeatureExtractor<Model<?>, CharSequence, Integer>() {
+          @Override
+          public List<Vector<CharSequence, Integer>> extract(
+              final Model<?> model, final CharSequence... inputs) {
+            return extract(model, Arrays.asList(inputs));
+          }
+
+          @Override
+          public List<Vector<CharSequence, Integer>> extract(
+              final Model<?> model, final List<CharSequence> inputs) {
+            return Collections.singletonList(Vector.create(inputs.get(0), inputs.size()));
+          }
+        };
+
+    final List<Vector<CharSequence, Integer>> vectors =
+        extractor.extract(null, Arrays.<CharSequence>asList("a", new StringBuilder("bc")));
+
+    assertThat(vectors.get(0).value(), is(2));
+  }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+
+public class HashedWheelTimeoutSchedulerTest {
+
+  private ScheduledExecutorService scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler =
+        HashedWheelTimeoutScheduler.create(Duration.ofMillis(1), 8, ForkJoinPool.commonPool())
+            .scheduler();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    scheduler.shutdown();
+    assertThat(scheduler.awaitTermination(1, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void firesAfterDelay() throws Exception {
+    final long start = System.nanoTime();
+    final ScheduledFuture<String> future =
+        scheduler.schedule(() -> "done", 20, TimeUnit.MILLISECONDS);
+
+    assertThat(future.get(1, TimeUnit.SECONDS), is("done"));
+    assertThat(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), is(true));
+  }
+
+  @Test
+  public void firesAfterSeveralRounds() throws Exception {
+    // 8 ticks of 1ms per wheel, so this timeout goes around the wheel a few times.
+    final ScheduledFuture<String> future =
+        scheduler.schedule(() -> "done", 30, TimeUnit.MILLISECONDS);
+
+    assertThat(future.get(1, TimeUnit.SECONDS), is("done"));
+  }
+
+  @Test
+  public void firesTimeoutsInBatches() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(100);
+    final List<ScheduledFuture<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(scheduler.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS));
+    }
+
+    assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+    for (final ScheduledFuture<?> future : futures) {
+      future.get(1, TimeUnit.SECONDS);
+      assertThat(future.isDone(), is(true));
+    }
+  }
+
+  @Test
+  public void cancelledTimeoutsDontFire() throws Exception {
+    final AtomicInteger fired = new AtomicInteger();
+    final ScheduledFuture<?> cancelled =
+        scheduler.schedule(fired::incrementAndGet, 5, TimeUnit.MILLISECONDS);
+    final ScheduledFuture<?> kept = scheduler.schedule(() -> "kept", 10, TimeUnit.MILLISECONDS);
+
+    assertThat(cancelled.cancel(false), is(true));
+    assertThat(cancelled.isCancelled(), is(true));
+    assertThat(kept.get(1, TimeUnit.SECONDS), is("kept"));
+    assertThat(fired.get(), is(0));
+    assertThat(cancelled.cancel(false), is(false));
+  }
+
+  @Test
+  public void cancelledTimeoutsReleaseTheirTask() throws Exception {
+    final List<WeakReference<Object>> held = new ArrayList<>();
+    final ScheduledFuture<Object> future = scheduleHolding(held);
+    final WeakReference<Object> captured = held.get(0);
+
+    future.cancel(false);
+
+    // the cancelled timeout is still linked in the wheel, far from the current tick.
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (captured.get() != null && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(captured.get() == null, is(true));
+  }
+
+  private ScheduledFuture<Object> scheduleHolding(final List<WeakReference<Object>> held) {
+    final Object state = new Object();
+    held.add(new WeakReference<>(state));
+    return scheduler.schedule(() -> state, 1, TimeUnit.HOURS);
+  }
+
+  @Test
+  public void failedTasksCompleteExceptionally() throws Exception {
+    final ScheduledFuture<Object> future =
+        scheduler.schedule(
+            () -> {
+              throw new IllegalStateException("boom");
+            },
+            1,
+            TimeUnit.MILLISECONDS);
+
+    try {
+      future.get(1, TimeUnit.SECONDS);
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("boom"));
+      return;
+    }
+    throw new AssertionError("expected failure");
+  }
+
+  @Test
+  public void shutdownCancelsPendingTimeouts() throws Exception {
+    final ScheduledFuture<String> future = scheduler.schedule(() -> "never", 1, TimeUnit.HOURS);
+
+    scheduler.shutdownNow();
+    assertThat(scheduler.awaitTermination(1, TimeUnit.SECONDS), is(true));
+
+    assertThat(future.isCancelled(), is(true));
+    try {
+      future.get(1, TimeUnit.SECONDS);
+    } catch (final CancellationException e) {
+      return;
+    }
+    throw new AssertionError("expected cancellation");
+  }
+
+  @Test
+  public void runsAtFixedRateUntilCancelled() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(3);
+    final ScheduledFuture<?> future =
+        scheduler.scheduleAtFixedRate(latch::countDown, 1, 5, TimeUnit.MILLISECONDS);
+
+    assertThat(latch.await(1, TimeUnit.SECONDS), is(true));
+    assertThat(future.isDone(), is(false));
+    assertThat(future.cancel(false), is(true));
+    assertThat(future.isCancelled(), is(true));
+  }
+
+  @Test
+  public void runsWithFixedDelayUntilFailure() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    final ScheduledFuture<?> future =
+        scheduler.scheduleWithFixedDelay(
+            () -> {
+              if (runs.incrementAndGet() == 3) {
+                throw new IllegalStateException("boom");
+              }
+            },
+            1,
+            2,
+            TimeUnit.MILLISECONDS);
+
+    try {
+      future.get(1, TimeUnit.SECONDS);
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("boom"));
+      Thread.sleep(20);
+      assertThat(runs.get(), is(3));
+      return;
+    }
+    throw new AssertionError("expected failure");
+  }
+
+  @Test
+  public void shutdownCancelsPeriodicTasks() throws Exception {
+    final ScheduledFuture<?> future =
+        scheduler.scheduleAtFixedRate(() -> {}, 1, 1, TimeUnit.MILLISECONDS);
+
+    scheduler.shutdown();
+    assertThat(scheduler.awaitTermination(1, TimeUnit.SECONDS), is(true));
+
+    try {
+      future.get(1, TimeUnit.SECONDS);
+    } catch (final CancellationException e) {
+      return;
+    }
+    throw new AssertionError("expected cancellation");
+  }
+
+  @Test
+  public void timesOutPredictions() throws Exception {
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final AsyncPredictFn<PredictorTest.DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> new CompletableFuture<>();
+    final Predictor<Integer, Integer> predictor =
+        DefaultPredictorBuilder.create(
+                ModelLoader.loaded(new PredictorTest.DummyModel()), extractFn, predictFn)
+            .predictor();
+
+    try {
+      predictor.predict(scheduler, Duration.ofMillis(10), 1).toCompletableFuture().get();
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof TimeoutException, is(true));
+      return;
+    }
+    throw new AssertionError("expected timeout");
+  }
+}
@@ -21,12 +21,15 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
@@ -117,4 +120,102 @@ public class PredictorTest {
     assertThat(predictions.size(), is(1));
     assertThat(predictions.get(0), is(Prediction.create(1, 0.2f)));
   }
+
+  @Test
+  public void executionPolicy() throws InterruptedException, ExecutionException, TimeoutException {
+    final Duration wait = Duration.ofSeconds(1);
+    final ExecutionPolicy policy = ExecutionPolicy.bounded(1, 1, 1);
+    final ExtractFn<Integer, String> extractFn =
+        ExtractFn.lift(input -> Thread.currentThread().getName());
+    final PredictFn<DummyModel, Integer, String, String> predictFn =
+        (model, vectors) -> {
+          // give the caller time to register its continuation before completion.
+          Thread.sleep(100);
+          final String thread = Thread.currentThread().getName();
+          return vectors
+              .stream()
+              .map(vector -> Prediction.create(vector.input(), vector.value() + "," + thread))
+              .collect(Collectors.toList());
+        };
+
+    final ModelLoader<DummyModel> loader = ModelLoader.loaded(new DummyModel());
+    final String value =
+        DefaultPredictorBuilder.create(loader, extractFn, predictFn, policy)
+            .predictor()
+            .predict(1)
+            .thenApply(p -> p.get(0).value() + "," + Thread.currentThread().getName())
+            .toCompletableFuture()
+            .get(wait.toMillis(), TimeUnit.MILLISECONDS);
+
+    assertThat(value, is("zoltar-extract-0,zoltar-predict-0,zoltar-callback-0"));
+  }
+
+  @Test
+  public void listInputsAreNotCopied()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final Duration wait = Duration.ofSeconds(1);
+    final AtomicReference<List<Integer>> extracted = new AtomicReference<>();
+    final ExtractFn<Integer, Float> extractFn =
+        new ExtractFn<Integer, Float>() {
+          @Override
+          public List<Float> apply(final Integer... inputs) {
+            throw new AssertionError("inputs were copied into an array");
+          }
+
+          @Override
+          public List<Float> apply(final List<Integer> inputs) {
+            extracted.set(inputs);
+            final List<Float> result = new ArrayList<>(inputs.size());
+            for (final Integer input : inputs) {
+              result.add((float) input / 10);
+            }
+            return result;
+          }
+        };
+    final PredictFn<DummyModel, Integer, Float, Float> predictFn =
+        (model, vectors) -> {
+          return vectors
+              .stream()
+              .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+              .collect(Collectors.toList());
+        };
+
+    final List<Integer> inputs = Arrays.asList(1, 2);
+    final ModelLoader<DummyModel> loader = ModelLoader.lift(DummyModel::new);
+    final List<Prediction<Integer, Float>> predictions =
+        DefaultPredictorBuilder.create(loader, extractFn, predictFn)
+            .predictor()
+            .predict(wait, inputs)
+            .toCompletableFuture()
+            .get(wait.toMillis(), TimeUnit.MILLISECONDS);
+
+    assertTrue(extracted.get() == inputs);
+    assertThat(predictions.size(), is(2));
+    assertThat(predictions.get(1), is(Prediction.create(2, 0.4f)));
+  }
+
+  @Test
+  public void varargsInputsKeepTheCallerArray()
+      throws InterruptedException, ExecutionException, TimeoutException {
+    final Duration wait = Duration.ofSeconds(1);
+    // String and StringBuilder only share an interface, a copy would be an Object[].
+    final ExtractFn<CharSequence, Integer> extractFn =
+        inputs -> Arrays.stream(inputs).map(CharSequence::length).collect(Collectors.toList());
+    final PredictFn<DummyModel, CharSequence, Integer, Integer> predictFn =
+        (model, vectors) ->
+            vectors
+                .stream()
+                .map(vector -> Prediction.create(vector.input(), vector.value()))
+                .collect(Collectors.toList());
+
+    final ModelLoader<DummyModel> loader = ModelLoader.lift(DummyModel::new);
+    final List<Prediction<CharSequence, Integer>> predictions =
+        DefaultPredictorBuilder.create(loader, extractFn, predictFn)
+            .predictor()
+            .predict(wait, "a", new StringBuilder("bc"))
+            .toCompletableFuture()
+            .get(wait.toMillis(), TimeUnit.MILLISECONDS);
+
+    assertThat(predictions.get(1).value(), is(2));
+  }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+  private static final String UNSUPPORTED = "virtual threads require JDK 21 or later";
+
+  @Test
+  public void supportMatchesTheRunningJdk() {
+    assertThat(VirtualThreads.isSupported(), is(featureVersion() >= 21));
+  }
+
+  @Test
+  public void executorThrowsWhenUnsupported() {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(false));
+
+    try {
+      VirtualThreads.executor();
+      fail("executor() should throw on JDK < 21");
+    } catch (final UnsupportedOperationException e) {
+      assertThat(e.getMessage(), is(UNSUPPORTED));
+    }
+  }
+
+  @Test
+  public void newExecutorThrowsWhenUnsupported() {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(false));
+
+    try {
+      VirtualThreads.newExecutor();
+      fail("newExecutor() should throw on JDK < 21");
+    } catch (final UnsupportedOperationException e) {
+      assertThat(e.getMessage(), is(UNSUPPORTED));
+    }
+  }
+
+  @Test
+  public void invokeAllThrowsWhenUnsupported() throws Exception {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(false));
+
+    try {
+      VirtualThreads.invokeAll(Arrays.<Callable<Integer>>asList(() -> 1), Duration.ofSeconds(1));
+      fail("invokeAll() should throw on JDK < 21");
+    } catch (final UnsupportedOperationException e) {
+      assertThat(e.getMessage(), is(UNSUPPORTED));
+    }
+  }
+
+  @Test
+  public void executorRunsTasksOnVirtualThreads() throws Exception {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(true));
+
+    final ExecutorService executor = VirtualThreads.newExecutor();
+    try {
+      assertThat(executor.submit(VirtualThreadsTest::isVirtual).get(1, TimeUnit.SECONDS), is(true));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void invokeAllReturnsResultsInTaskOrder() throws Exception {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(true));
+
+    final List<Integer> results =
+        VirtualThreads.invokeAll(
+            Arrays.<Callable<Integer>>asList(
+                () -> {
+                  Thread.sleep(50);
+                  return 1;
+                },
+                () -> 2,
+                () -> 3),
+            Duration.ofSeconds(5));
+
+    assertThat(results, is(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void invokeAllCancelsSiblingsOnFailure() throws Exception {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(true));
+
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    try {
+      VirtualThreads.invokeAll(
+          Arrays.<Callable<Integer>>asList(
+              () -> {
+                try {
+                  Thread.sleep(10_000);
+                } catch (final InterruptedException e) {
+                  interrupted.countDown();
+                }
+                return 1;
+              },
+              () -> {
+                throw new IllegalStateException("model unavailable");
+              }),
+          Duration.ofSeconds(5));
+      fail("invokeAll() should fail with the task failure");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("model unavailable"));
+    }
+
+    assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void invokeAllTimesOut() throws Exception {
+    Assume.assumeThat(VirtualThreads.isSupported(), is(true));
+
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    try {
+      VirtualThreads.invokeAll(
+          Arrays.<Callable<Integer>>asList(
+              () -> {
+                try {
+                  Thread.sleep(10_000);
+                } catch (final InterruptedException e) {
+                  interrupted.countDown();
+                }
+                return 1;
+              }),
+          Duration.ofMillis(50));
+      fail("invokeAll() should time out");
+    } catch (final TimeoutException e) {
+      assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+    }
+  }
+
+  private static boolean isVirtual() throws Exception {
+    return (boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+  }
+
+  private static int featureVersion() {
+    final String version = System.getProperty("java.specification.version");
+    return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.PredictorBuilder;
+import com.spotify.zoltar.Predictors;
+import com.spotify.zoltar.bulk.StreamingPredictorTest.DummyModel;
+import com.spotify.zoltar.loaders.RefCountingModelLoader;
+
+public class BulkPredictorTest {
+
+  private static PredictorBuilder<DummyModel, Integer, Integer, Integer> builder() {
+    return builder(ModelLoader.loaded(new DummyModel()));
+  }
+
+  private static PredictorBuilder<DummyModel, Integer, Integer, Integer> builder(
+      final ModelLoader<DummyModel> modelLoader) {
+    final ExtractFn<Integer, Integer> extractFn =
+        ExtractFn.lift(
+            input -> {
+              if (input < 0) {
+                throw new IllegalArgumentException("negative input");
+              }
+              return input;
+            });
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) ->
+            vectors
+                .stream()
+                .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+                .collect(Collectors.toList());
+    return Predictors.newBuilder(modelLoader, extractFn, predictFn);
+  }
+
+  @Test
+  public void predictsAllInOrder() throws Exception {
+    final List<Integer> inputs = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+    final Queue<BulkProgress> progress = new ConcurrentLinkedQueue<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final BulkOptions options =
+        BulkOptions.builder()
+            .batchSize(64)
+            .parallelism(4)
+            .executor(executor)
+            .listener(progress::add)
+            .build();
+
+    final List<Prediction<Integer, Integer>> predictions;
+    try {
+      predictions =
+          BulkPredictor.create(builder())
+              .predictAll(inputs, options)
+              .toCompletableFuture()
+              .get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(predictions.size(), is(1000));
+    for (int i = 0; i < 1000; i++) {
+      assertThat(predictions.get(i), is(Prediction.create(i, i * 2)));
+    }
+    assertThat(progress.size(), is(16));
+    assertThat(progress.stream().mapToLong(BulkProgress::inputs).max().getAsLong(), is(1000L));
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void failsOnFailedBatch() throws Exception {
+    final List<Integer> inputs = IntStream.range(-1, 100).boxed().collect(Collectors.toList());
+
+    BulkPredictor.create(builder())
+        .predictAll(inputs, BulkOptions.builder().batchSize(10).build())
+        .toCompletableFuture()
+        .get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void failingListenerFailsTheJobAndReturnsTheLease() throws Exception {
+    final RefCountingModelLoader<DummyModel> loader =
+        RefCountingModelLoader.create(ModelLoader.loaded(new DummyModel()));
+    final List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    final BulkOptions options =
+        BulkOptions.builder()
+            .batchSize(10)
+            .listener(
+                progress -> {
+                  throw new IllegalStateException("listener failed");
+                })
+            .build();
+
+    try {
+      BulkPredictor.create(builder(loader))
+          .predictAll(inputs, options)
+          .toCompletableFuture()
+          .get(5, TimeUnit.SECONDS);
+      fail("listener failure should fail the job");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("listener failed"));
+    }
+    assertThat(loader.leases(), is(0));
+  }
+
+  @Test
+  public void rejectedBatchFailsTheJobAndReturnsTheLease() throws Exception {
+    final RefCountingModelLoader<DummyModel> loader =
+        RefCountingModelLoader.create(ModelLoader.loaded(new DummyModel()));
+    final List<Integer> inputs = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    final BulkOptions options =
+        BulkOptions.builder()
+            .batchSize(10)
+            .executor(
+                command -> {
+                  throw new RejectedExecutionException("executor shut down");
+                })
+            .build();
+
+    try {
+      BulkPredictor.create(builder(loader))
+          .predictAll(inputs, options)
+          .toCompletableFuture()
+          .get(5, TimeUnit.SECONDS);
+      fail("rejected batch should fail the job");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof RejectedExecutionException, is(true));
+    }
+    assertThat(loader.leases(), is(0));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+import com.spotify.zoltar.bulk.StreamingPredictorTest.DummyModel;
+
+public class PipelinedPredictorTest {
+
+  @Test
+  public void overlapsExtractionAndInference() throws Exception {
+    final AtomicInteger extracted = new AtomicInteger();
+    final CompletableFuture<Void> firstInference = new CompletableFuture<>();
+    final ExtractFn<Integer, Integer> extractFn =
+        ExtractFn.lift(
+            input -> {
+              extracted.incrementAndGet();
+              return input;
+            });
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          final List<Prediction<Integer, Integer>> predictions =
+              vectors
+                  .stream()
+                  .map(vector -> Prediction.create(vector.input(), vector.value()))
+                  .collect(Collectors.toList());
+          return firstInference.thenApply(ignored -> predictions);
+        };
+    final Predictor<Integer, Integer> predictor =
+        Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+            .with(PipelinedPredictorBuilder.create(PipelineOptions.builder().chunkSize(2).build()))
+            .predictor();
+
+    final CompletableFuture<List<Prediction<Integer, Integer>>> future =
+        predictor.predict(1, 2, 3, 4, 5, 6).toCompletableFuture();
+
+    // the first chunk is in inference, the next ones are extracted up to the queue capacity.
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (extracted.get() < 6 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(extracted.get(), is(6));
+    assertThat(future.isDone(), is(false));
+
+    firstInference.complete(null);
+    assertThat(future.get(1, TimeUnit.SECONDS).size(), is(6));
+  }
+
+  @Test
+  public void mergesChunksInOrder() throws Exception {
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) ->
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+                  } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  return vectors
+                      .stream()
+                      .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+                      .collect(Collectors.toList());
+                });
+    final PipelineOptions options =
+        PipelineOptions.builder()
+            .chunkSize(7)
+            .extractParallelism(2)
+            .predictParallelism(3)
+            .queueCapacity(4)
+            .build();
+    final Predictor<Integer, Integer> predictor =
+        Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+            .with(PipelinedPredictorBuilder.create(options))
+            .predictor();
+
+    final Integer[] inputs = IntStream.range(0, 100).boxed().toArray(Integer[]::new);
+    final List<Prediction<Integer, Integer>> predictions =
+        predictor.predict(inputs).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(predictions.size(), is(100));
+    for (int i = 0; i < 100; i++) {
+      assertThat(predictions.get(i), is(Prediction.create(i, i * 2)));
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.bulk;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+public class StreamingPredictorTest {
+
+  static class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  static Predictor<Integer, Integer> doubling(final AtomicInteger calls) {
+    return doubling(calls, new CountDownLatch(0));
+  }
+
+  static Predictor<Integer, Integer> doubling(
+      final AtomicInteger calls, final CountDownLatch predicted) {
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          calls.incrementAndGet();
+          predicted.countDown();
+          return vectors
+              .stream()
+              .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+              .collect(Collectors.toList());
+        };
+    return Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+        .predictor();
+  }
+
+  @Test
+  public void predictsInOrderInBatches() {
+    final AtomicInteger calls = new AtomicInteger();
+    final StreamingPredictor<Integer, Integer> streaming =
+        StreamingPredictor.create(
+            doubling(calls),
+            StreamingPredictor.Options.builder().batchSize(10).maxInFlight(2).build());
+
+    final List<Integer> values =
+        streaming
+            .predict(IntStream.range(0, 95).boxed())
+            .map(Prediction::value)
+            .collect(Collectors.toList());
+
+    assertThat(values.size(), is(95));
+    assertThat(values.get(94), is(188));
+    assertThat(calls.get(), is(10));
+  }
+
+  @Test
+  public void pullsInputsOnDemand() throws InterruptedException {
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch predicted = new CountDownLatch(2);
+    final AtomicInteger pulled = new AtomicInteger();
+    final StreamingPredictor<Integer, Integer> streaming =
+        StreamingPredictor.create(
+            doubling(calls, predicted),
+            StreamingPredictor.Options.builder().batchSize(10).maxInFlight(2).build());
+
+    final Stream<Integer> infinite =
+        Stream.iterate(0, i -> i + 1).peek(i -> pulled.incrementAndGet());
+    final List<Prediction<Integer, Integer>> first =
+        streaming.predict(infinite).limit(5).collect(Collectors.toList());
+
+    // the first batch plus one more in flight, the second may still be running.
+    assertThat(first.get(4).value(), is(8));
+    assertThat(pulled.get(), is(20));
+    assertThat(predicted.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(calls.get(), is(2));
+  }
+}
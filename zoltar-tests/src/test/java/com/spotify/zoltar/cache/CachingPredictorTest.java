@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+public class CachingPredictorTest {
+
+  static class DummyModel implements Model<Object> {
+
+    private final Id id;
+
+    DummyModel() {
+      this("dummy");
+    }
+
+    DummyModel(final String id) {
+      this.id = Id.create(id);
+    }
+
+    @Override
+    public Id id() {
+      return id;
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static CachingPredictorBuilder<DummyModel, Integer, Integer, Integer> builder(
+      final ModelLoader<DummyModel> loader,
+      final List<Integer> predicted,
+      final CacheOptions<Integer, Integer> options) {
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> {
+          synchronized (predicted) {
+            vectors.forEach(v -> predicted.add(v.input()));
+          }
+          return vectors
+              .stream()
+              .map(vector -> Prediction.create(vector.input(), vector.value() * 2))
+              .collect(Collectors.toList());
+        };
+
+    return Predictors.newBuilder(loader, extractFn, predictFn)
+        .with(CachingPredictorBuilder.create(options));
+  }
+
+  private static List<Integer> values(
+      final Predictor<Integer, Integer> predictor, final Integer... inputs) throws Exception {
+    return predictor
+        .predict(inputs)
+        .toCompletableFuture()
+        .get(1, TimeUnit.SECONDS)
+        .stream()
+        .map(Prediction::value)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void onlyMissesGoToTheModel() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final CachingPredictorBuilder<DummyModel, Integer, Integer, Integer> builder =
+        builder(
+            ModelLoader.loaded(new DummyModel()),
+            predicted,
+            CacheOptions.<Integer, Integer>builder(i -> i).build());
+    final Predictor<Integer, Integer> predictor = builder.predictor();
+
+    assertThat(values(predictor, 1, 2), is(list(2, 4)));
+    assertThat(values(predictor, 2, 3, 1, 3), is(list(4, 6, 2, 6)));
+
+    // 3 is requested twice within the batch but predicted once.
+    assertThat(predicted, is(list(1, 2, 3)));
+    assertThat(builder.stats().hitCount(), is(2L));
+  }
+
+  @Test
+  public void invalidatesOnModelSwap() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final AtomicReference<DummyModel> model = new AtomicReference<>(new DummyModel());
+    final ModelLoader<DummyModel> loader =
+        () -> CompletableFuture.completedFuture(model.get());
+    final Predictor<Integer, Integer> predictor =
+        builder(loader, predicted, CacheOptions.<Integer, Integer>builder(i -> i).build())
+            .predictor();
+
+    values(predictor, 1);
+    values(predictor, 1);
+    model.set(new DummyModel("dummy-v2"));
+    values(predictor, 1);
+
+    assertThat(predicted, is(list(1, 1)));
+  }
+
+  @Test
+  public void invalidatesOnReloadUnderTheSameId() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final AtomicReference<DummyModel> model = new AtomicReference<>(new DummyModel());
+    final ModelLoader<DummyModel> loader =
+        () -> CompletableFuture.completedFuture(model.get());
+    final Predictor<Integer, Integer> predictor =
+        builder(loader, predicted, CacheOptions.<Integer, Integer>builder(i -> i).build())
+            .predictor();
+
+    values(predictor, 1);
+    model.set(new DummyModel());
+    values(predictor, 1);
+    values(predictor, 1);
+
+    assertThat(predicted, is(list(1, 1)));
+  }
+
+  @Test
+  public void keepsCacheAcrossInstancesOfAPool() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    // e.g. a pooled loader, every call hands out one of a few instances of the same model.
+    final DummyModel[] pool = {new DummyModel(), new DummyModel()};
+    final AtomicInteger next = new AtomicInteger();
+    final ModelLoader<DummyModel> loader =
+        () -> CompletableFuture.completedFuture(pool[next.getAndIncrement() % pool.length]);
+    final Predictor<Integer, Integer> predictor =
+        builder(loader, predicted, CacheOptions.<Integer, Integer>builder(i -> i).build())
+            .predictor();
+
+    for (int i = 0; i < 10; i++) {
+      values(predictor, 1);
+    }
+
+    assertThat(predicted, is(list(1)));
+  }
+
+  @Test
+  public void cachesUnderTheModelThatPredicted() throws Exception {
+    final DummyModel previous = new DummyModel();
+    final AtomicReference<DummyModel> model = new AtomicReference<>(previous);
+    final ModelLoader<DummyModel> loader =
+        () -> CompletableFuture.completedFuture(model.get());
+    final CompletableFuture<Void> release = new CompletableFuture<>();
+    // the previous model predicts 10 times the input, slowly, the new one 100 times.
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (m, vectors) -> {
+          final int factor = m == previous ? 10 : 100;
+          final List<Prediction<Integer, Integer>> predictions =
+              vectors
+                  .stream()
+                  .map(vector -> Prediction.create(vector.input(), vector.value() * factor))
+                  .collect(Collectors.toList());
+          return m == previous
+              ? release.thenApply(v -> predictions)
+              : CompletableFuture.completedFuture(predictions);
+        };
+    final CacheOptions<Integer, Integer> options =
+        CacheOptions.<Integer, Integer>builder(i -> i).build();
+    final Predictor<Integer, Integer> predictor =
+        Predictors.newBuilder(loader, ExtractFn.<Integer>identity(), predictFn)
+            .with(CachingPredictorBuilder.create(options))
+            .predictor();
+
+    final CompletableFuture<List<Prediction<Integer, Integer>>> late =
+        predictor.predict(1).toCompletableFuture();
+    model.set(new DummyModel());
+    assertThat(values(predictor, 1), is(list(100)));
+    release.complete(null);
+    assertThat(late.get(1, TimeUnit.SECONDS).get(0).value(), is(10));
+
+    assertThat(values(predictor, 1), is(list(100)));
+  }
+
+  @Test
+  public void timeoutCoversModelLoading() throws Exception {
+    final ModelLoader<DummyModel> loader = CompletableFuture::new;
+    final Predictor<Integer, Integer> predictor =
+        builder(loader, new ArrayList<>(), CacheOptions.<Integer, Integer>builder(i -> i).build())
+            .predictor();
+
+    try {
+      predictor.predict(Duration.ofMillis(10), 1).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof TimeoutException, is(true));
+      return;
+    }
+    throw new AssertionError("expected timeout");
+  }
+
+  @Test
+  public void expiresAfterWrite() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final Predictor<Integer, Integer> predictor =
+        builder(
+                ModelLoader.loaded(new DummyModel()),
+                predicted,
+                CacheOptions.<Integer, Integer>builder(i -> i)
+                    .expireAfterWrite(Duration.ofMillis(10))
+                    .build())
+            .predictor();
+
+    values(predictor, 1);
+    Thread.sleep(20);
+    values(predictor, 1);
+
+    assertThat(predicted, is(list(1, 1)));
+  }
+
+  @Test
+  public void refreshesAhead() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final Predictor<Integer, Integer> predictor =
+        builder(
+                ModelLoader.loaded(new DummyModel()),
+                predicted,
+                CacheOptions.<Integer, Integer>builder(i -> i)
+                    .refreshAfterWrite(Duration.ofMillis(10))
+                    .build())
+            .predictor();
+
+    values(predictor, 1);
+    Thread.sleep(20);
+    // served from the cache, recomputed in the background.
+    assertThat(values(predictor, 1), is(list(2)));
+    Thread.sleep(100);
+
+    synchronized (predicted) {
+      assertThat(predicted, is(list(1, 1)));
+    }
+  }
+
+  @Test
+  public void admitsFrequentInputsOnceFull() throws Exception {
+    final List<Integer> predicted = new ArrayList<>();
+    final Predictor<Integer, Integer> predictor =
+        builder(
+                ModelLoader.loaded(new DummyModel()),
+                predicted,
+                CacheOptions.<Integer, Integer>builder(i -> i).maximumSize(1).build())
+            .predictor();
+
+    values(predictor, 1);
+    // evicts 1, the cache is now full.
+    values(predictor, 2);
+    // one-hit wonder, not admitted.
+    values(predictor, 3);
+    values(predictor, 2);
+
+    assertThat(predicted, is(list(1, 2, 3)));
+  }
+
+  private static List<Integer> list(final Integer... values) {
+    final List<Integer> list = new ArrayList<>();
+    for (final Integer value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.cache;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Vector;
+
+public class MemoizingFeatureExtractorTest {
+
+  private final CachingPredictorTest.DummyModel model = new CachingPredictorTest.DummyModel();
+
+  private static MemoizingFeatureExtractor<CachingPredictorTest.DummyModel, Integer, float[]>
+      extractor(final List<Integer> extracted, final MemoizeOptions<Integer, float[]> options) {
+    final ExtractFn<Integer, float[]> extractFn =
+        ExtractFn.lift(
+            input -> {
+              extracted.add(input);
+              return new float[] {input, input * 2};
+            });
+
+    return FeatureExtractor.<CachingPredictorTest.DummyModel, Integer, float[]>create(extractFn)
+        .with(MemoizingFeatureExtractor.create(options));
+  }
+
+  @Test
+  public void onlyExtractsMisses() throws Exception {
+    final List<Integer> extracted = new ArrayList<>();
+    final MemoizingFeatureExtractor<CachingPredictorTest.DummyModel, Integer, float[]> extractor =
+        extractor(extracted, MemoizeOptions.<Integer, float[]>builder(i -> i).build());
+
+    extractor.extract(model, 1, 2);
+    final List<Vector<Integer, float[]>> vectors = extractor.extract(model, 2, 3, 3);
+
+    assertThat(extracted.size(), is(3));
+    assertThat(vectors.get(2).input(), is(3));
+    assertArrayEquals(new float[] {3, 6}, vectors.get(2).value(), 0);
+    assertThat(extractor.stats().hitCount(), is(1L));
+  }
+
+  @Test
+  public void storesVectorsOffHeap() throws Exception {
+    final List<Integer> extracted = new ArrayList<>();
+    // two vectors of two floats fit in 16 bytes.
+    final MemoizingFeatureExtractor<CachingPredictorTest.DummyModel, Integer, float[]> extractor =
+        extractor(
+            extracted,
+            MemoizeOptions.<Integer, float[]>builder(i -> i)
+                .codec(VectorCodec.floats())
+                .maximumSize(16)
+                .build());
+
+    extractor.extract(model, 1, 2);
+    final List<Vector<Integer, float[]>> vectors = extractor.extract(model, 1, 2);
+
+    assertThat(extracted.size(), is(2));
+    assertArrayEquals(new float[] {1, 2}, vectors.get(0).value(), 0);
+    assertArrayEquals(new float[] {2, 4}, vectors.get(1).value(), 0);
+
+    extractor.extract(model, 3);
+    assertThat(extractor.stats().evictionCount(), is(1L));
+  }
+
+  @Test
+  public void reusesEvictedOffHeapSlots() throws Exception {
+    final MemoizingFeatureExtractor<CachingPredictorTest.DummyModel, Integer, float[]> extractor =
+        extractor(
+            new ArrayList<>(),
+            MemoizeOptions.<Integer, float[]>builder(i -> i)
+                .codec(VectorCodec.floats())
+                .maximumSize(1024)
+                .build());
+
+    for (int i = 0; i < 10_000; i++) {
+      assertArrayEquals(new float[] {i, i * 2}, extractor.extract(model, i).get(0).value(), 0);
+    }
+
+    assertThat(extractor.size(), is(128L));
+    assertThat(extractor.offHeapBytes(), is((long) OffHeapSlabs.SLAB_SIZE));
+
+    extractor.invalidateAll();
+    assertThat(extractor.extract(model, 42).get(0).value()[1], is(84f));
+    assertThat(extractor.offHeapBytes(), is((long) OffHeapSlabs.SLAB_SIZE));
+  }
+
+  @Test
+  public void invalidatesOnModelSwap() throws Exception {
+    final List<Integer> extracted = new ArrayList<>();
+    final MemoizingFeatureExtractor<CachingPredictorTest.DummyModel, Integer, float[]> extractor =
+        extractor(extracted, MemoizeOptions.<Integer, float[]>builder(i -> i).build());
+
+    extractor.extract(model, 1);
+    extractor.extract(new CachingPredictorTest.DummyModel(), 1);
+    extractor.extract(new CachingPredictorTest.DummyModel("dummy-v2"), 1);
+
+    assertThat(extracted.size(), is(2));
+    assertThat(extractor.size(), is(1L));
+  }
+}
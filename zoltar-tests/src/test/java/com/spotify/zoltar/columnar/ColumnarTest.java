@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.columnar;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+public class ColumnarTest {
+
+  static class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  @Test
+  public void buildsContiguousRows() {
+    final FloatBatch batch =
+        FloatBatch.builder(1, 1).add(1f).add(2f).endRow().add(new float[] {3f}).endRow().build();
+
+    assertThat(batch.rows(), is(2));
+    assertThat(batch.size(), is(3));
+    assertThat(batch.isDense(), is(false));
+    assertThat(batch.offset(1), is(2));
+    assertThat(batch.get(0, 1), is(2f));
+    assertThat(batch.row(1).toArray(), is(new float[] {3f}));
+  }
+
+  @Test
+  public void gathersWithoutCopyingWholeBatches() {
+    final LongBatch batch = LongBatch.dense(new long[] {1, 2, 3, 4}, 2, 2);
+    assertThat(LongBatch.gather(batch.rowList()) == batch, is(true));
+
+    final LongBatch reordered = LongBatch.gather(Arrays.asList(batch.row(1), batch.row(0)));
+    assertThat(reordered == batch, is(false));
+    assertThat(reordered.row(0).toArray(), is(new long[] {3, 4}));
+    assertThat(reordered.width(), is(2));
+  }
+
+  @Test
+  public void predictsWholeBatches() throws Exception {
+    final Predictor<double[], DoubleBatch.Row> predictor =
+        Predictors.newBuilder(
+                ModelLoader.loaded(new DummyModel()),
+                Columnar.<double[]>doubleExtractFn((input, row) -> row.add(input)),
+                Columnar.<DummyModel, double[], DoubleBatch.Row>doublePredictFn(
+                    (model, features) -> {
+                      final double[] sums = new double[features.rows()];
+                      for (int i = 0; i < features.rows(); i++) {
+                        for (int j = 0; j < features.width(i); j++) {
+                          sums[i] += features.get(i, j);
+                        }
+                      }
+                      return DoubleBatch.dense(sums, sums.length, 1);
+                    }))
+            .predictor();
+
+    final double[] first = {1, 2};
+    final List<Prediction<double[], DoubleBatch.Row>> predictions =
+        predictor.predict(first, new double[] {3}).toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+    assertThat(predictions.get(0).input() == first, is(true));
+    assertThat(predictions.get(0).value().get(0), is(3.0));
+    assertThat(predictions.get(1).value().get(0), is(3.0));
+  }
+}
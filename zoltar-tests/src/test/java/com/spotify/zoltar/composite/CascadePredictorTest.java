@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.PredictorBuilder;
+import com.spotify.zoltar.Predictors;
+import com.spotify.zoltar.Vector;
+import com.spotify.zoltar.composite.RouterPredictorTest.DummyModel;
+import com.spotify.zoltar.composite.RouterPredictorTest.Item;
+
+public class CascadePredictorTest {
+
+  private final List<List<Integer>> escalations = new ArrayList<>();
+
+  /** Small model, only confident on even inputs. */
+  private static PredictorBuilder<DummyModel, Integer, Integer, String> small() {
+    final PredictFn<DummyModel, Integer, Integer, String> predictFn =
+        (model, vectors) -> {
+          final List<Prediction<Integer, String>> predictions = new ArrayList<>();
+          for (final Vector<Integer, Integer> vector : vectors) {
+            predictions.add(
+                Prediction.create(vector.input(), vector.value() % 2 == 0 ? "small" : "unsure"));
+          }
+          return predictions;
+        };
+    return Predictors.newBuilder(
+        ModelLoader.loaded(new DummyModel()), ExtractFn.identity(), predictFn);
+  }
+
+  private PredictorBuilder<DummyModel, Integer, Integer, String> large() {
+    final PredictFn<DummyModel, Integer, Integer, String> predictFn =
+        (model, vectors) -> {
+          final List<Integer> batch = new ArrayList<>();
+          final List<Prediction<Integer, String>> predictions = new ArrayList<>();
+          for (final Vector<Integer, Integer> vector : vectors) {
+            batch.add(vector.input());
+            predictions.add(Prediction.create(vector.input(), "large"));
+          }
+          escalations.add(batch);
+          return predictions;
+        };
+    return Predictors.newBuilder(
+        ModelLoader.loaded(new DummyModel()), ExtractFn.identity(), predictFn);
+  }
+
+  private static List<Prediction<Integer, String>> predict(
+      final CascadePredictor<Integer, String> cascade, final Integer... inputs) throws Exception {
+    return cascade
+        .predict(Duration.ofSeconds(1), inputs)
+        .toCompletableFuture()
+        .get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void escalatesUncertainInputsAsOneBatch() throws Exception {
+    final CascadePredictor<Integer, String> cascade =
+        CascadePredictor.create(small(), large(), p -> !"unsure".equals(p.value()));
+
+    final List<Prediction<Integer, String>> predictions = predict(cascade, 1, 2, 3, 4, 5);
+
+    assertThat(
+        predictions,
+        is(
+            ImmutableList.of(
+                Prediction.create(1, "large"),
+                Prediction.create(2, "small"),
+                Prediction.create(3, "large"),
+                Prediction.create(4, "small"),
+                Prediction.create(5, "large"))));
+    assertThat(escalations, is(ImmutableList.of(ImmutableList.of(1, 3, 5))));
+    assertThat(cascade.inputs(), is(5L));
+    assertThat(cascade.escalated(), is(3L));
+    assertThat(cascade.escalationRate(), is(0.6));
+  }
+
+  @Test
+  public void escalatesItemsToTypedVarargsExtractors() throws Exception {
+    final PredictFn<DummyModel, Item, Integer, String> small =
+        (model, vectors) -> {
+          final List<Prediction<Item, String>> predictions = new ArrayList<>();
+          for (final Vector<Item, Integer> vector : vectors) {
+            predictions.add(
+                Prediction.create(vector.input(), vector.value() % 2 == 0 ? "small" : "unsure"));
+          }
+          return predictions;
+        };
+    final PredictFn<DummyModel, Item, Integer, String> large =
+        (model, vectors) -> {
+          final List<Prediction<Item, String>> predictions = new ArrayList<>();
+          for (final Vector<Item, Integer> vector : vectors) {
+            predictions.add(Prediction.create(vector.input(), "large"));
+          }
+          return predictions;
+        };
+    final ExtractFn<Item, Integer> weights = RouterPredictorTest.WEIGHTS;
+    final CascadePredictor<Item, String> cascade =
+        CascadePredictor.create(
+            Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), weights, small),
+            Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), weights, large),
+            p -> !"unsure".equals(p.value()));
+
+    final Item one = () -> 1;
+    final Item two = () -> 2;
+    final Item three = () -> 3;
+    final List<Prediction<Item, String>> predictions =
+        cascade
+            .predict(Duration.ofSeconds(1), one, two, three)
+            .toCompletableFuture()
+            .get(1, TimeUnit.SECONDS);
+
+    assertThat(predictions.get(0).value(), is("large"));
+    assertThat(predictions.get(1).value(), is("small"));
+    assertThat(predictions.get(2).value(), is("large"));
+  }
+
+  @Test
+  public void skipsSecondStageWhenConfident() throws Exception {
+    final CascadePredictor<Integer, String> cascade =
+        CascadePredictor.create(small(), large(), p -> !"unsure".equals(p.value()));
+
+    assertThat(predict(cascade, 2, 4).size(), is(2));
+    assertThat(escalations.isEmpty(), is(true));
+    assertThat(cascade.escalationRate(), is(0.0));
+  }
+
+  @Test
+  public void failsWhenSecondStageFails() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Integer, String> broken =
+        (model, vectors) -> {
+          final CompletableFuture<List<Prediction<Integer, String>>> failure =
+              new CompletableFuture<>();
+          failure.completeExceptionally(new IllegalStateException("large model failed"));
+          return failure;
+        };
+    final CascadePredictor<Integer, String> cascade =
+        CascadePredictor.create(
+            small(),
+            Predictors.newBuilder(
+                ModelLoader.loaded(new DummyModel()), ExtractFn.<Integer>identity(), broken),
+            p -> !"unsure".equals(p.value()));
+
+    try {
+      predict(cascade, 1, 2);
+      fail();
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+    }
+  }
+
+  @Test
+  public void failsWhenSecondStageSkipsInputs() throws Exception {
+    final PredictFn<DummyModel, Integer, Integer, String> skipping =
+        (model, vectors) ->
+            ImmutableList.of(Prediction.create(vectors.get(vectors.size() - 1).input(), "large"));
+    final CascadePredictor<Integer, String> cascade =
+        CascadePredictor.create(
+            small(),
+            Predictors.newBuilder(
+                ModelLoader.loaded(new DummyModel()), ExtractFn.<Integer>identity(), skipping),
+            p -> !"unsure".equals(p.value()));
+
+    try {
+      predict(cascade, 1, 2, 3);
+      fail("a second stage that skips inputs should fail the call");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+    }
+  }
+}
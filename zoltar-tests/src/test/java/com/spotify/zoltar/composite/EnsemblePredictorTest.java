@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Vector;
+import com.spotify.zoltar.composite.RouterPredictorTest.DummyModel;
+import com.spotify.zoltar.composite.RouterPredictorTest.Item;
+
+public class EnsemblePredictorTest {
+
+  static class OtherModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("other");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private final ExtractFn<Integer, Double> extractFn = ExtractFn.lift(Integer::doubleValue);
+
+  /** Predicts the extracted value times a factor. */
+  private static <M extends Model<?>> AsyncPredictFn<M, Integer, Double, Double> times(
+      final double factor) {
+    return (model, vectors) -> CompletableFuture.completedFuture(scale(vectors, factor));
+  }
+
+  private static List<Prediction<Integer, Double>> scale(
+      final List<Vector<Integer, Double>> vectors, final double factor) {
+    final List<Prediction<Integer, Double>> predictions = new ArrayList<>();
+    for (final Vector<Integer, Double> vector : vectors) {
+      predictions.add(Prediction.create(vector.input(), vector.value() * factor));
+    }
+    return predictions;
+  }
+
+  private static <R> List<Prediction<Integer, R>> predict(
+      final EnsemblePredictor<Integer, Double, Double, R> ensemble, final Integer... inputs)
+      throws Exception {
+    return ensemble
+        .predict(Duration.ofSeconds(1), inputs)
+        .toCompletableFuture()
+        .get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void dispatchesMembersConcurrently() throws Exception {
+    final AtomicInteger started = new AtomicInteger();
+    final CompletableFuture<Void> release = new CompletableFuture<>();
+    final AsyncPredictFn<DummyModel, Integer, Double, Double> slow =
+        (model, vectors) -> {
+          started.incrementAndGet();
+          return release.thenApply(v -> scale(vectors, 1));
+        };
+    final AsyncPredictFn<OtherModel, Integer, Double, Double> fast =
+        (model, vectors) -> {
+          started.incrementAndGet();
+          return CompletableFuture.completedFuture(scale(vectors, 3));
+        };
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(extractFn, Combiners.<Integer, Double>mean())
+            .member("slow", ModelLoader.loaded(new DummyModel()), slow)
+            .member("fast", ModelLoader.loaded(new OtherModel()), fast)
+            .build();
+
+    final CompletableFuture<List<Prediction<Integer, Double>>> prediction =
+        ensemble.predict(Duration.ofSeconds(1), 1, 2).toCompletableFuture();
+    assertThat(started.get(), is(2));
+    assertThat(prediction.isDone(), is(false));
+
+    release.complete(null);
+    final List<Prediction<Integer, Double>> predictions = prediction.get(1, TimeUnit.SECONDS);
+    assertThat(predictions.get(0), is(Prediction.create(1, 2.0)));
+    assertThat(predictions.get(1), is(Prediction.create(2, 4.0)));
+  }
+
+  @Test
+  public void weighted() throws Exception {
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(extractFn, Combiners.<Integer, Double>weighted())
+            .member("one", ModelLoader.loaded(new DummyModel()), times(1), 3)
+            .member("five", ModelLoader.loaded(new DummyModel()), times(5), 1)
+            .build();
+
+    assertThat(predict(ensemble, 2).get(0).value(), is(4.0));
+  }
+
+  @Test
+  public void dropsSlowMembers() throws Exception {
+    final AtomicReference<List<Vote<Double>>> votes = new AtomicReference<>();
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(
+                extractFn,
+                (Integer input, List<Vote<Double>> v) -> {
+                  votes.set(v);
+                  return Combiners.<Integer, Double>mean().combine(input, v);
+                })
+            .member("fast", ModelLoader.loaded(new DummyModel()), times(2))
+            .member(
+                "stuck",
+                ModelLoader.loaded(new DummyModel()),
+                (model, vectors) -> new CompletableFuture<>(),
+                1,
+                Duration.ofMillis(20))
+            .build();
+
+    assertThat(predict(ensemble, 3).get(0).value(), is(6.0));
+    assertThat(votes.get().get(1).member(), is("stuck"));
+    assertThat(votes.get().get(1).value().isPresent(), is(false));
+    assertThat(ensemble.dropped().get("stuck"), is(1L));
+    assertThat(ensemble.dropped().get("fast"), is(0L));
+  }
+
+  @Test
+  public void stackingGetsNaNForDroppedMembers() throws Exception {
+    final EnsemblePredictor<Integer, Double, Double, String> ensemble =
+        EnsemblePredictor.builder(
+                extractFn,
+                Combiners.<Integer, Double, String>stacking(
+                    features -> features[0] + "," + features[1]))
+            .member("ok", ModelLoader.loaded(new DummyModel()), times(1))
+            .member(
+                "broken",
+                ModelLoader.loaded(new DummyModel()),
+                (model, vectors) -> {
+                  throw new IllegalStateException("broken member");
+                })
+            .build();
+
+    assertThat(predict(ensemble, 1).get(0).value(), is("1.0,NaN"));
+  }
+
+  @Test
+  public void dropsMembersThatSkipInputs() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Double, Double> skipping =
+        (model, vectors) -> CompletableFuture.completedFuture(scale(vectors.subList(1, 2), 10));
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(extractFn, Combiners.<Integer, Double>mean())
+            .member("ok", ModelLoader.loaded(new DummyModel()), times(1))
+            .member("skipping", ModelLoader.loaded(new DummyModel()), skipping)
+            .build();
+
+    final List<Prediction<Integer, Double>> predictions = predict(ensemble, 1, 2);
+
+    assertThat(predictions.get(0), is(Prediction.create(1, 1.0)));
+    assertThat(predictions.get(1), is(Prediction.create(2, 2.0)));
+    assertThat(ensemble.dropped().get("skipping"), is(1L));
+  }
+
+  @Test
+  public void votesOnItemsWithTypedVarargsExtractors() throws Exception {
+    final AsyncPredictFn<DummyModel, Item, Integer, Double> weighing =
+        (model, vectors) -> {
+          final List<Prediction<Item, Double>> predictions = new ArrayList<>();
+          for (final Vector<Item, Integer> vector : vectors) {
+            predictions.add(Prediction.create(vector.input(), vector.value().doubleValue()));
+          }
+          return CompletableFuture.completedFuture(predictions);
+        };
+    final EnsemblePredictor<Item, Integer, Double, Double> ensemble =
+        EnsemblePredictor.builder(RouterPredictorTest.WEIGHTS, Combiners.<Item, Double>mean())
+            .member("a", ModelLoader.loaded(new DummyModel()), weighing)
+            .member("b", ModelLoader.loaded(new DummyModel()), weighing)
+            .build();
+
+    final Item one = () -> 1;
+    final Item two = () -> 2;
+    final List<Prediction<Item, Double>> predictions =
+        ensemble
+            .predict(Duration.ofSeconds(1), one, two)
+            .toCompletableFuture()
+            .get(1, TimeUnit.SECONDS);
+
+    assertThat(predictions.get(0).value(), is(1.0));
+    assertThat(predictions.get(1).value(), is(2.0));
+    assertThat(ensemble.dropped().get("a"), is(0L));
+    assertThat(
+        ensemble
+            .predict(Duration.ofSeconds(1), new Item[0])
+            .toCompletableFuture()
+            .get(1, TimeUnit.SECONDS)
+            .isEmpty(),
+        is(true));
+  }
+
+  @Test
+  public void failsIfNoMemberPredictedAnInput() throws Exception {
+    // predicts the first input only, the second has no prediction.
+    final AsyncPredictFn<DummyModel, Integer, Double, Double> partial =
+        (model, vectors) -> {
+          final List<Prediction<Integer, Double>> predictions = scale(vectors, 1);
+          predictions.set(1, null);
+          return CompletableFuture.completedFuture(predictions);
+        };
+    final AsyncPredictFn<OtherModel, Integer, Double, Double> broken =
+        (model, vectors) -> {
+          final CompletableFuture<List<Prediction<Integer, Double>>> failure =
+              new CompletableFuture<>();
+          failure.completeExceptionally(new IllegalStateException("broken member"));
+          return failure;
+        };
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(extractFn, Combiners.<Integer, Double>mean())
+            .member("partial", ModelLoader.loaded(new DummyModel()), partial)
+            .member("broken", ModelLoader.loaded(new OtherModel()), broken)
+            .build();
+
+    try {
+      predict(ensemble, 1, 2, 3);
+      fail("an input without predictions should fail the ensemble");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("no member predicted a value for input 1: 2"));
+    }
+  }
+
+  @Test
+  public void failsIfEveryMemberIsDropped() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Double, Double> broken =
+        (model, vectors) -> {
+          final CompletableFuture<List<Prediction<Integer, Double>>> failure =
+              new CompletableFuture<>();
+          failure.completeExceptionally(new IllegalStateException("broken member"));
+          return failure;
+        };
+    final EnsemblePredictor<Integer, Double, Double, Double> ensemble =
+        EnsemblePredictor.builder(extractFn, Combiners.<Integer, Double>mean())
+            .member("a", ModelLoader.loaded(new DummyModel()), broken)
+            .member("b", ModelLoader.loaded(new DummyModel()), broken)
+            .build();
+
+    try {
+      predict(ensemble, 1);
+      fail();
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.composite;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Vector;
+
+public class RouterPredictorTest {
+
+  static class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** Implemented by unrelated classes, e.g. lambdas, so a list of items has no common class. */
+  interface Item {
+    int weight();
+  }
+
+  /** Implements the varargs method, it casts the array it's given to an {@code Item[]}. */
+  static final ExtractFn<Item, Integer> WEIGHTS =
+      items -> {
+        final List<Integer> weights = new ArrayList<>(items.length);
+        for (final Item item : items) {
+          weights.add(item.weight());
+        }
+        return weights;
+      };
+
+  static final ModelLoader<DummyModel> LOADER = ModelLoader.loaded(new DummyModel());
+
+  private final AtomicInteger extracted = new AtomicInteger();
+
+  private final FeatureExtractor<DummyModel, Integer, Integer> featureExtractor =
+      FeatureExtractor.create(
+          ExtractFn.lift(
+              input -> {
+                extracted.incrementAndGet();
+                return input;
+              }));
+
+  /** Tags every prediction with the name of the model version that served it. */
+  static AsyncPredictFn<DummyModel, Integer, Integer, String> tagging(final String name) {
+    return (model, vectors) -> {
+      final List<Prediction<Integer, String>> predictions = new ArrayList<>();
+      for (final Vector<Integer, Integer> vector : vectors) {
+        predictions.add(Prediction.create(vector.input(), name));
+      }
+      return CompletableFuture.completedFuture(predictions);
+    };
+  }
+
+  private static List<Prediction<Integer, String>> predict(
+      final RouterPredictor<DummyModel, Integer, Integer, String> router, final Integer... inputs)
+      throws Exception {
+    return router
+        .predict(Duration.ofSeconds(1), inputs)
+        .toCompletableFuture()
+        .get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void weightedRoutesWholeCalls() throws Exception {
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("control", LOADER, tagging("control"), 1)
+            .route("canary", LOADER, tagging("canary"), 1)
+            .build();
+
+    for (int i = 0; i < 100; i++) {
+      final List<Prediction<Integer, String>> predictions = predict(router, 1, 2, 3);
+      assertThat(predictions.get(0).value(), is(predictions.get(2).value()));
+    }
+
+    assertThat(router.served().get("control") + router.served().get("canary"), is(300L));
+    assertThat(router.served().get("control") > 0, is(true));
+    assertThat(router.served().get("canary") > 0, is(true));
+  }
+
+  @Test
+  public void stickySplitsCallsByKeyAndKeepsOrder() throws Exception {
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("a", LOADER, tagging("a"), 1)
+            .route("b", LOADER, tagging("b"), 1)
+            .strategy(RoutingStrategy.sticky(input -> input))
+            .build();
+
+    final Integer[] inputs = new Integer[64];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = i;
+    }
+    final List<Prediction<Integer, String>> first = predict(router, inputs);
+    final List<Prediction<Integer, String>> second = predict(router, inputs);
+
+    assertThat(first, is(second));
+    assertThat(extracted.get(), is(128));
+    for (int i = 0; i < inputs.length; i++) {
+      assertThat(first.get(i).input(), is(i));
+    }
+    assertThat(router.served().get("a") > 0 && router.served().get("b") > 0, is(true));
+  }
+
+  @Test
+  public void shadowsGetTheExtractedFeaturesAndNeverDelayTheRoute() throws Exception {
+    final AtomicReference<List<Vector<Integer, Integer>>> shadowed = new AtomicReference<>();
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("control", LOADER, tagging("control"), 1)
+            .shadow(
+                "next",
+                LOADER,
+                (model, vectors) -> {
+                  shadowed.set(vectors);
+                  return new CompletableFuture<>();
+                },
+                1)
+            .shadow(
+                "broken",
+                LOADER,
+                (model, vectors) -> {
+                  throw new IllegalStateException("broken shadow");
+                },
+                1)
+            .shadow("never", LOADER, tagging("never"), 0)
+            .shadowExecutor(MoreExecutors.directExecutor())
+            .build();
+
+    final List<Prediction<Integer, String>> predictions = predict(router, 1, 2);
+
+    assertThat(predictions.get(1), is(Prediction.create(2, "control")));
+    assertThat(shadowed.get(), is(ImmutableList.of(Vector.create(1, 1), Vector.create(2, 2))));
+    assertThat(extracted.get(), is(2));
+    assertThat(router.shadowed().get("next"), is(1L));
+    assertThat(router.shadowed().get("never"), is(0L));
+  }
+
+  @Test
+  public void shadowsAreCappedAndTimedOut() throws Exception {
+    final AtomicInteger started = new AtomicInteger();
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("control", LOADER, tagging("control"), 1)
+            .shadow(
+                "hanging",
+                LOADER,
+                (model, vectors) -> {
+                  started.incrementAndGet();
+                  return new CompletableFuture<>();
+                },
+                1)
+            .shadowExecutor(MoreExecutors.directExecutor())
+            .maxShadowsInFlight(1)
+            .build();
+
+    final Duration timeout = Duration.ofMillis(100);
+    router.predict(timeout, 1).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    router.predict(timeout, 2).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    assertThat(started.get(), is(1));
+    assertThat(router.shadowsDropped().get("hanging"), is(1L));
+
+    // the hanging shadow call times out and frees its slot.
+    Thread.sleep(500);
+    router.predict(timeout, 3).toCompletableFuture().get(1, TimeUnit.SECONDS);
+    assertThat(started.get(), is(2));
+  }
+
+  @Test
+  public void failsRoutesThatDropInputs() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Integer, String> dropping =
+        (model, vectors) ->
+            CompletableFuture.completedFuture(
+                ImmutableList.of(Prediction.create(vectors.get(0).input(), "dropping")));
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("a", LOADER, tagging("a"), 1)
+            .route("dropping", LOADER, dropping, 1)
+            .strategy(RoutingStrategy.sticky(input -> input))
+            .build();
+
+    final Integer[] inputs = new Integer[64];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = i;
+    }
+    try {
+      predict(router, inputs);
+      fail("a route that drops inputs should fail the call");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+    }
+  }
+
+  @Test
+  public void emptyCall() throws Exception {
+    final RouterPredictor<DummyModel, Integer, Integer, String> router =
+        RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+            .route("control", LOADER, tagging("control"), 1)
+            .build();
+
+    assertThat(predict(router).isEmpty(), is(true));
+  }
+
+  @Test
+  public void routesItemsToTypedVarargsExtractors() throws Exception {
+    final AsyncPredictFn<DummyModel, Item, Integer, Integer> weighing =
+        (model, vectors) -> {
+          final List<Prediction<Item, Integer>> predictions = new ArrayList<>();
+          for (final Vector<Item, Integer> vector : vectors) {
+            predictions.add(Prediction.create(vector.input(), vector.value()));
+          }
+          return CompletableFuture.completedFuture(predictions);
+        };
+    final FeatureExtractor<DummyModel, Item, Integer> weights = FeatureExtractor.create(WEIGHTS);
+    final RouterPredictor<DummyModel, Item, Integer, Integer> router =
+        RouterPredictor.<DummyModel, Item, Integer, Integer>builder(weights)
+            .route("a", LOADER, weighing, 1)
+            .route("b", LOADER, weighing, 1)
+            .strategy(RoutingStrategy.sticky(Item::weight))
+            .build();
+
+    final Item[] items = new Item[16];
+    for (int i = 0; i < items.length; i++) {
+      final int weight = i;
+      items[i] = i % 2 == 0 ? () -> weight : () -> weight;
+    }
+    final List<Prediction<Item, Integer>> predictions =
+        router.predict(Duration.ofSeconds(1), items).toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+    assertThat(router.served().get("a") > 0 && router.served().get("b") > 0, is(true));
+    for (int i = 0; i < items.length; i++) {
+      assertThat(predictions.get(i).value(), is(i));
+    }
+    assertThat(
+        router
+            .predict(Duration.ofSeconds(1), new Item[0])
+            .toCompletableFuture()
+            .get(1, TimeUnit.SECONDS)
+            .isEmpty(),
+        is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsDuplicateNames() {
+    RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor)
+        .route("control", LOADER, tagging("control"), 1)
+        .shadow("control", LOADER, tagging("control"), 0.5);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void needsARoute() {
+    RouterPredictor.<DummyModel, Integer, Integer, String>builder(featureExtractor).build();
+  }
+}
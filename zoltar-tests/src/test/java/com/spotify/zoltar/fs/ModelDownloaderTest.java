@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.fs;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.cloud.storage.contrib.nio.CloudStorageConfiguration;
+import com.google.cloud.storage.contrib.nio.CloudStorageFileSystem;
+import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
+
+public class ModelDownloaderTest {
+
+  /** Splits every file in tiny chunks, read with an even tinier buffer. */
+  private static final ModelDownloader CHUNKED =
+      ModelDownloader.create(
+          ModelDownloader.Options.builder()
+              .concurrency(4)
+              .parallelThreshold(1)
+              .chunkSize(1000)
+              .bufferSize(64)
+              .build());
+
+  private static void assertSameFile(final Path expected, final Path actual) throws IOException {
+    assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+  }
+
+  private static byte[] random(final int size) {
+    final byte[] bytes = new byte[size];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void copiesLocalDirectoryInChunks() throws Exception {
+    final Path src = new File(getClass().getResource("/trained_model").toURI()).toPath();
+    final Path dest = Files.createTempDirectory("zoltar-");
+
+    CHUNKED.copyDir(src, dest, true);
+
+    assertSameFile(src.resolve("saved_model.pb"), dest.resolve("saved_model.pb"));
+    assertSameFile(src.resolve("trained_model.txt"), dest.resolve("trained_model.txt"));
+    assertTrue(Files.isDirectory(dest.resolve("variables")));
+  }
+
+  @Test
+  public void copiesFromGcsWithRangedReads() throws Exception {
+    final CloudStorageFileSystem gcs =
+        CloudStorageFileSystem.forBucket(
+            "bucket", CloudStorageConfiguration.DEFAULT, LocalStorageHelper.getOptions());
+    final byte[] shard = random(10_000);
+    Files.write(gcs.getPath("/model/variables/variables.data-00000-of-00001"), shard);
+    Files.write(gcs.getPath("/model/saved_model.pb"), random(10));
+    final Path dest = Files.createTempDirectory("zoltar-");
+
+    CHUNKED.copyDir(gcs.getPath("/model/"), dest, true);
+
+    assertArrayEquals(
+        shard, Files.readAllBytes(dest.resolve("variables/variables.data-00000-of-00001")));
+    assertThat(Files.size(dest.resolve("saved_model.pb")), is(10L));
+  }
+
+  @Test
+  public void copiesFromJarSequentially() throws Exception {
+    final URI jar = FileSystemExtrasTestUtils.jarUri();
+    final Path dest = Files.createTempDirectory("zoltar-");
+
+    CHUNKED.copyDir(FileSystemExtras.path(jar), dest, true);
+
+    assertTrue(Files.size(dest.resolve("saved_model.pb")) > 0);
+    assertTrue(Files.isDirectory(dest.resolve("variables")));
+  }
+
+  @Test(expected = FileAlreadyExistsException.class)
+  public void doesNotOverwriteUnlessAsked() throws Exception {
+    final Path src = Files.createTempDirectory("zoltar-");
+    Files.write(src.resolve("model.bin"), random(10));
+    final Path dest = Files.createTempDirectory("zoltar-");
+    Files.write(dest.resolve("model.bin"), random(10));
+
+    CHUNKED.copyDir(src, dest, false);
+  }
+
+  @Test
+  public void limitsBandwidth() throws Exception {
+    final Path src = Files.createTempDirectory("zoltar-");
+    Files.write(src.resolve("model.bin"), random(64 << 10));
+    final Path dest = Files.createTempDirectory("zoltar-");
+    final ModelDownloader throttled =
+        ModelDownloader.create(
+            ModelDownloader.Options.builder()
+                .bufferSize(16 << 10)
+                .bytesPerSecond(64 << 10)
+                .build());
+
+    final long start = System.nanoTime();
+    throttled.copyDir(src, dest, true);
+
+    // the first 16KiB are free, the remaining 48KiB take 0.75s.
+    assertTrue(System.nanoTime() - start >= 500_000_000L);
+    assertSameFile(src.resolve("model.bin"), dest.resolve("model.bin"));
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.limits;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictors;
+
+public class LimitingPredictorTest {
+
+  static class DummyModel implements Model<Object> {
+
+    @Override
+    public Id id() {
+      return Id.create("dummy");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  @Test
+  public void rejectsBeyondLimit() throws Exception {
+    final CompletableFuture<List<Prediction<Integer, Integer>>> backend = new CompletableFuture<>();
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+        (model, vectors) -> backend;
+    final AimdLimit limit = AimdLimit.create(Duration.ofSeconds(1), 2, 1, 2, 0.5);
+    final LimitingPredictorBuilder<DummyModel, Integer, Integer, Integer> builder =
+        Predictors.newBuilder(ModelLoader.loaded(new DummyModel()), extractFn, predictFn)
+            .with(LimitingPredictorBuilder.create(limit));
+
+    final CompletableFuture<?> first = builder.predictor().predict(1).toCompletableFuture();
+    final CompletableFuture<?> second = builder.predictor().predict(2).toCompletableFuture();
+    final CompletableFuture<?> rejected = builder.predictor().predict(3).toCompletableFuture();
+
+    try {
+      rejected.get(1, TimeUnit.SECONDS);
+      fail("prediction wasn't rejected");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(LimitExceededException.class));
+    }
+    assertThat(builder.limiter().inFlight(), is(2));
+    assertThat(builder.limiter().rejected(), is(1L));
+
+    backend.complete(Collections.singletonList(Prediction.create(1, 1)));
+    first.get(1, TimeUnit.SECONDS);
+    second.get(1, TimeUnit.SECONDS);
+    assertThat(builder.limiter().inFlight(), is(0));
+  }
+
+  @Test
+  public void aimdBacksOffOnSlowPredictions() {
+    final long target = TimeUnit.MILLISECONDS.toNanos(10);
+    final AimdLimit limit = AimdLimit.create(Duration.ofMillis(10), 10, 1, 20, 0.5);
+
+    limit.onSample(target / 2, 10, false);
+    assertThat(limit.limit(), is(11));
+
+    limit.onSample(target / 2, 1, false);
+    assertThat(limit.limit(), is(11));
+
+    limit.onSample(target * 2, 11, false);
+    assertThat(limit.limit(), is(5));
+
+    limit.onSample(target / 2, 5, true);
+    assertThat(limit.limit(), is(2));
+  }
+
+  @Test
+  public void gradientShrinksWhenLatencyExceedsTarget() {
+    final long target = TimeUnit.MILLISECONDS.toNanos(10);
+    final GradientLimit limit = GradientLimit.create(Duration.ofMillis(10), 100, 1, 1000, 1);
+
+    limit.onSample(target * 4, 100, false);
+    assertThat(limit.limit(), is(60));
+
+    final GradientLimit growing = GradientLimit.create(Duration.ofMillis(10), 100, 1, 1000, 1);
+    growing.onSample(target / 2, 100, false);
+    assertThat(growing.limit(), is(110));
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.loaders.ModelRegistry.Footprint;
+import com.spotify.zoltar.loaders.ModelRegistry.FootprintFn;
+import com.spotify.zoltar.loaders.ModelRegistry.Options;
+import com.spotify.zoltar.loaders.ModelRegistry.Stats;
+
+public class ModelRegistryTest {
+
+  private static final Model.Id A = Model.Id.create("a");
+  private static final Model.Id B = Model.Id.create("b");
+  private static final Model.Id C = Model.Id.create("c");
+
+  private final Map<Model.Id, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+  static class ClosingModel implements Model<Object> {
+
+    private final Id id;
+    volatile boolean closed;
+
+    ClosingModel(final Id id) {
+      this.id = id;
+    }
+
+    @Override
+    public Id id() {
+      return id;
+    }
+
+    @Override
+    public Object instance() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private ClosingModel load(final Model.Id id) {
+    loads.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+    return new ClosingModel(id);
+  }
+
+  /** Every model weighs one byte, so the budget is the maximum number of loaded models. */
+  private ModelRegistry<ClosingModel> registry(final long models) {
+    return ModelRegistry.create(
+        this::load,
+        Options.<ClosingModel>builder()
+            .budgetBytes(models)
+            .footprint(FootprintFn.constant(Footprint.of(1, 0)))
+            .executor(Runnable::run)
+            .build());
+  }
+
+  private static <T> T get(final CompletionStage<T> stage) throws Exception {
+    return stage.toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void concurrentFirstUsesShareOneLoad() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final ModelRegistry<ClosingModel> registry =
+        ModelRegistry.create(
+            id -> {
+              loading.await();
+              return load(id);
+            });
+
+    final CompletionStage<ClosingModel> first = registry.get(A);
+    final CompletionStage<ClosingModel> second = registry.get(A);
+    loading.countDown();
+
+    assertThat(get(first) == get(second), is(true));
+    assertThat(loads.get(A).get(), is(1));
+    assertThat(registry.stats().loads(), is(1L));
+    assertThat(registry.stats().hits(), is(1L));
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsedPastBudget() throws Exception {
+    final ModelRegistry<ClosingModel> registry = registry(2);
+
+    final ClosingModel a = get(registry.get(A));
+    final ClosingModel b = get(registry.get(B));
+    Thread.sleep(1);
+    get(registry.get(A));
+    final ClosingModel c = get(registry.get(C));
+
+    assertThat(b.closed, is(true));
+    assertThat(a.closed, is(false));
+    assertThat(c.closed, is(false));
+
+    final Stats stats = registry.stats();
+    assertThat(stats.models(), is(2));
+    assertThat(stats.residentBytes(), is(2L));
+    assertThat(stats.evictions(), is(1L));
+
+    get(registry.get(B));
+    assertThat(loads.get(B).get(), is(2));
+  }
+
+  @Test
+  public void evictedModelIsClosedOnceIdle() throws Exception {
+    final ModelRegistry<ClosingModel> registry = registry(1);
+
+    final ModelLease<ClosingModel> lease = get(registry.loader(A).lease());
+    get(registry.get(B));
+
+    assertThat(lease.model().closed, is(false));
+    lease.close();
+    assertThat(lease.model().closed, is(true));
+  }
+
+  @Test
+  public void failedLoadIsRetried() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    final ModelRegistry<ClosingModel> registry =
+        ModelRegistry.create(
+            id -> {
+              if (attempts.getAndIncrement() == 0) {
+                throw new IllegalStateException("not found");
+              }
+              return load(id);
+            },
+            Options.<ClosingModel>builder().executor(Runnable::run).build());
+
+    try {
+      get(registry.get(A));
+      fail("first load should fail");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("not found"));
+    }
+
+    assertThat(get(registry.get(A)).id(), is(A));
+    assertThat(registry.stats().loadFailures(), is(1L));
+    assertThat(registry.stats().loads(), is(2L));
+  }
+
+  @Test
+  public void closeEvictsEveryModel() throws Exception {
+    final ModelRegistry<ClosingModel> registry = registry(10);
+    final ClosingModel a = get(registry.get(A));
+    final ClosingModel b = get(registry.get(B));
+
+    registry.close();
+
+    assertThat(a.closed, is(true));
+    assertThat(b.closed, is(true));
+    assertThat(
+        registry.loader(A).get().toCompletableFuture().isCompletedExceptionally(), is(true));
+  }
+
+  @Test
+  public void closesModelsLoadedWhileClosing() throws Exception {
+    final List<ClosingModel> created = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      final ModelRegistry<ClosingModel> registry =
+          ModelRegistry.create(
+              id -> {
+                final ClosingModel model = new ClosingModel(id);
+                created.add(model);
+                return model;
+              },
+              Options.<ClosingModel>builder().executor(Runnable::run).build());
+      final CountDownLatch started = new CountDownLatch(1);
+      final Thread lookups =
+          new Thread(
+              () -> {
+                started.countDown();
+                for (int m = 0; m < 100; m++) {
+                  registry.get(Model.Id.create("m" + m));
+                }
+              });
+      lookups.start();
+      started.await();
+      registry.close();
+      lookups.join();
+    }
+
+    for (final ClosingModel model : created) {
+      assertThat(model.closed, is(true));
+    }
+  }
+
+  @Test
+  public void loaderViewDoesNotCloseTheModel() throws Exception {
+    final ModelRegistry<ClosingModel> registry = registry(10);
+    final ClosingModel a = registry.loader(A).get(Duration.ofSeconds(10));
+
+    registry.loader(A).close();
+
+    assertThat(a.closed, is(false));
+    assertThat(get(registry.get(A)) == a, is(true));
+    assertThat(registry.stats().hitRate(), is(0.5));
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.FeatureExtractor;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.PredictFns.AsyncPredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Vector;
+import com.spotify.zoltar.loaders.ModelWarmup.Report;
+import com.spotify.zoltar.loaders.ModelWarmup.Run;
+import com.spotify.zoltar.loaders.ModelWarmup.WarmupInputs;
+import com.spotify.zoltar.loaders.PreloaderTest.DummyModel;
+
+public class ModelWarmupTest {
+
+  private final List<Integer> batches = new ArrayList<>();
+
+  private final FeatureExtractor<DummyModel, Integer, Integer> featureExtractor =
+      FeatureExtractor.create(ExtractFn.identity());
+
+  private final AsyncPredictFn<DummyModel, Integer, Integer, Integer> predictFn =
+      (model, vectors) -> {
+        synchronized (batches) {
+          batches.add(vectors.size());
+        }
+        final List<Prediction<Integer, Integer>> predictions = new ArrayList<>();
+        for (final Vector<Integer, Integer> vector : vectors) {
+          predictions.add(Prediction.create(vector.input(), vector.value()));
+        }
+        return CompletableFuture.completedFuture(predictions);
+      };
+
+  @Test
+  public void runsEveryBatchSizeRoundRobin() throws Exception {
+    final List<Run> notified = new ArrayList<>();
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, predictFn, WarmupInputs.synthetic(() -> 1))
+            .batchSizes(1, 4, 16)
+            .iterations(2)
+            .listener(
+                new ModelWarmup.Listener() {
+                  @Override
+                  public void onBatch(final Run run) {
+                    notified.add(run);
+                  }
+                })
+            .build();
+
+    final Report report = warmup.run(new DummyModel());
+
+    assertThat(batches, is(ImmutableList.of(1, 4, 16, 1, 4, 16)));
+    assertThat(report.runs(), is(notified));
+    assertThat(report.latencies(4).size(), is(2));
+    assertThat(report.budgetExhausted(), is(false));
+  }
+
+  @Test
+  public void recordedInputsAreCycled() throws Exception {
+    final WarmupInputs<DummyModel, Integer> inputs =
+        WarmupInputs.recorded(ImmutableList.of(1, 2, 3));
+
+    assertThat(inputs.inputs(new DummyModel(), 5), is(ImmutableList.of(1, 2, 3, 1, 2)));
+  }
+
+  @Test
+  public void stopsWhenBudgetIsExhausted() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> slow =
+        (model, vectors) -> {
+          synchronized (batches) {
+            batches.add(vectors.size());
+          }
+          return new CompletableFuture<>();
+        };
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, slow, WarmupInputs.synthetic(() -> 1))
+            .batchSizes(1, 8)
+            .budget(Duration.ofMillis(50))
+            .build();
+
+    final Report report = warmup.run(new DummyModel());
+
+    assertThat(report.budgetExhausted(), is(true));
+    assertThat(report.runs().isEmpty(), is(true));
+    assertThat(batches, is(ImmutableList.of(1)));
+  }
+
+  @Test
+  public void preloadBlocksUntilWarmedUp() {
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, predictFn, WarmupInputs.synthetic(() -> 1))
+            .batchSizes(2, 8)
+            .iterations(3)
+            .build();
+
+    final ModelLoader<DummyModel> loader =
+        ModelLoader.lift(DummyModel::new).compose(warmup.preload(Duration.ofSeconds(10)));
+
+    assertThat(loader.get().toCompletableFuture().isDone(), is(true));
+    assertThat(batches.size(), is(6));
+  }
+
+  @Test
+  public void warmsUpOncePerModel() throws Exception {
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, predictFn, WarmupInputs.synthetic(() -> 1))
+            .iterations(1)
+            .build();
+    final ModelLoader<DummyModel> loader =
+        ModelLoader.loaded(new DummyModel()).compose(warmup.loader());
+
+    loader.get(Duration.ofSeconds(10));
+    loader.get(Duration.ofSeconds(10));
+    loader.lease().toCompletableFuture().get(10, TimeUnit.SECONDS).close();
+
+    assertThat(batches, is(ImmutableList.of(1)));
+  }
+
+  @Test
+  public void warmsTheLeasedInstance() throws Exception {
+    final Set<DummyModel> warmed = Collections.newSetFromMap(new IdentityHashMap<>());
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> recording =
+        (model, vectors) -> {
+          synchronized (warmed) {
+            warmed.add(model);
+          }
+          return predictFn.apply(model, vectors);
+        };
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, recording, WarmupInputs.synthetic(() -> 1))
+            .iterations(1)
+            .build();
+    // get and lease hand out different instances, e.g. a pool.
+    final ModelLoader<DummyModel> pool =
+        new ModelLoader<DummyModel>() {
+          @Override
+          public CompletionStage<DummyModel> get() {
+            return CompletableFuture.completedFuture(new DummyModel());
+          }
+
+          @Override
+          public CompletionStage<ModelLease<DummyModel>> lease() {
+            return get().thenApply(ModelLease::unmanaged);
+          }
+        };
+    final ModelLoader<DummyModel> loader = pool.compose(warmup.loader());
+
+    final ModelLease<DummyModel> lease =
+        loader.lease().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+    synchronized (warmed) {
+      assertThat(warmed.contains(lease.model()), is(true));
+      assertThat(warmed.size(), is(1));
+    }
+  }
+
+  @Test
+  public void warmedModelsCanBeCollected() throws Exception {
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, predictFn, WarmupInputs.synthetic(() -> 1))
+            .iterations(1)
+            .build();
+    // a new instance on every get, e.g. a reloading loader.
+    final ModelLoader<DummyModel> loader =
+        ((ModelLoader<DummyModel>) () -> CompletableFuture.completedFuture(new DummyModel()))
+            .compose(warmup.loader());
+
+    final WeakReference<DummyModel> warmed =
+        new WeakReference<>(loader.get().toCompletableFuture().get(10, TimeUnit.SECONDS));
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (warmed.get() != null && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(warmed.get() == null, is(true));
+  }
+
+  @Test
+  public void failedWarmupFailsTheModel() throws Exception {
+    final AsyncPredictFn<DummyModel, Integer, Integer, Integer> failing =
+        (model, vectors) -> {
+          final CompletableFuture<List<Prediction<Integer, Integer>>> failed =
+              new CompletableFuture<>();
+          failed.completeExceptionally(new IllegalStateException("graph not initialized"));
+          return failed;
+        };
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, failing, WarmupInputs.synthetic(() -> 1)).build();
+    final ModelLoader<DummyModel> loader =
+        ModelLoader.loaded(new DummyModel()).compose(warmup.loader());
+
+    try {
+      loader.get().toCompletableFuture().get(10, TimeUnit.SECONDS);
+      fail("warmup failure should fail the model");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("graph not initialized"));
+    }
+  }
+
+  @Test
+  public void warmsUpEveryReloadedVersion() throws Exception {
+    final AtomicInteger completed = new AtomicInteger();
+    final ModelWarmup<DummyModel, Integer, Integer, Integer> warmup =
+        ModelWarmup.builder(featureExtractor, predictFn, WarmupInputs.synthetic(() -> 1))
+            .iterations(1)
+            .listener(
+                new ModelWarmup.Listener() {
+                  @Override
+                  public void onComplete(final Report report) {
+                    completed.incrementAndGet();
+                  }
+                })
+            .build();
+
+    warmup.asWarmupFn().warmup(new DummyModel());
+    warmup.asWarmupFn().warmup(new DummyModel());
+
+    assertThat(completed.get(), is(2));
+  }
+}
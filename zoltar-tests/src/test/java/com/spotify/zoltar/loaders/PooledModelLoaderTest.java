@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.loaders.PooledModelLoader.Mode;
+
+public class PooledModelLoaderTest {
+
+  static class InstanceModel implements Model<Integer> {
+    private final int instance;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    InstanceModel(final int instance) {
+      this.instance = instance;
+    }
+
+    @Override
+    public Id id() {
+      return Id.create("instance");
+    }
+
+    @Override
+    public Integer instance() {
+      return instance;
+    }
+
+    @Override
+    public void close() {
+      closed.set(true);
+    }
+  }
+
+  private static PooledModelLoader<InstanceModel> pool(final int instances, final Mode mode) {
+    final AtomicInteger counter = new AtomicInteger();
+    return PooledModelLoader.create(
+        () -> new InstanceModel(counter.getAndIncrement()), instances, mode);
+  }
+
+  private static ModelLease<InstanceModel> lease(final PooledModelLoader<InstanceModel> pool)
+      throws Exception {
+    return pool.lease().toCompletableFuture().get(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void leasesInstancesExclusively() throws Exception {
+    final PooledModelLoader<InstanceModel> pool = pool(2, Mode.POOL);
+
+    final ModelLease<InstanceModel> first = lease(pool);
+    final ModelLease<InstanceModel> second = lease(pool);
+    assertThat(first.model() == second.model(), is(false));
+    assertThat(pool.stats().utilization(), is(1.0));
+
+    final CompletableFuture<ModelLease<InstanceModel>> third = pool.lease().toCompletableFuture();
+    assertThat(third.isDone(), is(false));
+    assertThat(pool.stats().waiting(), is(1));
+
+    second.close();
+    assertThat(third.get(1, TimeUnit.SECONDS).model() == second.model(), is(true));
+    assertThat(pool.stats().waits(), is(1L));
+    assertThat(pool.stats().leased(), is(2));
+  }
+
+  @Test
+  public void affinityLeasesSameInstancePerThread() throws Exception {
+    final PooledModelLoader<InstanceModel> pool = pool(4, Mode.AFFINITY);
+
+    final ModelLease<InstanceModel> first = lease(pool);
+    final InstanceModel model = first.model();
+    first.close();
+
+    for (int i = 0; i < 10; i++) {
+      try (ModelLease<InstanceModel> lease = lease(pool)) {
+        assertThat(lease.model() == model, is(true));
+      }
+    }
+  }
+
+  @Test
+  public void closesLeasedInstancesOnReturn() throws Exception {
+    final PooledModelLoader<InstanceModel> pool = pool(2, Mode.POOL);
+
+    final ModelLease<InstanceModel> lease = lease(pool);
+    final ModelLease<InstanceModel> returned = lease(pool);
+    returned.close();
+
+    pool.close();
+    assertThat(returned.model().closed.get(), is(true));
+    assertThat(lease.model().closed.get(), is(false));
+    assertThat(pool.lease().toCompletableFuture().isCompletedExceptionally(), is(true));
+
+    lease.close();
+    assertThat(lease.model().closed.get(), is(true));
+  }
+
+  @Test
+  public void timesOutWaiters() throws Exception {
+    final PooledModelLoader<InstanceModel> pool =
+        PooledModelLoader.create(
+            () -> new InstanceModel(0),
+            1,
+            Mode.POOL,
+            ModelLoader.DEFAULT_EXECUTOR_SERVICE,
+            Duration.ofMillis(50));
+
+    final ModelLease<InstanceModel> lease = lease(pool);
+    try {
+      pool.lease().toCompletableFuture().get(1, TimeUnit.SECONDS);
+      fail("waiter should time out");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause() instanceof TimeoutException, is(true));
+    }
+    assertThat(pool.stats().timeouts(), is(1L));
+    assertThat(pool.stats().waiting(), is(0));
+
+    // the expired waiter doesn't take the returned instance.
+    lease.close();
+    assertThat(lease(pool).model() == lease.model(), is(true));
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.FeatureExtractFns.ExtractFn;
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.PredictFns.PredictFn;
+import com.spotify.zoltar.Prediction;
+import com.spotify.zoltar.Predictor;
+import com.spotify.zoltar.Predictors;
+
+public class RefCountingModelLoaderTest {
+
+  static class ClosableModel implements Model<Object> {
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @Override
+    public Id id() {
+      return Id.create("closable");
+    }
+
+    @Override
+    public Object instance() {
+      return new Object();
+    }
+
+    @Override
+    public void close() {
+      closed.set(true);
+    }
+  }
+
+  private static RefCountingModelLoader<ClosableModel> loader(
+      final AtomicReference<ClosableModel> model) {
+    return RefCountingModelLoader.create(
+        () -> CompletableFuture.completedFuture(model.get()));
+  }
+
+  @Test
+  public void closesWhenLastLeaseIsReturned() throws Exception {
+    final ClosableModel model = new ClosableModel();
+    final RefCountingModelLoader<ClosableModel> loader = loader(new AtomicReference<>(model));
+
+    final ModelLease<ClosableModel> first = loader.lease().toCompletableFuture().get();
+    final ModelLease<ClosableModel> second = loader.lease().toCompletableFuture().get();
+    assertThat(loader.leases(), is(2));
+
+    loader.close();
+    first.close();
+    first.close();
+    assertThat(model.closed.get(), is(false));
+
+    second.close();
+    assertThat(model.closed.get(), is(true));
+  }
+
+  @Test
+  public void retiresReplacedModel() throws Exception {
+    final ClosableModel previous = new ClosableModel();
+    final AtomicReference<ClosableModel> current = new AtomicReference<>(previous);
+    final RefCountingModelLoader<ClosableModel> loader = loader(current);
+
+    final ModelLease<ClosableModel> lease = loader.lease().toCompletableFuture().get();
+    final ClosableModel next = new ClosableModel();
+    current.set(next);
+    loader.retire(previous);
+
+    final ModelLease<ClosableModel> nextLease = loader.lease().toCompletableFuture().get();
+    assertThat(nextLease.model() == next, is(true));
+    assertThat(previous.closed.get(), is(false));
+
+    lease.close();
+    assertThat(previous.closed.get(), is(true));
+    assertThat(next.closed.get(), is(false));
+  }
+
+  @Test
+  public void tracksInstancesByIdentity() throws Exception {
+    // e.g. a pooled loader that hands out its instances round-robin.
+    final ClosableModel first = new ClosableModel();
+    final ClosableModel second = new ClosableModel();
+    final AtomicReference<ClosableModel> current = new AtomicReference<>(first);
+    final RefCountingModelLoader<ClosableModel> loader = loader(current);
+
+    final ModelLease<ClosableModel> firstLease = loader.lease().toCompletableFuture().get();
+    current.set(second);
+    final ModelLease<ClosableModel> secondLease = loader.lease().toCompletableFuture().get();
+    current.set(first);
+    firstLease.close();
+    final ModelLease<ClosableModel> again = loader.lease().toCompletableFuture().get();
+
+    assertThat(again.model() == first, is(true));
+    assertThat(first.closed.get(), is(false));
+    assertThat(second.closed.get(), is(false));
+    assertThat(loader.leases(), is(2));
+
+    again.close();
+    secondLease.close();
+    loader.close();
+    assertThat(first.closed.get(), is(true));
+    assertThat(second.closed.get(), is(true));
+  }
+
+  @Test
+  public void neverHandsOutRetiredInstances() throws Exception {
+    final ClosableModel model = new ClosableModel();
+    final RefCountingModelLoader<ClosableModel> loader = loader(new AtomicReference<>(model));
+
+    loader.lease().toCompletableFuture().get().close();
+    loader.retire(model);
+    assertThat(model.closed.get(), is(true));
+
+    try {
+      loader.lease().toCompletableFuture().get();
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("model instance was retired"));
+      return;
+    }
+    throw new AssertionError("expected the retired instance to be refused");
+  }
+
+  @Test
+  public void predictorHoldsLeaseUntilPredictionCompletes() throws Exception {
+    final ClosableModel model = new ClosableModel();
+    final RefCountingModelLoader<ClosableModel> loader = loader(new AtomicReference<>(model));
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExtractFn<Integer, Integer> extractFn = ExtractFn.lift(input -> input);
+    final PredictFn<ClosableModel, Integer, Integer, Integer> predictFn =
+        (m, vectors) -> {
+          started.countDown();
+          release.await();
+          return Collections.singletonList(Prediction.create(1, 1));
+        };
+    final Predictor<Integer, Integer> predictor =
+        Predictors.newBuilder(loader, extractFn, predictFn).predictor();
+
+    final CompletableFuture<List<Prediction<Integer, Integer>>> future =
+        predictor.predict(Duration.ofSeconds(5), 1).toCompletableFuture();
+    assertThat(started.await(1, TimeUnit.SECONDS), is(true));
+    loader.close();
+    assertThat(model.closed.get(), is(false));
+
+    release.countDown();
+    future.get(1, TimeUnit.SECONDS);
+    assertThat(model.closed.get(), is(true));
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.loaders.ReloadingModelLoader.VersionResolver;
+
+public class ReloadingModelLoaderTest {
+
+  static class VersionedModel implements Model<Object> {
+    private final URI version;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicInteger warmups = new AtomicInteger();
+
+    VersionedModel(final URI version) {
+      this.version = version;
+    }
+
+    @Override
+    public Id id() {
+      return Id.create(version.toString());
+    }
+
+    @Override
+    public Object instance() {
+      return version;
+    }
+
+    @Override
+    public void close() {
+      closed.set(true);
+    }
+  }
+
+  private static ReloadingModelLoader.Options<VersionedModel> options() {
+    return ReloadingModelLoader.Options.<VersionedModel>builder()
+        .pollInterval(Duration.ofMillis(10))
+        .drainTimeout(Duration.ofMillis(50))
+        .warmup(model -> model.warmups.incrementAndGet())
+        .build();
+  }
+
+  private static VersionedModel awaitVersion(
+      final ReloadingModelLoader<VersionedModel> loader, final String date) throws Exception {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      final VersionedModel model = loader.get(Duration.ofSeconds(1));
+      if (model.version.toString().contains(date)) {
+        return model;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("version " + date + " not loaded");
+  }
+
+  @Test
+  public void swapsToLatestVersion() throws Exception {
+    final Path root = Files.createTempDirectory("zoltar-reloading");
+    Files.createDirectory(root.resolve("2019-01-01"));
+
+    try (final ReloadingModelLoader<VersionedModel> loader =
+        ReloadingModelLoader.create(
+            VersionResolver.latestDate(root.toUri()), VersionedModel::new, options())) {
+      final VersionedModel first = awaitVersion(loader, "2019-01-01");
+      assertThat(first.warmups.get(), is(1));
+
+      Files.createDirectory(root.resolve("2019-01-02"));
+      final VersionedModel second = awaitVersion(loader, "2019-01-02");
+      assertThat(second.warmups.get(), is(1));
+      assertThat(first.closed.get(), is(false));
+
+      // the previous model is closed once the drain timeout elapsed.
+      Thread.sleep(200);
+      assertThat(first.closed.get(), is(true));
+      assertThat(second.closed.get(), is(false));
+    }
+  }
+
+  @Test
+  public void keepsServingWhenReloadFails() throws Exception {
+    final Path root = Files.createTempDirectory("zoltar-reloading");
+    Files.createDirectory(root.resolve("2019-01-01"));
+    final AtomicInteger failures = new AtomicInteger();
+    final ReloadingModelLoader.Options<VersionedModel> options =
+        ReloadingModelLoader.Options.<VersionedModel>builder()
+            .pollInterval(Duration.ofMillis(10))
+            .listener(
+                new ReloadingModelLoader.Listener<VersionedModel>() {
+                  @Override
+                  public void onFailure(final URI version, final Throwable cause) {
+                    failures.incrementAndGet();
+                  }
+                })
+            .build();
+
+    try (final ReloadingModelLoader<VersionedModel> loader =
+        ReloadingModelLoader.create(
+            VersionResolver.latestDate(root.toUri()),
+            version -> {
+              if (version.toString().contains("2019-01-02")) {
+                throw new IllegalStateException("corrupt model");
+              }
+              return new VersionedModel(version);
+            },
+            options)) {
+      final VersionedModel first = awaitVersion(loader, "2019-01-01");
+
+      Files.createDirectory(root.resolve("2019-01-02"));
+      Thread.sleep(200);
+
+      assertThat(loader.get(Duration.ofSeconds(1)), is(first));
+      // broken versions are tried once.
+      assertThat(failures.get(), is(1));
+    }
+  }
+
+  @Test
+  public void keepsReloadingWhenListenerFails() throws Exception {
+    final Path root = Files.createTempDirectory("zoltar-reloading");
+    Files.createDirectory(root.resolve("2019-01-01"));
+    final ReloadingModelLoader.Options<VersionedModel> options =
+        ReloadingModelLoader.Options.<VersionedModel>builder()
+            .pollInterval(Duration.ofMillis(10))
+            .drainTimeout(Duration.ofMillis(10))
+            .listener(
+                new ReloadingModelLoader.Listener<VersionedModel>() {
+                  @Override
+                  public void onReload(final URI version, final VersionedModel model) {
+                    throw new IllegalStateException("listener failure");
+                  }
+
+                  @Override
+                  public void onFailure(final URI version, final Throwable cause) {
+                    throw new IllegalStateException("listener failure");
+                  }
+                })
+            .build();
+
+    try (final ReloadingModelLoader<VersionedModel> loader =
+        ReloadingModelLoader.create(
+            VersionResolver.latestDate(root.toUri()), VersionedModel::new, options)) {
+      final VersionedModel first = awaitVersion(loader, "2019-01-01");
+
+      Files.createDirectory(root.resolve("2019-01-02"));
+      awaitVersion(loader, "2019-01-02");
+
+      Thread.sleep(200);
+      assertThat(first.closed.get(), is(true));
+    }
+  }
+
+  @Test
+  public void closesModelLoadedWhileClosing() throws Exception {
+    final Path root = Files.createTempDirectory("zoltar-reloading");
+    Files.createDirectory(root.resolve("2019-01-01"));
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch closing = new CountDownLatch(1);
+    final AtomicReference<VersionedModel> loaded = new AtomicReference<>();
+
+    final ReloadingModelLoader<VersionedModel> loader =
+        ReloadingModelLoader.create(
+            VersionResolver.latestDate(root.toUri()),
+            version -> {
+              loading.countDown();
+              // the close interrupts the load, finish it anyway.
+              while (true) {
+                try {
+                  closing.await();
+                  break;
+                } catch (final InterruptedException e) {
+                  // keep waiting.
+                }
+              }
+              final VersionedModel model = new VersionedModel(version);
+              loaded.set(model);
+              return model;
+            },
+            options());
+
+    assertThat(loading.await(5, TimeUnit.SECONDS), is(true));
+    loader.close();
+    closing.countDown();
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (loaded.get() == null || !loaded.get().closed.get()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("model loaded after close was never closed");
+      }
+      Thread.sleep(10);
+    }
+    assertThat(loader.version().isPresent(), is(false));
+  }
+}
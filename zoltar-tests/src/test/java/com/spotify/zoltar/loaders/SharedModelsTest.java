@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.loaders;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
+import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.loaders.ModelRegistryTest.ClosingModel;
+import com.spotify.zoltar.loaders.SharedModels.Key;
+
+public class SharedModelsTest {
+
+  private static final Key KEY = Key.of(ClosingModel.class, "gs://bucket/model", "serve");
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private ClosingModel load() {
+    loads.incrementAndGet();
+    return new ClosingModel(Model.Id.create("shared"));
+  }
+
+  @Test
+  public void concurrentLoadersShareOneLoad() throws Exception {
+    final SharedModels shared = SharedModels.create(Executors.newSingleThreadExecutor());
+    final ExecutorService callers = Executors.newFixedThreadPool(8);
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<ClosingModel>> models = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      models.add(
+          callers.submit(
+              () -> {
+                start.await();
+                return shared.<ClosingModel>loader(KEY, this::load).get(Duration.ofSeconds(10));
+              }));
+    }
+    start.countDown();
+
+    final ClosingModel first = models.get(0).get(10, TimeUnit.SECONDS);
+    for (final Future<ClosingModel> model : models) {
+      assertThat(model.get(10, TimeUnit.SECONDS) == first, is(true));
+    }
+    assertThat(loads.get(), is(1));
+    assertThat(shared.loaders(KEY), is(32));
+    callers.shutdown();
+  }
+
+  @Test
+  public void keysDontShare() throws Exception {
+    final SharedModels shared = SharedModels.create(Runnable::run);
+
+    final ClosingModel serve =
+        shared.<ClosingModel>loader(KEY, this::load).get(Duration.ofSeconds(10));
+    final Key otherSignature = Key.of(ClosingModel.class, "gs://bucket/model", "other");
+    final ClosingModel other =
+        shared.<ClosingModel>loader(otherSignature, this::load).get(Duration.ofSeconds(10));
+
+    assertThat(serve == other, is(false));
+    assertThat(shared.size(), is(2));
+  }
+
+  @Test
+  public void modelIsClosedWithTheLastLoaderAndLease() throws Exception {
+    final SharedModels shared = SharedModels.create(Runnable::run);
+    final ModelLoader<ClosingModel> first = shared.loader(KEY, this::load);
+    final ModelLoader<ClosingModel> second = shared.loader(KEY, this::load);
+    final ModelLease<ClosingModel> lease =
+        second.lease().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+    first.close();
+    second.close();
+    assertThat(lease.model().closed, is(false));
+    assertThat(shared.size(), is(0));
+
+    lease.close();
+    assertThat(lease.model().closed, is(true));
+
+    final ClosingModel reloaded =
+        shared.<ClosingModel>loader(KEY, this::load).get(Duration.ofSeconds(10));
+    assertThat(reloaded.closed, is(false));
+    assertThat(loads.get(), is(2));
+  }
+
+  @Test
+  public void closingALoaderTwiceReleasesOnce() throws Exception {
+    final SharedModels shared = SharedModels.create(Runnable::run);
+    final ModelLoader<ClosingModel> first = shared.loader(KEY, this::load);
+    final ModelLoader<ClosingModel> second = shared.loader(KEY, this::load);
+
+    first.close();
+    first.close();
+
+    assertThat(second.get(Duration.ofSeconds(10)).closed, is(false));
+    assertThat(shared.loaders(KEY), is(1));
+    assertThat(first.lease().toCompletableFuture().isCompletedExceptionally(), is(true));
+  }
+
+  @Test
+  public void failedLoadsAreRetried() throws Exception {
+    final SharedModels shared = SharedModels.create(Runnable::run);
+    final ModelLoader<ClosingModel> failing =
+        shared.loader(
+            KEY,
+            () -> {
+              throw new IllegalStateException("not found");
+            });
+
+    try {
+      failing.get(Duration.ofSeconds(10));
+      fail("load should fail");
+    } catch (final ExecutionException e) {
+      assertThat(e.getCause().getMessage(), is("not found"));
+    }
+
+    assertThat(
+        shared.<ClosingModel>loader(KEY, this::load).get(Duration.ofSeconds(10)).closed,
+        is(false));
+    assertThat(loads.get(), is(1));
+  }
+}
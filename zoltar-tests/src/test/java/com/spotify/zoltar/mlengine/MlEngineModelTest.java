@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.mlengine;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+
+import com.spotify.zoltar.Deadline;
+
+public class MlEngineModelTest {
+
+  @Test(timeout = 10_000)
+  public void cancellationReleasesACallWaitingForTheResponse() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    // a backend that never answers.
+    final MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(final String method, final String url) {
+            return new MockLowLevelHttpRequest(url) {
+              @Override
+              public LowLevelHttpResponse execute() throws IOException {
+                started.countDown();
+                try {
+                  new CountDownLatch(1).await();
+                } catch (final InterruptedException e) {
+                  interrupted.countDown();
+                }
+                return super.execute();
+              }
+            };
+          }
+        };
+    final HttpRequest request =
+        transport.createRequestFactory().buildGetRequest(new GenericUrl("http://localhost"));
+    final Deadline deadline = Deadline.none();
+
+    new Thread(
+            () -> {
+              try {
+                started.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              deadline.cancel();
+            })
+        .start();
+
+    try {
+      MlEngineModel.execute(request, deadline);
+      fail("a cancelled call should not return a response");
+    } catch (final CancellationException e) {
+      assertThat(interrupted.await(10, TimeUnit.SECONDS), is(true));
+    }
+  }
+
+  @Test(expected = CancellationException.class)
+  public void cancelledDeadlineSkipsTheCall() throws Exception {
+    final MockHttpTransport transport = new MockHttpTransport();
+    final HttpRequest request =
+        transport.createRequestFactory().buildGetRequest(new GenericUrl("http://localhost"));
+    final Deadline deadline = Deadline.none();
+    deadline.cancel();
+
+    MlEngineModel.execute(request, deadline);
+  }
+}
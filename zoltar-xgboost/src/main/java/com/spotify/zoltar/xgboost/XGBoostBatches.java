@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2019 Spotify AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.spotify.zoltar.xgboost;
+
+import com.spotify.zoltar.columnar.FloatBatch;
+
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+
+/**
+ * Bridges dense {@link FloatBatch}es and XGBoost. The batch's contiguous row-major storage is
+ * handed to the {@link DMatrix} as is, with no per-row array.
+ */
+@SuppressWarnings("checkstyle:AbbreviationAsWordInName")
+public final class XGBoostBatches {
+
+  private XGBoostBatches() {}
+
+  /**
+   * Returns a dense {@link DMatrix} of the batch, missing values are {@link Float#NaN}. The caller
+   * must dispose it.
+   */
+  public static DMatrix dmatrix(final FloatBatch batch) throws XGBoostError {
+    return new DMatrix(batch.values(), batch.rows(), batch.width(), Float.NaN);
+  }
+
+  /**
+   * Predicts a whole batch, e.g. {@code Columnar.floatPredictFn(XGBoostBatches::predict)}.
+   *
+   * @return a batch with a row of outputs, e.g. one per class, per feature row.
+   */
+  public static FloatBatch predict(final XGBoostModel model, final FloatBatch features)
+      throws XGBoostError {
+    final DMatrix dmatrix = dmatrix(features);
+    try {
+      final float[][] predictions = model.instance().predict(dmatrix);
+      final int width = predictions.length == 0 ? 0 : predictions[0].length;
+      final float[] values = new float[predictions.length * width];
+      for (int i = 0; i < predictions.length; i++) {
+        System.arraycopy(predictions[i], 0, values, i * width, width);
+      }
+      return FloatBatch.dense(values, predictions.length, width);
+    } finally {
+      dmatrix.dispose();
+    }
+  }
+}
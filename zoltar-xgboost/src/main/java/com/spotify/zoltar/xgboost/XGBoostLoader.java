@@ -16,11 +16,20 @@
 package com.spotify.zoltar.xgboost;
 
 import java.net.URI;
+import java.util.concurrent.CompletionStage;
 
 import com.spotify.zoltar.Model;
+import com.spotify.zoltar.ModelLease;
 import com.spotify.zoltar.ModelLoader;
+import com.spotify.zoltar.fs.ModelDownloader;
+import com.spotify.zoltar.loaders.SharedModels;
 
-/** {@link XGBoostModel} loader. */
+/**
+ * {@link XGBoostModel} loader.
+ *
+ * <p>Every {@code create} loader downloads and loads its own copy of the model, two loaders of the
+ * same model hold it twice. Loaders built with {@link #shared(Model.Id, String)} load it once.
+ */
 @FunctionalInterface
 @SuppressWarnings("checkstyle:AbbreviationAsWordInName")
 public interface XGBoostLoader extends ModelLoader<XGBoostModel> {
@@ -36,7 +45,9 @@ public interface XGBoostLoader extends ModelLoader<XGBoostModel> {
   }
 
   /**
-   * Returns a XGBoost model loader given the serialized model stored in the model URI.
+   * Returns a XGBoost model loader given the serialized model stored in the model URI. The loader
+   * loads its own copy of the model, use {@link #shared(Model.Id, String)} to share it with the
+   * other loaders of the same model.
    *
    * @param id model id @{link Model.Id}.
    * @param modelUri should point to serialized XGBoost model file, can be a URI to a local
@@ -46,6 +57,21 @@ public interface XGBoostLoader extends ModelLoader<XGBoostModel> {
     return create(() -> XGBoostModel.create(id, URI.create(modelUri)));
   }
 
+  /**
+   * Returns a XGBoost model loader given the serialized model stored in the model URI, a non-local
+   * file is downloaded with the given {@link ModelDownloader}. Use it for large models on a remote
+   * file system such as GCS, smaller models load faster with the other factories.
+   *
+   * @param id model id @{link Model.Id}.
+   * @param modelUri should point to serialized XGBoost model file, can be a URI to a local
+   *     filesystem, resource, GCS etc.
+   * @param downloader downloader of non-local files.
+   */
+  static XGBoostLoader create(
+      final Model.Id id, final String modelUri, final ModelDownloader downloader) {
+    return create(() -> XGBoostModel.create(id, URI.create(modelUri), downloader));
+  }
+
   /**
    * Returns a XGBoost model loader given the serialized model stored in the model URI.
    *
@@ -54,4 +80,37 @@ public interface XGBoostLoader extends ModelLoader<XGBoostModel> {
   static XGBoostLoader create(final ThrowableSupplier<XGBoostModel> supplier) {
     return ModelLoader.load(supplier)::get;
   }
+
+  /**
+   * Returns a XGBoost model loader that shares the model with every other shared loader of the
+   * same id and URI in the process, the model is downloaded and loaded once. Closing the loader
+   * releases its reference on the model, see {@link SharedModels}.
+   *
+   * @param id model id @{link Model.Id}.
+   * @param modelUri should point to serialized XGBoost model file, can be a URI to a local
+   *     filesystem, resource, GCS etc.
+   */
+  static XGBoostLoader shared(final Model.Id id, final String modelUri) {
+    final ModelLoader<XGBoostModel> shared =
+        SharedModels.global()
+            .loader(
+                SharedModels.Key.of(XGBoostModel.class, id, modelUri),
+                () -> XGBoostModel.create(id, URI.create(modelUri)));
+    return new XGBoostLoader() {
+      @Override
+      public CompletionStage<XGBoostModel> get() {
+        return shared.get();
+      }
+
+      @Override
+      public CompletionStage<ModelLease<XGBoostModel>> lease() {
+        return shared.lease();
+      }
+
+      @Override
+      public void close() {
+        shared.close();
+      }
+    };
+  }
 }
@@ -18,12 +18,15 @@ package com.spotify.zoltar.xgboost;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 
 import com.google.auto.value.AutoValue;
 
 import com.spotify.zoltar.Model;
 import com.spotify.zoltar.fs.FileSystemExtras;
+import com.spotify.zoltar.fs.ModelDownloader;
 
 import ml.dmlc.xgboost4j.java.Booster;
 import ml.dmlc.xgboost4j.java.GompLoader;
@@ -64,6 +67,28 @@ public abstract class XGBoostModel implements Model<Booster> {
     }
   }
 
+  /**
+   * Note: Please use Models from zoltar-models module.
+   *
+   * <p>Returns a XGBoost model given a URI to the serialized model file, a non-local file is
+   * downloaded with the given {@link ModelDownloader}. Use it for large models on a remote file
+   * system such as GCS, smaller models load faster with the other factories.
+   */
+  public static XGBoostModel create(
+      final Model.Id id, final URI modelUri, final ModelDownloader downloader) throws IOException {
+    final Path path = FileSystemExtras.path(modelUri);
+    if (path.getFileSystem().equals(FileSystems.getDefault())) {
+      return create(id, modelUri);
+    }
+    final Path local = Files.createTempFile("zoltar-", ".model");
+    try {
+      downloader.copyFile(path, local, true);
+      return create(id, local.toUri());
+    } finally {
+      Files.deleteIfExists(local);
+    }
+  }
+
   /** Returns XGBoost's {@link Booster}. */
   public abstract Booster instance();
 